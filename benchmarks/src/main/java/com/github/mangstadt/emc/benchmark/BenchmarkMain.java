@@ -0,0 +1,27 @@
+package com.github.mangstadt.emc.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks. Accepts the same arguments as JMH's own main class, but
+ * writes the results to "target/jmh-result.json" by default so that they can
+ * be compared across versions.
+ * @author Michael Angstadt
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws Exception {
+		List<String> list = new ArrayList<>(Arrays.asList(args));
+		if (!list.contains("-rf")) {
+			list.add("-rf");
+			list.add("json");
+		}
+		if (!list.contains("-rff")) {
+			list.add("-rff");
+			list.add("target/jmh-result.json");
+		}
+
+		org.openjdk.jmh.Main.main(list.toArray(new String[0]));
+	}
+}
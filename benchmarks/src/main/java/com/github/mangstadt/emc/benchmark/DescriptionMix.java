@@ -0,0 +1,79 @@
+package com.github.mangstadt.emc.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates transaction descriptions whose frequencies resemble those of a
+ * typical shop owner's rupee history.
+ * @author Michael Angstadt
+ */
+public class DescriptionMix {
+	//@formatter:off
+	private static final Object[][] WEIGHTS = {
+		{ 45, "Player shop sold %d %s to %s" },
+		{ 15, "Your player shop bought %d %s from %s" },
+		{ 5,  "Sold to player shop %d %s to %s" },
+		{ 5,  "Player shop purchased %d %s from %s" },
+		{ 5,  "Payment from %3$s: %2$s" },
+		{ 5,  "Payment to %3$s" },
+		{ 5,  "Daily sign-in bonus" },
+		{ 5,  "Voted for Empire Minecraft on TopG.org - day bonus: %1$d" },
+		{ 3,  "Locked an item wilderness:%1$d,64,-%1$d" },
+		{ 2,  "Summoned stabled horse in the wild @ wilderness:%1$d.5:64:-%1$d.5" },
+		{ 2,  "Sent mail to %3$s: Hello" },
+		{ 1,  "Eggified a %2$s" },
+		{ 1,  "Opened cross-server vault" },
+		{ 1,  "Donation to %3$s" }
+	};
+
+	private static final String[] ITEMS = { "Diamond", "Iron Ingot", "Purple Dye", "Diamond Barding", "Huge Mushroom 2", "Cooked Beef", "Wolf" };
+	private static final String[] PLAYERS = { "Notch", "Jeb", "AnguishedCarpet", "CaptainKobe1", "Luckypat" };
+	//@formatter:on
+
+	private static final int TOTAL_WEIGHT;
+	static {
+		int total = 0;
+		for (Object[] weight : WEIGHTS) {
+			total += (Integer) weight[0];
+		}
+		TOTAL_WEIGHT = total;
+	}
+
+	private final Random random;
+
+	/**
+	 * @param seed the random seed, so that runs are repeatable
+	 */
+	public DescriptionMix(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Generates a description.
+	 * @return the description
+	 */
+	public String next() {
+		int r = random.nextInt(TOTAL_WEIGHT);
+		for (Object[] weight : WEIGHTS) {
+			r -= (Integer) weight[0];
+			if (r < 0) {
+				String format = (String) weight[1];
+				return String.format(format, 1 + random.nextInt(1000), ITEMS[random.nextInt(ITEMS.length)], PLAYERS[random.nextInt(PLAYERS.length)]);
+			}
+		}
+		throw new AssertionError();
+	}
+
+	/**
+	 * Generates multiple descriptions.
+	 * @param count the number of descriptions to generate
+	 * @return the descriptions
+	 */
+	public String[] next(int count) {
+		String[] descriptions = new String[count];
+		for (int i = 0; i < count; i++) {
+			descriptions[i] = next();
+		}
+		return descriptions;
+	}
+}
@@ -0,0 +1,138 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * <p>
+ * Measures how long it takes a {@link RupeeTransactionArchiveScraper} to scrape
+ * an archive of pages that were rendered by a
+ * {@link SyntheticHistoryGenerator}. The archive is held in memory, so only
+ * the parsing and scraping are measured. Besides the total time, the number of
+ * pages scraped per second is reported.
+ * </p>
+ * <p>
+ * The default parameters show how throughput scales with the size of the
+ * fork-join pool. Use JMH's -p option to change them, for example:
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ArchiveScraperBenchmark -p pages=5000 -p poolSize=16
+ * </pre>
+ * @author Michael Angstadt
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchiveScraperBenchmark {
+	private static final int ROWS_PER_PAGE = 30;
+
+	@Param({ "1", "2", "4", "8" })
+	public int poolSize;
+
+	@Param("500")
+	public int pages;
+
+	private PageArchive archive;
+	private ForkJoinPool pool;
+	private RupeeTransactionArchiveScraper scraper;
+
+	@Setup
+	public void setup() throws IOException {
+		LocalDateTime now = LocalDateTime.of(2015, 6, 27, 14, 0);
+		SyntheticHistoryGenerator generator = new SyntheticHistoryGenerator.Builder().now(now).build();
+		Iterator<String> it = generator.pages((long) pages * ROWS_PER_PAGE, ROWS_PER_PAGE, new TransactionPageRenderer(now));
+
+		archive = new MemoryPageArchive();
+		for (int page = 1; it.hasNext(); page++) {
+			archive.put(page, it.next());
+		}
+
+		pool = new ForkJoinPool(poolSize);
+		scraper = new RupeeTransactionArchiveScraper(new RupeeTransactionPageScraper(), pool);
+
+		int count = scraper.scrape(archive).size();
+		if (count != pages * ROWS_PER_PAGE) {
+			throw new IllegalStateException("Expected " + (pages * ROWS_PER_PAGE) + " transactions, but got " + count + ".");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public int scrape(Metrics metrics) throws IOException {
+		long start = System.nanoTime();
+		List<RupeeTransaction> transactions = scraper.scrape(archive);
+		long elapsed = System.nanoTime() - start;
+
+		metrics.pagesPerSecond = pages / (elapsed / 1e9);
+		return transactions.size();
+	}
+
+	/**
+	 * Additional metrics that are included in the benchmark results.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Metrics {
+		public double pagesPerSecond;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			pagesPerSecond = 0;
+		}
+	}
+
+	/**
+	 * Holds the pages in memory.
+	 */
+	private static class MemoryPageArchive implements PageArchive {
+		private final ConcurrentSkipListMap<Integer, String> pages = new ConcurrentSkipListMap<>();
+
+		@Override
+		public void put(int pageNumber, String html) {
+			pages.put(pageNumber, html);
+		}
+
+		@Override
+		public String get(int pageNumber) {
+			return pages.get(pageNumber);
+		}
+
+		@Override
+		public SortedSet<Integer> getPageNumbers() {
+			return new TreeSet<>(pages.keySet());
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mangstadt.emc.benchmark.DescriptionMix;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Measures how long it takes to scrape a transaction page and to parse
+ * transaction timestamps.
+ * @author Michael Angstadt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageScraperBenchmark {
+	private static final int ROWS_PER_PAGE = 30;
+
+	private final RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+	private String html;
+	private Document document;
+	private Element dataTimeRow, title12HourRow, title24HourRow;
+
+	@Setup
+	public void setup() throws IOException {
+		Document sample;
+		try (InputStream in = RupeeTransactionPageScraper.class.getResourceAsStream("transaction-page-sample.html")) {
+			sample = Jsoup.parse(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+		}
+
+		/*
+		 * The first eight rows of the sample page are valid. The rest contain
+		 * invalid data, which is tested by the unit tests.
+		 */
+		Elements rows = sample.select("li.sectionItem");
+		List<Element> templates = rows.subList(0, 8);
+		dataTimeRow = templates.get(0).clone();
+		title24HourRow = templates.get(6).clone();
+		title12HourRow = templates.get(7).clone();
+
+		/*
+		 * Build a full page, with descriptions that resemble a real history.
+		 */
+		Element container = sample.select("ol.sectionItems").first();
+		container.empty();
+		DescriptionMix mix = new DescriptionMix(1);
+		for (int i = 0; i < ROWS_PER_PAGE; i++) {
+			Element row = templates.get(i % 4).clone();
+			row.select("div.description").first().text(mix.next());
+			container.appendChild(row);
+		}
+
+		html = sample.outerHtml();
+		document = Jsoup.parse(html);
+
+		RupeeTransactionPage page = scraper.scrape(document);
+		if (page.getTransactions().size() != ROWS_PER_PAGE) {
+			throw new IllegalStateException("Expected " + ROWS_PER_PAGE + " transactions, but got " + page.getTransactions().size() + ".");
+		}
+	}
+
+	/**
+	 * Scrapes a page that has already been parsed by jsoup.
+	 * @return the scraped page
+	 */
+	@Benchmark
+	public Object scrape() {
+		return scraper.scrape(document);
+	}
+
+	/**
+	 * Parses a page with jsoup and then scrapes it.
+	 * @return the scraped page
+	 */
+	@Benchmark
+	public Object parseAndScrape() {
+		return scraper.scrape(Jsoup.parse(html));
+	}
+
+	/**
+	 * Parses a recent timestamp (stored as epoch seconds).
+	 * @return the timestamp
+	 */
+	@Benchmark
+	public Object parseTs_dataTime() {
+		return scraper.parseTs(dataTimeRow);
+	}
+
+	/**
+	 * Parses a week-old timestamp that is in 12-hour time.
+	 * @return the timestamp
+	 */
+	@Benchmark
+	public Object parseTs_title12Hour() {
+		return scraper.parseTs(title12HourRow);
+	}
+
+	/**
+	 * Parses a week-old timestamp that is in 24-hour time. The 12-hour
+	 * formatter is always tried first.
+	 * @return the timestamp
+	 */
+	@Benchmark
+	public Object parseTs_title24Hour() {
+		return scraper.parseTs(title24HourRow);
+	}
+}
@@ -0,0 +1,151 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * <p>
+ * Measures how long it takes a {@link RupeeTransactionReader} to read an
+ * entire history from a {@link SyntheticPageSource}. Besides the total time,
+ * the following metrics are reported:
+ * </p>
+ * <ul>
+ * <li>pagesPerSecond: the number of pages the reader returned per second</li>
+ * <li>firstTransactionMillis: how long it took for the first page of
+ * transactions to be returned, including the creation of the reader</li>
+ * <li>peakHeapMb: the peak heap usage during the run (this includes the
+ * generated history, which is held in memory for the whole run)</li>
+ * </ul>
+ * <p>
+ * The default parameters show how throughput scales with the number of
+ * threads. Use JMH's -p option to change them, for example:
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ReaderPipelineBenchmark -p pages=12000 -p threads=16 -p failureRate=0.01
+ * </pre>
+ * @author Michael Angstadt
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReaderPipelineBenchmark {
+	@Param({ "1", "2", "4", "8", "16", "32", "64" })
+	public int threads;
+
+	@Param("500")
+	public int pages;
+
+	/**
+	 * The latency of each page request (see
+	 * {@link SyntheticPageSource#latency}).
+	 */
+	@Param("lognormal:20:0.5")
+	public String latency;
+
+	/**
+	 * The fraction of page requests that time out.
+	 */
+	@Param("0")
+	public double failureRate;
+
+	/**
+	 * The number of new transactions that are logged per second while the
+	 * reader is running.
+	 */
+	@Param("0")
+	public double insertionsPerSecond;
+
+	private List<RupeeTransaction> history;
+
+	@Setup
+	public void setup() {
+		//the reader logs a warning for each simulated failure
+		LogManager.getLogManager().reset();
+
+		history = SyntheticPageSource.history(pages, insertionsPerSecond);
+	}
+
+	@Benchmark
+	public int read(Metrics metrics) throws IOException {
+		for (MemoryPoolMXBean pool : heapPools()) {
+			pool.resetPeakUsage();
+		}
+
+		long start = System.nanoTime();
+		long firstTransaction = -1;
+		int pageCount = 0, transactionCount = 0;
+
+		SyntheticPageSource source = new SyntheticPageSource(history, pages, SyntheticPageSource.latency(latency), failureRate, insertionsPerSecond);
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(source).threads(threads).build()) {
+			List<RupeeTransaction> transactions;
+			while ((transactions = reader.nextPage()) != null) {
+				if (firstTransaction < 0 && !transactions.isEmpty()) {
+					firstTransaction = System.nanoTime() - start;
+				}
+				pageCount++;
+				transactionCount += transactions.size();
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : heapPools()) {
+			peakHeap += pool.getPeakUsage().getUsed();
+		}
+
+		metrics.pagesPerSecond = pageCount / (elapsed / 1e9);
+		metrics.firstTransactionMillis = firstTransaction / 1e6;
+		metrics.peakHeapMb = peakHeap / (1024.0 * 1024.0);
+
+		return transactionCount;
+	}
+
+	private static Iterable<MemoryPoolMXBean> heapPools() {
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		pools.removeIf(pool -> pool.getType() != MemoryType.HEAP);
+		return pools;
+	}
+
+	/**
+	 * Additional metrics that are included in the benchmark results.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Metrics {
+		public double pagesPerSecond;
+		public double firstTransactionMillis;
+		public double peakHeapMb;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			pagesPerSecond = 0;
+			firstTransactionMillis = 0;
+			peakHeapMb = 0;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.net.EmcServer;
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader.PageSource;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * <p>
+ * Serves the pages of a history that was created by a
+ * {@link SyntheticHistoryGenerator}, simulating the EMC website.
+ * </p>
+ * <p>
+ * Each request is delayed according to a latency distribution, and can fail
+ * with a {@link SocketTimeoutException} (which the reader recovers from). New
+ * transactions can be logged while the reader is running, which pushes the
+ * existing transactions onto later pages, just like on the real website.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class SyntheticPageSource implements PageSource {
+	private static final int ROWS_PER_PAGE = 30;
+
+	/**
+	 * The longest that new transactions can be logged for while a reader is
+	 * running (see {@link #history}).
+	 */
+	private static final int MAX_INSERTION_SECONDS = 600;
+
+	private final List<RupeeTransaction> history;
+	private final int newTransactionCount;
+	private final LongSupplier latencyNanos;
+	private final double failureRate;
+	private final double insertionsPerSecond;
+	private final long startTime = System.nanoTime();
+	private final Set<Integer> failedPages = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param history the history (see {@link #history})
+	 * @param pageCount the number of pages in the history when the reader
+	 * starts. Any transactions in the history that are newer than these
+	 * pages are logged while the reader is running.
+	 * @param latencyNanos produces the latency of each request, in nanoseconds
+	 * (see {@link #latency})
+	 * @param failureRate the fraction of requests that should fail (0 to 1)
+	 * @param insertionsPerSecond the number of new transactions that are
+	 * logged per second while the reader is running
+	 */
+	public SyntheticPageSource(List<RupeeTransaction> history, int pageCount, LongSupplier latencyNanos, double failureRate, double insertionsPerSecond) {
+		this.history = history;
+		this.newTransactionCount = Math.max(0, history.size() - pageCount * ROWS_PER_PAGE);
+		this.latencyNanos = latencyNanos;
+		this.failureRate = failureRate;
+		this.insertionsPerSecond = insertionsPerSecond;
+	}
+
+	/**
+	 * Generates a history. Generating the history takes a while, so it
+	 * should be done before the measurement starts. The same history can be
+	 * used by multiple {@link SyntheticPageSource} instances.
+	 * @param pageCount the number of pages in the history when the reader
+	 * starts
+	 * @param insertionsPerSecond the number of new transactions that are
+	 * logged per second while the reader is running. Enough new transactions
+	 * are generated for a {@value #MAX_INSERTION_SECONDS} second run.
+	 * @return the transactions, newest first
+	 */
+	public static List<RupeeTransaction> history(int pageCount, double insertionsPerSecond) {
+		int newTransactionCount = (int) Math.ceil(insertionsPerSecond * MAX_INSERTION_SECONDS);
+		SyntheticHistoryGenerator generator = new SyntheticHistoryGenerator.Builder().now(LocalDateTime.of(2015, 6, 27, 14, 0)).build();
+		return generator.next(pageCount * ROWS_PER_PAGE + newTransactionCount);
+	}
+
+	/**
+	 * Parses a latency distribution.
+	 * @param spec the distribution. One of: "fixed:MILLIS",
+	 * "uniform:MIN_MILLIS:MAX_MILLIS", or "lognormal:MEDIAN_MILLIS:SIGMA"
+	 * @return produces random latencies, in nanoseconds
+	 */
+	public static LongSupplier latency(String spec) {
+		String[] split = spec.split(":");
+		switch (split[0]) {
+		case "fixed": {
+			long nanos = millisToNanos(Double.parseDouble(split[1]));
+			return () -> nanos;
+		}
+		case "uniform": {
+			long min = millisToNanos(Double.parseDouble(split[1]));
+			long max = millisToNanos(Double.parseDouble(split[2]));
+			return () -> min + (long) (ThreadLocalRandom.current().nextDouble() * (max - min));
+		}
+		case "lognormal": {
+			double mu = Math.log(Double.parseDouble(split[1]));
+			double sigma = Double.parseDouble(split[2]);
+			return () -> millisToNanos(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+		}
+		default:
+			throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+		}
+	}
+
+	private static long millisToNanos(double millis) {
+		return (long) (millis * 1_000_000);
+	}
+
+	@Override
+	public RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException {
+		long latency = latencyNanos.getAsLong();
+		if (latency > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+		}
+
+		/*
+		 * The reader only retries a failed download once, so never fail the
+		 * same page twice in a row.
+		 */
+		if (failureRate > 0 && failedPages.add(pageNumber)) {
+			if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+				throw new SocketTimeoutException("Simulated timeout on page " + pageNumber + ".");
+			}
+		}
+		failedPages.remove(pageNumber);
+
+		int inserted = (int) Math.min(newTransactionCount, insertionsPerSecond * (System.nanoTime() - startTime) / 1e9);
+		int newest = newTransactionCount - inserted;
+		int total = history.size() - newest;
+		int totalPages = (total + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE;
+
+		/*
+		 * The website returns the first page for page numbers that are out of
+		 * range.
+		 */
+		if (pageNumber > totalPages) {
+			pageNumber = 1;
+		}
+
+		int first = newest + (pageNumber - 1) * ROWS_PER_PAGE;
+		int last = Math.min(first + ROWS_PER_PAGE, history.size());
+		List<RupeeTransaction> transactions = new ArrayList<>(history.subList(first, last));
+
+		return new RupeeTransactionPage(history.get(newest).getBalance(), pageNumber, totalPages, transactions);
+	}
+
+	@Override
+	public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) {
+		return createSession();
+	}
+
+	@Override
+	public EmcWebsiteConnection createSession() {
+		return new StubConnection();
+	}
+
+	/**
+	 * A connection that does nothing, since the pages are generated.
+	 */
+	private static class StubConnection implements EmcWebsiteConnection {
+		private final CookieStore cookieStore = new BasicCookieStore();
+
+		@Override
+		public Document getRupeeTransactionPage(int pageNumber) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Document getProfilePage(String playerName) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<String> getOnlinePlayers(EmcServer server) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CookieStore getCookieStore() {
+			return cookieStore;
+		}
+
+		@Override
+		public HttpClient getHttpClient() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+			//empty
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.github.mangstadt.emc.rupees.scribe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long each scribe takes to parse a description that it
+ * recognizes (hit) and one that it does not (miss).
+ * @author Michael Angstadt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScribeBenchmark {
+	@Param({ "shop", "payment", "dailySigninBonus", "horseSummonFee", "mailFee", "eggifyFee", "lock", "voteBonus", "vaultFee" })
+	public String scribeName;
+
+	private RupeeTransactionScribe<?> scribe;
+	private String hit, miss;
+
+	@Setup
+	public void setup() {
+		/*
+		 * Misses use descriptions of other transaction types, since those are
+		 * what each scribe has to reject in practice.
+		 */
+		miss = "Player shop sold 1,000 Diamond to Notch";
+		switch (scribeName) {
+		case "shop":
+			scribe = new ShopTransactionScribe();
+			hit = "Your player shop bought 1,000 Diamond Barding from Notch";
+			miss = "Payment from Notch: 64 Apples";
+			break;
+		case "payment":
+			scribe = new PaymentTransactionScribe();
+			hit = "Payment from Notch: 64 Apples";
+			break;
+		case "dailySigninBonus":
+			scribe = new DailySigninBonusScribe();
+			hit = "Daily sign-in bonus";
+			break;
+		case "horseSummonFee":
+			scribe = new HorseSummonFeeScribe();
+			hit = "Summoned stabled horse in the wild @ wilderness:1.1:2.1:3.1";
+			break;
+		case "mailFee":
+			scribe = new MailFeeScribe();
+			hit = "Sent mail to Luckypat: Hello";
+			break;
+		case "eggifyFee":
+			scribe = new EggifyFeeScribe();
+			hit = "Eggified a Wolf";
+			break;
+		case "lock":
+			scribe = new LockTransactionScribe();
+			hit = "Locked an item wilderness:1,2,3";
+			break;
+		case "voteBonus":
+			scribe = new VoteBonusScribe();
+			hit = "Voted for Empire Minecraft on TopG.org - day bonus: 3";
+			break;
+		case "vaultFee":
+			scribe = new VaultFeeScribe();
+			hit = "Opened cross-server vault";
+			break;
+		default:
+			throw new IllegalArgumentException(scribeName);
+		}
+
+		if (scribe.parse(hit) == null || scribe.parse(miss) != null) {
+			throw new IllegalStateException("Bad sample descriptions for scribe: " + scribeName);
+		}
+	}
+
+	@Benchmark
+	public Object hit() {
+		return scribe.parse(hit);
+	}
+
+	@Benchmark
+	public Object miss() {
+		return scribe.parse(miss);
+	}
+}
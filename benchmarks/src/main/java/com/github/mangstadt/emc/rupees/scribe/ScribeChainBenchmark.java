@@ -0,0 +1,71 @@
+package com.github.mangstadt.emc.rupees.scribe;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mangstadt.emc.benchmark.DescriptionMix;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * Measures how long it takes to run a description through the entire scribe
+ * chain, using a production-like mix of descriptions.
+ * @author Michael Angstadt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScribeChainBenchmark {
+	/**
+	 * The scribes, in the same order that the page scraper uses them.
+	 */
+	//@formatter:off
+	private final List<RupeeTransactionScribe<?>> chain = Arrays.asList(
+		new ShopTransactionScribe(),
+		new PaymentTransactionScribe(),
+		new DailySigninBonusScribe(),
+		new HorseSummonFeeScribe(),
+		new MailFeeScribe(),
+		new EggifyFeeScribe(),
+		new LockTransactionScribe(),
+		new VoteBonusScribe(),
+		new VaultFeeScribe()
+	);
+	//@formatter:on
+
+	private String[] mix;
+	private int index;
+
+	@Setup
+	public void setup() {
+		mix = new DescriptionMix(1).next(1024);
+	}
+
+	@Benchmark
+	public Object chain() {
+		String description = mix[index];
+		index = (index + 1) & (mix.length - 1);
+
+		for (RupeeTransactionScribe<?> scribe : chain) {
+			RupeeTransaction.Builder<?> builder = scribe.parse(description);
+			if (builder != null) {
+				return builder;
+			}
+		}
+		return null;
+	}
+}
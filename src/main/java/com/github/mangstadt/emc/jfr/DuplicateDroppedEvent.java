@@ -0,0 +1,26 @@
+package com.github.mangstadt.emc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A transaction the reader skipped because it was already returned.
+ * @author Michael Angstadt
+ */
+@Name("com.github.mangstadt.emc.DuplicateDropped")
+@Label("Duplicate Dropped")
+@Category({ "EMC", "Rupee Transactions" })
+@Description("A transaction the reader skipped because it was already returned.")
+class DuplicateDroppedEvent extends Event {
+	@Label("Page")
+	int page;
+
+	@Label("Timestamp")
+	String ts;
+
+	@Label("Description")
+	String description;
+}
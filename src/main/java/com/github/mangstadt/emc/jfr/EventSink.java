@@ -0,0 +1,28 @@
+package com.github.mangstadt.emc.jfr;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * Receives the events from {@link JfrEvents}.
+ * @author Michael Angstadt
+ */
+interface EventSink {
+	Object beginPageFetch();
+
+	void endPageFetch(Object event, String url, int pageNumber, int status, long bytes, Throwable error);
+
+	Object beginScrape();
+
+	void endScrape(Object event, RupeeTransactionPage page);
+
+	Object beginReorderWait();
+
+	void endReorderWait(Object event, int pageNumber);
+
+	void duplicateDropped(int pageNumber, RupeeTransaction transaction);
+
+	Object beginReconnect();
+
+	void endReconnect(Object event, int pageNumber, Throwable cause);
+}
@@ -0,0 +1,113 @@
+package com.github.mangstadt.emc.jfr;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+import jdk.jfr.Event;
+
+/**
+ * Emits the events to Java Flight Recorder. This class is only loaded if the
+ * JVM supports JFR.
+ * @author Michael Angstadt
+ */
+class JfrEventSink implements EventSink {
+	@Override
+	public Object beginPageFetch() {
+		return begin(new PageFetchEvent());
+	}
+
+	@Override
+	public void endPageFetch(Object handle, String url, int pageNumber, int status, long bytes, Throwable error) {
+		PageFetchEvent event = (PageFetchEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.url = url;
+			event.page = pageNumber;
+			event.status = status;
+			event.bytes = bytes;
+			event.error = (error == null) ? null : error.toString();
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginScrape() {
+		return begin(new ScrapeEvent());
+	}
+
+	@Override
+	public void endScrape(Object handle, RupeeTransactionPage page) {
+		ScrapeEvent event = (ScrapeEvent) handle;
+		event.end();
+		if (page != null && event.shouldCommit()) {
+			event.page = (page.getPage() == null) ? 0 : page.getPage();
+			event.transactions = page.getTransactions().size();
+
+			int unmatched = 0;
+			for (RupeeTransaction transaction : page.getTransactions()) {
+				if (transaction.getClass() == RupeeTransaction.class) {
+					unmatched++;
+				}
+			}
+			event.unmatched = unmatched;
+
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginReorderWait() {
+		return begin(new ReorderWaitEvent());
+	}
+
+	@Override
+	public void endReorderWait(Object handle, int pageNumber) {
+		ReorderWaitEvent event = (ReorderWaitEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.page = pageNumber;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void duplicateDropped(int pageNumber, RupeeTransaction transaction) {
+		DuplicateDroppedEvent event = new DuplicateDroppedEvent();
+		if (event.shouldCommit()) {
+			event.page = pageNumber;
+			event.ts = String.valueOf(transaction.getTs());
+			event.description = transaction.getDescription();
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginReconnect() {
+		return begin(new ReconnectEvent());
+	}
+
+	@Override
+	public void endReconnect(Object handle, int pageNumber, Throwable cause) {
+		ReconnectEvent event = (ReconnectEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.page = pageNumber;
+			event.cause = (cause == null) ? "invalid session" : cause.toString();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Starts timing an event.
+	 * @param event the event
+	 * @return the event or null if it is not being recorded
+	 */
+	private static Event begin(Event event) {
+		if (!event.isEnabled()) {
+			return null;
+		}
+
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,162 @@
+package com.github.mangstadt.emc.jfr;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * <p>
+ * Emits Java Flight Recorder events from the website connection, the page
+ * scraper, and the reader. A recording of a slow download shows every page
+ * fetch, scrape, reorder-buffer wait, dropped duplicate, and reconnect
+ * alongside the JVM's own GC and thread activity.
+ * </p>
+ * <p>
+ * JFR is optional. If the JVM does not support it (for example, older Java 8
+ * builds), every method in this class does nothing. If it is supported but
+ * not recording, the cost is a single allocation per event.
+ * </p>
+ * <p>
+ * The "begin" methods return an opaque handle that must be passed into the
+ * matching "end" method. The handle is null when the event is not being
+ * recorded.
+ * </p>
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=filename=emc.jfr,settings=profile ...
+ * jfr print --categories "EMC" emc.jfr
+ * </pre>
+ * @author Michael Angstadt
+ */
+public final class JfrEvents {
+	private static final Logger logger = Logger.getLogger(JfrEvents.class.getName());
+	private static final EventSink sink = createSink();
+
+	private static EventSink createSink() {
+		try {
+			Class.forName("jdk.jfr.Event");
+		} catch (ClassNotFoundException | LinkageError e) {
+			return new NoopEventSink();
+		}
+
+		try {
+			/*
+			 * Load the JFR implementation reflectively so that this class can
+			 * be loaded on JVMs that do not have the jdk.jfr package.
+			 */
+			return (EventSink) Class.forName(JfrEvents.class.getPackage().getName() + ".JfrEventSink").newInstance();
+		} catch (Exception | LinkageError e) {
+			logger.log(Level.FINE, "Flight recorder events could not be enabled.", e);
+			return new NoopEventSink();
+		}
+	}
+
+	/**
+	 * Determines if this JVM supports Java Flight Recorder events.
+	 * @return true if JFR events are supported, false if not
+	 */
+	public static boolean isSupported() {
+		return !(sink instanceof NoopEventSink);
+	}
+
+	/**
+	 * Starts timing an HTTP request.
+	 * @return the event handle
+	 */
+	public static Object beginPageFetch() {
+		return sink.beginPageFetch();
+	}
+
+	/**
+	 * Records a completed HTTP request.
+	 * @param event the handle returned by {@link #beginPageFetch}
+	 * @param url the URL
+	 * @param pageNumber the transaction page number or 0 if the request was
+	 * not for a transaction page
+	 * @param status the HTTP status code or 0 if no response was received
+	 * @param bytes the size of the response body
+	 * @param error the exception that was thrown or null if the request
+	 * succeeded
+	 */
+	public static void endPageFetch(Object event, String url, int pageNumber, int status, long bytes, Throwable error) {
+		if (event != null) {
+			sink.endPageFetch(event, url, pageNumber, status, bytes, error);
+		}
+	}
+
+	/**
+	 * Starts timing the scraping of a transaction page.
+	 * @return the event handle
+	 */
+	public static Object beginScrape() {
+		return sink.beginScrape();
+	}
+
+	/**
+	 * Records the scraping of a transaction page.
+	 * @param event the handle returned by {@link #beginScrape}
+	 * @param page the scraped page or null if the HTML page was not a
+	 * transaction page
+	 */
+	public static void endScrape(Object event, RupeeTransactionPage page) {
+		if (event != null) {
+			sink.endScrape(event, page);
+		}
+	}
+
+	/**
+	 * Starts timing how long a page that was downloaded out of order waits in
+	 * the reader's reorder buffer.
+	 * @return the event handle
+	 */
+	public static Object beginReorderWait() {
+		return sink.beginReorderWait();
+	}
+
+	/**
+	 * Records that a page left the reorder buffer.
+	 * @param event the handle returned by {@link #beginReorderWait}
+	 * @param pageNumber the page number
+	 */
+	public static void endReorderWait(Object event, int pageNumber) {
+		if (event != null) {
+			sink.endReorderWait(event, pageNumber);
+		}
+	}
+
+	/**
+	 * Records that the reader dropped a duplicate transaction.
+	 * @param pageNumber the page the transaction was on
+	 * @param transaction the transaction
+	 */
+	public static void duplicateDropped(int pageNumber, RupeeTransaction transaction) {
+		sink.duplicateDropped(pageNumber, transaction);
+	}
+
+	/**
+	 * Starts timing a reconnect.
+	 * @return the event handle
+	 */
+	public static Object beginReconnect() {
+		return sink.beginReconnect();
+	}
+
+	/**
+	 * Records a completed reconnect.
+	 * @param event the handle returned by {@link #beginReconnect}
+	 * @param pageNumber the page that was being downloaded
+	 * @param cause the exception that caused the reconnect or null if the
+	 * session expired
+	 */
+	public static void endReconnect(Object event, int pageNumber, Throwable cause) {
+		if (event != null) {
+			sink.endReconnect(event, pageNumber, cause);
+		}
+	}
+
+	private JfrEvents() {
+		//hide
+	}
+}
@@ -0,0 +1,55 @@
+package com.github.mangstadt.emc.jfr;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * Used when the JVM does not support Java Flight Recorder.
+ * @author Michael Angstadt
+ */
+class NoopEventSink implements EventSink {
+	@Override
+	public Object beginPageFetch() {
+		return null;
+	}
+
+	@Override
+	public void endPageFetch(Object event, String url, int pageNumber, int status, long bytes, Throwable error) {
+		//empty
+	}
+
+	@Override
+	public Object beginScrape() {
+		return null;
+	}
+
+	@Override
+	public void endScrape(Object event, RupeeTransactionPage page) {
+		//empty
+	}
+
+	@Override
+	public Object beginReorderWait() {
+		return null;
+	}
+
+	@Override
+	public void endReorderWait(Object event, int pageNumber) {
+		//empty
+	}
+
+	@Override
+	public void duplicateDropped(int pageNumber, RupeeTransaction transaction) {
+		//empty
+	}
+
+	@Override
+	public Object beginReconnect() {
+		return null;
+	}
+
+	@Override
+	public void endReconnect(Object event, int pageNumber, Throwable cause) {
+		//empty
+	}
+}
@@ -0,0 +1,36 @@
+package com.github.mangstadt.emc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An HTTP request to the EMC website.
+ * @author Michael Angstadt
+ */
+@Name("com.github.mangstadt.emc.PageFetch")
+@Label("Page Fetch")
+@Category({ "EMC", "Rupee Transactions" })
+@Description("An HTTP request to the EMC website.")
+class PageFetchEvent extends Event {
+	@Label("URL")
+	String url;
+
+	@Label("Page")
+	@Description("The transaction page number or 0 if the request was not for a transaction page.")
+	int page;
+
+	@Label("Status")
+	@Description("The HTTP status code or 0 if no response was received.")
+	int status;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Error")
+	String error;
+}
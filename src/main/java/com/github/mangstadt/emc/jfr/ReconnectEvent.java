@@ -0,0 +1,24 @@
+package com.github.mangstadt.emc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The re-creation of a connection after a connection error or an expired
+ * session, including the re-download of the page.
+ * @author Michael Angstadt
+ */
+@Name("com.github.mangstadt.emc.Reconnect")
+@Label("Reconnect")
+@Category({ "EMC", "Rupee Transactions" })
+@Description("The re-creation of a connection after a connection error or an expired session, including the re-download of the page.")
+class ReconnectEvent extends Event {
+	@Label("Page")
+	int page;
+
+	@Label("Cause")
+	String cause;
+}
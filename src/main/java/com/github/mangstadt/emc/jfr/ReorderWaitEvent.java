@@ -0,0 +1,21 @@
+package com.github.mangstadt.emc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The time a page that was downloaded out of order spent waiting for the
+ * pages before it.
+ * @author Michael Angstadt
+ */
+@Name("com.github.mangstadt.emc.ReorderWait")
+@Label("Reorder Wait")
+@Category({ "EMC", "Rupee Transactions" })
+@Description("The time a page that was downloaded out of order spent waiting for the pages before it.")
+class ReorderWaitEvent extends Event {
+	@Label("Page")
+	int page;
+}
@@ -0,0 +1,27 @@
+package com.github.mangstadt.emc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The scraping of the transactions from a transaction page.
+ * @author Michael Angstadt
+ */
+@Name("com.github.mangstadt.emc.Scrape")
+@Label("Scrape")
+@Category({ "EMC", "Rupee Transactions" })
+@Description("The scraping of the transactions from a transaction page.")
+class ScrapeEvent extends Event {
+	@Label("Page")
+	int page;
+
+	@Label("Transactions")
+	int transactions;
+
+	@Label("Unmatched Descriptions")
+	@Description("The number of transactions that no scribe recognized.")
+	int unmatched;
+}
@@ -0,0 +1,123 @@
+package com.github.mangstadt.emc.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of a {@link LatencyHistogram}. All values are in
+ * nanoseconds.
+ * @author Michael Angstadt
+ */
+public class HistogramSnapshot {
+	/**
+	 * A snapshot with no measurements.
+	 */
+	static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[0], 0, 0, 0, 0);
+
+	private final long[] counts;
+	private final long count, sum, min, max;
+
+	HistogramSnapshot(long[] counts, long count, long sum, long min, long max) {
+		this.counts = counts;
+		this.count = count;
+		this.sum = sum;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Gets the number of measurements.
+	 * @return the number of measurements
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the sum of all the measurements.
+	 * @return the sum
+	 */
+	public long getTotal() {
+		return sum;
+	}
+
+	/**
+	 * Gets the smallest measurement.
+	 * @return the smallest measurement or 0 if there are no measurements
+	 */
+	public long getMin() {
+		return min;
+	}
+
+	/**
+	 * Gets the largest measurement.
+	 * @return the largest measurement or 0 if there are no measurements
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the average measurement.
+	 * @return the average or 0 if there are no measurements
+	 */
+	public double getMean() {
+		return (count == 0) ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Calculates a percentile. The result is accurate to within about 3%.
+	 * @param percentile the percentile (e.g. "99.9")
+	 * @return the percentile or 0 if there are no measurements
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+		}
+
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				/*
+				 * Use the middle of the bucket, but never report a value
+				 * outside of the range of actual measurements.
+				 */
+				long lower = LatencyHistogram.lowerBound(i);
+				long upper = LatencyHistogram.upperBound(i);
+				long middle = lower + (upper - lower) / 2;
+				return Math.max(min, Math.min(max, middle));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the median measurement.
+	 * @return the median
+	 */
+	public long getMedian() {
+		return getPercentile(50);
+	}
+
+	@Override
+	public String toString() {
+		//@formatter:off
+		return "count=" + count +
+			" mean=" + millis((long) getMean()) +
+			" p50=" + millis(getPercentile(50)) +
+			" p90=" + millis(getPercentile(90)) +
+			" p99=" + millis(getPercentile(99)) +
+			" max=" + millis(max);
+		//@formatter:on
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.US, "%.3fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,109 @@
+package com.github.mangstadt.emc.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A thread-safe histogram of latency measurements, in nanoseconds.
+ * Recording a measurement is lock-free and does not allocate memory.
+ * </p>
+ * <p>
+ * Measurements are counted in log-linear buckets: each power of two is split
+ * into 32 equally sized buckets. This gives every percentile a relative error
+ * of about 3%, no matter how large the measurements are, using a fixed amount
+ * of memory.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class LatencyHistogram {
+	/**
+	 * The number of buckets each power of two is split into (must be a power
+	 * of two).
+	 */
+	private static final int SUB_BUCKETS = 32;
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+	private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Records a measurement.
+	 * @param nanos the measurement in nanoseconds (negative values are
+	 * recorded as zero)
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		min.accumulateAndGet(nanos, Math::min);
+		max.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * Takes a snapshot of the histogram. Measurements that are recorded while
+	 * the snapshot is being taken may or may not be included in it.
+	 * @return the snapshot
+	 */
+	public HistogramSnapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+			total += copy[i];
+		}
+
+		if (total == 0) {
+			return new HistogramSnapshot(copy, 0, 0, 0, 0);
+		}
+		return new HistogramSnapshot(copy, total, sum.get(), min.get(), max.get());
+	}
+
+	/**
+	 * Gets the index of the bucket that a measurement falls into.
+	 * @param value the measurement
+	 * @return the bucket index
+	 */
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the smallest value that falls into a bucket.
+	 * @param bucket the bucket index
+	 * @return the smallest value
+	 */
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + subBucket) << shift;
+	}
+
+	/**
+	 * Gets the largest value that falls into a bucket.
+	 * @param bucket the bucket index
+	 * @return the largest value
+	 */
+	static long upperBound(int bucket) {
+		return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+	}
+}
@@ -0,0 +1,183 @@
+package com.github.mangstadt.emc.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Collects timing and throughput measurements from the reader, the website
+ * connection, and the page scraper. One instance can be shared by all of
+ * them (and by multiple readers). Use {@link #snapshot} to read the
+ * measurements.
+ * </p>
+ * <p>
+ * The {@link #DISABLED} instance ignores all measurements and does not
+ * allocate any histograms. Instrumented code checks {@link #isEnabled} (or
+ * calls {@link #start}, which does) before reading the clock, so
+ * instrumentation costs next to nothing when it is turned off.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * Metrics metrics = new Metrics();
+ * RupeeTransactionReader reader = new RupeeTransactionReader.Builder(username, password).metrics(metrics).build();
+ * ...
+ * System.out.println(metrics.snapshot());
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class Metrics {
+	/**
+	 * The stages that a transaction page goes through on its way to the
+	 * consumer.
+	 */
+	public enum Stage {
+		/**
+		 * Sending the HTTP request and downloading the response body.
+		 */
+		HTTP,
+
+		/**
+		 * Parsing the HTML with jsoup.
+		 */
+		PARSE,
+
+		/**
+		 * Scraping the transactions from the parsed HTML.
+		 */
+		SCRAPE,
+
+		/**
+		 * The total time a download thread spent getting a page, including
+		 * retries.
+		 */
+		PAGE,
+
+		/**
+		 * The time the consumer spent waiting for the next page to be
+		 * downloaded.
+		 */
+		QUEUE_WAIT,
+
+		/**
+		 * The time the consumer spent processing a page before asking the
+		 * reader for the next one.
+		 */
+		CONSUMER
+	}
+
+	/**
+	 * Ignores all measurements.
+	 */
+	public static final Metrics DISABLED = new Metrics(false);
+
+	private final boolean enabled;
+	private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+
+	/**
+	 * Creates an object that collects measurements.
+	 */
+	public Metrics() {
+		this(true);
+	}
+
+	private Metrics(boolean enabled) {
+		this.enabled = enabled;
+
+		//the disabled instance never records anything, so don't allocate the histograms
+		if (enabled) {
+			for (Stage stage : Stage.values()) {
+				histograms.put(stage, new LatencyHistogram());
+			}
+		}
+	}
+
+	/**
+	 * Determines if this object collects measurements.
+	 * @return true if measurements are collected, false if they are ignored
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets a timestamp to pass into {@link #stop}.
+	 * @return the current time ({@link System#nanoTime}) or 0 if disabled
+	 */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time that has elapsed since {@link #start} was called.
+	 * @param stage the stage that was timed
+	 * @param start the value returned by {@link #start}
+	 */
+	public void stop(Stage stage, long start) {
+		if (enabled) {
+			histograms.get(stage).record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Records a measurement.
+	 * @param stage the stage that was timed
+	 * @param nanos the measurement in nanoseconds
+	 */
+	public void record(Stage stage, long nanos) {
+		if (enabled) {
+			histograms.get(stage).record(nanos);
+		}
+	}
+
+	/**
+	 * Records a completed HTTP request.
+	 * @param bytes the size of the response body
+	 * @param failed true if the request failed, false if not
+	 */
+	public void request(long bytes, boolean failed) {
+		if (enabled) {
+			requests.incrementAndGet();
+			this.bytes.addAndGet(bytes);
+			if (failed) {
+				errors.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Records that a download was retried.
+	 */
+	public void retry() {
+		if (enabled) {
+			retries.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records that a hedged request was sent.
+	 */
+	public void hedge() {
+		if (enabled) {
+			hedges.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the measurements.
+	 * @return the snapshot
+	 */
+	public MetricsSnapshot snapshot() {
+		Map<Stage, HistogramSnapshot> snapshots = new EnumMap<>(Stage.class);
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = histograms.get(stage);
+			snapshots.put(stage, (histogram == null) ? HistogramSnapshot.EMPTY : histogram.snapshot());
+		}
+		return new MetricsSnapshot(snapshots, requests.get(), errors.get(), bytes.get(), retries.get(), hedges.get());
+	}
+}
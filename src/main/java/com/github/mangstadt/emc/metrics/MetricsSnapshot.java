@@ -0,0 +1,96 @@
+package com.github.mangstadt.emc.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
+
+/**
+ * An immutable snapshot of the measurements in a {@link Metrics} object.
+ * @author Michael Angstadt
+ */
+public class MetricsSnapshot {
+	private final Map<Stage, HistogramSnapshot> histograms;
+	private final long requests, errors, bytes, retries, hedges;
+
+	MetricsSnapshot(Map<Stage, HistogramSnapshot> histograms, long requests, long errors, long bytes, long retries, long hedges) {
+		this.histograms = Collections.unmodifiableMap(histograms);
+		this.requests = requests;
+		this.errors = errors;
+		this.bytes = bytes;
+		this.retries = retries;
+		this.hedges = hedges;
+	}
+
+	/**
+	 * Gets the timing measurements of a stage.
+	 * @param stage the stage
+	 * @return the measurements
+	 */
+	public HistogramSnapshot getHistogram(Stage stage) {
+		return histograms.get(stage);
+	}
+
+	/**
+	 * Gets the timing measurements of all the stages.
+	 * @return the measurements
+	 */
+	public Map<Stage, HistogramSnapshot> getHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * Gets the number of HTTP requests that were sent.
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * Gets the number of HTTP requests that failed.
+	 * @return the number of failed requests
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Gets the number of response body bytes that were downloaded.
+	 * @return the number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of downloads that were retried due to connection
+	 * problems or expired sessions.
+	 * @return the number of retries
+	 */
+	public long getRetries() {
+		return retries;
+	}
+
+	/**
+	 * Gets the number of hedged requests that were sent.
+	 * @return the number of hedged requests
+	 */
+	public long getHedges() {
+		return hedges;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("requests=").append(requests);
+		sb.append(" errors=").append(errors);
+		sb.append(" bytes=").append(bytes);
+		sb.append(" retries=").append(retries);
+		sb.append(" hedges=").append(hedges);
+		for (Map.Entry<Stage, HistogramSnapshot> entry : histograms.entrySet()) {
+			sb.append(System.lineSeparator()).append(entry.getKey()).append(": ").append(entry.getValue());
+		}
+		return sb.toString();
+	}
+}
@@ -45,7 +45,17 @@ public interface EmcWebsiteConnection extends Closeable {
 
 	/**
 	 * Gets the wrapped HTTP connection object.
-	 * @return the HTTP connection
+	 * @return the HTTP connection or null if this connection does not make
+	 * HTTP requests (for example, if it replays a recorded session)
 	 */
 	HttpClient getHttpClient();
+
+	/**
+	 * Aborts any requests that are currently in progress on this connection.
+	 * The methods that are waiting on these requests will throw an
+	 * {@link IOException}. The connection can still be used afterwards.
+	 */
+	default void abort() {
+		//empty
+	}
 }
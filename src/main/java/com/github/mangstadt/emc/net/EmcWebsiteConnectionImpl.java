@@ -1,5 +1,6 @@
 package com.github.mangstadt.emc.net;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -8,7 +9,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -22,6 +27,7 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -30,7 +36,11 @@ import org.apache.http.message.BasicNameValuePair;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import com.github.mangstadt.emc.jfr.JfrEvents;
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.google.common.net.UrlEscapers;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -42,7 +52,7 @@ import com.google.gson.JsonParser;
  * @author Michael Angstadt
  */
 public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
-	private static final Map<EmcServer, Integer> serverNumbers;
+	static final Map<EmcServer, Integer> serverNumbers;
 	static {
 		ImmutableMap.Builder<EmcServer, Integer> map = ImmutableMap.builder();
 		map.put(EmcServer.SMP1, 1);
@@ -58,15 +68,27 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 		serverNumbers = map.build();
 	}
 
+	static final String DEFAULT_BASE_URL = "https://empireminecraft.com";
+	static final String DEFAULT_PROFILE_BASE_URL = "https://u.emc.gs";
+
 	private final CloseableHttpClient client;
 	private final CookieStore cookieStore;
+	private final String baseUrl, profileBaseUrl;
+
+	/**
+	 * The requests that are currently in progress. These are tracked so they
+	 * can be aborted from other threads.
+	 */
+	private final Set<HttpRequestBase> activeRequests = ConcurrentHashMap.newKeySet();
+
+	private final List<Consumer<RequestTiming>> requestListeners = new CopyOnWriteArrayList<>();
+	private volatile Metrics metrics = Metrics.DISABLED;
 
 	/**
 	 * Creates an unauthenticated connection.
 	 */
 	public EmcWebsiteConnectionImpl() {
-		this.cookieStore = new BasicCookieStore();
-		this.client = createClient();
+		this(DEFAULT_BASE_URL, DEFAULT_PROFILE_BASE_URL, new BasicCookieStore());
 	}
 
 	/**
@@ -74,6 +96,22 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 	 * @param cookieStore the cookie store
 	 */
 	public EmcWebsiteConnectionImpl(CookieStore cookieStore) {
+		this(DEFAULT_BASE_URL, DEFAULT_PROFILE_BASE_URL, cookieStore);
+	}
+
+	/**
+	 * Creates a new HTTP connection to a website other than the EMC website
+	 * (such as a local stand-in server). This constructor is package-private
+	 * so it can be used in unit tests.
+	 * @param baseUrl the base URL of the website (e.g.
+	 * "https://empireminecraft.com")
+	 * @param profileBaseUrl the base URL of the player profile pages (e.g.
+	 * "https://u.emc.gs")
+	 * @param cookieStore the cookie store
+	 */
+	EmcWebsiteConnectionImpl(String baseUrl, String profileBaseUrl, CookieStore cookieStore) {
+		this.baseUrl = baseUrl;
+		this.profileBaseUrl = profileBaseUrl;
 		this.cookieStore = copyOf(cookieStore);
 		this.client = createClient();
 	}
@@ -88,7 +126,7 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 	 * @throws IOException if there's a problem contacting the EMC website
 	 */
 	public EmcWebsiteConnectionImpl(String username, String password) throws IOException {
-		this(username, password, null);
+		this(username, password, (String) null);
 	}
 
 	/**
@@ -103,7 +141,25 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 	 * @throws IOException if there's a problem contacting the EMC website
 	 */
 	public EmcWebsiteConnectionImpl(String username, String password, String twoFactorAuthCode) throws IOException {
-		this();
+		this(DEFAULT_BASE_URL, DEFAULT_PROFILE_BASE_URL, username, password, twoFactorAuthCode);
+	}
+
+	/**
+	 * Creates an authenticated connection to a website other than the EMC
+	 * website (such as a local stand-in server). This constructor is
+	 * package-private so it can be used in unit tests.
+	 * @param baseUrl the base URL of the website
+	 * @param profileBaseUrl the base URL of the player profile pages
+	 * @param username the user's username
+	 * @param password the user's password
+	 * @param twoFactorAuthCode the two factor authentication code or null
+	 * @throws InvalidCredentialsException if the username/password is incorrect
+	 * @throws TwoFactorAuthException if the two-factor authentication code is
+	 * invalid
+	 * @throws IOException if there's a problem contacting the website
+	 */
+	EmcWebsiteConnectionImpl(String baseUrl, String profileBaseUrl, String username, String password, String twoFactorAuthCode) throws IOException {
+		this(baseUrl, profileBaseUrl, new BasicCookieStore());
 
 		//log the user in
 		login(username, password, twoFactorAuthCode);
@@ -165,44 +221,29 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 		 * could not be reproduced when running via Eclipse.
 		 */
 
-		String base = "https://empireminecraft.com/rupees/transactions/";
+		String base = baseUrl + "/rupees/transactions/";
 		String url = base + "?page=" + pageNumber;
 
-		HttpGet request = new HttpGet(url);
-		try (CloseableHttpResponse response = client.execute(request)) {
-			HttpEntity entity = response.getEntity();
-			try (InputStream in = entity.getContent()) {
-				return Jsoup.parse(in, "UTF-8", base);
-			}
-		}
+		return parse(get(url, pageNumber), base);
 	}
 
 	@Override
 	public Document getProfilePage(String playerName) throws IOException {
-		String url = "https://u.emc.gs/" + UrlEscapers.urlPathSegmentEscaper().escape(playerName);
-		HttpGet request = new HttpGet(url);
-		try (CloseableHttpResponse response = client.execute(request)) {
-			HttpEntity entity = response.getEntity();
-			try (InputStream in = entity.getContent()) {
-				return Jsoup.parse(in, "UTF-8", "https://empireminecraft.com");
-			}
-		}
+		String url = profileBaseUrl + "/" + UrlEscapers.urlPathSegmentEscaper().escape(playerName);
+		return parse(get(url, 0), baseUrl);
 	}
 
 	@Override
 	public List<String> getOnlinePlayers(EmcServer server) throws IOException {
 		Integer serverNumber = serverNumbers.get(server);
-		String url = "https://empireminecraft.com/api/server-online-" + serverNumber + ".json";
-		HttpGet request = new HttpGet(url);
+		String url = baseUrl + "/api/server-online-" + serverNumber + ".json";
 
+		byte[] body = get(url, 0);
 		JsonElement root;
-		try (CloseableHttpResponse response = client.execute(request)) {
-			HttpEntity entity = response.getEntity();
-			try (Reader reader = new InputStreamReader(entity.getContent())) {
-				root = new JsonParser().parse(reader);
-			} catch (JsonParseException e) {
-				throw new IOException(e);
-			}
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(body))) {
+			root = new JsonParser().parse(reader);
+		} catch (JsonParseException e) {
+			throw new IOException(e);
 		}
 
 		try {
@@ -235,7 +276,7 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 	 * @throws IOException if there's a problem contacting the EMC website
 	 */
 	private void login(String username, String password, String twoFactorAuthCode) throws IOException {
-		String url = "https://empireminecraft.com/login/login";
+		String url = baseUrl + "/login/login";
 		HttpPost request = new HttpPost(url);
 
 		if (twoFactorAuthCode == null) {
@@ -277,6 +318,126 @@ public class EmcWebsiteConnectionImpl implements EmcWebsiteConnection {
 
 	}
 
+	/**
+	 * Executes a request, keeping track of it so that it can be aborted by
+	 * {@link #abort}. The caller must remove the request from
+	 * {@link #activeRequests} when it is done with the response.
+	 * @param request the request
+	 * @return the response
+	 * @throws IOException if there's a problem executing the request or if
+	 * the request was aborted
+	 */
+	private CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+		activeRequests.add(request);
+		return client.execute(request);
+	}
+
+	/**
+	 * Sends a GET request and downloads the response body, notifying the
+	 * request listeners when the request completes.
+	 * @param url the URL
+	 * @param pageNumber the transaction page number or 0 if the URL is not a
+	 * transaction page
+	 * @return the response body
+	 * @throws IOException if there's a problem executing the request or
+	 * reading the response
+	 */
+	private byte[] get(String url, int pageNumber) throws IOException {
+		HttpGet request = new HttpGet(url);
+		Object event = JfrEvents.beginPageFetch();
+
+		//don't read the clock if nothing is going to use the measurements
+		Metrics metrics = this.metrics;
+		boolean timed = metrics.isEnabled() || !requestListeners.isEmpty();
+
+		long start = timed ? System.nanoTime() : 0;
+		long firstByte = -1;
+		int status = 0;
+		byte[] body = null;
+		IOException error = null;
+		try (CloseableHttpResponse response = execute(request)) {
+			if (timed) {
+				firstByte = System.nanoTime();
+			}
+			status = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			try (InputStream in = entity.getContent()) {
+				body = ByteStreams.toByteArray(in);
+			}
+			return body;
+		} catch (IOException e) {
+			error = e;
+			throw e;
+		} finally {
+			activeRequests.remove(request);
+
+			long bytes = (body == null) ? 0 : body.length;
+			JfrEvents.endPageFetch(event, url, pageNumber, status, bytes, error);
+
+			if (timed) {
+				long end = System.nanoTime();
+				metrics.record(Stage.HTTP, end - start);
+				metrics.request(bytes, error != null);
+
+				if (!requestListeners.isEmpty()) {
+					RequestTiming timing = new RequestTiming(url, start, firstByte, end, bytes, error);
+					for (Consumer<RequestTiming> listener : requestListeners) {
+						listener.accept(timing);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses an HTML page.
+	 * @param body the page
+	 * @param baseUri the page's base URI
+	 * @return the parsed page
+	 * @throws IOException if there's a problem parsing the page
+	 */
+	private Document parse(byte[] body, String baseUri) throws IOException {
+		long start = metrics.start();
+		Document document = Jsoup.parse(new ByteArrayInputStream(body), "UTF-8", baseUri);
+		metrics.stop(Stage.PARSE, start);
+		return document;
+	}
+
+	/**
+	 * Sets the object that collects timing measurements from this connection.
+	 * Measurements are not collected by default.
+	 * @param metrics the metrics object or {@link Metrics#DISABLED} to stop
+	 * collecting measurements
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Adds a listener that is notified every time a page or online player
+	 * list is downloaded. The listener is called on the thread that made the
+	 * request, so it should return quickly.
+	 * @param listener the listener
+	 */
+	public void addRequestListener(Consumer<RequestTiming> listener) {
+		requestListeners.add(listener);
+	}
+
+	/**
+	 * Removes a request listener.
+	 * @param listener the listener
+	 */
+	public void removeRequestListener(Consumer<RequestTiming> listener) {
+		requestListeners.remove(listener);
+	}
+
+	@Override
+	public void abort() {
+		for (HttpRequestBase request : activeRequests) {
+			request.abort();
+		}
+	}
+
 	private static void setPostParameters(HttpPost request, String... params) {
 		if (params.length % 2 != 0) {
 			throw new IllegalArgumentException("params vararg must have an even number of elements.");
@@ -0,0 +1,169 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.net.SessionRecording.Response;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Replays the responses in a {@link SessionRecording} instead of contacting
+ * the EMC website. Each response is delayed by its recorded duration
+ * (optionally scaled), and recorded exceptions are thrown again.
+ * @author Michael Angstadt
+ * @see SessionRecording#connect
+ */
+public class ReplayConnection implements EmcWebsiteConnection {
+	private final SessionRecording recording;
+	private final double latencyScale;
+	private final CookieStore cookieStore = new BasicCookieStore();
+
+	ReplayConnection(SessionRecording recording, double latencyScale) {
+		this.recording = recording;
+		this.latencyScale = latencyScale;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Like the EMC website, the first page is returned if the recording does
+	 * not contain the requested page.
+	 * </p>
+	 * @throws FileNotFoundException if the recording does not contain the
+	 * requested page or the first page
+	 */
+	@Override
+	public Document getRupeeTransactionPage(int pageNumber) throws IOException {
+		Response response = recording.next(SessionRecorder.PAGE, Integer.toString(pageNumber));
+		if (response == null) {
+			response = recording.next(SessionRecorder.PAGE, "1");
+			if (response == null) {
+				throw new FileNotFoundException("Recording does not contain page " + pageNumber + " or page 1.");
+			}
+		}
+
+		return Jsoup.parse(replay(response), "https://empireminecraft.com/rupees/transactions/");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws FileNotFoundException if the recording does not contain the
+	 * requested profile page
+	 */
+	@Override
+	public Document getProfilePage(String playerName) throws IOException {
+		Response response = recording.next(SessionRecorder.PROFILE, playerName);
+		if (response == null) {
+			throw new FileNotFoundException("Recording does not contain the profile page of " + playerName + ".");
+		}
+
+		return Jsoup.parse(replay(response), "https://empireminecraft.com");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws FileNotFoundException if the recording does not contain the
+	 * online players of the requested server
+	 */
+	@Override
+	public List<String> getOnlinePlayers(EmcServer server) throws IOException {
+		Response response = recording.next(SessionRecorder.ONLINE_PLAYERS, server.name());
+		if (response == null) {
+			throw new FileNotFoundException("Recording does not contain the online players of " + server + ".");
+		}
+
+		String body = replay(response);
+		try {
+			JsonElement root = new JsonParser().parse(body);
+			return StreamSupport.stream(root.getAsJsonArray().spliterator(), false) //@formatter:off
+				.map(JsonElement::getAsString)
+			.collect(Collectors.toList()); //@formatter:on
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Waits for the response's scaled duration, then returns its body or
+	 * throws its exception.
+	 * @param response the response
+	 * @return the response body
+	 * @throws IOException the recorded exception
+	 */
+	private String replay(Response response) throws IOException {
+		long delay = (long) (response.durationMillis * latencyScale);
+		if (delay > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		if (response.error != null) {
+			throw exception(response.error, response.message);
+		}
+		return response.body;
+	}
+
+	/**
+	 * Recreates a recorded exception. The reader treats some exceptions
+	 * differently than others (for example, it retries timeouts), so the
+	 * common ones are recreated with their original class.
+	 * @param className the exception's class name
+	 * @param message the exception's message
+	 * @return the exception
+	 */
+	private static IOException exception(String className, String message) {
+		if (SocketTimeoutException.class.getName().equals(className)) {
+			return new SocketTimeoutException(message);
+		}
+		if (ConnectException.class.getName().equals(className)) {
+			return new ConnectException(message);
+		}
+		if (NoHttpResponseException.class.getName().equals(className)) {
+			return new NoHttpResponseException(message);
+		}
+		return new IOException(className + ": " + message);
+	}
+
+	@Override
+	public CookieStore getCookieStore() {
+		return cookieStore;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A replayed session does not make any HTTP requests, so this method
+	 * always returns null.
+	 * </p>
+	 * @return null
+	 */
+	@Override
+	public HttpClient getHttpClient() {
+		return null;
+	}
+
+	@Override
+	public void close() {
+		//empty
+	}
+}
@@ -0,0 +1,100 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.IOException;
+
+/**
+ * Timing information about a single HTTP request that was made by
+ * {@link EmcWebsiteConnectionImpl}.
+ * @author Michael Angstadt
+ * @see EmcWebsiteConnectionImpl#addRequestListener
+ */
+public class RequestTiming {
+	private final String url;
+	private final long startNanos, firstByteNanos, endNanos, bytes;
+	private final IOException error;
+
+	/**
+	 * @param url the request URL
+	 * @param startNanos when the request was sent ({@link System#nanoTime})
+	 * @param firstByteNanos when the response headers were received, or -1 if
+	 * no response was received
+	 * @param endNanos when the response body was fully read or the request
+	 * failed
+	 * @param bytes the number of response body bytes that were read
+	 * @param error the exception that was thrown or null if the request
+	 * succeeded
+	 */
+	public RequestTiming(String url, long startNanos, long firstByteNanos, long endNanos, long bytes, IOException error) {
+		this.url = url;
+		this.startNanos = startNanos;
+		this.firstByteNanos = firstByteNanos;
+		this.endNanos = endNanos;
+		this.bytes = bytes;
+		this.error = error;
+	}
+
+	/**
+	 * Gets the request URL.
+	 * @return the URL
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Gets when the request was sent.
+	 * @return the timestamp ({@link System#nanoTime})
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * Gets when the response headers were received.
+	 * @return the timestamp ({@link System#nanoTime}) or -1 if no response was
+	 * received
+	 */
+	public long getFirstByteNanos() {
+		return firstByteNanos;
+	}
+
+	/**
+	 * Gets when the response body was fully read or the request failed.
+	 * @return the timestamp ({@link System#nanoTime})
+	 */
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	/**
+	 * Gets the time it took to receive the response headers.
+	 * @return the time in nanoseconds or -1 if no response was received
+	 */
+	public long getTimeToFirstByteNanos() {
+		return (firstByteNanos < 0) ? -1 : firstByteNanos - startNanos;
+	}
+
+	/**
+	 * Gets the total time the request took.
+	 * @return the time in nanoseconds
+	 */
+	public long getDurationNanos() {
+		return endNanos - startNanos;
+	}
+
+	/**
+	 * Gets the number of response body bytes that were read.
+	 * @return the number of bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the exception that was thrown.
+	 * @return the exception or null if the request succeeded
+	 */
+	public IOException getError() {
+		return error;
+	}
+}
@@ -0,0 +1,201 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.jsoup.nodes.Document;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * <p>
+ * Records the responses that one or more {@link EmcWebsiteConnection}
+ * objects receive, along with timing information, so that a session can be
+ * replayed later with {@link SessionRecording}.
+ * </p>
+ * <p>
+ * The recording is written in JSON Lines format (one JSON object per line).
+ * Each line contains the request (for example, the transaction page number),
+ * when the request was sent relative to when the recorder was created, how
+ * long it took to receive the first byte of the response (only known for
+ * {@link EmcWebsiteConnectionImpl}), how long the entire request took, and
+ * either the response body or the exception that was thrown.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * try (SessionRecorder recorder = new SessionRecorder(Paths.get("session.jsonl"))) {
+ *   RupeeTransactionReader reader = new RupeeTransactionReader.Builder(username, password).record(recorder).build();
+ *   ...
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class SessionRecorder implements Closeable {
+	static final String PAGE = "page", PROFILE = "profile", ONLINE_PLAYERS = "onlinePlayers";
+
+	private final Writer writer;
+	private final long startNanos = System.nanoTime();
+
+	/**
+	 * @param file the file to write the recording to (it will be overwritten)
+	 * @throws IOException if there's a problem opening the file
+	 */
+	public SessionRecorder(Path file) throws IOException {
+		this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param writer the writer to write the recording to
+	 */
+	public SessionRecorder(Writer writer) {
+		this.writer = (writer instanceof BufferedWriter) ? writer : new BufferedWriter(writer);
+	}
+
+	/**
+	 * Wraps a connection so that its responses are recorded.
+	 * @param connection the connection
+	 * @return the wrapped connection
+	 */
+	public EmcWebsiteConnection wrap(EmcWebsiteConnection connection) {
+		return new RecordingConnection(connection);
+	}
+
+	private void write(String type, String request, long start, RequestTiming timing, String body, IOException error) throws IOException {
+		long end = System.nanoTime();
+
+		JsonObject json = new JsonObject();
+		json.addProperty("type", type);
+		json.addProperty("request", request);
+		json.addProperty("thread", Thread.currentThread().getName());
+		json.addProperty("startMillis", TimeUnit.NANOSECONDS.toMillis(start - startNanos));
+		if (timing != null && timing.getTimeToFirstByteNanos() >= 0) {
+			json.addProperty("ttfbMillis", TimeUnit.NANOSECONDS.toMillis(timing.getTimeToFirstByteNanos()));
+		}
+		json.addProperty("durationMillis", TimeUnit.NANOSECONDS.toMillis(end - start));
+		if (error == null) {
+			json.addProperty("body", body);
+		} else {
+			json.addProperty("error", error.getClass().getName());
+			json.addProperty("message", error.getMessage());
+		}
+
+		synchronized (writer) {
+			writer.write(json.toString());
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * Flushes the recording to disk.
+	 * @throws IOException if there's a problem writing to disk
+	 */
+	public void flush() throws IOException {
+		synchronized (writer) {
+			writer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writer) {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Records the responses of a connection.
+	 */
+	private class RecordingConnection implements EmcWebsiteConnection {
+		private final EmcWebsiteConnection connection;
+
+		/**
+		 * Holds the timing of the last request made on each thread (only
+		 * populated if the wrapped connection is an
+		 * {@link EmcWebsiteConnectionImpl}).
+		 */
+		private final ThreadLocal<RequestTiming> lastTiming = new ThreadLocal<>();
+
+		public RecordingConnection(EmcWebsiteConnection connection) {
+			this.connection = connection;
+			if (connection instanceof EmcWebsiteConnectionImpl) {
+				((EmcWebsiteConnectionImpl) connection).addRequestListener(lastTiming::set);
+			}
+		}
+
+		@Override
+		public Document getRupeeTransactionPage(int pageNumber) throws IOException {
+			long start = System.nanoTime();
+			lastTiming.remove();
+			try {
+				Document document = connection.getRupeeTransactionPage(pageNumber);
+				write(PAGE, Integer.toString(pageNumber), start, lastTiming.get(), document.outerHtml(), null);
+				return document;
+			} catch (IOException e) {
+				write(PAGE, Integer.toString(pageNumber), start, lastTiming.get(), null, e);
+				throw e;
+			}
+		}
+
+		@Override
+		public Document getProfilePage(String playerName) throws IOException {
+			long start = System.nanoTime();
+			lastTiming.remove();
+			try {
+				Document document = connection.getProfilePage(playerName);
+				write(PROFILE, playerName, start, lastTiming.get(), document.outerHtml(), null);
+				return document;
+			} catch (IOException e) {
+				write(PROFILE, playerName, start, lastTiming.get(), null, e);
+				throw e;
+			}
+		}
+
+		@Override
+		public List<String> getOnlinePlayers(EmcServer server) throws IOException {
+			long start = System.nanoTime();
+			lastTiming.remove();
+			try {
+				List<String> players = connection.getOnlinePlayers(server);
+				JsonArray array = new JsonArray();
+				for (String player : players) {
+					array.add(player);
+				}
+				write(ONLINE_PLAYERS, server.name(), start, lastTiming.get(), array.toString(), null);
+				return players;
+			} catch (IOException e) {
+				write(ONLINE_PLAYERS, server.name(), start, lastTiming.get(), null, e);
+				throw e;
+			}
+		}
+
+		@Override
+		public CookieStore getCookieStore() {
+			return connection.getCookieStore();
+		}
+
+		@Override
+		public HttpClient getHttpClient() {
+			return connection.getHttpClient();
+		}
+
+		@Override
+		public void abort() {
+			connection.abort();
+		}
+
+		@Override
+		public void close() throws IOException {
+			connection.close();
+		}
+	}
+}
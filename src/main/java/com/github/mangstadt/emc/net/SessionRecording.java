@@ -0,0 +1,155 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A session that was recorded by {@link SessionRecorder}. Use
+ * {@link #connect} to replay it.
+ * @author Michael Angstadt
+ */
+public class SessionRecording {
+	private final Map<String, List<Response>> responses;
+
+	/**
+	 * The position of the next response to replay for each request. Shared by
+	 * all of the connections that replay this recording.
+	 */
+	private final Map<String, Integer> positions = new HashMap<>();
+
+	private SessionRecording(Map<String, List<Response>> responses) {
+		this.responses = responses;
+	}
+
+	/**
+	 * Loads a recording from a file.
+	 * @param file the file
+	 * @return the recording
+	 * @throws IOException if there's a problem reading the file or if the file
+	 * is not a valid recording
+	 */
+	public static SessionRecording load(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return load(reader);
+		}
+	}
+
+	/**
+	 * Loads a recording.
+	 * @param reader the recording
+	 * @return the recording
+	 * @throws IOException if there's a problem reading the recording or if it
+	 * is not valid
+	 */
+	public static SessionRecording load(Reader reader) throws IOException {
+		BufferedReader in = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+		JsonParser parser = new JsonParser();
+		Map<String, List<Response>> responses = new HashMap<>();
+
+		String line;
+		int lineNumber = 0;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			Response response;
+			try {
+				JsonObject json = parser.parse(line).getAsJsonObject();
+				String key = key(json.get("type").getAsString(), json.get("request").getAsString());
+				long ttfbMillis = json.has("ttfbMillis") ? json.get("ttfbMillis").getAsLong() : -1;
+				long durationMillis = json.get("durationMillis").getAsLong();
+				String body = string(json, "body");
+				String error = string(json, "error");
+				String message = string(json, "message");
+
+				response = new Response(ttfbMillis, durationMillis, body, error, message);
+				responses.computeIfAbsent(key, k -> new ArrayList<>()).add(response);
+			} catch (JsonParseException | IllegalStateException | NullPointerException | UnsupportedOperationException e) {
+				throw new IOException("Invalid recording entry on line " + lineNumber + ".", e);
+			}
+		}
+
+		return new SessionRecording(responses);
+	}
+
+	/**
+	 * Creates a connection that replays this recording. All connections that
+	 * are created from the same recording share the same replay position, so
+	 * a request that was recorded once is replayed once no matter which
+	 * connection makes it.
+	 * @param latencyScale the amount to scale each response's recorded
+	 * duration by (for example, "1" to replay the responses with their
+	 * original latencies, "0.5" to replay them twice as fast, or "0" to replay
+	 * them with no latency)
+	 * @return the connection
+	 */
+	public ReplayConnection connect(double latencyScale) {
+		if (latencyScale < 0) {
+			throw new IllegalArgumentException("Latency scale cannot be negative.");
+		}
+		return new ReplayConnection(this, latencyScale);
+	}
+
+	/**
+	 * Gets the next recorded response for a request. Once all of the
+	 * responses for the request have been replayed, the last one is repeated.
+	 * @param type the request type
+	 * @param request the request
+	 * @return the response or null if the request was never recorded
+	 */
+	Response next(String type, String request) {
+		String key = key(type, request);
+		List<Response> list = responses.get(key);
+		if (list == null) {
+			return null;
+		}
+
+		synchronized (positions) {
+			int position = positions.getOrDefault(key, 0);
+			if (position < list.size() - 1) {
+				positions.put(key, position + 1);
+			}
+			return list.get(position);
+		}
+	}
+
+	private static String key(String type, String request) {
+		return type + ":" + request;
+	}
+
+	private static String string(JsonObject json, String property) {
+		JsonElement element = json.get(property);
+		return (element == null || element.isJsonNull()) ? null : element.getAsString();
+	}
+
+	/**
+	 * A recorded response.
+	 */
+	static class Response {
+		final long ttfbMillis, durationMillis;
+		final String body, error, message;
+
+		Response(long ttfbMillis, long durationMillis, String body, String error, String message) {
+			this.ttfbMillis = ttfbMillis;
+			this.durationMillis = durationMillis;
+			this.body = body;
+			this.error = error;
+			this.message = message;
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.ClientCookie;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * <p>
+ * Saves an authenticated session to an encrypted file so that later runs can
+ * reuse it instead of logging in again. This saves the login round trips
+ * (and, for accounts with two-factor authentication enabled, the need for a
+ * fresh code).
+ * </p>
+ * <p>
+ * The session's cookies are encrypted with AES-GCM using a key that is derived
+ * from the given passphrase (PBKDF2). A file that was tampered with, or that
+ * was saved with a different passphrase, is treated as if it did not exist.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * SessionStore store = new SessionStore(Paths.get("session.bin"), passphrase);
+ * RupeeTransactionReader reader = new RupeeTransactionReader.Builder(username, password).sessionStore(store).build();
+ * </pre>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class SessionStore {
+	private static final Logger logger = Logger.getLogger(SessionStore.class.getName());
+
+	private static final byte[] MAGIC = "EMCS".getBytes(StandardCharsets.US_ASCII);
+	private static final byte VERSION = 1;
+	private static final int SALT_LENGTH = 16, IV_LENGTH = 12, TAG_BITS = 128;
+
+	/*
+	 * AES-128 is used so that the file can be read on older Java 8 JVMs that
+	 * don't have the unlimited strength cryptography policy.
+	 */
+	private static final int KEY_BITS = 128;
+	private static final int ITERATIONS = 65536;
+
+	private final Path file;
+	private final char[] passphrase;
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Deriving the key is intentionally slow, so the key is cached along with
+	 * the salt it was derived from.
+	 */
+	private byte[] salt;
+	private SecretKey key;
+
+	/**
+	 * @param file the file to store the session in
+	 * @param passphrase the passphrase to encrypt the file with
+	 */
+	public SessionStore(Path file, char[] passphrase) {
+		this.file = file;
+		this.passphrase = passphrase.clone();
+	}
+
+	/**
+	 * Gets the file the session is stored in.
+	 * @return the file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Loads the stored session. Cookies that have expired are not included.
+	 * @return the session's cookies or null if there is no stored session, if
+	 * it has expired, or if it couldn't be decrypted
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public synchronized CookieStore load() throws IOException {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int headerLength = MAGIC.length + 1 + SALT_LENGTH;
+		if (data.length < headerLength + IV_LENGTH) {
+			logger.warning("Stored session in " + file + " is not valid.  Ignoring it.");
+			return null;
+		}
+
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		byte version = buffer.get();
+		if (!Arrays.equals(MAGIC, magic) || version != VERSION) {
+			logger.warning("Stored session in " + file + " is not valid.  Ignoring it.");
+			return null;
+		}
+
+		byte[] fileSalt = new byte[SALT_LENGTH];
+		buffer.get(fileSalt);
+		byte[] iv = new byte[IV_LENGTH];
+		buffer.get(iv);
+		byte[] ciphertext = new byte[buffer.remaining()];
+		buffer.get(ciphertext);
+
+		String json;
+		try {
+			Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.DECRYPT_MODE, key(fileSalt), new GCMParameterSpec(TAG_BITS, iv));
+			cipher.updateAAD(data, 0, headerLength);
+			json = new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+		} catch (GeneralSecurityException e) {
+			logger.log(Level.WARNING, "Stored session in " + file + " could not be decrypted.  Ignoring it.", e);
+			return null;
+		}
+
+		CookieStore cookieStore;
+		try {
+			cookieStore = parseCookies(json);
+		} catch (JsonParseException | IllegalStateException | NullPointerException e) {
+			logger.log(Level.WARNING, "Stored session in " + file + " is not valid.  Ignoring it.", e);
+			return null;
+		}
+
+		cookieStore.clearExpired(new Date());
+		return cookieStore.getCookies().isEmpty() ? null : cookieStore;
+	}
+
+	/**
+	 * Saves a session, replacing the one that is already stored.
+	 * @param cookieStore the session's cookies
+	 * @throws IOException if there's a problem writing the file
+	 */
+	public synchronized void save(CookieStore cookieStore) throws IOException {
+		if (salt == null) {
+			salt = new byte[SALT_LENGTH];
+			random.nextBytes(salt);
+		}
+
+		byte[] iv = new byte[IV_LENGTH];
+		random.nextBytes(iv);
+
+		ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + SALT_LENGTH);
+		header.put(MAGIC).put(VERSION).put(salt);
+
+		byte[] ciphertext;
+		try {
+			Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			cipher.init(Cipher.ENCRYPT_MODE, key(salt), new GCMParameterSpec(TAG_BITS, iv));
+			cipher.updateAAD(header.array());
+			ciphertext = cipher.doFinal(toJson(cookieStore).getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Session could not be encrypted.", e);
+		}
+
+		ByteBuffer data = ByteBuffer.allocate(header.capacity() + iv.length + ciphertext.length);
+		data.put(header.array()).put(iv).put(ciphertext);
+
+		/*
+		 * Write to a temporary file first so that a crash can't leave a
+		 * half-written file behind.
+		 */
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try {
+				Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+			} catch (UnsupportedOperationException e) {
+				//not a POSIX file system
+			}
+			Files.write(temp, data.array());
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Deletes the stored session.
+	 * @throws IOException if there's a problem deleting the file
+	 */
+	public synchronized void clear() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Gets the encryption key, deriving it from the passphrase if necessary.
+	 * @param salt the salt
+	 * @return the key
+	 * @throws GeneralSecurityException if the key couldn't be derived
+	 */
+	private SecretKey key(byte[] salt) throws GeneralSecurityException {
+		if (key == null || !Arrays.equals(this.salt, salt)) {
+			SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+			byte[] encoded = factory.generateSecret(new PBEKeySpec(passphrase, salt, ITERATIONS, KEY_BITS)).getEncoded();
+			key = new SecretKeySpec(encoded, "AES");
+			this.salt = salt.clone();
+		}
+		return key;
+	}
+
+	private static String toJson(CookieStore cookieStore) {
+		JsonArray array = new JsonArray();
+		for (Cookie cookie : cookieStore.getCookies()) {
+			JsonObject json = new JsonObject();
+			json.addProperty("name", cookie.getName());
+			json.addProperty("value", cookie.getValue());
+			json.addProperty("domain", cookie.getDomain());
+			json.addProperty("path", cookie.getPath());
+			if (cookie.getExpiryDate() != null) {
+				json.addProperty("expires", cookie.getExpiryDate().getTime());
+			}
+			json.addProperty("secure", cookie.isSecure());
+			json.addProperty("version", cookie.getVersion());
+			array.add(json);
+		}
+		return array.toString();
+	}
+
+	private static CookieStore parseCookies(String json) {
+		CookieStore cookieStore = new BasicCookieStore();
+		for (JsonElement element : new JsonParser().parse(json).getAsJsonArray()) {
+			JsonObject object = element.getAsJsonObject();
+			BasicClientCookie cookie = new BasicClientCookie(object.get("name").getAsString(), string(object, "value"));
+
+			String domain = string(object, "domain");
+			cookie.setDomain(domain);
+			if (domain != null) {
+				cookie.setAttribute(ClientCookie.DOMAIN_ATTR, domain);
+			}
+
+			String path = string(object, "path");
+			cookie.setPath(path);
+			if (path != null) {
+				cookie.setAttribute(ClientCookie.PATH_ATTR, path);
+			}
+
+			if (object.has("expires")) {
+				cookie.setExpiryDate(new Date(object.get("expires").getAsLong()));
+			}
+			cookie.setSecure(object.get("secure").getAsBoolean());
+			cookie.setVersion(object.get("version").getAsInt());
+			cookieStore.addCookie(cookie);
+		}
+		return cookieStore;
+	}
+
+	private static String string(JsonObject json, String property) {
+		JsonElement element = json.get(property);
+		return (element == null || element.isJsonNull()) ? null : element.getAsString();
+	}
+}
@@ -0,0 +1,71 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the most recent latency measurements so that percentiles can
+ * be calculated over them. This class is not thread-safe.
+ * @author Michael Angstadt
+ */
+class LatencyWindow {
+	/**
+	 * Percentiles are not calculated until this many measurements have been
+	 * taken.
+	 */
+	static final int MIN_SAMPLES = 10;
+
+	private final long[] samples;
+	private int next = 0, size = 0;
+
+	/*
+	 * The reader checks the percentile much more often than it adds
+	 * measurements, so the last result is cached until the next measurement
+	 * is added.
+	 */
+	private double cachedPercentile = Double.NaN;
+	private long cachedValue;
+
+	/**
+	 * @param capacity the number of measurements to keep
+	 */
+	public LatencyWindow(int capacity) {
+		samples = new long[capacity];
+	}
+
+	/**
+	 * Adds a measurement, replacing the oldest measurement if the window is
+	 * full.
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void add(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		if (size < samples.length) {
+			size++;
+		}
+		cachedPercentile = Double.NaN;
+	}
+
+	/**
+	 * Calculates a percentile over the measurements in the window.
+	 * @param percentile the percentile (e.g. "95")
+	 * @return the percentile in nanoseconds or -1 if there are not enough
+	 * measurements
+	 */
+	public long percentile(double percentile) {
+		if (size < MIN_SAMPLES) {
+			return -1;
+		}
+		if (percentile == cachedPercentile) {
+			return cachedValue;
+		}
+
+		long[] sorted = Arrays.copyOf(samples, size);
+		Arrays.sort(sorted);
+
+		int index = (int) Math.ceil(percentile / 100 * size) - 1;
+		cachedValue = sorted[Math.max(index, 0)];
+		cachedPercentile = percentile;
+		return cachedValue;
+	}
+}
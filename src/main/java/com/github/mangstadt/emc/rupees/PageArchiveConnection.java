@@ -0,0 +1,80 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.net.EmcServer;
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+
+/**
+ * Serves rupee transaction pages from a {@link PageArchive} instead of the
+ * EMC website. Only {@link #getRupeeTransactionPage} is supported, which is
+ * all that {@link RupeeTransactionReader.Builder#Builder(PageArchive)} needs.
+ * @author Michael Angstadt
+ */
+class PageArchiveConnection implements EmcWebsiteConnection {
+	private final PageArchive archive;
+	private final CookieStore cookieStore = new BasicCookieStore();
+
+	/**
+	 * @param archive the archive to read the pages from
+	 */
+	PageArchiveConnection(PageArchive archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Like the EMC website, the first page is returned if the archive does not
+	 * contain the requested page.
+	 * </p>
+	 * @throws FileNotFoundException if the archive does not contain the
+	 * requested page or the first page
+	 */
+	@Override
+	public Document getRupeeTransactionPage(int pageNumber) throws IOException {
+		String html = archive.get(pageNumber);
+		if (html == null) {
+			html = archive.get(1);
+			if (html == null) {
+				throw new FileNotFoundException("Archive does not contain page " + pageNumber + " or page 1.");
+			}
+		}
+
+		return Jsoup.parse(html, "https://empireminecraft.com/rupees/transactions/");
+	}
+
+	@Override
+	public Document getProfilePage(String playerName) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<String> getOnlinePlayers(EmcServer server) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public CookieStore getCookieStore() {
+		return cookieStore;
+	}
+
+	@Override
+	public HttpClient getHttpClient() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		//empty
+	}
+}
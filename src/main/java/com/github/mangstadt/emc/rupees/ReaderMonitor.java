@@ -0,0 +1,338 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps track of a {@link RupeeTransactionReader}'s progress, and publishes it
+ * over JMX and to the reader's progress listener. Both get their throughput
+ * and estimated time remaining from {@link #progress}, so they always agree.
+ * @author Michael Angstadt
+ */
+class ReaderMonitor {
+	private static final Logger logger = Logger.getLogger(ReaderMonitor.class.getName());
+
+	/**
+	 * Used to give each reader a unique JMX name.
+	 */
+	private static final AtomicInteger mbeanIds = new AtomicInteger();
+
+	private final RupeeTransactionReader reader;
+
+	/*
+	 * The counters are only used for monitoring.
+	 */
+	private final ThroughputWindow throughput = new ThroughputWindow(10, TimeUnit.SECONDS, System.nanoTime());
+	private int pagesFetched = 0;
+	private final AtomicInteger errors = new AtomicInteger(), retries = new AtomicInteger();
+
+	/**
+	 * Only the consumer thread writes to this counter.
+	 */
+	private volatile int duplicatesDropped = 0;
+
+	/**
+	 * The number of transactions returned to the consumer. Only the consumer
+	 * thread writes to it, so it is updated with lazySet to keep the cost of
+	 * returning a transaction low.
+	 */
+	private final AtomicLong transactionsDelivered = new AtomicLong();
+
+	private ObjectName objectName;
+
+	/**
+	 * Delivers progress reports to the progress listener (null if there is no
+	 * listener).
+	 */
+	private ScheduledExecutorService progressExecutor;
+	private ProgressReporter progressReporter;
+
+	/**
+	 * @param reader the reader to monitor
+	 */
+	public ReaderMonitor(RupeeTransactionReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Records that a page was downloaded.
+	 * @param now when the download finished ({@link System#nanoTime})
+	 */
+	public synchronized void pageFetched(long now) {
+		pagesFetched++;
+		throughput.add(now);
+	}
+
+	/**
+	 * Records that a download failed.
+	 */
+	public void error() {
+		errors.incrementAndGet();
+	}
+
+	/**
+	 * Records that a download was retried.
+	 */
+	public void retry() {
+		retries.incrementAndGet();
+	}
+
+	/**
+	 * Records that a duplicate transaction was dropped. Only called from the
+	 * consumer thread.
+	 */
+	public void duplicateDropped() {
+		duplicatesDropped++;
+	}
+
+	/**
+	 * Records that transactions were returned to the consumer. Only called
+	 * from the consumer thread.
+	 * @param count the number of transactions
+	 */
+	public void delivered(int count) {
+		transactionsDelivered.lazySet(transactionsDelivered.get() + count);
+	}
+
+	/**
+	 * Calculates the reader's progress. The throughput is measured over the
+	 * last 10 seconds.
+	 * @param finished true if the reader has finished, false if not
+	 * @return the progress
+	 */
+	public ReaderProgress progress(boolean finished) {
+		long now = System.nanoTime();
+		int fetched;
+		double pagesPerSecond;
+		synchronized (this) {
+			fetched = pagesFetched;
+			pagesPerSecond = throughput.rate(now);
+		}
+		Integer expected = reader.expectedPages();
+
+		Duration remaining;
+		if (finished) {
+			remaining = Duration.ZERO;
+		} else if (expected == null || pagesPerSecond <= 0) {
+			remaining = null;
+		} else {
+			double seconds = Math.max(expected - fetched, 0) / pagesPerSecond;
+			remaining = Duration.ofMillis((long) Math.ceil(seconds * 1000));
+		}
+
+		return new ReaderProgress(fetched, reader.pagesRead(), expected, transactionsDelivered.get(), pagesPerSecond, remaining, finished);
+	}
+
+	/**
+	 * Registers the reader with the platform MBean server.
+	 */
+	public void registerMBean() {
+		try {
+			ObjectName name = new ObjectName("com.github.mangstadt.emc:type=RupeeTransactionReader,id=" + mbeanIds.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new ReaderMXBean(), name);
+			objectName = name;
+		} catch (JMException e) {
+			logger.log(Level.WARNING, "Reader could not be registered with JMX.", e);
+		}
+	}
+
+	/**
+	 * Gets the reader's JMX name.
+	 * @return the name or null if the reader is not registered with JMX
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	/**
+	 * Starts sending progress reports to a listener.
+	 * @param listener the listener
+	 * @param interval the amount of time between reports
+	 */
+	public void startProgressReports(Consumer<? super ReaderProgress> listener, Duration interval) {
+		progressExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, RupeeTransactionReader.class.getSimpleName() + "-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		progressReporter = new ProgressReporter(listener);
+		long intervalNanos = interval.toNanos();
+		progressExecutor.scheduleWithFixedDelay(progressReporter, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Sends the final progress report (if it hasn't been sent already) and
+	 * stops the progress thread.
+	 */
+	public void stopProgressReports() {
+		if (progressExecutor == null) {
+			return;
+		}
+
+		try {
+			progressExecutor.execute(() -> progressReporter.report(true));
+		} catch (RejectedExecutionException e) {
+			//the final report was already sent
+		}
+		progressExecutor.shutdown();
+	}
+
+	/**
+	 * Unregisters the reader from JMX and stops the progress reports.
+	 */
+	public void close() {
+		unregisterMBean();
+		stopProgressReports();
+	}
+
+	private void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			logger.log(Level.WARNING, "Reader could not be unregistered from JMX.", e);
+		}
+	}
+
+	/**
+	 * Sends progress reports to the progress listener. Reports are only ever
+	 * sent from the progress thread, so this class is not thread-safe. The
+	 * final report is sent when the consumer reaches the end of the stream or
+	 * when the reader is closed.
+	 */
+	private class ProgressReporter implements Runnable {
+		private final Consumer<? super ReaderProgress> listener;
+		private boolean done = false;
+
+		public ProgressReporter(Consumer<? super ReaderProgress> listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void run() {
+			report(false);
+		}
+
+		/**
+		 * Sends a progress report to the listener.
+		 * @param finished true if this is the final report, false if not
+		 */
+		public void report(boolean finished) {
+			if (done) {
+				return;
+			}
+
+			try {
+				listener.accept(progress(finished));
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, "Progress listener threw an exception.", e);
+			}
+
+			done = finished;
+		}
+	}
+
+	/**
+	 * Exposes the reader's live state over JMX.
+	 */
+	private class ReaderMXBean implements RupeeTransactionReaderMXBean {
+		@Override
+		public int getThreads() {
+			return reader.threadCount();
+		}
+
+		@Override
+		public int getPagesFetched() {
+			synchronized (ReaderMonitor.this) {
+				return pagesFetched;
+			}
+		}
+
+		@Override
+		public int getPagesRead() {
+			return reader.pagesRead();
+		}
+
+		@Override
+		public int getPagesBuffered() {
+			return reader.pagesBuffered();
+		}
+
+		@Override
+		public int getQueueDepth() {
+			return reader.queueDepth();
+		}
+
+		@Override
+		public int getDuplicatesDropped() {
+			return duplicatesDropped;
+		}
+
+		@Override
+		public int getErrors() {
+			return errors.get();
+		}
+
+		@Override
+		public int getRetries() {
+			return retries.get();
+		}
+
+		@Override
+		public int getHedges() {
+			return reader.hedgesIssued();
+		}
+
+		@Override
+		public int getCurrentPageNumber() {
+			return reader.getCurrentPageNumber();
+		}
+
+		@Override
+		public Integer getTotalPages() {
+			return reader.getTotalPages();
+		}
+
+		@Override
+		public double getPagesPerSecond() {
+			return progress(false).getPagesPerSecond();
+		}
+
+		@Override
+		public long getEstimatedSecondsRemaining() {
+			Duration remaining = progress(isFinished()).getEstimatedTimeRemaining();
+			return (remaining == null) ? -1 : (long) Math.ceil(remaining.toMillis() / 1000.0);
+		}
+
+		@Override
+		public String getEstimatedCompletionTime() {
+			long seconds = getEstimatedSecondsRemaining();
+			return (seconds < 0) ? null : Instant.now().plusSeconds(seconds).toString();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return reader.isFinished();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.time.Duration;
+
+/**
+ * A progress report from a {@link RupeeTransactionReader}.
+ * @author Michael Angstadt
+ * @see RupeeTransactionReader.Builder#progress(java.util.function.Consumer,
+ * Duration)
+ */
+public class ReaderProgress {
+	private final int pagesDownloaded, pagesRead;
+	private final Integer totalPages;
+	private final long transactionsDelivered;
+	private final double pagesPerSecond;
+	private final Duration estimatedTimeRemaining;
+	private final boolean finished;
+
+	ReaderProgress(int pagesDownloaded, int pagesRead, Integer totalPages, long transactionsDelivered, double pagesPerSecond, Duration estimatedTimeRemaining, boolean finished) {
+		this.pagesDownloaded = pagesDownloaded;
+		this.pagesRead = pagesRead;
+		this.totalPages = totalPages;
+		this.transactionsDelivered = transactionsDelivered;
+		this.pagesPerSecond = pagesPerSecond;
+		this.estimatedTimeRemaining = estimatedTimeRemaining;
+		this.finished = finished;
+	}
+
+	/**
+	 * Gets the number of pages that have been downloaded.
+	 * @return the number of pages
+	 */
+	public int getPagesDownloaded() {
+		return pagesDownloaded;
+	}
+
+	/**
+	 * Gets the number of pages that have been handed to the consumer.
+	 * @return the number of pages
+	 */
+	public int getPagesRead() {
+		return pagesRead;
+	}
+
+	/**
+	 * Gets the number of pages the reader is expected to download. This is
+	 * based on the player's total number of transaction pages and the reader's
+	 * start and stop pages. If a stop date was given, the reader may finish
+	 * before downloading this many pages.
+	 * @return the number of pages or null if unknown
+	 */
+	public Integer getTotalPages() {
+		return totalPages;
+	}
+
+	/**
+	 * Gets the number of transactions that have been returned by the reader.
+	 * @return the number of transactions
+	 */
+	public long getTransactionsDelivered() {
+		return transactionsDelivered;
+	}
+
+	/**
+	 * Gets the number of pages that were downloaded per second over the
+	 * last 10 seconds (the same value that is exposed over JMX).
+	 * @return the pages per second
+	 */
+	public double getPagesPerSecond() {
+		return pagesPerSecond;
+	}
+
+	/**
+	 * Estimates how long it will take to download the remaining pages.
+	 * @return the estimated time or null if unknown
+	 */
+	public Duration getEstimatedTimeRemaining() {
+		return estimatedTimeRemaining;
+	}
+
+	/**
+	 * Gets the fraction of pages that have been downloaded.
+	 * @return the fraction (between 0 and 1) or -1 if unknown
+	 */
+	public double getFractionComplete() {
+		if (finished) {
+			return 1;
+		}
+		if (totalPages == null || totalPages <= 0) {
+			return -1;
+		}
+		return Math.min(pagesDownloaded / (double) totalPages, 1);
+	}
+
+	/**
+	 * Determines if this is the final report. The final report is sent when
+	 * the consumer reaches the end of the stream or the reader is closed.
+	 * @return true if this is the final report, false if not
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@Override
+	public String toString() {
+		return "ReaderProgress [pagesDownloaded=" + pagesDownloaded + ", pagesRead=" + pagesRead + ", totalPages=" + totalPages + ", transactionsDelivered=" + transactionsDelivered + ", pagesPerSecond=" + pagesPerSecond + ", estimatedTimeRemaining=" + estimatedTimeRemaining + ", finished=" + finished + "]";
+	}
+}
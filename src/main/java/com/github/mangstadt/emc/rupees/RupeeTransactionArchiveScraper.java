@@ -0,0 +1,217 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * <p>
+ * Scrapes saved transaction pages in parallel using a {@link ForkJoinPool}.
+ * The pages are split into ranges, which are scraped on separate threads and
+ * then merged back together in page order. Duplicate transactions are removed
+ * in the same way as {@link RupeeTransactionReader}.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * PageArchive archive = new DirectoryPageArchive(Paths.get("archive"));
+ * RupeeTransactionArchiveScraper scraper = new RupeeTransactionArchiveScraper(new RupeeTransactionPageScraper(customScribes));
+ * List&lt;RupeeTransaction&gt; transactions = scraper.scrape(archive);
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionArchiveScraper {
+	private static final Logger logger = Logger.getLogger(RupeeTransactionArchiveScraper.class.getName());
+
+	/**
+	 * Ranges that contain this many pages or fewer are scraped on a single
+	 * thread.
+	 */
+	private static final int PAGES_PER_TASK = 8;
+
+	private final RupeeTransactionPageScraper scraper;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a scraper that uses the common fork-join pool.
+	 * @param scraper the page scraper
+	 */
+	public RupeeTransactionArchiveScraper(RupeeTransactionPageScraper scraper) {
+		this(scraper, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param scraper the page scraper
+	 * @param pool the pool to run the scraping tasks on
+	 */
+	public RupeeTransactionArchiveScraper(RupeeTransactionPageScraper scraper, ForkJoinPool pool) {
+		this.scraper = scraper;
+		this.pool = pool;
+	}
+
+	/**
+	 * Scrapes all the pages in an archive.
+	 * @param archive the archive
+	 * @return the transactions, in descending order
+	 * @throws IOException if there's a problem reading from the archive
+	 */
+	public List<RupeeTransaction> scrape(PageArchive archive) throws IOException {
+		List<Integer> pageNumbers = new ArrayList<>(archive.getPageNumbers());
+		List<RupeeTransactionPage> pages = scrape(pageNumbers, pageNumber -> {
+			String html = archive.get(pageNumber);
+			return (html == null) ? null : Jsoup.parse(html, "https://empireminecraft.com/rupees/transactions/");
+		});
+
+		return merge(pages);
+	}
+
+	/**
+	 * Scrapes all the transaction pages in a directory. Files ending in
+	 * ".html", ".htm", or ".html.gz" (gzipped) are read. The page number of
+	 * each file is read from the page itself.
+	 * @param directory the directory
+	 * @return the transactions, in descending order
+	 * @throws IOException if there's a problem reading the directory
+	 */
+	public List<RupeeTransaction> scrape(Path directory) throws IOException {
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(directory)) {
+			//@formatter:off
+			files = stream
+				.filter(file -> {
+					String name = file.getFileName().toString().toLowerCase();
+					return name.endsWith(".html") || name.endsWith(".htm") || name.endsWith(".html.gz");
+				})
+				.sorted()
+			.collect(Collectors.toList());
+			//@formatter:on
+		}
+
+		List<RupeeTransactionPage> pages = scrape(files, file -> {
+			boolean gzipped = file.getFileName().toString().toLowerCase().endsWith(".gz");
+			try (InputStream in = gzipped ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+				return Jsoup.parse(in, "UTF-8", "https://empireminecraft.com/rupees/transactions/");
+			}
+		});
+
+		/*
+		 * The file names don't necessarily reflect the page order.
+		 */
+		pages.sort(Comparator.comparing(RupeeTransactionPage::getPage, Comparator.nullsLast(Comparator.naturalOrder())));
+		return merge(pages);
+	}
+
+	private <T> List<RupeeTransactionPage> scrape(List<T> sources, DocumentLoader<T> loader) throws IOException {
+		try {
+			return pool.invoke(new ScrapeTask<>(sources, 0, sources.size(), loader));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Combines the transactions from each page, removing duplicates.
+	 * @param pages the pages, in page order
+	 * @return the transactions
+	 */
+	private List<RupeeTransaction> merge(List<RupeeTransactionPage> pages) {
+		TransactionDeduplicator deduplicator = new TransactionDeduplicator();
+
+		//@formatter:off
+		return pages.stream()
+			.flatMap(page -> page.getTransactions().stream())
+			.filter(deduplicator::add)
+		.collect(Collectors.toList());
+		//@formatter:on
+	}
+
+	/**
+	 * Loads the HTML of a transaction page.
+	 * @param <T> the type of object that identifies the page
+	 */
+	private interface DocumentLoader<T> {
+		/**
+		 * @param source identifies the page
+		 * @return the page or null if it couldn't be found
+		 * @throws IOException if there's a problem loading the page
+		 */
+		Document load(T source) throws IOException;
+	}
+
+	/**
+	 * Scrapes a range of pages, splitting the range in half until it is small
+	 * enough to scrape on a single thread.
+	 * @param <T> the type of object that identifies each page
+	 */
+	private class ScrapeTask<T> extends RecursiveTask<List<RupeeTransactionPage>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<T> sources;
+		private final int from, to;
+		private final DocumentLoader<T> loader;
+
+		/**
+		 * @param sources the pages
+		 * @param from the start of the range (inclusive)
+		 * @param to the end of the range (exclusive)
+		 * @param loader loads each page
+		 */
+		public ScrapeTask(List<T> sources, int from, int to, DocumentLoader<T> loader) {
+			this.sources = sources;
+			this.from = from;
+			this.to = to;
+			this.loader = loader;
+		}
+
+		@Override
+		protected List<RupeeTransactionPage> compute() {
+			if (to - from > PAGES_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				ScrapeTask<T> left = new ScrapeTask<>(sources, from, middle, loader);
+				ScrapeTask<T> right = new ScrapeTask<>(sources, middle, to, loader);
+				left.fork();
+
+				List<RupeeTransactionPage> rightPages = right.compute();
+				List<RupeeTransactionPage> pages = left.join();
+				pages.addAll(rightPages);
+				return pages;
+			}
+
+			List<RupeeTransactionPage> pages = new ArrayList<>(to - from);
+			for (T source : sources.subList(from, to)) {
+				Document document;
+				try {
+					document = loader.load(source);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				RupeeTransactionPage page = (document == null) ? null : scraper.scrape(document);
+				if (page == null) {
+					logger.warning("Skipping page because it is not a rupee transaction page: " + source);
+					continue;
+				}
+
+				pages.add(page);
+			}
+			return pages;
+		}
+	}
+}
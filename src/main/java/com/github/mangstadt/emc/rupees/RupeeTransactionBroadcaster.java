@@ -0,0 +1,444 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.io.RupeeTransactionFileReader;
+import com.github.mangstadt.emc.rupees.io.RupeeTransactionFileWriter;
+
+/**
+ * <p>
+ * Downloads a rupee transaction history once and passes it to multiple
+ * listeners. Each listener runs on its own thread and has its own bounded
+ * buffer, so listeners can process the transactions at their own pace. What
+ * happens when a listener's buffer fills up is determined by its
+ * {@link OverflowPolicy}.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(username, password);
+ * RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+ * broadcaster.subscribe(exporter, 10, OverflowPolicy.BLOCK);
+ * broadcaster.subscribe(statistics, 10, OverflowPolicy.SPILL_TO_DISK);
+ * broadcaster.broadcast();
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionBroadcaster {
+	private static final Logger logger = Logger.getLogger(RupeeTransactionBroadcaster.class.getName());
+	private static final String SPILL_WITH_CUSTOM_SCRIBES = "Transactions created by custom scribes cannot be spilled to disk.";
+
+	private final RupeeTransactionReader.Builder builder;
+	private final List<Subscriber> subscribers = new ArrayList<>();
+	private boolean started = false;
+
+	/**
+	 * @param builder the builder to use to create the reader
+	 */
+	public RupeeTransactionBroadcaster(RupeeTransactionReader.Builder builder) {
+		this.builder = builder;
+	}
+
+	/**
+	 * Adds a listener. Listeners must be added before
+	 * {@link #broadcast() broadcast} is called.
+	 * @param listener the listener
+	 * @param bufferSize the maximum number of transaction pages to hold in
+	 * memory for the listener
+	 * @param policy what to do when the listener's buffer is full
+	 * @throws IllegalArgumentException if the buffer size is not positive, or
+	 * if the policy is {@link OverflowPolicy#SPILL_TO_DISK SPILL_TO_DISK} and
+	 * the builder has custom scribes
+	 * @throws IllegalStateException if the broadcast has already started
+	 */
+	public synchronized void subscribe(Listener listener, int bufferSize, OverflowPolicy policy) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		if (policy == OverflowPolicy.SPILL_TO_DISK && builder.hasCustomScribes()) {
+			throw new IllegalArgumentException(SPILL_WITH_CUSTOM_SCRIBES);
+		}
+		if (started) {
+			throw new IllegalStateException("Listeners cannot be added once the broadcast has started.");
+		}
+
+		subscribers.add(new Subscriber(listener, bufferSize, policy));
+	}
+
+	/**
+	 * Downloads the transactions and passes them to the listeners. This method
+	 * returns once all listeners have finished processing the transactions
+	 * (or have been detached). It can only be called once.
+	 * @throws IOException if there's a problem downloading the transactions
+	 * (the error is also passed to each listener)
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * for a listener
+	 * @throws IllegalStateException if this method was already called, or if
+	 * custom scribes were added to the builder after a
+	 * {@link OverflowPolicy#SPILL_TO_DISK SPILL_TO_DISK} listener was
+	 * subscribed
+	 */
+	public void broadcast() throws IOException, InterruptedException {
+		synchronized (this) {
+			if (started) {
+				throw new IllegalStateException("The broadcast has already started.");
+			}
+			if (builder.hasCustomScribes() && subscribers.stream().anyMatch(s -> s.policy == OverflowPolicy.SPILL_TO_DISK)) {
+				throw new IllegalStateException(SPILL_WITH_CUSTOM_SCRIBES);
+			}
+			started = true;
+		}
+
+		int count = 0;
+		for (Subscriber subscriber : subscribers) {
+			subscriber.setName(getClass().getSimpleName() + "-" + count++);
+			subscriber.setDaemon(true);
+			subscriber.start();
+		}
+
+		Throwable error = null;
+		RupeeTransactionReader reader = null;
+		try {
+			reader = builder.build();
+
+			List<RupeeTransaction> transactions;
+			while ((transactions = reader.nextPage()) != null) {
+				boolean attached = false;
+				for (Subscriber subscriber : subscribers) {
+					attached |= subscriber.offer(transactions);
+				}
+
+				if (!attached) {
+					//all listeners have been detached
+					break;
+				}
+			}
+		} catch (Throwable t) {
+			error = t;
+			throw t;
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+
+			for (Subscriber subscriber : subscribers) {
+				subscriber.finish(error);
+			}
+			for (Subscriber subscriber : subscribers) {
+				subscriber.join();
+				subscriber.deleteSpillFiles();
+			}
+		}
+	}
+
+	/**
+	 * Determines what happens when a listener's buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Wait for the listener to make room in its buffer. This slows the
+		 * download, and therefore all other listeners, down to the pace of
+		 * this listener.
+		 */
+		BLOCK,
+
+		/**
+		 * Write the transactions that don't fit into the buffer to temporary
+		 * files, and pass them to the listener once it catches up. The files
+		 * are deleted when the broadcast finishes. The files are written with
+		 * {@link RupeeTransactionFileWriter}, which only knows about the
+		 * built-in transaction types, so this policy cannot be used if the
+		 * reader has custom scribes.
+		 */
+		SPILL_TO_DISK,
+
+		/**
+		 * Stop passing transactions to the listener and invoke its
+		 * {@link Listener#onDetached} method.
+		 */
+		DETACH
+	}
+
+	/**
+	 * Receives the transactions from a {@link RupeeTransactionBroadcaster}.
+	 * All methods are invoked from a thread that is dedicated to the listener.
+	 */
+	public interface Listener {
+		/**
+		 * Invoked with the next transaction, in descending order.
+		 * @param transaction the transaction
+		 * @throws Exception if the listener can't process the transaction (the
+		 * listener is detached and {@link #onError} is invoked)
+		 */
+		void onTransaction(RupeeTransaction transaction) throws Exception;
+
+		/**
+		 * Invoked after the last transaction. No other methods are invoked
+		 * after this one.
+		 */
+		default void onComplete() {
+			//empty
+		}
+
+		/**
+		 * Invoked when there is a problem downloading the transactions or when
+		 * {@link #onTransaction} throws an exception. No other methods are
+		 * invoked after this one.
+		 * @param error the error
+		 */
+		default void onError(Throwable error) {
+			//empty
+		}
+
+		/**
+		 * Invoked when the listener is detached due to its buffer filling up
+		 * (see {@link OverflowPolicy#DETACH}). No other methods are invoked
+		 * after this one.
+		 */
+		default void onDetached() {
+			//empty
+		}
+	}
+
+	/**
+	 * Holds a listener's buffer and invokes the listener on its own thread.
+	 */
+	private static class Subscriber extends Thread {
+		private final Listener listener;
+		private final int bufferSize;
+		private final OverflowPolicy policy;
+		private final Deque<List<RupeeTransaction>> buffer = new ArrayDeque<>();
+
+		/*
+		 * Each spilled page is written to its own file in the spill directory.
+		 * The files are written by the broadcasting thread and read by the
+		 * listener's thread. Only the page count is shared, so the disk I/O
+		 * can be done without holding the lock.
+		 */
+		private Path spillDir;
+		private long spillFilesWritten = 0, spillFilesRead = 0;
+		private int pagesSpilled = 0;
+
+		private boolean detached = false;
+		private boolean finished = false;
+		private Throwable error;
+
+		public Subscriber(Listener listener, int bufferSize, OverflowPolicy policy) {
+			this.listener = listener;
+			this.bufferSize = bufferSize;
+			this.policy = policy;
+		}
+
+		/**
+		 * Adds a page of transactions to the buffer.
+		 * @param transactions the transactions
+		 * @return true if the listener is still attached, false if not
+		 * @throws InterruptedException if the thread is interrupted while
+		 * waiting for room in the buffer
+		 */
+		public boolean offer(List<RupeeTransaction> transactions) throws InterruptedException {
+			synchronized (this) {
+				if (detached) {
+					return false;
+				}
+
+				/*
+				 * Once pages start getting spilled to disk, all subsequent
+				 * pages must also be spilled until the listener catches up.
+				 * Otherwise, they would be delivered out of order.
+				 */
+				if (pagesSpilled == 0 && buffer.size() < bufferSize) {
+					buffer.add(transactions);
+					notifyAll();
+					return true;
+				}
+
+				switch (policy) {
+				case BLOCK:
+					while (!detached && buffer.size() >= bufferSize) {
+						wait();
+					}
+					if (!detached) {
+						buffer.add(transactions);
+						notifyAll();
+					}
+					return !detached;
+
+				case DETACH:
+					detach();
+					return false;
+
+				case SPILL_TO_DISK:
+					break;
+				}
+			}
+
+			try {
+				spill(transactions);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not write to spill file. Detaching listener.", e);
+				synchronized (this) {
+					detach();
+				}
+				return false;
+			}
+
+			synchronized (this) {
+				if (!detached) {
+					pagesSpilled++;
+					notifyAll();
+				}
+				return !detached;
+			}
+		}
+
+		/**
+		 * Signals that no more pages will be added to the buffer.
+		 * @param error the error that stopped the download or null if the
+		 * download completed normally
+		 */
+		public synchronized void finish(Throwable error) {
+			finished = true;
+			this.error = error;
+			notifyAll();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					/*
+					 * The listener is invoked and the spill file is read
+					 * outside of the lock so that the broadcasting thread is
+					 * not held up.
+					 */
+					List<RupeeTransaction> transactions = null;
+					boolean wasDetached, unspill = false, done = false;
+					Throwable downloadError = null;
+					synchronized (this) {
+						while (!detached && !finished && buffer.isEmpty() && pagesSpilled == 0) {
+							wait();
+						}
+
+						wasDetached = detached;
+						if (!wasDetached) {
+							if (!buffer.isEmpty()) {
+								transactions = buffer.remove();
+								notifyAll();
+							} else if (pagesSpilled > 0) {
+								pagesSpilled--;
+								unspill = true;
+							} else {
+								done = true;
+								downloadError = error;
+							}
+						}
+					}
+
+					if (wasDetached) {
+						listener.onDetached();
+						return;
+					}
+
+					if (done) {
+						if (downloadError == null) {
+							listener.onComplete();
+						} else {
+							listener.onError(downloadError);
+						}
+						return;
+					}
+
+					if (unspill) {
+						transactions = unspill();
+					}
+
+					for (RupeeTransaction transaction : transactions) {
+						listener.onTransaction(transaction);
+					}
+				}
+			} catch (Throwable t) {
+				synchronized (this) {
+					detach();
+				}
+				listener.onError(t);
+			}
+		}
+
+		private void detach() {
+			detached = true;
+			buffer.clear();
+			notifyAll();
+		}
+
+		/**
+		 * Writes a page of transactions to a new spill file. Only called from
+		 * the broadcasting thread.
+		 * @param transactions the transactions
+		 * @throws IOException if there's a problem writing to the file
+		 */
+		private void spill(List<RupeeTransaction> transactions) throws IOException {
+			if (spillDir == null) {
+				spillDir = Files.createTempDirectory("rupee-transactions");
+			}
+
+			try (RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(spillFile(spillFilesWritten++))) {
+				for (RupeeTransaction transaction : transactions) {
+					writer.write(transaction);
+				}
+			}
+		}
+
+		/**
+		 * Reads the next page of transactions from the spill directory and
+		 * deletes its file. Only called from the listener's thread.
+		 * @return the transactions
+		 * @throws IOException if there's a problem reading from the file
+		 */
+		private List<RupeeTransaction> unspill() throws IOException {
+			Path file = spillFile(spillFilesRead++);
+
+			List<RupeeTransaction> transactions;
+			try (RupeeTransactionFileReader reader = new RupeeTransactionFileReader(file)) {
+				transactions = reader.readAll();
+			}
+			Files.delete(file);
+
+			return transactions;
+		}
+
+		private Path spillFile(long index) {
+			return spillDir.resolve(index + ".spill");
+		}
+
+		/**
+		 * Deletes the spill directory. Only called from the broadcasting
+		 * thread, after the listener's thread has finished.
+		 */
+		private void deleteSpillFiles() {
+			if (spillDir == null) {
+				return;
+			}
+
+			try {
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir)) {
+					for (Path file : files) {
+						Files.delete(file);
+					}
+				}
+				Files.delete(spillDir);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Could not delete spill directory: " + spillDir, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.net.InvalidSessionException;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader.PageSource;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * <p>
+ * Watches a player's rupee transaction history for new transactions. Use
+ * {@link RupeeTransactionReader.Builder#buildFollower} to create new instances.
+ * </p>
+ * <p>
+ * The follower keeps a single connection open and periodically checks the
+ * first transaction page. If the page hasn't changed since the last check, it
+ * is not scraped. If more transactions were added than fit on the first page,
+ * the follower continues onto the following pages until it reaches a
+ * transaction it has already seen.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(username, password);
+ * try (RupeeTransactionFollower follower = builder.buildFollower()) {
+ *   follower.follow(transaction -&gt; {
+ *     //...
+ *   });
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionFollower implements Closeable {
+	private static final Logger logger = Logger.getLogger(RupeeTransactionFollower.class.getName());
+
+	private final PageSource pageSource;
+	private final long minIntervalMillis, maxIntervalMillis;
+	private final TransactionDeduplicator deduplicator = new TransactionDeduplicator();
+
+	/**
+	 * The fingerprint of the first page from the last time it was downloaded.
+	 */
+	private final Map<Integer, Integer> fingerprints = new HashMap<>();
+
+	private volatile EmcWebsiteConnection connection;
+	private Integer rupeeBalance;
+
+	/**
+	 * The date of the oldest transaction on the first page during the previous
+	 * check.
+	 */
+	private LocalDate firstPageLastDate;
+	private boolean closed = false;
+
+	/**
+	 * @param pageSource produces {@link RupeeTransactionPage} instances
+	 * @param minInterval the minimum amount of time to wait between checks
+	 * @param maxInterval the maximum amount of time to wait between checks
+	 * @throws IOException if there's a problem downloading the first
+	 * transaction page
+	 */
+	RupeeTransactionFollower(PageSource pageSource, Duration minInterval, Duration maxInterval) throws IOException {
+		this.pageSource = pageSource;
+		minIntervalMillis = minInterval.toMillis();
+		maxIntervalMillis = maxInterval.toMillis();
+
+		/*
+		 * Only transactions that are added after the follower is created are
+		 * returned.
+		 */
+		connection = pageSource.createSession();
+		RupeeTransactionPage firstPage = download(1);
+		for (RupeeTransaction transaction : firstPage.getTransactions()) {
+			deduplicator.add(transaction);
+		}
+		rupeeBalance = firstPage.getRupeeBalance();
+		firstPageLastDate = firstPage.getTransactions().isEmpty() ? null : firstPage.getLastTransactionDate().toLocalDate();
+	}
+
+	/**
+	 * Checks for new transactions once.
+	 * @return the transactions that were added since the last check, in
+	 * ascending order (oldest first)
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	public List<RupeeTransaction> poll() throws IOException {
+		RupeeTransactionPage page = download(1);
+		if (page == PageSource.UNCHANGED) {
+			return Collections.emptyList();
+		}
+
+		rupeeBalance = page.getRupeeBalance();
+
+		/*
+		 * Transactions that were older than the ones on the first page during
+		 * the previous check can no longer be reached, since the follower
+		 * stops as soon as it finds a transaction it has already seen.
+		 */
+		if (firstPageLastDate != null) {
+			deduplicator.removeBefore(firstPageLastDate);
+		}
+		firstPageLastDate = page.getTransactions().isEmpty() ? null : page.getLastTransactionDate().toLocalDate();
+
+		List<RupeeTransaction> newTransactions = new ArrayList<>();
+		int pageNumber = 1;
+		while (true) {
+			boolean reachedSeenTransaction = false;
+			for (RupeeTransaction transaction : page.getTransactions()) {
+				if (deduplicator.add(transaction)) {
+					newTransactions.add(transaction);
+				} else {
+					reachedSeenTransaction = true;
+				}
+			}
+
+			if (reachedSeenTransaction || page.getTransactions().isEmpty() || page.getTotalPages() == null || pageNumber >= page.getTotalPages()) {
+				break;
+			}
+
+			/*
+			 * Every transaction on the page is new, so more transactions may
+			 * have been bumped onto the next page.
+			 */
+			pageNumber++;
+			page = download(pageNumber, null);
+
+			/*
+			 * The first page is returned when you request a non-existent page
+			 * number.
+			 */
+			if (page.getPage() == null || page.getPage() != pageNumber) {
+				break;
+			}
+		}
+
+		Collections.reverse(newTransactions);
+		return newTransactions;
+	}
+
+	/**
+	 * Continuously checks for new transactions until {@link #close} is called.
+	 * Transactions are checked more often while they are arriving, and less
+	 * often when there is no activity.
+	 * @param listener invoked with each new transaction, in ascending order
+	 * (oldest first)
+	 * @throws IOException if there's a problem downloading the transactions
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	public void follow(Consumer<? super RupeeTransaction> listener) throws IOException, InterruptedException {
+		long interval = minIntervalMillis;
+		while (!isClosed()) {
+			List<RupeeTransaction> newTransactions;
+			try {
+				newTransactions = poll();
+			} catch (IOException e) {
+				if (isClosed()) {
+					break;
+				}
+				throw e;
+			}
+
+			newTransactions.forEach(listener);
+			interval = newTransactions.isEmpty() ? Math.min(interval * 2, maxIntervalMillis) : minIntervalMillis;
+
+			synchronized (this) {
+				if (!closed) {
+					wait(interval);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the player's total rupee balance as of the last check.
+	 * @return the rupee balance
+	 */
+	public Integer getRupeeBalance() {
+		return rupeeBalance;
+	}
+
+	/**
+	 * Stops the follower.
+	 */
+	@Override
+	public void close() {
+		EmcWebsiteConnection connection;
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			connection = this.connection;
+		}
+
+		connection.abort();
+		closeConnection(connection);
+	}
+
+	private synchronized boolean isClosed() {
+		return closed;
+	}
+
+	private RupeeTransactionPage download(int pageNumber) throws IOException {
+		return download(pageNumber, fingerprints);
+	}
+
+	/**
+	 * Downloads a transaction page, re-creating the session if it has
+	 * expired.
+	 * @param pageNumber the page number
+	 * @param fingerprints the page fingerprints, or null to always scrape the
+	 * page
+	 * @return the transaction page or {@link PageSource#UNCHANGED} if it has
+	 * not changed since the last time it was downloaded
+	 * @throws IOException if there's a problem downloading the page
+	 */
+	private RupeeTransactionPage download(int pageNumber, Map<Integer, Integer> fingerprints) throws IOException {
+		RupeeTransactionPage page = getPage(pageNumber, fingerprints);
+		if (page == null) {
+			logger.warning("A transaction page couldn't be downloaded due to an invalid session token.  Re-creating the connection.");
+			setConnection(pageSource.createSession());
+			page = getPage(pageNumber, fingerprints);
+			if (page == null) {
+				throw new InvalidSessionException();
+			}
+		}
+
+		return page;
+	}
+
+	private RupeeTransactionPage getPage(int pageNumber, Map<Integer, Integer> fingerprints) throws IOException {
+		return (fingerprints == null) ? pageSource.getPage(pageNumber, connection) : pageSource.getPageIfChanged(pageNumber, connection, fingerprints);
+	}
+
+	/**
+	 * Replaces the follower's connection and closes the old one. If the
+	 * follower was closed while the new connection was being created, then
+	 * the new connection is closed instead so that it doesn't leak
+	 * ({@link #close} only closes the connection it can see).
+	 * @param connection the new connection
+	 * @throws InterruptedIOException if the follower has been closed
+	 */
+	private void setConnection(EmcWebsiteConnection connection) throws InterruptedIOException {
+		EmcWebsiteConnection old = null;
+		synchronized (this) {
+			if (!closed) {
+				old = this.connection;
+				this.connection = connection;
+			}
+		}
+
+		if (old == null) {
+			closeConnection(connection);
+			throw new InterruptedIOException("Follower was closed.");
+		}
+		closeConnection(old);
+	}
+
+	private static void closeConnection(EmcWebsiteConnection connection) {
+		try {
+			connection.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Problem closing connection.", e);
+		}
+	}
+}
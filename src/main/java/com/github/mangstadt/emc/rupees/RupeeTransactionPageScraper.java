@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -17,6 +18,9 @@ import java.util.regex.Pattern;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import com.github.mangstadt.emc.jfr.JfrEvents;
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
 import com.github.mangstadt.emc.rupees.scribe.DailySigninBonusScribe;
@@ -59,6 +63,8 @@ public class RupeeTransactionPageScraper {
 		scribes.add(new VaultFeeScribe());
 	}
 
+	private Metrics metrics = Metrics.DISABLED;
+
 	public RupeeTransactionPageScraper() {
 		//empty
 	}
@@ -78,19 +84,74 @@ public class RupeeTransactionPageScraper {
 	 * transaction page
 	 */
 	public RupeeTransactionPage scrape(Document document) {
+		Object event = JfrEvents.beginScrape();
+		long start = metrics.start();
 		List<RupeeTransaction> transactions = parseTransactions(document);
 		if (transactions == null) {
+			JfrEvents.endScrape(event, null);
 			return null;
 		}
 
 		//@formatter:off
-		return new RupeeTransactionPage(
+		RupeeTransactionPage page = new RupeeTransactionPage(
 			parseRupeeBalance(document),
 			parseCurrentPage(document),
 			parseTotalPages(document),
 			transactions
 		);
 		//@formatter:on
+
+		metrics.stop(Stage.SCRAPE, start);
+		JfrEvents.endScrape(event, page);
+		return page;
+	}
+
+	/**
+	 * Sets the object that collects timing measurements from this scraper.
+	 * Measurements are not collected by default.
+	 * @param metrics the metrics object or {@link Metrics#DISABLED} to stop
+	 * collecting measurements
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Computes a fingerprint of the transactions on a transaction page. If the
+	 * fingerprints of two pages are the same, then the pages almost certainly
+	 * contain the same transactions. This is much cheaper than scraping the
+	 * page.
+	 * @param document the transaction HTML page
+	 * @return the fingerprint or null if the given HTML page is not a rupee
+	 * transaction page
+	 */
+	Integer fingerprint(Document document) {
+		Element containerElement = document.select("ol.sectionItems").first();
+		if (containerElement == null) {
+			return null;
+		}
+
+		/*
+		 * Only the fields that make up a transaction are included. The raw
+		 * HTML can't be hashed because it contains values that change on every
+		 * request, such as the number of seconds that have passed since each
+		 * transaction (the "data-diff" attribute).
+		 */
+		int hash = 1;
+		for (Element element : containerElement.select("li.sectionItem")) {
+			Element tsElement = element.select("div.time abbr[data-time]").first();
+			String ts = (tsElement == null) ? element.select("div.time span[title]").attr("title") : tsElement.attr("data-time");
+
+			//@formatter:off
+			hash = 31 * hash + Objects.hash(
+				ts,
+				element.select("div.description").text(),
+				element.select("div.amount").text(),
+				element.select("div.balance").text()
+			);
+			//@formatter:on
+		}
+		return hash;
 	}
 
 	/**
@@ -227,7 +288,7 @@ public class RupeeTransactionPageScraper {
 	 * @return the timestamp
 	 * @throws DateTimeParseException if the timestamp can't be parsed
 	 */
-	private LocalDateTime parseTs(Element transactionElement) throws DateTimeParseException {
+	LocalDateTime parseTs(Element transactionElement) throws DateTimeParseException {
 		Element tsElement = transactionElement.select("div.time abbr[data-time]").first();
 		if (tsElement != null) {
 			String dataTime = tsElement.attr("data-time");
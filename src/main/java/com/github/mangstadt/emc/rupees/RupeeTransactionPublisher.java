@@ -0,0 +1,262 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * <p>
+ * Publishes rupee transactions to subscribers, downloading pages only as fast
+ * as the subscribers request transactions. Each subscriber gets its own
+ * {@link RupeeTransactionReader}, so subscribers receive all transactions from
+ * the beginning.
+ * </p>
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces have the same
+ * methods and semantics as those in Java 9's
+ * {@code java.util.concurrent.Flow} class (this library targets Java 8).
+ * Adapting them to {@code Flow} is a matter of delegating each method.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(username, password);
+ * RupeeTransactionPublisher publisher = new RupeeTransactionPublisher(builder);
+ * publisher.subscribe(new Subscriber&lt;RupeeTransaction&gt;() {
+ *   private Subscription subscription;
+ *
+ *   public void onSubscribe(Subscription subscription) {
+ *     this.subscription = subscription;
+ *     subscription.request(10);
+ *   }
+ *
+ *   public void onNext(RupeeTransaction transaction) {
+ *     //...
+ *     subscription.request(1);
+ *   }
+ *
+ *   public void onError(Throwable t) {
+ *     //...
+ *   }
+ *
+ *   public void onComplete() {
+ *     //...
+ *   }
+ * });
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionPublisher {
+	/**
+	 * The number of transactions that are on a full rupee transaction page.
+	 * If pages end up having fewer transactions than this (for example, due
+	 * to duplicates), then the reader requests replacement pages itself.
+	 */
+	private static final int TRANSACTIONS_PER_PAGE = 30;
+
+	/**
+	 * The maximum number of pages a subscription will have outstanding at once
+	 * (more pages than any rupee history has).
+	 */
+	private static final int MAX_PAGES_REQUESTED = 1_000_000;
+
+	private final RupeeTransactionReader.Builder builder;
+	private final AtomicInteger subscriptionCounter = new AtomicInteger();
+
+	/**
+	 * @param builder the builder to use to create a reader for each subscriber
+	 */
+	public RupeeTransactionPublisher(RupeeTransactionReader.Builder builder) {
+		this.builder = builder;
+	}
+
+	/**
+	 * Adds a subscriber. The subscriber's {@link Subscriber#onSubscribe}
+	 * method is invoked immediately. All other methods are invoked from a
+	 * background thread that is dedicated to the subscriber.
+	 * @param subscriber the subscriber
+	 */
+	public void subscribe(Subscriber<? super RupeeTransaction> subscriber) {
+		SubscriptionImpl subscription = new SubscriptionImpl(subscriber);
+		subscriber.onSubscribe(subscription);
+
+		Thread thread = new Thread(subscription);
+		thread.setDaemon(true);
+		thread.setName(getClass().getSimpleName() + "-" + subscriptionCounter.getAndIncrement());
+		thread.start();
+	}
+
+	private class SubscriptionImpl implements Subscription, Runnable {
+		private final Subscriber<? super RupeeTransaction> subscriber;
+		private RupeeTransactionReader reader;
+		private long demand = 0;
+		private boolean cancelled = false;
+		private IllegalArgumentException invalidRequest;
+
+		public SubscriptionImpl(Subscriber<? super RupeeTransaction> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Number of requested elements must be positive: " + n);
+			} else {
+				demand += n;
+				if (demand < 0) {
+					//overflow
+					demand = Long.MAX_VALUE;
+				}
+			}
+			notifyAll();
+		}
+
+		@Override
+		public void cancel() {
+			RupeeTransactionReader reader;
+			synchronized (this) {
+				cancelled = true;
+				reader = this.reader;
+				notifyAll();
+			}
+
+			if (reader != null) {
+				reader.close();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				RupeeTransactionReader newReader = builder.buildDemandDriven();
+				synchronized (this) {
+					reader = newReader;
+					if (cancelled) {
+						return;
+					}
+				}
+
+				while (awaitDemand()) {
+					RupeeTransaction transaction = reader.next();
+					if (transaction == null) {
+						if (!isCancelled()) {
+							subscriber.onComplete();
+						}
+						break;
+					}
+
+					synchronized (this) {
+						if (cancelled) {
+							break;
+						}
+						demand--;
+					}
+
+					subscriber.onNext(transaction);
+				}
+			} catch (Throwable t) {
+				if (!isCancelled()) {
+					subscriber.onError(t);
+				}
+			} finally {
+				if (reader != null) {
+					reader.close();
+				}
+			}
+		}
+
+		/**
+		 * Waits for the subscriber to request more transactions, and allows
+		 * the reader to download the pages needed to fulfill the demand.
+		 * @return true if there is demand, false if the subscription was
+		 * cancelled
+		 * @throws IllegalArgumentException if the subscriber requested a
+		 * non-positive number of transactions
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		private synchronized boolean awaitDemand() throws InterruptedException {
+			while (!cancelled && demand == 0 && invalidRequest == null) {
+				wait();
+			}
+
+			if (invalidRequest != null) {
+				throw invalidRequest;
+			}
+
+			if (cancelled) {
+				return false;
+			}
+
+			/*
+			 * Make sure enough pages have been requested to cover the demand
+			 * that can't be met by the transactions the reader already has.
+			 * If the reader has no transactions left, this will be at least
+			 * one page more than what has already been read, which guarantees
+			 * the reader will not block forever.
+			 */
+			long unmetDemand = Math.max(demand - reader.getTransactionsRemainingOnPage(), 0);
+			long pagesNeeded = unmetDemand / TRANSACTIONS_PER_PAGE + ((unmetDemand % TRANSACTIONS_PER_PAGE == 0) ? 0 : 1);
+			long pagesOutstanding = reader.getPagesOutstanding();
+			if (pagesOutstanding < pagesNeeded) {
+				int pages = (int) Math.min(pagesNeeded - pagesOutstanding, MAX_PAGES_REQUESTED - pagesOutstanding);
+				reader.requestPages(pages);
+			}
+
+			return true;
+		}
+
+		private synchronized boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Receives rupee transactions from a {@link RupeeTransactionPublisher}.
+	 * Mirrors Java 9's {@code java.util.concurrent.Flow.Subscriber}.
+	 * @param <T> the item type
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * Invoked before any other method, when the subscriber is added.
+		 * @param subscription the subscription, used to request items
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Invoked with the next item.
+		 * @param item the item
+		 */
+		void onNext(T item);
+
+		/**
+		 * Invoked when an unrecoverable error occurs. No other methods are
+		 * invoked after this one.
+		 * @param throwable the error
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Invoked when there are no more items. No other methods are invoked
+		 * after this one.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Links a {@link Subscriber} to a {@link RupeeTransactionPublisher}.
+	 * Mirrors Java 9's {@code java.util.concurrent.Flow.Subscription}.
+	 */
+	public interface Subscription {
+		/**
+		 * Requests more items. Pages are only downloaded as needed to fulfill
+		 * this demand.
+		 * @param n the number of additional items (must be positive)
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the subscriber from receiving any more items and stops any
+		 * pages from being downloaded.
+		 */
+		void cancel();
+	}
+}
@@ -2,36 +2,57 @@ package com.github.mangstadt.emc.rupees;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
-import java.time.LocalDate;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.ObjectName;
 
 import org.apache.http.client.CookieStore;
 import org.jsoup.nodes.Document;
 
+import com.github.mangstadt.emc.jfr.JfrEvents;
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
+import com.github.mangstadt.emc.metrics.MetricsSnapshot;
 import com.github.mangstadt.emc.net.EmcWebsiteConnection;
 import com.github.mangstadt.emc.net.EmcWebsiteConnectionImpl;
 import com.github.mangstadt.emc.net.InvalidCredentialsException;
 import com.github.mangstadt.emc.net.InvalidSessionException;
+import com.github.mangstadt.emc.net.SessionRecorder;
+import com.github.mangstadt.emc.net.SessionRecording;
+import com.github.mangstadt.emc.net.SessionStore;
 import com.github.mangstadt.emc.net.TwoFactorAuthException;
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
 import com.github.mangstadt.emc.rupees.scribe.RupeeTransactionScribe;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
 
 /**
  * Downloads rupee transactions from the EMC website. Use its {@link Builder}
@@ -43,7 +64,20 @@ import com.google.common.collect.Multimap;
 public class RupeeTransactionReader implements Closeable {
 	private static final Logger logger = Logger.getLogger(RupeeTransactionReader.class.getName());
 
-	private Iterator<RupeeTransaction> transactionsOnCurrentPage;
+	/**
+	 * The maximum amount of time {@link #close} will wait for the background
+	 * threads to terminate.
+	 */
+	private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+	/**
+	 * The transactions from the current page that have not been returned yet.
+	 * These transactions have already been filtered by date and checked for
+	 * duplicates.
+	 */
+	private List<RupeeTransaction> transactionsOnCurrentPage = Collections.emptyList();
+	private int transactionsOnCurrentPageIndex = 0;
+
 	private RupeeTransactionPage currentPage;
 	private final BlockingQueue<RupeeTransactionPage> queue = new LinkedBlockingQueue<>();
 
@@ -56,23 +90,43 @@ public class RupeeTransactionReader implements Closeable {
 	private final Map<Integer, RupeeTransactionPage> buffer = new HashMap<>();
 
 	/**
-	 * Stores the hashes of each transaction that has been returned by the
-	 * next() method. This is to prevent duplicate transactions from being
-	 * returned if transactions are added to a user's rupee history while this
-	 * reader is reading it.
-	 * 
-	 * I probably could have stuck with a Set here (the hash is probably unique
-	 * enough), but I made this a Multimap to help prevent false positives from
-	 * happening (i.e. two non-duplicate transactions that have the same hash).
-	 * The key is the day that the transaction occurred on, and the value is the
-	 * hashes of the transactions that occurred on that date.
+	 * The flight recorder events of the pages in the buffer (only contains
+	 * pages whose events are being recorded).
+	 */
+	private final Map<Integer, Object> reorderWaitEvents = new HashMap<>();
+
+	/**
+	 * The threads that are currently downloading each page. A page can be
+	 * downloaded by more than one thread if its request was hedged.
+	 */
+	private final Map<Integer, List<ScrapeThread>> inFlight = new HashMap<>();
+
+	/**
+	 * The times (from {@link System#nanoTime}) at which each page in
+	 * {@link #inFlight} started downloading.
+	 */
+	private final Map<Integer, Long> inFlightStartTimes = new HashMap<>();
+
+	/**
+	 * The download durations of the most recently downloaded pages.
 	 */
-	private final Multimap<LocalDate, Integer> hashesOfReturnedTransactions = HashMultimap.create();
+	private final LatencyWindow latencies = new LatencyWindow(100);
+
+	private final List<ScrapeThread> scrapeThreads = new ArrayList<>();
+
+	/**
+	 * Prevents duplicate transactions from being returned if transactions are
+	 * added to the user's rupee history while this reader is reading it.
+	 */
+	private final TransactionDeduplicator deduplicator = new TransactionDeduplicator();
 
 	private final PageSource pageSource;
+	private final TransactionDispatcher dispatcher;
 	private final Integer startAtPage, stopAtPage;
 	private final LocalDateTime startAtDate, stopAtDate;
 	private final int threads;
+	private final double hedgePercentile;
+	private final int maxHedges;
 
 	private final LocalDateTime latestTransactionDate;
 	private final AtomicInteger pageCounter;
@@ -81,17 +135,84 @@ public class RupeeTransactionReader implements Closeable {
 	private IOException thrown = null;
 
 	private int deadThreads = 0;
+	private int hedgesIssued = 0;
 	private boolean cancel = false, endOfStream = false;
+
+	/**
+	 * Set to true when a thread determines that there are no more pages to
+	 * download.
+	 */
+	private volatile boolean noMorePages = false;
+
+	private final Integer totalPages;
+
+	/**
+	 * Tracks the reader's progress for JMX and the progress listener.
+	 */
+	private final ReaderMonitor monitor = new ReaderMonitor(this);
+
+	/**
+	 * Limits how many pages the download threads can request ahead of the
+	 * consumer. Each new page requires a permit. Null if there is no limit.
+	 */
+	private final Semaphore pagePermits;
+	private final boolean releasePermitsOnRead;
+	private final boolean demandDriven;
+	private volatile int pagesRead = 0;
+
+	/**
+	 * The number of pages the consumer has allowed the download threads to
+	 * download. Only used in demand-driven mode (only accessed by the consumer
+	 * thread).
+	 */
+	private int pagesRequested = 0;
 	private Integer rupeeBalance;
 
-	private RupeeTransactionReader(Builder builder) throws InvalidCredentialsException, TwoFactorAuthException, IOException {
-		pageSource = builder.pageSource;
+	private final Metrics metrics;
+
+	/**
+	 * When the consumer received the last page ({@link System#nanoTime}), or
+	 * 0 if it hasn't received a page yet. Only used for metrics.
+	 */
+	private long pageLoadedNanos = 0;
+
+	private RupeeTransactionReader(Builder builder, boolean demandDriven) throws InvalidCredentialsException, TwoFactorAuthException, IOException {
+		pageSource = builder.pageSource();
+		metrics = builder.metrics;
+		dispatcher = new TransactionDispatcher(builder.handlers);
 		threads = builder.threads;
+		hedgePercentile = builder.hedgePercentile;
+		maxHedges = builder.maxHedges;
+		this.demandDriven = demandDriven;
+		if (demandDriven) {
+			pagePermits = new Semaphore(0);
+			releasePermitsOnRead = false;
+		} else if (builder.prefetch != null) {
+			pagePermits = new Semaphore(builder.prefetch);
+			releasePermitsOnRead = true;
+		} else {
+			pagePermits = null;
+			releasePermitsOnRead = false;
+		}
 		stopAtPage = builder.stopPage;
 		stopAtDate = builder.stopDate;
 
 		EmcWebsiteConnection firstPageConnection = pageSource.createSession();
 		RupeeTransactionPage firstPage = pageSource.getPage(1, firstPageConnection);
+		if (firstPage == null) {
+			/*
+			 * The session is invalid (for example, a stored session that has
+			 * expired), so try again with a new one.
+			 */
+			logger.info("Session is invalid.  Re-creating the session.");
+			firstPageConnection.close();
+			firstPageConnection = pageSource.createSession();
+			firstPage = pageSource.getPage(1, firstPageConnection);
+			if (firstPage == null) {
+				firstPageConnection.close();
+				throw new InvalidSessionException();
+			}
+		}
 
 		/*
 		 * Get the date of the latest transaction so we know when we've reached
@@ -99,6 +220,7 @@ public class RupeeTransactionReader implements Closeable {
 		 * request a non-existent page number)
 		 */
 		latestTransactionDate = firstPage.getFirstTransactionDate();
+		totalPages = firstPage.getTotalPages();
 
 		startAtDate = builder.startDate;
 		if (startAtDate == null) {
@@ -124,8 +246,16 @@ public class RupeeTransactionReader implements Closeable {
 			ScrapeThread thread = new ScrapeThread(connection);
 			thread.setDaemon(true);
 			thread.setName(getClass().getSimpleName() + "-" + i);
+			scrapeThreads.add(thread);
 			thread.start();
 		}
+
+		if (builder.jmx) {
+			monitor.registerMBean();
+		}
+		if (builder.progressListener != null) {
+			monitor.startProgressReports(builder.progressListener, builder.progressInterval);
+		}
 	}
 
 	/**
@@ -170,39 +300,207 @@ public class RupeeTransactionReader implements Closeable {
 	 * @throws IOException if there's a problem downloading the transactions
 	 */
 	public RupeeTransaction next() throws IOException {
-		if (endOfStream) {
-			return null;
+		while (getTransactionsRemainingOnPage() == 0) {
+			if (!loadNextPage(-1)) {
+				return null;
+			}
 		}
 
-		RupeeTransaction transaction;
-		while (true) {
-			/*
-			 * Check to see if we are done processing the transactions of the
-			 * current page. If so, pop the next transaction page from the
-			 * queue.
-			 */
-			while (transactionsOnCurrentPage == null || !transactionsOnCurrentPage.hasNext()) {
-				try {
-					currentPage = queue.take();
-				} catch (InterruptedException e) {
-					close();
-					endOfStream = true;
-					throwExceptionIfAnyWereCaught();
-					return null;
-				}
+		monitor.delivered(1);
+		return transactionsOnCurrentPage.get(transactionsOnCurrentPageIndex++);
+	}
 
-				if (currentPage == noMoreElements) {
-					endOfStream = true;
-					throwExceptionIfAnyWereCaught();
-					return null;
-				}
+	/**
+	 * Gets the next rupee transaction, waiting up to the given amount of time
+	 * for it to be downloaded.
+	 * @param timeout the maximum amount of time to wait
+	 * @param unit the unit of the timeout argument
+	 * @return the next transaction or null if the timeout elapsed or there are
+	 * no more transactions (use {@link #isEndOfStream} to tell them apart)
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	public RupeeTransaction poll(long timeout, TimeUnit unit) throws IOException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (getTransactionsRemainingOnPage() == 0) {
+			long remaining = Math.max(deadline - System.nanoTime(), 0);
+			if (!loadNextPage(remaining)) {
+				return null;
+			}
+		}
+
+		monitor.delivered(1);
+		return transactionsOnCurrentPage.get(transactionsOnCurrentPageIndex++);
+	}
 
-				transactionsOnCurrentPage = currentPage.getTransactions().iterator();
-				rupeeBalance = currentPage.getRupeeBalance();
+	/**
+	 * Gets all of the transactions from the next page. If {@link #next} was
+	 * called and the current page still has transactions that have not been
+	 * returned, then those transactions are returned instead. Transactions
+	 * are returned in descending order.
+	 * @return the transactions (never empty) or null if there are no more
+	 * transactions
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	public List<RupeeTransaction> nextPage() throws IOException {
+		while (getTransactionsRemainingOnPage() == 0) {
+			if (!loadNextPage(-1)) {
+				return null;
+			}
+		}
+
+		List<RupeeTransaction> transactions = transactionsOnCurrentPage.subList(transactionsOnCurrentPageIndex, transactionsOnCurrentPage.size());
+		transactionsOnCurrentPage = Collections.emptyList();
+		transactionsOnCurrentPageIndex = 0;
+		monitor.delivered(transactions.size());
+		return Collections.unmodifiableList(transactions);
+	}
+
+	/**
+	 * Adds all of the transactions that have already been downloaded to the
+	 * given collection, without waiting for any more pages to download.
+	 * Transactions are added in descending order.
+	 * @param collection the collection to add the transactions to
+	 * @param max the maximum number of transactions to add
+	 * @return the number of transactions that were added (may be zero) or -1
+	 * if there are no more transactions
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	public int drainTo(Collection<? super RupeeTransaction> collection, int max) throws IOException {
+		int added = 0;
+		while (added < max) {
+			int remaining = getTransactionsRemainingOnPage();
+			if (remaining == 0) {
+				if (!loadNextPage(0)) {
+					break;
+				}
+				continue;
 			}
 
-			transaction = transactionsOnCurrentPage.next();
+			int count = Math.min(remaining, max - added);
+			collection.addAll(transactionsOnCurrentPage.subList(transactionsOnCurrentPageIndex, transactionsOnCurrentPageIndex + count));
+			transactionsOnCurrentPageIndex += count;
+			added += count;
+		}
+
+		monitor.delivered(added);
+
+		return (added == 0 && endOfStream && max > 0) ? -1 : added;
+	}
+
+	/**
+	 * Determines if all of the transactions have been returned.
+	 * @return true if there are no more transactions, false if not
+	 */
+	public boolean isEndOfStream() {
+		return endOfStream && getTransactionsRemainingOnPage() == 0;
+	}
+
+	/**
+	 * <p>
+	 * Reads all of the remaining transactions and passes each one to the
+	 * handlers that were registered on the {@link Builder} for its type (see
+	 * {@link Builder#on(Class, Consumer)}). Handlers that were registered with
+	 * an executor may still be running when this method returns.
+	 * </p>
+	 * <p>
+	 * Transactions are dispatched in descending order. Handlers that do not
+	 * have an executor are invoked on the calling thread.
+	 * </p>
+	 * @throws IllegalStateException if no handlers were registered
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	public void dispatch() throws IOException {
+		if (dispatcher.isEmpty()) {
+			throw new IllegalStateException("No handlers were registered with the builder.");
+		}
+
+		List<RupeeTransaction> transactions;
+		while ((transactions = nextPage()) != null) {
+			dispatcher.dispatch(transactions);
+		}
+	}
+
+	/**
+	 * Creates a sequential {@link Stream} of the rupee transactions.
+	 * Transactions are returned in descending order. The stream can be made
+	 * parallel, in which case it is split up by page so that the stream's
+	 * operations can be spread across multiple cores. Closing the stream closes
+	 * this reader.
+	 * @return the stream
+	 * @throws UncheckedIOException if there's a problem downloading the
+	 * transactions while the stream is being consumed
+	 */
+	public Stream<RupeeTransaction> stream() {
+		return StreamSupport.stream(new TransactionSpliterator(), false).onClose(this::close);
+	}
+
+	/**
+	 * Pops the next page off the queue, filters out the transactions that
+	 * should not be returned, and makes it the current page.
+	 * @param timeoutNanos the maximum amount of time to wait for the page to
+	 * download or -1 to wait indefinitely
+	 * @return true if a page was loaded (its list of transactions may be
+	 * empty), false if the timeout elapsed or if there are no more
+	 * transactions
+	 * @throws IOException if there's a problem downloading the transactions
+	 */
+	private boolean loadNextPage(long timeoutNanos) throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+
+		if (pageLoadedNanos != 0) {
+			metrics.stop(Stage.CONSUMER, pageLoadedNanos);
+			pageLoadedNanos = 0;
+		}
+
+		RupeeTransactionPage page;
+		long waitStart = metrics.start();
+		try {
+			page = (timeoutNanos < 0) ? queue.take() : queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			close();
+			endOfStream = true;
+			throwExceptionIfAnyWereCaught();
+			return false;
+		}
+
+		if (page == null) {
+			//timeout elapsed
+			return false;
+		}
+
+		if (page == noMoreElements) {
+			endOfStream = true;
+			monitor.stopProgressReports();
+			throwExceptionIfAnyWereCaught();
+			return false;
+		}
+
+		metrics.stop(Stage.QUEUE_WAIT, waitStart);
+		pageLoadedNanos = metrics.start();
+
+		currentPage = page;
+		pagesRead++;
+		if (releasePermitsOnRead) {
+			pagePermits.release();
+		}
+
+		rupeeBalance = currentPage.getRupeeBalance();
+
+		List<RupeeTransaction> transactions = currentPage.getTransactions();
+		List<RupeeTransaction> filtered = new ArrayList<>(transactions.size());
+
+		int pageNumber = (currentPage.getPage() == null) ? 0 : currentPage.getPage();
+
+		/*
+		 * The date checks below only need to be done on the pages that the
+		 * start and stop dates fall on.
+		 */
+		boolean checkStartDate = startAtDate != null && !transactions.isEmpty() && currentPage.getFirstTransactionDate().isAfter(startAtDate);
+		boolean checkStopDate = stopAtDate != null && !transactions.isEmpty() && currentPage.getLastTransactionDate().compareTo(stopAtDate) <= 0;
 
+		for (RupeeTransaction transaction : transactions) {
 			/*
 			 * If a start date was specified, then skip any transactions that
 			 * come after the start date. This is to account for the case when a
@@ -212,18 +510,20 @@ public class RupeeTransactionReader implements Closeable {
 			 * that come *before* it on the page (since transactions are listed
 			 * in descending order).
 			 */
-			if (startAtDate != null && transaction.getTs().isAfter(startAtDate)) {
+			if (checkStartDate && transaction.getTs().isAfter(startAtDate)) {
 				continue;
 			}
 
 			/*
 			 * If a stop date was specified, and the transaction's date is the
 			 * same as, or comes before, the stop date, then we're reached the
-			 * "end of stream". The download threads will terminate in time.
+			 * "end of stream". Any pages that are still being downloaded are no
+			 * longer needed.
 			 */
-			if (stopAtDate != null && transaction.getTs().compareTo(stopAtDate) <= 0) {
+			if (checkStopDate && transaction.getTs().compareTo(stopAtDate) <= 0) {
+				close();
 				endOfStream = true;
-				return null;
+				break;
 			}
 
 			/*
@@ -234,13 +534,30 @@ public class RupeeTransactionReader implements Closeable {
 			 * transactions "down" one. This causes duplicate transactions to be
 			 * read.
 			 */
-			LocalDate date = transaction.getTs().toLocalDate();
-			if (!hashesOfReturnedTransactions.put(date, transaction.hashCode())) {
+			if (!deduplicator.add(transaction)) {
+				JfrEvents.duplicateDropped(pageNumber, transaction);
+				monitor.duplicateDropped();
 				continue;
 			}
 
-			return transaction;
+			filtered.add(transaction);
+		}
+
+		transactionsOnCurrentPage = filtered;
+		transactionsOnCurrentPageIndex = 0;
+
+		if (demandDriven && filtered.isEmpty() && !endOfStream) {
+			/*
+			 * None of the page's transactions are going to be returned (for
+			 * example, they were all duplicates), so the page did nothing to
+			 * fulfill the demand that it was requested for. Allow another page
+			 * to be downloaded in its place. Otherwise, the consumer would
+			 * block forever waiting for a page that was never requested.
+			 */
+			requestPages(1);
 		}
+
+		return true;
 	}
 
 	private synchronized void throwExceptionIfAnyWereCaught() throws IOException {
@@ -260,6 +577,16 @@ public class RupeeTransactionReader implements Closeable {
 		return rupeeBalance;
 	}
 
+	/**
+	 * Gets a snapshot of the reader's timing and throughput measurements.
+	 * Measurements are only collected if a {@link Metrics} object was passed
+	 * into {@link Builder#metrics}.
+	 * @return the snapshot
+	 */
+	public MetricsSnapshot getMetrics() {
+		return metrics.snapshot();
+	}
+
 	/**
 	 * Gets the current page number.
 	 * @return the page number
@@ -268,8 +595,158 @@ public class RupeeTransactionReader implements Closeable {
 		return (currentPage == null) ? startAtPage : currentPage.getPage();
 	}
 
+	/**
+	 * Gets the number of transaction pages the player had when the reader was
+	 * created.
+	 * @return the number of pages or null if unknown
+	 */
+	public Integer getTotalPages() {
+		return totalPages;
+	}
+
+	/**
+	 * Gets the JMX name of this reader.
+	 * @return the name or null if the reader is not registered with JMX
+	 * @see Builder#jmx
+	 */
+	public ObjectName getObjectName() {
+		return monitor.getObjectName();
+	}
+
+	/**
+	 * Determines if a hedged request should be sent for the page that is
+	 * holding up the queue. A hedged request is a duplicate request for a page
+	 * whose download is taking much longer than usual. Whichever request
+	 * finishes first wins, and the other is aborted.
+	 * @return the page to send a hedged request for or null not to send one
+	 */
+	private Integer pageToHedge() {
+		if (hedgesIssued >= maxHedges) {
+			return null;
+		}
+
+		/*
+		 * Only the page that the queue is waiting on is hedged. A slow page
+		 * anywhere else doesn't hold anything up.
+		 */
+		int page = nextPageToPutInQueue;
+		List<ScrapeThread> downloaders = inFlight.get(page);
+		if (downloaders == null || downloaders.size() > 1) {
+			return null;
+		}
+
+		long threshold = latencies.percentile(hedgePercentile);
+		if (threshold < 0) {
+			//not enough data yet
+			return null;
+		}
+
+		long elapsed = System.nanoTime() - inFlightStartTimes.get(page);
+		return (elapsed > threshold) ? page : null;
+	}
+
+	/**
+	 * Allows the download threads to download more pages. Only applicable if
+	 * the reader was built in demand-driven mode.
+	 * @param pages the number of additional pages to allow
+	 */
+	void requestPages(int pages) {
+		pagesRequested += pages;
+		pagePermits.release(pages);
+	}
+
+	/**
+	 * Gets the number of pages that have been requested via
+	 * {@link #requestPages}, but that the consumer hasn't read yet. Only
+	 * applicable if the reader was built in demand-driven mode.
+	 * @return the number of pages
+	 */
+	int getPagesOutstanding() {
+		return pagesRequested - pagesRead;
+	}
+
+	/**
+	 * Gets the number of transactions from the current page that have not
+	 * been returned yet.
+	 * @return the number of transactions
+	 */
+	int getTransactionsRemainingOnPage() {
+		return transactionsOnCurrentPage.size() - transactionsOnCurrentPageIndex;
+	}
+
+	/**
+	 * Records the fact that there are no more pages to download, waking up any
+	 * threads that are waiting for permission to download a page.
+	 */
+	private synchronized void noMorePages() {
+		if (noMorePages) {
+			return;
+		}
+
+		noMorePages = true;
+		notifyAll();
+		if (pagePermits != null) {
+			pagePermits.release(threads);
+		}
+	}
+
+	/**
+	 * Called by threads that have run out of pages to download. Waits until a
+	 * hedged request should be sent for a page that is still being downloaded
+	 * by another thread. The caller must hold the reader's lock.
+	 * @return the page to send a hedged request for or null if there are no
+	 * more pages that could be hedged
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	private Integer waitForPageToHedge() throws InterruptedException {
+		while (!cancel && hedgesIssued < maxHedges && !inFlight.isEmpty()) {
+			Integer page = pageToHedge();
+			if (page != null) {
+				return page;
+			}
+
+			/*
+			 * Threads are notified when a download finishes. The timeout is
+			 * for when a download crosses the hedging threshold.
+			 */
+			wait(50);
+		}
+		return null;
+	}
+
+	/**
+	 * Determines if a page has already been added to the queue or the buffer.
+	 * @param pageNumber the page number
+	 * @return true if the page was already delivered, false if not
+	 */
+	private boolean isDelivered(int pageNumber) {
+		return pageNumber < nextPageToPutInQueue || buffer.containsKey(pageNumber);
+	}
+
+	/**
+	 * Aborts any other threads that are downloading the given page.
+	 * @param pageNumber the page number
+	 */
+	private void abortOtherDownloads(int pageNumber) {
+		List<ScrapeThread> downloaders = inFlight.get(pageNumber);
+		if (downloaders == null) {
+			return;
+		}
+
+		for (ScrapeThread downloader : downloaders) {
+			downloader.aborted = true;
+			downloader.connection.abort();
+		}
+	}
+
 	private class ScrapeThread extends Thread {
-		private EmcWebsiteConnection connection;
+		private volatile EmcWebsiteConnection connection;
+
+		/**
+		 * Set to true when another thread finishes downloading the page this
+		 * thread is downloading (guarded by the reader's lock).
+		 */
+		private boolean aborted;
 
 		public ScrapeThread(EmcWebsiteConnection connection) {
 			this.connection = connection;
@@ -280,35 +757,71 @@ public class RupeeTransactionReader implements Closeable {
 			int pageNumber = 0;
 			try {
 				while (true) {
+					boolean permitAcquired = false;
+					if (pagePermits != null && !noMorePages) {
+						pagePermits.acquire();
+						permitAcquired = true;
+					}
+
 					synchronized (RupeeTransactionReader.this) {
 						if (cancel) {
 							break;
 						}
-					}
 
-					pageNumber = pageCounter.getAndIncrement();
-					if (stopAtPage != null && pageNumber > stopAtPage) {
-						break;
+						Integer hedgedPage = noMorePages ? waitForPageToHedge() : pageToHedge();
+						if (hedgedPage != null) {
+							pageNumber = hedgedPage;
+							hedgesIssued++;
+							metrics.hedge();
+							logger.fine("Page " + pageNumber + " is taking longer than usual to download.  Sending a hedged request.");
+						} else if (noMorePages) {
+							break;
+						} else {
+							pageNumber = pageCounter.getAndIncrement();
+							if (stopAtPage != null && pageNumber > stopAtPage) {
+								noMorePages();
+								continue;
+							}
+							permitAcquired = false;
+						}
+
+						if (permitAcquired) {
+							//the permit is only needed for downloading a new page
+							pagePermits.release();
+						}
+
+						aborted = false;
+						inFlight.computeIfAbsent(pageNumber, k -> new ArrayList<>(2)).add(this);
+						inFlightStartTimes.putIfAbsent(pageNumber, System.nanoTime());
 					}
 
+					long start = System.nanoTime();
 					RupeeTransactionPage transactionPage;
 					try {
-						transactionPage = pageSource.getPage(pageNumber, connection);
-					} catch (ConnectException | SocketTimeoutException e) {
-						transactionPage = reconnectAndRedownload(pageNumber, e);
+						transactionPage = download(pageNumber);
+					} catch (Exception e) {
+						synchronized (RupeeTransactionReader.this) {
+							finishedDownloading(pageNumber);
+							if (aborted || isDelivered(pageNumber)) {
+								//another thread already downloaded the page
+								continue;
+							}
+						}
+						monitor.error();
+						throw e;
 					}
 
-					/*
-					 * The session shouldn't expire while a download is in
-					 * progress, but run a check in case the sky falls.
-					 */
-					if (transactionPage == null) {
-						logger.warning("A transaction page couldn't be downloaded due to an invalid session token.  Re-creating the connection.");
-						connection = pageSource.createSession();
-						transactionPage = pageSource.getPage(pageNumber, connection);
-						if (transactionPage == null) {
-							throw new InvalidSessionException();
+					synchronized (RupeeTransactionReader.this) {
+						finishedDownloading(pageNumber);
+						if (aborted || isDelivered(pageNumber)) {
+							//another thread already downloaded the page
+							continue;
 						}
+						long now = System.nanoTime();
+						long elapsed = now - start;
+						latencies.add(elapsed);
+						metrics.record(Stage.PAGE, elapsed);
+						monitor.pageFetched(now);
 					}
 
 					/*
@@ -318,7 +831,8 @@ public class RupeeTransactionReader implements Closeable {
 					 */
 					boolean lastPageReached = pageNumber > 1 && transactionPage.getFirstTransactionDate().compareTo(latestTransactionDate) >= 0;
 					if (lastPageReached) {
-						break;
+						noMorePages();
+						continue;
 					}
 
 					if (stopAtDate != null && transactionPage.getFirstTransactionDate().compareTo(stopAtDate) <= 0) {
@@ -329,10 +843,17 @@ public class RupeeTransactionReader implements Closeable {
 						 * should terminate (because there are no more
 						 * transaction pages to parse).
 						 */
-						break;
+						noMorePages();
+						continue;
 					}
 
 					synchronized (RupeeTransactionReader.this) {
+						if (isDelivered(pageNumber)) {
+							//a hedged request for the same page finished at the same time
+							continue;
+						}
+						abortOtherDownloads(pageNumber);
+
 						if (nextPageToPutInQueue == pageNumber) {
 							queue.add(transactionPage);
 
@@ -342,10 +863,15 @@ public class RupeeTransactionReader implements Closeable {
 									nextPageToPutInQueue = i;
 									break;
 								}
+								JfrEvents.endReorderWait(reorderWaitEvents.remove(i), i);
 								queue.add(page);
 							}
 						} else {
 							buffer.put(pageNumber, transactionPage);
+							Object event = JfrEvents.beginReorderWait();
+							if (event != null) {
+								reorderWaitEvents.put(pageNumber, event);
+							}
 						}
 					}
 
@@ -363,7 +889,7 @@ public class RupeeTransactionReader implements Closeable {
 						 * However, the thread can terminate because we know
 						 * there are no more transaction pages to parse.
 						 */
-						break;
+						noMorePages();
 					}
 				}
 			} catch (Exception e) {
@@ -392,6 +918,72 @@ public class RupeeTransactionReader implements Closeable {
 			}
 		}
 
+		/**
+		 * Downloads a transaction page, recovering from connection errors and
+		 * expired sessions.
+		 * @param pageNumber the page number
+		 * @return the transaction page
+		 * @throws IOException if there's a problem downloading the page
+		 */
+		private RupeeTransactionPage download(int pageNumber) throws IOException {
+			RupeeTransactionPage transactionPage;
+			try {
+				transactionPage = pageSource.getPage(pageNumber, connection);
+			} catch (ConnectException | SocketTimeoutException e) {
+				monitor.error();
+				transactionPage = reconnectAndRedownload(pageNumber, e);
+			}
+
+			/*
+			 * The session shouldn't expire while a download is in progress, but
+			 * run a check in case the sky falls.
+			 */
+			if (transactionPage == null) {
+				checkCancelled();
+				logger.warning("A transaction page couldn't be downloaded due to an invalid session token.  Re-creating the connection.");
+				monitor.error();
+				monitor.retry();
+				metrics.retry();
+				Object event = JfrEvents.beginReconnect();
+				setConnection(pageSource.createSession());
+				transactionPage = pageSource.getPage(pageNumber, connection);
+				JfrEvents.endReconnect(event, pageNumber, null);
+				if (transactionPage == null) {
+					throw new InvalidSessionException();
+				}
+			}
+
+			return transactionPage;
+		}
+
+		/**
+		 * Throws an exception if the reader has been closed. This prevents
+		 * new connections from being opened after the reader is closed.
+		 * @throws InterruptedIOException if the reader has been closed
+		 */
+		private void checkCancelled() throws InterruptedIOException {
+			synchronized (RupeeTransactionReader.this) {
+				if (cancel) {
+					throw new InterruptedIOException("Reader was closed.");
+				}
+			}
+		}
+
+		/**
+		 * Removes this thread from the list of threads that are downloading the
+		 * given page. The caller must hold the reader's lock.
+		 * @param pageNumber the page number
+		 */
+		private void finishedDownloading(int pageNumber) {
+			List<ScrapeThread> downloaders = inFlight.get(pageNumber);
+			downloaders.remove(this);
+			if (downloaders.isEmpty()) {
+				inFlight.remove(pageNumber);
+				inFlightStartTimes.remove(pageNumber);
+			}
+			RupeeTransactionReader.this.notifyAll();
+		}
+
 		/**
 		 * <p>
 		 * Recreates the HTTP connection and then re-downloads the transaction
@@ -410,29 +1002,239 @@ public class RupeeTransactionReader implements Closeable {
 		 * @throws IOException if there's still a problem downloading the page
 		 */
 		private RupeeTransactionPage reconnectAndRedownload(int pageNumber, Exception thrown) throws IOException {
+			checkCancelled();
 			logger.log(Level.WARNING, "A connection error occurred while downloading transactions.  Re-creating the connection.", thrown);
-			connection = pageSource.recreateConnection(connection);
-			return pageSource.getPage(pageNumber, connection);
+			monitor.retry();
+			metrics.retry();
+			Object event = JfrEvents.beginReconnect();
+			setConnection(pageSource.recreateConnection(connection));
+			RupeeTransactionPage transactionPage = pageSource.getPage(pageNumber, connection);
+			JfrEvents.endReconnect(event, pageNumber, thrown);
+			return transactionPage;
 		}
-	}
 
-	@Override
-	public synchronized void close() {
-		cancel = true;
-		queue.add(noMoreElements);
+		/**
+		 * Replaces this thread's connection. If the reader was closed while the
+		 * new connection was being created, then the new connection is closed
+		 * so that it doesn't leak (the reader only closes the connections it
+		 * can see).
+		 * @param connection the new connection
+		 * @throws InterruptedIOException if the reader has been closed
+		 */
+		private void setConnection(EmcWebsiteConnection connection) throws InterruptedIOException {
+			synchronized (RupeeTransactionReader.this) {
+				if (!cancel) {
+					this.connection = connection;
+					return;
+				}
+			}
+
+			try {
+				connection.close();
+			} catch (IOException ignore) {
+			}
+			throw new InterruptedIOException("Reader was closed.");
+		}
 	}
 
 	/**
-	 * Creates new instances of {@link RupeeTransactionReader}.
+	 * Splits the reader's transactions into batches of whole pages.
+	 */
+	private class TransactionSpliterator implements Spliterator<RupeeTransaction> {
+		/**
+		 * The maximum number of pages to include in a single split.
+		 */
+		private static final int MAX_BATCH_PAGES = 64;
+
+		private int batchPages = 0;
+
+		@Override
+		public boolean tryAdvance(Consumer<? super RupeeTransaction> action) {
+			RupeeTransaction transaction;
+			try {
+				transaction = next();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			if (transaction == null) {
+				return false;
+			}
+
+			action.accept(transaction);
+			return true;
+		}
+
+		@Override
+		public Spliterator<RupeeTransaction> trySplit() {
+			/*
+			 * Each split contains one more page than the last one, so that
+			 * small streams don't wait on lots of pages before any work can
+			 * begin.
+			 */
+			batchPages = Math.min(batchPages + 1, MAX_BATCH_PAGES);
+
+			List<RupeeTransaction> batch = new ArrayList<>();
+			try {
+				for (int i = 0; i < batchPages; i++) {
+					List<RupeeTransaction> transactions = nextPage();
+					if (transactions == null) {
+						break;
+					}
+					batch.addAll(transactions);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			if (batch.isEmpty()) {
+				return null;
+			}
+
+			return Spliterators.spliterator(batch, characteristics());
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+	/**
+	 * Stops the download threads and closes their connections. Any requests
+	 * that are in progress are aborted. This method blocks until the download
+	 * threads have terminated.
+	 */
+	@Override
+	public void close() {
+		monitor.close();
+
+		synchronized (this) {
+			if (cancel && deadThreads == threads) {
+				return;
+			}
+
+			cancel = true;
+			notifyAll();
+			queue.add(noMoreElements);
+
+			for (ScrapeThread thread : scrapeThreads) {
+				thread.connection.abort();
+				try {
+					/*
+					 * Closing the connection ensures that the thread can't
+					 * start a new request on it.
+					 */
+					thread.connection.close();
+				} catch (IOException ignore) {
+				}
+				thread.interrupt();
+			}
+		}
+
+		if (scrapeThreads.contains(Thread.currentThread())) {
+			return;
+		}
+
+		long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+		for (ScrapeThread thread : scrapeThreads) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+
+			try {
+				thread.join(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		for (ScrapeThread thread : scrapeThreads) {
+			if (thread.isAlive()) {
+				logger.warning("Thread " + thread.getName() + " did not terminate within " + CLOSE_TIMEOUT_MILLIS + "ms of the reader being closed.");
+			}
+		}
+	}
+
+	/**
+	 * Calculates how many pages the reader is expected to download, based on
+	 * the total number of pages and the start and stop pages.
+	 * @return the number of pages or null if unknown
+	 */
+	Integer expectedPages() {
+		Integer lastPage = totalPages;
+		if (stopAtPage != null) {
+			lastPage = (lastPage == null) ? stopAtPage : Math.min(lastPage, stopAtPage);
+		}
+		return (lastPage == null) ? null : Math.max(lastPage - startAtPage + 1, 0);
+	}
+
+	/*
+	 * The methods below expose the reader's state to ReaderMonitor.
+	 */
+
+	int threadCount() {
+		return threads;
+	}
+
+	int pagesRead() {
+		return pagesRead;
+	}
+
+	synchronized int pagesBuffered() {
+		return buffer.size();
+	}
+
+	int queueDepth() {
+		int size = queue.size();
+		return queue.contains(noMoreElements) ? size - 1 : size;
+	}
+
+	synchronized int hedgesIssued() {
+		return hedgesIssued;
+	}
+
+	synchronized boolean isFinished() {
+		return deadThreads == threads;
+	}
+
+	/**
+	 * Creates new instances of {@link RupeeTransactionReader}.
 	 * @author Michael Angstadt
 	 */
 	public static class Builder {
 		private final PageSource pageSource;
 		private final List<RupeeTransactionScribe<?>> scribes = new ArrayList<>();
+		private final List<TransactionDispatcher.Handler<?>> handlers = new ArrayList<>();
 		private RupeeTransactionPageScraper pageScraper;
+		private PageArchive archive;
+		private SessionRecorder recorder;
+		private Metrics metrics = Metrics.DISABLED;
+		private boolean jmx = false;
+		private SessionStore sessionStore;
+
+		/**
+		 * Whether the stored session has already been handed out. A session is
+		 * only re-created when the current one is invalid, so after the
+		 * stored session is used once, new sessions are created by logging in.
+		 */
+		private final AtomicBoolean storedSessionUsed = new AtomicBoolean();
+		private Consumer<? super ReaderProgress> progressListener;
+		private Duration progressInterval;
 		private Integer startPage = 1, stopPage;
 		private LocalDateTime startDate, stopDate;
 		private int threads = 4;
+		private double hedgePercentile = 95;
+		private int maxHedges = 0;
+		private Integer prefetch;
+		private Duration followMinInterval = Duration.ofSeconds(5), followMaxInterval = Duration.ofMinutes(2);
 
 		/**
 		 * This constructor is meant for unit testing. The {@link PageSource}
@@ -466,7 +1268,7 @@ public class RupeeTransactionReader implements Closeable {
 			pageSource = new PageSourceImpl() {
 				@Override
 				public EmcWebsiteConnection createSession() throws IOException {
-					return new EmcWebsiteConnectionImpl(username, password);
+					return login(username, password, null);
 				}
 			};
 		}
@@ -483,7 +1285,51 @@ public class RupeeTransactionReader implements Closeable {
 			pageSource = new PageSourceImpl() {
 				@Override
 				public EmcWebsiteConnection createSession() throws IOException {
-					return new EmcWebsiteConnectionImpl(username, password, twoFactorAuthCode);
+					return login(username, password, twoFactorAuthCode);
+				}
+			};
+		}
+
+		/**
+		 * Reads the transaction pages from an archive instead of the EMC
+		 * website. This allows a transaction history to be scraped again (for
+		 * example, with new scribes) without downloading it.
+		 * @param archive the archive
+		 * @see #archive(PageArchive)
+		 */
+		public Builder(PageArchive archive) {
+			pageSource = new PageSourceImpl() {
+				@Override
+				public EmcWebsiteConnection createSession() {
+					return new PageArchiveConnection(archive);
+				}
+
+				@Override
+				public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) {
+					return createSession();
+				}
+			};
+		}
+
+		/**
+		 * Replays a session that was recorded with {@link #record} instead of
+		 * contacting the EMC website. This allows changes to the reader to be
+		 * evaluated against the timing of a real session.
+		 * @param recording the recording
+		 * @param latencyScale the amount to scale each response's recorded
+		 * duration by (for example, "1" to replay the responses with their
+		 * original latencies or "0" to replay them with no latency)
+		 */
+		public Builder(SessionRecording recording, double latencyScale) {
+			pageSource = new PageSourceImpl() {
+				@Override
+				public EmcWebsiteConnection createSession() {
+					return recording.connect(latencyScale);
+				}
+
+				@Override
+				public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) {
+					return createSession();
 				}
 			};
 		}
@@ -498,6 +1344,187 @@ public class RupeeTransactionReader implements Closeable {
 			return this;
 		}
 
+		/**
+		 * Determines if any custom scribes were added.
+		 * @return true if custom scribes were added, false if not
+		 */
+		boolean hasCustomScribes() {
+			return !scribes.isEmpty();
+		}
+
+		/**
+		 * Registers a handler that {@link RupeeTransactionReader#dispatch}
+		 * will pass transactions of the given type to. The handler is invoked
+		 * on the dispatching thread.
+		 * @param type the transaction type (subclasses of this type are also
+		 * passed to the handler)
+		 * @param handler the handler
+		 * @param <T> the transaction type
+		 * @return this
+		 */
+		public <T extends RupeeTransaction> Builder on(Class<T> type, Consumer<? super T> handler) {
+			return on(type, handler, null);
+		}
+
+		/**
+		 * Registers a handler that {@link RupeeTransactionReader#dispatch}
+		 * will pass transactions of the given type to. The handler is invoked
+		 * on the given executor. Use a single-threaded executor if the handler
+		 * must receive the transactions in order.
+		 * @param type the transaction type (subclasses of this type are also
+		 * passed to the handler)
+		 * @param handler the handler
+		 * @param executor the executor to invoke the handler on or null to
+		 * invoke it on the dispatching thread
+		 * @param <T> the transaction type
+		 * @return this
+		 */
+		public <T extends RupeeTransaction> Builder on(Class<T> type, Consumer<? super T> handler, Executor executor) {
+			handlers.add(new TransactionDispatcher.Handler<>(type, handler, executor));
+			return this;
+		}
+
+		/**
+		 * Registers a handler for all transactions.
+		 * @param handler the handler
+		 * @return this
+		 * @see #on(Class, Consumer)
+		 */
+		public Builder onTransaction(Consumer<? super RupeeTransaction> handler) {
+			return on(RupeeTransaction.class, handler);
+		}
+
+		/**
+		 * Registers a handler for shop transactions.
+		 * @param handler the handler
+		 * @return this
+		 * @see #on(Class, Consumer)
+		 */
+		public Builder onShopTransaction(Consumer<? super ShopTransaction> handler) {
+			return on(ShopTransaction.class, handler);
+		}
+
+		/**
+		 * Registers a handler for player-to-player payments.
+		 * @param handler the handler
+		 * @return this
+		 * @see #on(Class, Consumer)
+		 */
+		public Builder onPayment(Consumer<? super PaymentTransaction> handler) {
+			return on(PaymentTransaction.class, handler);
+		}
+
+		/**
+		 * Saves the HTML of each transaction page to an archive as it is
+		 * downloaded. The archive can then be read with the
+		 * {@link #Builder(PageArchive)} constructor.
+		 * @param archive the archive or null not to archive the pages
+		 * @return this
+		 */
+		public Builder archive(PageArchive archive) {
+			this.archive = archive;
+			return this;
+		}
+
+		/**
+		 * Records every response the reader receives, along with its timing,
+		 * so that the session can be replayed with the
+		 * {@link #Builder(SessionRecording, double)} constructor.
+		 * @param recorder the recorder or null not to record the session
+		 * @return this
+		 */
+		public Builder record(SessionRecorder recorder) {
+			this.recorder = recorder;
+			return this;
+		}
+
+		/**
+		 * Collects timing and throughput measurements from the reader, its
+		 * connections, and its page scraper. The measurements can be read
+		 * from the given object or from {@link RupeeTransactionReader#getMetrics}.
+		 * By default, measurements are not collected.
+		 * @param metrics the object to collect the measurements in or null
+		 * not to collect measurements
+		 * @return this
+		 */
+		public Builder metrics(Metrics metrics) {
+			this.metrics = (metrics == null) ? Metrics.DISABLED : metrics;
+			return this;
+		}
+
+		/**
+		 * Registers the reader with the platform MBean server so that its
+		 * progress can be monitored with standard JMX tools, such as JConsole.
+		 * The reader is unregistered when it is closed. By default, the reader
+		 * is not registered.
+		 * @param jmx true to register the reader, false not to
+		 * @return this
+		 * @see RupeeTransactionReaderMXBean
+		 */
+		public Builder jmx(boolean jmx) {
+			this.jmx = jmx;
+			return this;
+		}
+
+		/**
+		 * <p>
+		 * Saves the authenticated session to the given store after logging in,
+		 * and reuses the stored session on later runs instead of logging in
+		 * again. The stored session is not checked until the first
+		 * transaction page is downloaded. If it turns out to be invalid, the
+		 * reader logs in with the username and password and stores the new
+		 * session.
+		 * </p>
+		 * <p>
+		 * This setting only applies to readers that were created with a
+		 * username and password.
+		 * </p>
+		 * @param sessionStore the session store or null not to store sessions
+		 * @return this
+		 */
+		public Builder sessionStore(SessionStore sessionStore) {
+			this.sessionStore = sessionStore;
+			return this;
+		}
+
+		/**
+		 * Sends progress reports to the given listener once per second.
+		 * @param listener the listener
+		 * @return this
+		 * @see #progress(Consumer, Duration)
+		 */
+		public Builder progress(Consumer<? super ReaderProgress> listener) {
+			return progress(listener, Duration.ofSeconds(1));
+		}
+
+		/**
+		 * <p>
+		 * Sends progress reports to the given listener at a fixed rate. Reports
+		 * include the number of pages downloaded, the expected number of
+		 * pages, the number of transactions returned, the download rate, and
+		 * an estimate of the time remaining.
+		 * </p>
+		 * <p>
+		 * The listener is always called from the same thread, and never from
+		 * the download threads, so a slow listener does not slow down the
+		 * download. If the listener takes longer than the interval, reports are
+		 * skipped rather than queued up. A final report is sent when the last
+		 * transaction has been read or the reader is closed.
+		 * </p>
+		 * @param listener the listener or null to remove it
+		 * @param interval the time between reports
+		 * @return this
+		 */
+		public Builder progress(Consumer<? super ReaderProgress> listener, Duration interval) {
+			if (interval.isNegative() || interval.isZero()) {
+				throw new IllegalArgumentException("Interval must be positive.");
+			}
+
+			this.progressListener = listener;
+			this.progressInterval = interval;
+			return this;
+		}
+
 		/**
 		 * Sets the page number that the reader will start parsing on. By
 		 * default, the reader will start parsing on page 1.
@@ -606,6 +1633,107 @@ public class RupeeTransactionReader implements Closeable {
 			return this;
 		}
 
+		/**
+		 * <p>
+		 * Enables hedged requests. If the download of the page that the reader
+		 * is waiting on takes longer than the given percentile of recent
+		 * download times, then the next available thread will send a duplicate
+		 * request for the same page. Whichever request finishes first is used,
+		 * and the other request is aborted. By default, hedging is disabled.
+		 * </p>
+		 * <p>
+		 * Because transactions are returned in page order, a single slow
+		 * response holds up all of the pages that come after it. Hedging cuts
+		 * down on these delays at the cost of some extra requests.
+		 * </p>
+		 * @param percentile the percentile of recent download times that a
+		 * download must exceed in order to be hedged (e.g. "95")
+		 * @param maxHedges the maximum number of hedged requests the reader is
+		 * allowed to send over its lifetime, or 0 to disable hedging
+		 * @return this
+		 * @throws IllegalArgumentException if the percentile is not in the
+		 * range (0, 100] or if the maximum number of hedges is negative
+		 */
+		public Builder hedge(double percentile, int maxHedges) {
+			if (percentile <= 0 || percentile > 100) {
+				throw new IllegalArgumentException("Percentile must be greater than 0 and less than or equal to 100.");
+			}
+			if (maxHedges < 0) {
+				throw new IllegalArgumentException("Max hedges cannot be negative: " + maxHedges);
+			}
+
+			this.hedgePercentile = percentile;
+			this.maxHedges = maxHedges;
+			return this;
+		}
+
+		/**
+		 * Limits the number of pages the reader will download ahead of the
+		 * pages that have been consumed. By default, there is no limit: the
+		 * background threads download pages as fast as they can.
+		 * @param pages the maximum number of pages to download ahead of the
+		 * consumer or null for no limit
+		 * @return this
+		 */
+		public Builder prefetch(Integer pages) {
+			if (pages != null && pages < 1) {
+				throw new IllegalArgumentException("Prefetch must be at least 1.");
+			}
+
+			prefetch = pages;
+			return this;
+		}
+
+		/**
+		 * Constructs a {@link RupeeTransactionReader} object that only
+		 * downloads pages that have been requested via
+		 * {@link RupeeTransactionReader#requestPages}. This builder's
+		 * settings are not changed.
+		 * @return the object
+		 * @throws IOException if there's a problem contacting the EMC website
+		 */
+		RupeeTransactionReader buildDemandDriven() throws IOException {
+			return build(true);
+		}
+
+		/**
+		 * Sets how often a {@link RupeeTransactionFollower} checks for new
+		 * transactions. The follower checks at the minimum interval while new
+		 * transactions are arriving, and doubles the interval (up to the
+		 * maximum) each time it finds nothing new. By default, the interval is
+		 * between 5 seconds and 2 minutes.
+		 * @param min the minimum interval
+		 * @param max the maximum interval
+		 * @return this
+		 */
+		public Builder followInterval(Duration min, Duration max) {
+			if (min.isNegative() || min.isZero() || max.compareTo(min) < 0) {
+				throw new IllegalArgumentException("Minimum interval must be positive and not greater than the maximum interval.");
+			}
+
+			followMinInterval = min;
+			followMaxInterval = max;
+			return this;
+		}
+
+		/**
+		 * Constructs a {@link RupeeTransactionFollower} object, which watches
+		 * for new transactions. The start, stop, thread, hedge, and prefetch
+		 * settings do not apply to followers.
+		 * @return the object
+		 * @throws InvalidCredentialsException if the username/password is
+		 * incorrect
+		 * @throws TwoFactorAuthException if a two-factor authentication code is
+		 * required or if the provided code is invalid
+		 * @throws IOException if there's a problem contacting the EMC website
+		 */
+		public RupeeTransactionFollower buildFollower() throws IOException {
+			storedSessionUsed.set(false);
+			pageScraper = new RupeeTransactionPageScraper(scribes);
+			pageScraper.setMetrics(metrics);
+			return new RupeeTransactionFollower(pageSource(), followMinInterval, followMaxInterval);
+		}
+
 		/**
 		 * Constructs the {@link RupeeTransactionReader} object.
 		 * @return the object
@@ -616,24 +1744,143 @@ public class RupeeTransactionReader implements Closeable {
 		 * @throws IOException if there's a problem contacting the EMC website
 		 */
 		public RupeeTransactionReader build() throws IOException {
+			return build(false);
+		}
+
+		private RupeeTransactionReader build(boolean demandDriven) throws IOException {
 			if (threads <= 0) {
 				threads = 1;
 			}
 
 			pageScraper = new RupeeTransactionPageScraper(scribes);
+			pageScraper.setMetrics(metrics);
+			storedSessionUsed.set(false);
 
 			if (stopPage != null && stopPage < 1) {
 				stopPage = 1;
 			}
 
-			return new RupeeTransactionReader(this);
+			return new RupeeTransactionReader(this, demandDriven);
+		}
+
+		/**
+		 * Creates a session using the player's credentials. If a session store
+		 * was set, then the stored session is used the first time this method
+		 * is called, and any new session is saved to the store.
+		 * @param username the player's username
+		 * @param password the player's password
+		 * @param twoFactorAuthCode the two-factor authentication code or null
+		 * @return the connection to the session
+		 * @throws IOException if there's a problem logging in
+		 */
+		private EmcWebsiteConnection login(String username, String password, String twoFactorAuthCode) throws IOException {
+			SessionStore sessionStore = this.sessionStore;
+			if (sessionStore != null && !storedSessionUsed.getAndSet(true)) {
+				CookieStore cookies = null;
+				try {
+					cookies = sessionStore.load();
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Stored session could not be read.  Logging in instead.", e);
+				}
+
+				if (cookies != null) {
+					logger.fine("Reusing stored session.");
+					return new EmcWebsiteConnectionImpl(cookies);
+				}
+			}
+
+			EmcWebsiteConnectionImpl connection = new EmcWebsiteConnectionImpl(username, password, twoFactorAuthCode);
+			if (sessionStore != null) {
+				try {
+					sessionStore.save(connection.getCookieStore());
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Session could not be stored.", e);
+				}
+			}
+			return connection;
+		}
+
+		/**
+		 * Gets the page source, instrumenting its connections with the metrics
+		 * object and wrapping them with the session recorder if either was
+		 * set.
+		 * @return the page source
+		 */
+		private PageSource pageSource() {
+			if (recorder == null && !metrics.isEnabled()) {
+				return pageSource;
+			}
+
+			PageSource delegate = pageSource;
+			SessionRecorder recorder = this.recorder;
+			Metrics metrics = this.metrics;
+			return new PageSource() {
+				@Override
+				public RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException {
+					return delegate.getPage(pageNumber, connection);
+				}
+
+				@Override
+				public RupeeTransactionPage getPageIfChanged(int pageNumber, EmcWebsiteConnection connection, Map<Integer, Integer> fingerprints) throws IOException {
+					return delegate.getPageIfChanged(pageNumber, connection, fingerprints);
+				}
+
+				@Override
+				public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
+					return decorate(delegate.recreateConnection(connection));
+				}
+
+				@Override
+				public EmcWebsiteConnection createSession() throws IOException {
+					return decorate(delegate.createSession());
+				}
+
+				private EmcWebsiteConnection decorate(EmcWebsiteConnection connection) {
+					if (connection instanceof EmcWebsiteConnectionImpl) {
+						((EmcWebsiteConnectionImpl) connection).setMetrics(metrics);
+					}
+					return (recorder == null) ? connection : recorder.wrap(connection);
+				}
+			};
 		}
 
 		private abstract class PageSourceImpl implements PageSource {
 			@Override
 			public RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException {
 				Document document = connection.getRupeeTransactionPage(pageNumber);
-				return pageScraper.scrape(document);
+
+				//don't bother scraping the page if the reader was closed
+				if (Thread.interrupted()) {
+					throw new InterruptedIOException();
+				}
+
+				return scrapeAndArchive(document);
+			}
+
+			@Override
+			public RupeeTransactionPage getPageIfChanged(int pageNumber, EmcWebsiteConnection connection, Map<Integer, Integer> fingerprints) throws IOException {
+				Document document = connection.getRupeeTransactionPage(pageNumber);
+
+				Integer fingerprint = pageScraper.fingerprint(document);
+				if (fingerprint != null && fingerprint.equals(fingerprints.put(pageNumber, fingerprint))) {
+					return UNCHANGED;
+				}
+
+				return scrapeAndArchive(document);
+			}
+
+			private RupeeTransactionPage scrapeAndArchive(Document document) throws IOException {
+				RupeeTransactionPage page = pageScraper.scrape(document);
+
+				/*
+				 * Use the page number from the page itself, since the website
+				 * returns the first page when a non-existent page is requested.
+				 */
+				if (archive != null && page != null && page.getPage() != null) {
+					archive.put(page.getPage(), document.outerHtml());
+				}
+
+				return page;
 			}
 		}
 	}
@@ -644,6 +1891,11 @@ public class RupeeTransactionReader implements Closeable {
 	 * @author Michael Angstadt
 	 */
 	interface PageSource {
+		/**
+		 * Returned by {@link #getPageIfChanged} when the page has not changed.
+		 */
+		RupeeTransactionPage UNCHANGED = new RupeeTransactionPage(null, null, null, Collections.emptyList());
+
 		/**
 		 * Retrieves a transaction page.
 		 * @param pageNumber the page number
@@ -653,6 +1905,31 @@ public class RupeeTransactionReader implements Closeable {
 		 */
 		RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException;
 
+		/**
+		 * Retrieves a transaction page, skipping the work of scraping it if its
+		 * contents have not changed since the last time it was retrieved. The
+		 * page is still downloaded and parsed, because the raw HTML contains
+		 * values that change on every request (see
+		 * {@link RupeeTransactionPageScraper#fingerprint}).
+		 * @param pageNumber the page number
+		 * @param connection the connection to the EMC website
+		 * @param fingerprints the fingerprint of each page's contents from the
+		 * last time it was retrieved (this method adds the page's current
+		 * fingerprint to this map)
+		 * @return the transaction page, {@link #UNCHANGED} if it has not
+		 * changed, or null if the session has expired
+		 * @throws IOException if there is a problem getting the page
+		 */
+		default RupeeTransactionPage getPageIfChanged(int pageNumber, EmcWebsiteConnection connection, Map<Integer, Integer> fingerprints) throws IOException {
+			RupeeTransactionPage page = getPage(pageNumber, connection);
+			if (page == null) {
+				return null;
+			}
+
+			Integer fingerprint = page.getTransactions().hashCode();
+			return fingerprint.equals(fingerprints.put(pageNumber, fingerprint)) ? UNCHANGED : page;
+		}
+
 		/**
 		 * Recreates the connection to an existing, authenticated session.
 		 * @param connection the old connection
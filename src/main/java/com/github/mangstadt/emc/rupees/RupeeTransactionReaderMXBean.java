@@ -0,0 +1,116 @@
+package com.github.mangstadt.emc.rupees;
+
+/**
+ * <p>
+ * The live state of a {@link RupeeTransactionReader}, as exposed over JMX.
+ * Enable it with {@link RupeeTransactionReader.Builder#jmx}. Each reader is
+ * registered under its own name in the platform MBean server:
+ * </p>
+ *
+ * <pre>
+ * com.github.mangstadt.emc:type=RupeeTransactionReader,id=1
+ * </pre>
+ * <p>
+ * The reader is unregistered when it is closed.
+ * </p>
+ * @author Michael Angstadt
+ */
+public interface RupeeTransactionReaderMXBean {
+	/**
+	 * Gets the number of download threads the reader was configured with.
+	 * @return the number of threads
+	 */
+	int getThreads();
+
+	/**
+	 * Gets the number of pages that have been downloaded.
+	 * @return the number of pages
+	 */
+	int getPagesFetched();
+
+	/**
+	 * Gets the number of pages that have been handed to the consumer.
+	 * @return the number of pages
+	 */
+	int getPagesRead();
+
+	/**
+	 * Gets the number of pages that were downloaded out of order and are
+	 * waiting for the pages before them to finish downloading.
+	 * @return the number of pages
+	 */
+	int getPagesBuffered();
+
+	/**
+	 * Gets the number of pages that are ready to be handed to the consumer.
+	 * @return the number of pages
+	 */
+	int getQueueDepth();
+
+	/**
+	 * Gets the number of transactions that were skipped because they were
+	 * already returned.
+	 * @return the number of transactions
+	 */
+	int getDuplicatesDropped();
+
+	/**
+	 * Gets the number of download attempts that failed, including those that
+	 * were successfully retried.
+	 * @return the number of errors
+	 */
+	int getErrors();
+
+	/**
+	 * Gets the number of times a connection was re-created in order to retry a
+	 * download.
+	 * @return the number of retries
+	 */
+	int getRetries();
+
+	/**
+	 * Gets the number of hedged requests that were sent.
+	 * @return the number of hedged requests
+	 */
+	int getHedges();
+
+	/**
+	 * Gets the page the consumer is currently reading.
+	 * @return the page number
+	 */
+	int getCurrentPageNumber();
+
+	/**
+	 * Gets the number of transaction pages the player had when the reader was
+	 * created.
+	 * @return the number of pages or null if unknown
+	 */
+	Integer getTotalPages();
+
+	/**
+	 * Gets the number of pages that were downloaded per second over the last
+	 * 10 seconds.
+	 * @return the pages per second
+	 */
+	double getPagesPerSecond();
+
+	/**
+	 * Estimates how many seconds are left until all the pages are downloaded,
+	 * based on the current throughput and the total number of pages.
+	 * @return the number of seconds or -1 if unknown
+	 */
+	long getEstimatedSecondsRemaining();
+
+	/**
+	 * Estimates when all the pages will be downloaded.
+	 * @return the date/time in ISO-8601 format or null if unknown
+	 */
+	String getEstimatedCompletionTime();
+
+	/**
+	 * Determines if the reader has finished downloading pages, either because
+	 * it reached the end or because it was closed.
+	 * @return true if the reader is finished, false if not
+	 */
+	boolean isFinished();
+}
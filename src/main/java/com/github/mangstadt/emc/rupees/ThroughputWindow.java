@@ -0,0 +1,58 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates how many events per second occurred over a recent window of
+ * time. This class is not thread-safe.
+ * @author Michael Angstadt
+ */
+class ThroughputWindow {
+	private final long windowNanos;
+	private final long createdNanos;
+	private final Deque<Long> times = new ArrayDeque<>();
+
+	/**
+	 * @param window the length of the window
+	 * @param unit the unit of the window length
+	 * @param now the current time ({@link System#nanoTime})
+	 */
+	public ThroughputWindow(long window, TimeUnit unit, long now) {
+		windowNanos = unit.toNanos(window);
+		createdNanos = now;
+	}
+
+	/**
+	 * Records an event.
+	 * @param now the time of the event ({@link System#nanoTime})
+	 */
+	public void add(long now) {
+		times.addLast(now);
+		prune(now);
+	}
+
+	/**
+	 * Calculates the number of events per second over the window. If this
+	 * object was created less than one window ago, then the rate is calculated
+	 * over the time since it was created.
+	 * @param now the current time ({@link System#nanoTime})
+	 * @return the events per second
+	 */
+	public double rate(long now) {
+		prune(now);
+
+		long elapsed = Math.min(now - createdNanos, windowNanos);
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return times.size() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private void prune(long now) {
+		while (!times.isEmpty() && now - times.peekFirst() > windowNanos) {
+			times.removeFirst();
+		}
+	}
+}
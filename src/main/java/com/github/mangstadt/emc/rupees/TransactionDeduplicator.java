@@ -0,0 +1,50 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.time.LocalDate;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+/**
+ * <p>
+ * Keeps track of which transactions have already been returned. This is to
+ * prevent duplicate transactions from being returned if transactions are added
+ * to a user's rupee history while it is being read. When a new transaction is
+ * logged, the new transaction "bumps" all other transactions "down" one, which
+ * causes duplicate transactions to be read.
+ * </p>
+ * <p>
+ * I probably could have stuck with a Set here (the hash is probably unique
+ * enough), but I made this a Multimap to help prevent false positives from
+ * happening (i.e. two non-duplicate transactions that have the same hash). The
+ * key is the day that the transaction occurred on, and the value is the hashes
+ * of the transactions that occurred on that date.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * @author Michael Angstadt
+ */
+class TransactionDeduplicator {
+	private final Multimap<LocalDate, Integer> hashesOfReturnedTransactions = HashMultimap.create();
+
+	/**
+	 * Records a transaction as having been returned.
+	 * @param transaction the transaction
+	 * @return true if the transaction has not been returned before, false if
+	 * it is a duplicate
+	 */
+	public boolean add(RupeeTransaction transaction) {
+		LocalDate date = transaction.getTs().toLocalDate();
+		return hashesOfReturnedTransactions.put(date, transaction.hashCode());
+	}
+
+	/**
+	 * Forgets about all transactions that occurred before the given date.
+	 * @param date the date
+	 */
+	public void removeBefore(LocalDate date) {
+		hashesOfReturnedTransactions.keySet().removeIf(d -> d.isBefore(date));
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * Passes rupee transactions to the handlers that were registered for their
+ * types. This class is not thread-safe.
+ * @author Michael Angstadt
+ */
+class TransactionDispatcher {
+	private static final List<Class<? extends RupeeTransaction>> builtInTypes = Arrays.asList(RupeeTransaction.class, ShopTransaction.class, PaymentTransaction.class, DailySigninBonus.class, HorseSummonFee.class, MailFee.class, EggifyFee.class, LockTransaction.class, VoteBonus.class, VaultFee.class);
+
+	private final List<Handler<?>> handlers;
+
+	/**
+	 * The handlers that apply to each concrete transaction class. Entries for
+	 * the built-in transaction classes are created up front. Entries for
+	 * custom classes are created the first time they are encountered.
+	 */
+	private final Map<Class<?>, Handler<?>[]> table = new HashMap<>();
+
+	/**
+	 * @param handlers the handlers, in the order they were registered
+	 */
+	public TransactionDispatcher(List<Handler<?>> handlers) {
+		this.handlers = new ArrayList<>(handlers);
+		for (Class<?> type : builtInTypes) {
+			table.put(type, resolve(type));
+		}
+	}
+
+	/**
+	 * Determines if any handlers were registered.
+	 * @return true if there are no handlers, false if not
+	 */
+	public boolean isEmpty() {
+		return handlers.isEmpty();
+	}
+
+	/**
+	 * Passes the given transactions to their handlers. Handlers that do not
+	 * have an executor are invoked on the calling thread. For handlers that do
+	 * have an executor, the transactions are passed to the executor in a
+	 * single task per executor.
+	 * @param transactions the transactions
+	 */
+	public void dispatch(List<RupeeTransaction> transactions) {
+		Map<Executor, List<Runnable>> tasks = new IdentityHashMap<>();
+
+		for (RupeeTransaction transaction : transactions) {
+			Handler<?>[] handlersForType = table.computeIfAbsent(transaction.getClass(), this::resolve);
+			for (Handler<?> handler : handlersForType) {
+				if (handler.executor == null) {
+					handler.handle(transaction);
+				} else {
+					tasks.computeIfAbsent(handler.executor, k -> new ArrayList<>()).add(() -> handler.handle(transaction));
+				}
+			}
+		}
+
+		tasks.forEach((executor, runnables) -> executor.execute(() -> runnables.forEach(Runnable::run)));
+	}
+
+	/**
+	 * Determines which handlers apply to the given transaction class.
+	 * @param type the transaction class
+	 * @return the handlers, in the order they were registered
+	 */
+	private Handler<?>[] resolve(Class<?> type) {
+		//@formatter:off
+		return handlers.stream()
+			.filter(handler -> handler.type.isAssignableFrom(type))
+		.toArray(Handler<?>[]::new);
+		//@formatter:on
+	}
+
+	/**
+	 * A handler for a specific type of transaction.
+	 * @param <T> the transaction type
+	 */
+	static class Handler<T extends RupeeTransaction> {
+		private final Class<T> type;
+		private final Consumer<? super T> consumer;
+		private final Executor executor;
+
+		/**
+		 * @param type the transaction type (subclasses of this type are also
+		 * passed to the handler)
+		 * @param consumer the handler
+		 * @param executor the executor to invoke the handler on or null to
+		 * invoke it on the dispatching thread
+		 */
+		public Handler(Class<T> type, Consumer<? super T> consumer, Executor executor) {
+			this.type = type;
+			this.consumer = consumer;
+			this.executor = executor;
+		}
+
+		private void handle(RupeeTransaction transaction) {
+			consumer.accept(type.cast(transaction));
+		}
+	}
+}
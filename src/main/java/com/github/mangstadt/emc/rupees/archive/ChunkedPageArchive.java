@@ -0,0 +1,475 @@
+package com.github.mangstadt.emc.rupees.archive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * <p>
+ * Stores transaction pages in a directory on the local file system, storing
+ * each transaction row only once.
+ * </p>
+ * <p>
+ * When a new transaction is logged, all other transactions get bumped down
+ * one, so two downloads of the same history taken a day apart contain mostly
+ * the same rows at different page offsets. Deduplicating by page would store
+ * nearly everything twice. Instead, each page is split into chunks at the
+ * start of each transaction row (and at the end of the transaction list).
+ * Each distinct chunk is stored once, and each version of a page is stored as
+ * the list of hashes of its chunks. A new snapshot of a history therefore only
+ * costs its new rows, plus the parts of each page around the rows (which
+ * contain things like the page number and rupee balance).
+ * </p>
+ * <p>
+ * The archive consists of two append-only files: "chunks", which holds the
+ * compressed chunks, and "layouts", which holds one line per page version
+ * containing the page number followed by its chunk hashes. Every version of
+ * every page can be rebuilt exactly.
+ * </p>
+ * <p>
+ * To keep {@link #put} cheap, the files are not forced to disk after every
+ * page. Instead, they are forced after every 100 page
+ * versions, when {@link #sync} is called, and when the archive is closed. If
+ * the process dies before then, the archive is repaired the next time it is
+ * opened: partially written records are removed from the end of both files,
+ * and layouts that refer to chunks that never made it to disk are dropped.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class ChunkedPageArchive implements PageArchive, Closeable {
+	/**
+	 * Chunks start at the beginning of each transaction row and at the end of
+	 * the transaction list.
+	 */
+	private static final Pattern chunkBoundary = Pattern.compile("<li\\b[^>]*\\bsectionItem\\b|</ol>");
+
+	/**
+	 * Each transaction's timestamp contains an attribute that holds the number
+	 * of seconds that have passed since the transaction occurred. This value
+	 * is different every time the page is downloaded, so it is stored in the
+	 * page layout instead of in the chunk.
+	 */
+	private static final Pattern volatileValue = Pattern.compile("(data-diff=\")(\\d*)(\")");
+
+	private static final int HASH_LENGTH = 32;
+
+	/**
+	 * The number of page versions that can be added before the files are
+	 * forced to disk.
+	 */
+	private static final int SYNC_INTERVAL = 100;
+
+	private final FileChannel chunks, layoutsOut;
+	private int unsynced = 0;
+
+	/**
+	 * The position of each chunk's record in the chunks file.
+	 */
+	private final Map<HashCode, Long> chunkPositions = new HashMap<>();
+
+	/**
+	 * The versions of each page, oldest first. Each version is a list of
+	 * chunk hashes. If a chunk contains volatile values, they are appended to
+	 * the hash (e.g. "3fa9...:154,2010").
+	 */
+	private final Map<Integer, List<List<String>>> layouts = new HashMap<>();
+
+	/**
+	 * Opens an archive, creating it if it doesn't exist.
+	 * @param directory the directory the archive is stored in
+	 * @throws IOException if there's a problem reading the archive
+	 */
+	public ChunkedPageArchive(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Path chunksFile = directory.resolve("chunks");
+		Path layoutsFile = directory.resolve("layouts");
+
+		long validLength = Files.exists(chunksFile) ? readChunkPositions(chunksFile) : 0;
+		chunks = FileChannel.open(chunksFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		//remove any partially written record from the end of the file
+		chunks.truncate(validLength);
+
+		validLength = Files.exists(layoutsFile) ? readLayouts(layoutsFile) : 0;
+		try {
+			layoutsOut = FileChannel.open(layoutsFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+			//remove any partially written line from the end of the file
+			layoutsOut.truncate(validLength);
+		} catch (IOException e) {
+			chunks.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void put(int pageNumber, String html) throws IOException {
+		List<String> layout = new ArrayList<>();
+		for (String chunk : split(html)) {
+			StringBuffer stripped = new StringBuffer(chunk.length());
+			List<String> values = new ArrayList<>();
+			Matcher m = volatileValue.matcher(chunk);
+			while (m.find()) {
+				values.add(m.group(2));
+				m.appendReplacement(stripped, "$1$3");
+			}
+			m.appendTail(stripped);
+
+			byte[] data = stripped.toString().getBytes(StandardCharsets.UTF_8);
+			HashCode hash = Hashing.sha256().hashBytes(data);
+			if (!chunkPositions.containsKey(hash)) {
+				writeChunk(hash, data);
+			}
+			layout.add(values.isEmpty() ? hash.toString() : hash + ":" + String.join(",", values));
+		}
+
+		List<List<String>> versions = layouts.computeIfAbsent(pageNumber, k -> new ArrayList<>());
+		if (!versions.isEmpty() && versions.get(versions.size() - 1).equals(layout)) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(pageNumber);
+		for (String token : layout) {
+			sb.append(' ').append(token);
+		}
+		sb.append('\n');
+
+		ByteBuffer line = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+		long offset = layoutsOut.size();
+		while (line.hasRemaining()) {
+			offset += layoutsOut.write(line, offset);
+		}
+		versions.add(layout);
+
+		if (++unsynced >= SYNC_INTERVAL) {
+			sync();
+		}
+	}
+
+	/**
+	 * Forces all pages that have been added to the archive to disk.
+	 * @throws IOException if there's a problem writing to the archive
+	 */
+	public synchronized void sync() throws IOException {
+		/*
+		 * Force the chunks first, so the layouts on disk never refer to chunks
+		 * that are not.
+		 */
+		chunks.force(false);
+		layoutsOut.force(false);
+		unsynced = 0;
+	}
+
+	@Override
+	public synchronized String get(int pageNumber) throws IOException {
+		List<List<String>> versions = layouts.get(pageNumber);
+		return (versions == null) ? null : rebuild(versions.get(versions.size() - 1));
+	}
+
+	/**
+	 * Gets an older version of a page.
+	 * @param pageNumber the page number
+	 * @param version the version, where 0 is the oldest
+	 * @return the page's HTML
+	 * @throws IndexOutOfBoundsException if the version doesn't exist
+	 * @throws IOException if there's a problem reading from the archive
+	 */
+	public synchronized String get(int pageNumber, int version) throws IOException {
+		List<List<String>> versions = layouts.getOrDefault(pageNumber, Collections.emptyList());
+		return rebuild(versions.get(version));
+	}
+
+	/**
+	 * Gets the number of versions the archive contains of a page.
+	 * @param pageNumber the page number
+	 * @return the number of versions
+	 */
+	public synchronized int getVersionCount(int pageNumber) {
+		List<List<String>> versions = layouts.get(pageNumber);
+		return (versions == null) ? 0 : versions.size();
+	}
+
+	@Override
+	public synchronized SortedSet<Integer> getPageNumbers() {
+		return new TreeSet<>(layouts.keySet());
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			try {
+				layoutsOut.close();
+			} finally {
+				chunks.close();
+			}
+		}
+	}
+
+	/**
+	 * Splits a page into chunks.
+	 * @param html the page
+	 * @return the chunks
+	 */
+	static List<String> split(String html) {
+		List<String> chunks = new ArrayList<>();
+		Matcher m = chunkBoundary.matcher(html);
+		int start = 0;
+		while (m.find()) {
+			if (m.start() > start) {
+				chunks.add(html.substring(start, m.start()));
+				start = m.start();
+			}
+		}
+		chunks.add(html.substring(start));
+		return chunks;
+	}
+
+	private String rebuild(List<String> layout) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (String token : layout) {
+			int colon = token.indexOf(':');
+			HashCode hash = HashCode.fromString((colon < 0) ? token : token.substring(0, colon));
+			Long position = chunkPositions.get(hash);
+			if (position == null) {
+				throw new IOException("Archive is missing chunk " + hash + ".");
+			}
+
+			String chunk = new String(readChunk(position), StandardCharsets.UTF_8);
+			if (colon < 0) {
+				sb.append(chunk);
+				continue;
+			}
+
+			String[] values = token.substring(colon + 1).split(",", -1);
+			Matcher m = volatileValue.matcher(chunk);
+			StringBuffer restored = new StringBuffer(chunk.length() + token.length());
+			int i = 0;
+			while (m.find()) {
+				String value = (i < values.length) ? values[i++] : "";
+				m.appendReplacement(restored, "$1" + value + "$3");
+			}
+			m.appendTail(restored);
+			sb.append(restored);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a chunk to the chunks file. Each record consists of the chunk's
+	 * hash, the length of the compressed data, the length of the uncompressed
+	 * data, and the compressed data.
+	 * @param hash the chunk's hash
+	 * @param data the chunk
+	 * @throws IOException if there's a problem writing to the file
+	 */
+	private void writeChunk(HashCode hash, byte[] data) throws IOException {
+		Deflater deflater = new Deflater();
+		byte[] compressed;
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			byte[] buffer = new byte[data.length + 64];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			compressed = Arrays.copyOf(buffer, length);
+		} finally {
+			deflater.end();
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(HASH_LENGTH + 8 + compressed.length);
+		record.put(hash.asBytes());
+		record.putInt(compressed.length);
+		record.putInt(data.length);
+		record.put(compressed);
+		record.flip();
+
+		long position = chunks.size();
+		long offset = position;
+		while (record.hasRemaining()) {
+			offset += chunks.write(record, offset);
+		}
+		chunkPositions.put(hash, position);
+	}
+
+	private byte[] readChunk(long position) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HASH_LENGTH + 8);
+		readFully(header, position);
+		header.position(HASH_LENGTH);
+		int compressedLength = header.getInt();
+		int length = header.getInt();
+		if (compressedLength < 0 || length < 0) {
+			throw new IOException("Chunk at position " + position + " is corrupt.");
+		}
+
+		ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+		readFully(compressed, position + HASH_LENGTH + 8);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array());
+			byte[] data = new byte[length];
+			int read = 0;
+			while (read < length && !inflater.finished()) {
+				read += inflater.inflate(data, read, length - read);
+			}
+			return data;
+		} catch (DataFormatException e) {
+			throw new IOException("Chunk at position " + position + " is corrupt.", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = chunks.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Reads the position of each chunk in the chunks file.
+	 * @param chunksFile the chunks file
+	 * @return the length of the file, excluding any partially written record
+	 * at the end
+	 * @throws IOException if there's a problem reading the file
+	 */
+	private long readChunkPositions(Path chunksFile) throws IOException {
+		long size = Files.size(chunksFile);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(chunksFile)))) {
+			long position = 0;
+			byte[] hash = new byte[HASH_LENGTH];
+			while (true) {
+				int compressedLength;
+				try {
+					in.readFully(hash);
+					compressedLength = in.readInt();
+					in.readInt();
+				} catch (EOFException e) {
+					//a partially written record is ignored
+					break;
+				}
+
+				/*
+				 * The length of a partially written or corrupt record can't be
+				 * trusted, so make sure the record fits in the file before
+				 * skipping over it.
+				 */
+				if (compressedLength < 0 || compressedLength > size - position - HASH_LENGTH - 8) {
+					break;
+				}
+				ByteStreams.skipFully(in, compressedLength);
+
+				chunkPositions.put(HashCode.fromBytes(hash.clone()), position);
+				position += HASH_LENGTH + 8 + compressedLength;
+			}
+			return position;
+		}
+	}
+
+	/**
+	 * Reads the page layouts from the layouts file.
+	 * @param layoutsFile the layouts file
+	 * @return the length of the file, excluding any partially written line at
+	 * the end
+	 * @throws IOException if there's a problem reading the file
+	 */
+	private long readLayouts(Path layoutsFile) throws IOException {
+		long validLength = 0, position = 0;
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(layoutsFile))) {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) >= 0) {
+				position++;
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+
+				parseLayout(new String(line.toByteArray(), StandardCharsets.UTF_8));
+				line.reset();
+				validLength = position;
+			}
+		}
+
+		//a line without a newline was only partially written
+		return validLength;
+	}
+
+	/**
+	 * Parses a line from the layouts file and adds it to the page's versions.
+	 * Corrupt lines, and lines that refer to chunks that are not in the chunks
+	 * file, are ignored.
+	 * @param line the line
+	 */
+	private void parseLayout(String line) {
+		String[] split = line.split(" ");
+		if (split.length < 2) {
+			return;
+		}
+
+		int pageNumber;
+		try {
+			pageNumber = Integer.parseInt(split[0]);
+		} catch (NumberFormatException e) {
+			return;
+		}
+
+		List<String> layout = new ArrayList<>(Arrays.asList(split).subList(1, split.length));
+		for (String token : layout) {
+			int colon = token.indexOf(':');
+			String hash = (colon < 0) ? token : token.substring(0, colon);
+			if (hash.length() != HASH_LENGTH * 2) {
+				return;
+			}
+
+			try {
+				if (!chunkPositions.containsKey(HashCode.fromString(hash))) {
+					return;
+				}
+			} catch (IllegalArgumentException e) {
+				return;
+			}
+		}
+
+		layouts.computeIfAbsent(pageNumber, k -> new ArrayList<>()).add(layout);
+	}
+}
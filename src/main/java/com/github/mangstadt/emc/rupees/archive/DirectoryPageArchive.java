@@ -0,0 +1,138 @@
+package com.github.mangstadt.emc.rupees.archive;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * <p>
+ * Stores transaction pages in a directory on the local file system.
+ * </p>
+ * <p>
+ * Each version of a page is stored in its own gzipped file, named after the
+ * page number and the SHA-256 hash of its contents (for example,
+ * "page-12-3fa9....html.gz"). This means that storing the same content twice
+ * does not take up any additional space, and that older versions of each page
+ * are kept.
+ * </p>
+ * <p>
+ * A file named "index" records which version of each page is the latest.
+ * Each line of the file contains a page number and a hash. Lines are only
+ * ever appended to the file, so the last line for a given page wins.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class DirectoryPageArchive implements PageArchive {
+	private static final String INDEX_FILE_NAME = "index";
+
+	private final Path directory;
+	private final Path indexFile;
+
+	/**
+	 * The hash of the latest version of each page.
+	 */
+	private final Map<Integer, String> latest = new HashMap<>();
+
+	/**
+	 * Opens an archive, creating it if it doesn't exist.
+	 * @param directory the directory the archive is stored in
+	 * @throws IOException if there's a problem reading the archive's index
+	 */
+	public DirectoryPageArchive(Path directory) throws IOException {
+		this.directory = directory;
+		indexFile = directory.resolve(INDEX_FILE_NAME);
+
+		Files.createDirectories(directory);
+		if (Files.exists(indexFile)) {
+			try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] split = line.split(" ");
+					if (split.length != 2) {
+						continue;
+					}
+
+					try {
+						latest.put(Integer.valueOf(split[0]), split[1]);
+					} catch (NumberFormatException e) {
+						//ignore corrupt line
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void put(int pageNumber, String html) throws IOException {
+		byte[] data = html.getBytes(StandardCharsets.UTF_8);
+		String hash = Hashing.sha256().hashBytes(data).toString();
+
+		Path file = file(pageNumber, hash);
+		if (!Files.exists(file)) {
+			/*
+			 * Write to a temporary file first so that a partially written file
+			 * is never mistaken for a complete one.
+			 */
+			Path temp = Files.createTempFile(directory, "page-" + pageNumber + "-", ".tmp");
+			try {
+				try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+					out.write(data);
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		synchronized (this) {
+			if (hash.equals(latest.get(pageNumber))) {
+				return;
+			}
+
+			try (Writer writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+				writer.write(pageNumber + " " + hash + "\n");
+			}
+			latest.put(pageNumber, hash);
+		}
+	}
+
+	@Override
+	public String get(int pageNumber) throws IOException {
+		String hash;
+		synchronized (this) {
+			hash = latest.get(pageNumber);
+		}
+		if (hash == null) {
+			return null;
+		}
+
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file(pageNumber, hash)))) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Override
+	public synchronized SortedSet<Integer> getPageNumbers() {
+		return new TreeSet<>(latest.keySet());
+	}
+
+	private Path file(int pageNumber, String hash) {
+		return directory.resolve("page-" + pageNumber + "-" + hash + ".html.gz");
+	}
+}
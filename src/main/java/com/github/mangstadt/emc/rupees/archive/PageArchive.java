@@ -0,0 +1,35 @@
+package com.github.mangstadt.emc.rupees.archive;
+
+import java.io.IOException;
+import java.util.SortedSet;
+
+/**
+ * Stores the raw HTML of rupee transaction pages so they can be scraped again
+ * later without downloading them. Implementations must be thread-safe.
+ * @author Michael Angstadt
+ */
+public interface PageArchive {
+	/**
+	 * Adds a page to the archive. If the archive already contains a different
+	 * version of the page, the given version becomes the latest version.
+	 * @param pageNumber the page number
+	 * @param html the page's HTML
+	 * @throws IOException if there's a problem writing to the archive
+	 */
+	void put(int pageNumber, String html) throws IOException;
+
+	/**
+	 * Gets the latest version of a page.
+	 * @param pageNumber the page number
+	 * @return the page's HTML or null if the page is not in the archive
+	 * @throws IOException if there's a problem reading from the archive
+	 */
+	String get(int pageNumber) throws IOException;
+
+	/**
+	 * Gets the numbers of all the pages in the archive.
+	 * @return the page numbers
+	 * @throws IOException if there's a problem reading from the archive
+	 */
+	SortedSet<Integer> getPageNumbers() throws IOException;
+}
@@ -0,0 +1,176 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.time.LocalDateTime;
+
+/**
+ * Writes text to a channel through a reusable character buffer. Numbers and
+ * timestamps are written digit by digit, so no intermediate strings are
+ * created.
+ * @author Michael Angstadt
+ */
+final class ChannelTextWriter implements Closeable {
+	private final WritableByteChannel channel;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private final ByteBuffer bytes;
+	private final char[] digits = new char[20];
+	private long charsWritten;
+
+	/**
+	 * @param channel the channel to write to
+	 * @param charset the character encoding
+	 * @param bufferSize the size of the character buffer
+	 */
+	ChannelTextWriter(WritableByteChannel channel, Charset charset, int bufferSize) {
+		this.channel = channel;
+		encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars = CharBuffer.allocate(bufferSize);
+		bytes = ByteBuffer.allocate((int) Math.ceil(bufferSize * encoder.maxBytesPerChar()));
+	}
+
+	/**
+	 * Gets the number of characters that have been written so far.
+	 * @return the number of characters
+	 */
+	long getCharsWritten() {
+		return charsWritten;
+	}
+
+	ChannelTextWriter append(char c) throws IOException {
+		if (!chars.hasRemaining()) {
+			drain(false);
+		}
+		chars.put(c);
+		charsWritten++;
+		return this;
+	}
+
+	ChannelTextWriter append(CharSequence s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			append(s.charAt(i));
+		}
+		return this;
+	}
+
+	ChannelTextWriter append(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			return append("-9223372036854775808");
+		}
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+
+		int pos = digits.length;
+		do {
+			digits[--pos] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		while (pos < digits.length) {
+			append(digits[pos++]);
+		}
+		return this;
+	}
+
+	ChannelTextWriter append(double value) throws IOException {
+		if (value == (long) value && Math.abs(value) < 1e15) {
+			return append((long) value).append(".0");
+		}
+		return append(Double.toString(value));
+	}
+
+	/**
+	 * Writes a timestamp in the same format as {@link LocalDateTime#toString}
+	 * (ISO-8601).
+	 * @param ts the timestamp
+	 * @return this
+	 * @throws IOException if there's a problem writing to the channel
+	 */
+	ChannelTextWriter append(LocalDateTime ts) throws IOException {
+		padded(ts.getYear(), 4).append('-');
+		padded(ts.getMonthValue(), 2).append('-');
+		padded(ts.getDayOfMonth(), 2).append('T');
+		padded(ts.getHour(), 2).append(':');
+		padded(ts.getMinute(), 2).append(':');
+		padded(ts.getSecond(), 2);
+
+		int nano = ts.getNano();
+		if (nano > 0) {
+			append('.');
+			if (nano % 1_000_000 == 0) {
+				padded(nano / 1_000_000, 3);
+			} else if (nano % 1_000 == 0) {
+				padded(nano / 1_000, 6);
+			} else {
+				padded(nano, 9);
+			}
+		}
+		return this;
+	}
+
+	private ChannelTextWriter padded(int value, int width) throws IOException {
+		for (int max = 10; width > 1; width--, max *= 10) {
+			if (value < max) {
+				append('0');
+			}
+		}
+		return append(value);
+	}
+
+	/**
+	 * Encodes the buffered characters and writes them to the channel.
+	 * @throws IOException if there's a problem writing to the channel
+	 */
+	void flush() throws IOException {
+		drain(false);
+		writeBytes();
+	}
+
+	/**
+	 * Flushes the buffer and closes the channel.
+	 * @throws IOException if there's a problem writing to the channel
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			drain(true);
+			while (encoder.flush(bytes) == CoderResult.OVERFLOW) {
+				writeBytes();
+			}
+			writeBytes();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void drain(boolean endOfInput) throws IOException {
+		chars.flip();
+		while (encoder.encode(chars, bytes, endOfInput) == CoderResult.OVERFLOW) {
+			writeBytes();
+		}
+
+		/*
+		 * If the buffer ends with the first half of a surrogate pair, it
+		 * remains in the buffer until the second half is written.
+		 */
+		chars.compact();
+	}
+
+	private void writeBytes() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+}
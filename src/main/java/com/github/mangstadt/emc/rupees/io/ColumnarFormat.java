@@ -0,0 +1,221 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * <p>
+ * Constants and helper methods for the binary transaction history format that
+ * is written by {@link RupeeTransactionFileWriter} and read by
+ * {@link RupeeTransactionFileReader}.
+ * </p>
+ * <p>
+ * <b>File layout</b>
+ * </p>
+ * <ol>
+ * <li>Header: the magic bytes "EMCR" followed by the version byte.</li>
+ * <li>One or more blocks (see below).</li>
+ * <li>Fixed-width section: the timestamp seconds (longs),
+ * timestamp nanoseconds (ints), amounts (ints), balances (ints), and types
+ * (bytes) of every row, one column after the other. This section allows
+ * individual rows to be looked up without decoding any blocks.</li>
+ * <li>Footer: the number of blocks (int), followed by one entry per block
+ * containing its offset (long), length (int), row count (int), and the
+ * minimum and maximum timestamps of its rows (longs, in seconds). This is
+ * followed by the offset of the fixed-width section (long), the total row
+ * count (int), and the order of the rows (byte). The footer ends with the
+ * footer's offset (long) and the magic bytes.</li>
+ * </ol>
+ * <p>
+ * <b>Block layout</b>
+ * </p>
+ * <p>
+ * A block contains the row count (varint), a dictionary of all the strings
+ * used in the block, and then each column, prefixed by its length in bytes
+ * (varint). The columns are, in order:
+ * </p>
+ * <ol>
+ * <li>type: one byte per row</li>
+ * <li>timestamp seconds: zigzag varint, delta-encoded</li>
+ * <li>timestamp nanoseconds: varint</li>
+ * <li>amount: zigzag varint</li>
+ * <li>balance: zigzag varint, delta-encoded</li>
+ * <li>description: dictionary reference</li>
+ * <li>one column for each transaction type that has fields of its own, which
+ * contains the fields of the rows of that type, in row order</li>
+ * </ol>
+ * <p>
+ * Dictionary references are varints, where 0 means null and n refers to the
+ * nth string in the dictionary.
+ * </p>
+ * @author Michael Angstadt
+ */
+final class ColumnarFormat {
+	static final byte[] MAGIC = { 'E', 'M', 'C', 'R' };
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = MAGIC.length + 1;
+	static final int FOOTER_ENTRY_SIZE = 8 + 4 + 4 + 8 + 8;
+	static final int TRAILER_SIZE = 8 + MAGIC.length;
+	static final int FIXED_SECTION_DESCRIPTOR_SIZE = 8 + 4 + 1;
+
+	/**
+	 * The number of bytes each row takes up in the fixed-width section.
+	 */
+	static final int FIXED_ROW_SIZE = 8 + 4 + 4 + 4 + 1;
+
+	/*
+	 * Row orders.
+	 */
+	static final byte ORDER_NONE = 0;
+	static final byte ORDER_ASCENDING = 1;
+	static final byte ORDER_DESCENDING = 2;
+
+	/*
+	 * Transaction types. Transactions of unknown types (such as those created
+	 * by custom scribes) are stored as plain RupeeTransaction objects.
+	 */
+	static final byte TYPE_OTHER = 0;
+	static final byte TYPE_SHOP = 1;
+	static final byte TYPE_PAYMENT = 2;
+	static final byte TYPE_DAILY_SIGNIN_BONUS = 3;
+	static final byte TYPE_HORSE_SUMMON_FEE = 4;
+	static final byte TYPE_MAIL_FEE = 5;
+	static final byte TYPE_EGGIFY_FEE = 6;
+	static final byte TYPE_LOCK = 7;
+	static final byte TYPE_VOTE_BONUS = 8;
+	static final byte TYPE_VAULT_FEE = 9;
+
+	/*
+	 * Column indexes.
+	 */
+	static final int COLUMN_TYPE = 0;
+	static final int COLUMN_SECONDS = 1;
+	static final int COLUMN_NANOS = 2;
+	static final int COLUMN_AMOUNT = 3;
+	static final int COLUMN_BALANCE = 4;
+	static final int COLUMN_DESCRIPTION = 5;
+	static final int COLUMN_SHOP = 6;
+	static final int COLUMN_PAYMENT = 7;
+	static final int COLUMN_HORSE_SUMMON_FEE = 8;
+	static final int COLUMN_MAIL_FEE = 9;
+	static final int COLUMN_EGGIFY_FEE = 10;
+	static final int COLUMN_LOCK = 11;
+	static final int COLUMN_VOTE_BONUS = 12;
+	static final int COLUMN_COUNT = 13;
+
+	private ColumnarFormat() {
+		//hide
+	}
+
+	/**
+	 * Determines the type code of a transaction.
+	 * @param transaction the transaction
+	 * @return the type code
+	 */
+	static byte typeOf(RupeeTransaction transaction) {
+		if (transaction instanceof ShopTransaction) return TYPE_SHOP;
+		if (transaction instanceof PaymentTransaction) return TYPE_PAYMENT;
+		if (transaction instanceof DailySigninBonus) return TYPE_DAILY_SIGNIN_BONUS;
+		if (transaction instanceof HorseSummonFee) return TYPE_HORSE_SUMMON_FEE;
+		if (transaction instanceof MailFee) return TYPE_MAIL_FEE;
+		if (transaction instanceof EggifyFee) return TYPE_EGGIFY_FEE;
+		if (transaction instanceof LockTransaction) return TYPE_LOCK;
+		if (transaction instanceof VoteBonus) return TYPE_VOTE_BONUS;
+		if (transaction instanceof VaultFee) return TYPE_VAULT_FEE;
+		return TYPE_OTHER;
+	}
+
+	/**
+	 * Determines the class of a type code.
+	 * @param type the type code
+	 * @return the class
+	 */
+	static Class<? extends RupeeTransaction> classOf(byte type) {
+		switch (type) {
+		case TYPE_SHOP: return ShopTransaction.class;
+		case TYPE_PAYMENT: return PaymentTransaction.class;
+		case TYPE_DAILY_SIGNIN_BONUS: return DailySigninBonus.class;
+		case TYPE_HORSE_SUMMON_FEE: return HorseSummonFee.class;
+		case TYPE_MAIL_FEE: return MailFee.class;
+		case TYPE_EGGIFY_FEE: return EggifyFee.class;
+		case TYPE_LOCK: return LockTransaction.class;
+		case TYPE_VOTE_BONUS: return VoteBonus.class;
+		case TYPE_VAULT_FEE: return VaultFee.class;
+		default: return RupeeTransaction.class;
+		}
+	}
+
+	/**
+	 * Converts a timestamp to seconds. Timestamps are stored as-is, without
+	 * being converted to any time zone.
+	 * @param ts the timestamp
+	 * @return the seconds
+	 */
+	static long toSeconds(LocalDateTime ts) {
+		return ts.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	/**
+	 * Converts seconds back into a timestamp.
+	 * @param seconds the seconds
+	 * @param nanos the nanoseconds
+	 * @return the timestamp
+	 */
+	static LocalDateTime toTs(long seconds, int nanos) {
+		return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+	}
+
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static void writeZigZag(ByteArrayOutputStream out, long value) {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	static void writeDouble(ByteArrayOutputStream out, double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		for (int i = 56; i >= 0; i -= 8) {
+			out.write((int) (bits >>> i));
+		}
+	}
+
+	static long readVarLong(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new BufferUnderflowException();
+	}
+
+	static int readVarInt(ByteBuffer in) {
+		return (int) readVarLong(in);
+	}
+
+	static long readZigZag(ByteBuffer in) {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
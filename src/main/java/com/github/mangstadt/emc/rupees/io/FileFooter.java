@@ -0,0 +1,112 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The footer of a file that was created by {@link RupeeTransactionFileWriter}.
+ * @author Michael Angstadt
+ */
+final class FileFooter {
+	final List<Block> blocks;
+	final long size;
+
+	/**
+	 * The offset of the fixed-width section.
+	 */
+	final long fixedOffset;
+
+	/**
+	 * The order of the rows (see the ORDER_* constants in
+	 * {@link ColumnarFormat}).
+	 */
+	final byte order;
+
+	private FileFooter(List<Block> blocks, long fixedOffset, byte order) {
+		this.blocks = blocks;
+		this.fixedOffset = fixedOffset;
+		this.order = order;
+
+		long size = 0;
+		for (Block block : blocks) {
+			size += block.count;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Reads and validates the header and footer of a file.
+	 * @param channel the file
+	 * @return the footer
+	 * @throws IOException if the file is not in the correct format
+	 */
+	static FileFooter read(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < ColumnarFormat.HEADER_SIZE + 4 + ColumnarFormat.TRAILER_SIZE) {
+			throw new IOException("File is too small to be a transaction file.");
+		}
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ColumnarFormat.HEADER_SIZE);
+		byte[] magic = new byte[ColumnarFormat.MAGIC.length];
+		header.get(magic);
+		if (!Arrays.equals(magic, ColumnarFormat.MAGIC)) {
+			throw new IOException("File is not a transaction file.");
+		}
+		byte version = header.get();
+		if (version != ColumnarFormat.VERSION) {
+			throw new IOException("Unsupported file version: " + version);
+		}
+
+		ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - ColumnarFormat.TRAILER_SIZE, ColumnarFormat.TRAILER_SIZE);
+		long footerOffset = trailer.getLong();
+		trailer.get(magic);
+		if (!Arrays.equals(magic, ColumnarFormat.MAGIC) || footerOffset < ColumnarFormat.HEADER_SIZE || footerOffset > fileSize - ColumnarFormat.TRAILER_SIZE - 4) {
+			throw new IOException("File is incomplete or corrupt.");
+		}
+
+		ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, fileSize - ColumnarFormat.TRAILER_SIZE - footerOffset);
+		int blockCount = footer.getInt();
+		long expectedRemaining = (long) blockCount * ColumnarFormat.FOOTER_ENTRY_SIZE + ColumnarFormat.FIXED_SECTION_DESCRIPTOR_SIZE;
+		if (blockCount < 0 || footer.remaining() != expectedRemaining) {
+			throw new IOException("File is incomplete or corrupt.");
+		}
+
+		List<Block> blocks = new ArrayList<>(blockCount);
+		for (int i = 0; i < blockCount; i++) {
+			Block block = new Block(footer.getLong(), footer.getInt(), footer.getInt(), footer.getLong(), footer.getLong());
+			blocks.add(block);
+		}
+
+		long fixedOffset = footer.getLong();
+		int rowCount = footer.getInt();
+		byte order = footer.get();
+
+		FileFooter result = new FileFooter(Collections.unmodifiableList(blocks), fixedOffset, order);
+		if (rowCount != result.size || fixedOffset < ColumnarFormat.HEADER_SIZE || fixedOffset + (long) rowCount * ColumnarFormat.FIXED_ROW_SIZE != footerOffset) {
+			throw new IOException("File is incomplete or corrupt.");
+		}
+		return result;
+	}
+
+	/**
+	 * An entry in the file's block index.
+	 */
+	static class Block {
+		final long offset;
+		final int length, count;
+		final long minSeconds, maxSeconds;
+
+		Block(long offset, int length, int count, long minSeconds, long maxSeconds) {
+			this.offset = offset;
+			this.length = length;
+			this.count = count;
+			this.minSeconds = minSeconds;
+			this.maxSeconds = maxSeconds;
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.io.FileFooter.Block;
+
+/**
+ * <p>
+ * Provides random access to a file that was created by
+ * {@link RupeeTransactionFileWriter}, without loading the file into memory.
+ * The file's fixed-width columns (timestamp, amount, balance, and type) are
+ * memory-mapped and searched in place. {@link RupeeTransaction} objects are
+ * only created for the rows that are actually retrieved from the lists this
+ * class returns.
+ * </p>
+ * <p>
+ * If the transactions in the file are sorted by timestamp (which is the case
+ * when they are written straight from a
+ * {@link com.github.mangstadt.emc.rupees.RupeeTransactionReader}),
+ * lookups by timestamp use a binary search. Otherwise, the timestamp column is
+ * scanned.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * try (MappedRupeeTransactionFile file = new MappedRupeeTransactionFile(path)) {
+ *   List&lt;RupeeTransaction&gt; transactions = file.between(from, to);
+ *   Integer balance = file.balanceAt(ts);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class MappedRupeeTransactionFile implements Closeable {
+	private final FileChannel channel;
+	private final List<Block> blocks;
+	private final byte order;
+	private final int size;
+	private final ByteBuffer seconds, nanos, amounts, balances, types;
+
+	/**
+	 * The index of the first row in each block.
+	 */
+	private final int[] blockStarts;
+
+	private int cachedBlock = -1;
+	private List<RupeeTransaction> cachedTransactions;
+
+	/**
+	 * @param file the file to read
+	 * @throws IOException if there's a problem opening the file or if the
+	 * file is not in the correct format
+	 */
+	public MappedRupeeTransactionFile(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			FileFooter footer = FileFooter.read(channel);
+			if (footer.size > Integer.MAX_VALUE / 8) {
+				throw new IOException("File is too large to be mapped: " + footer.size + " rows.");
+			}
+
+			blocks = footer.blocks;
+			order = footer.order;
+			size = (int) footer.size;
+
+			long offset = footer.fixedOffset;
+			seconds = map(offset, 8L * size);
+			offset += 8L * size;
+			nanos = map(offset, 4L * size);
+			offset += 4L * size;
+			amounts = map(offset, 4L * size);
+			offset += 4L * size;
+			balances = map(offset, 4L * size);
+			offset += 4L * size;
+			types = map(offset, size);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+
+		blockStarts = new int[blocks.size()];
+		int start = 0;
+		for (int i = 0; i < blockStarts.length; i++) {
+			blockStarts[i] = start;
+			start += blocks.get(i).count;
+		}
+	}
+
+	/**
+	 * Gets the number of transactions in the file.
+	 * @return the number of transactions
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the timestamp of a transaction without materializing it.
+	 * @param row the row index
+	 * @return the timestamp
+	 */
+	public LocalDateTime getTs(int row) {
+		checkRow(row);
+		return ColumnarFormat.toTs(seconds.getLong(row * 8), nanos.getInt(row * 4));
+	}
+
+	/**
+	 * Gets the amount of a transaction without materializing it.
+	 * @param row the row index
+	 * @return the amount
+	 */
+	public int getAmount(int row) {
+		checkRow(row);
+		return amounts.getInt(row * 4);
+	}
+
+	/**
+	 * Gets the balance of a transaction without materializing it.
+	 * @param row the row index
+	 * @return the balance
+	 */
+	public int getBalance(int row) {
+		checkRow(row);
+		return balances.getInt(row * 4);
+	}
+
+	/**
+	 * Gets the class of a transaction without materializing it.
+	 * @param row the row index
+	 * @return the class
+	 */
+	public Class<? extends RupeeTransaction> getType(int row) {
+		checkRow(row);
+		return ColumnarFormat.classOf(types.get(row));
+	}
+
+	/**
+	 * Materializes a transaction. The block that contains the transaction is
+	 * decoded and kept in memory until a transaction from a different block is
+	 * requested.
+	 * @param row the row index
+	 * @return the transaction
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public RupeeTransaction get(int row) throws IOException {
+		checkRow(row);
+
+		int index = Arrays.binarySearch(blockStarts, row);
+		if (index < 0) {
+			index = -index - 2;
+		} else {
+			/*
+			 * Skip past any empty blocks.
+			 */
+			while (index < blockStarts.length - 1 && blockStarts[index + 1] == row) {
+				index++;
+			}
+		}
+
+		if (index != cachedBlock) {
+			Block block = blocks.get(index);
+			cachedTransactions = RupeeTransactionFileReader.decode(map(block.offset, block.length));
+			cachedBlock = index;
+		}
+		return cachedTransactions.get(row - blockStarts[index]);
+	}
+
+	/**
+	 * Gets the transactions that fall within a date range. The returned list
+	 * is backed by the file, so the file must remain open while it is being
+	 * used. The list's {@code get} method throws an
+	 * {@link UncheckedIOException} if there's a problem reading the file.
+	 * @param from the start of the range (inclusive) or null for no lower
+	 * bound
+	 * @param to the end of the range (inclusive) or null for no upper bound
+	 * @return the transactions, in the order they were written
+	 */
+	public List<RupeeTransaction> between(LocalDateTime from, LocalDateTime to) {
+		IntPredicate afterFrom = (from == null) ? row -> true : row -> compare(row, from) >= 0;
+		IntPredicate beforeTo = (to == null) ? row -> true : row -> compare(row, to) <= 0;
+
+		switch (order) {
+		case ColumnarFormat.ORDER_DESCENDING: {
+			int start = firstRow(beforeTo);
+			int end = firstRow(afterFrom.negate());
+			return new RowList(start, Math.max(start, end));
+		}
+		case ColumnarFormat.ORDER_ASCENDING: {
+			int start = firstRow(afterFrom);
+			int end = firstRow(beforeTo.negate());
+			return new RowList(start, Math.max(start, end));
+		}
+		default:
+			int[] rows = new int[16];
+			int count = 0;
+			for (int row = 0; row < size; row++) {
+				if (afterFrom.test(row) && beforeTo.test(row)) {
+					if (count == rows.length) {
+						rows = Arrays.copyOf(rows, count * 2);
+					}
+					rows[count++] = row;
+				}
+			}
+			return new RowList(Arrays.copyOf(rows, count));
+		}
+	}
+
+	/**
+	 * Determines what the balance was at a given time (the balance of the most
+	 * recent transaction that occurred at or before that time).
+	 * @param ts the time
+	 * @return the balance or null if there are no transactions that old
+	 */
+	public Integer balanceAt(LocalDateTime ts) {
+		int row;
+		switch (order) {
+		case ColumnarFormat.ORDER_DESCENDING:
+			row = firstRow(r -> compare(r, ts) <= 0);
+			if (row == size) {
+				row = -1;
+			}
+			break;
+		case ColumnarFormat.ORDER_ASCENDING:
+			row = firstRow(r -> compare(r, ts) > 0) - 1;
+			break;
+		default:
+			row = -1;
+			for (int r = 0; r < size; r++) {
+				if (compare(r, ts) <= 0 && (row < 0 || compare(r, row) > 0)) {
+					row = r;
+				}
+			}
+			break;
+		}
+
+		return (row < 0) ? null : balances.getInt(row * 4);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Finds the first row for which a predicate is true, using a binary
+	 * search. The predicate must be false for all of the rows before that row
+	 * and true for all of the rows after it.
+	 * @param predicate the predicate
+	 * @return the row index or {@link #size} if the predicate is false for
+	 * every row
+	 */
+	private int firstRow(IntPredicate predicate) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (predicate.test(mid)) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private int compare(int row, LocalDateTime ts) {
+		int c = Long.compare(seconds.getLong(row * 8), ColumnarFormat.toSeconds(ts));
+		return (c == 0) ? Integer.compare(nanos.getInt(row * 4), ts.getNano()) : c;
+	}
+
+	private int compare(int row1, int row2) {
+		int c = Long.compare(seconds.getLong(row1 * 8), seconds.getLong(row2 * 8));
+		return (c == 0) ? Integer.compare(nanos.getInt(row1 * 4), nanos.getInt(row2 * 4)) : c;
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row " + row + ", size " + size);
+		}
+	}
+
+	private ByteBuffer map(long offset, long length) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+	}
+
+	/**
+	 * A list of rows that materializes each transaction when it is retrieved.
+	 */
+	private class RowList extends AbstractList<RupeeTransaction> implements RandomAccess {
+		private final int start, end;
+		private final int[] rows;
+
+		public RowList(int start, int end) {
+			this.start = start;
+			this.end = end;
+			rows = null;
+		}
+
+		public RowList(int[] rows) {
+			start = 0;
+			end = rows.length;
+			this.rows = rows;
+		}
+
+		@Override
+		public RupeeTransaction get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+			}
+
+			int row = (rows == null) ? start + index : rows[index];
+			try {
+				return MappedRupeeTransactionFile.this.get(row);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+}
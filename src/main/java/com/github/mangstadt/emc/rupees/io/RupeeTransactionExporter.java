@@ -0,0 +1,578 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * <p>
+ * Exports transactions to CSV or JSON Lines. Each transaction is written
+ * straight into a reusable character buffer, which is encoded and flushed to
+ * the output channel when it fills up. The fields that are specific to each
+ * transaction type (such as a shop transaction's item and quantity) are
+ * included.
+ * </p>
+ * <p>
+ * When exporting to a file, the output can optionally be split into multiple
+ * files, either by month or by size. The month and/or part number are added
+ * to the file name (for example, "transactions.csv" becomes
+ * "transactions-2015-06.csv" or "transactions-2.csv").
+ * </p>
+ *
+ * <pre class="brush:java">
+ * //@formatter:off
+ * try (RupeeTransactionReader reader = builder.build();
+ *   RupeeTransactionExporter exporter = new RupeeTransactionExporter.Builder(Paths.get("transactions.csv.gz"))
+ *   .format(Format.CSV)
+ *   .gzip(true)
+ *   .rotateByMonth()
+ *   .build()) {
+ *   exporter.write(reader);
+ * }
+ * //@formatter:on
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionExporter implements Closeable {
+	/**
+	 * The output formats.
+	 */
+	public enum Format {
+		/**
+		 * Comma-separated values, with a header row. Fields that do not apply
+		 * to a transaction are left empty.
+		 */
+		CSV,
+
+		/**
+		 * One JSON object per line. Fields that do not apply to a transaction
+		 * are omitted.
+		 */
+		JSON_LINES
+	}
+
+	/**
+	 * The CSV columns.
+	 */
+	static final String[] COLUMNS = { "type", "ts", "amount", "balance", "description", "shopCustomer", "shopOwner", "item", "quantity", "player", "reason", "subject", "world", "x", "y", "z", "mob", "site", "day" };
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Format format;
+	private final boolean gzip;
+	private final Charset charset;
+	private final Path file;
+	private final long maxSize;
+	private final boolean rotateByMonth;
+	private final List<Path> files = new ArrayList<>();
+
+	private ChannelTextWriter out;
+	private YearMonth month;
+	private int part;
+	private boolean firstField;
+
+	private RupeeTransactionExporter(Builder builder) throws IOException {
+		format = builder.format;
+		gzip = builder.gzip;
+		charset = builder.charset;
+		file = builder.file;
+		maxSize = builder.maxSize;
+		rotateByMonth = builder.rotateByMonth;
+
+		if (builder.channel != null) {
+			open(builder.channel);
+			if (builder.header) {
+				writeHeader();
+			}
+		} else if (!rotateByMonth) {
+			openFile(null, 1);
+		}
+	}
+
+	/**
+	 * Gets the files that have been written to so far.
+	 * @return the files (empty if the exporter is writing to a channel)
+	 */
+	public List<Path> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Writes a transaction.
+	 * @param transaction the transaction
+	 * @throws IOException if there's a problem writing the transaction
+	 */
+	public void write(RupeeTransaction transaction) throws IOException {
+		if (file != null) {
+			rotate(transaction);
+		}
+
+		firstField = true;
+		if (format == Format.JSON_LINES) {
+			out.append('{');
+		}
+
+		string("type", typeName(transaction));
+		field("ts");
+		if (format == Format.JSON_LINES) {
+			out.append('"').append(transaction.getTs()).append('"');
+		} else {
+			out.append(transaction.getTs());
+		}
+		number("amount", transaction.getAmount());
+		number("balance", transaction.getBalance());
+		string("description", transaction.getDescription());
+
+		if (transaction instanceof ShopTransaction) {
+			ShopTransaction shop = (ShopTransaction) transaction;
+			string("shopCustomer", shop.getShopCustomer());
+			string("shopOwner", shop.getShopOwner());
+			string("item", shop.getItem());
+			number("quantity", shop.getQuantity());
+		} else {
+			skip(4);
+		}
+
+		if (transaction instanceof PaymentTransaction) {
+			PaymentTransaction payment = (PaymentTransaction) transaction;
+			string("player", payment.getPlayer());
+			string("reason", payment.getReason());
+			skip(1);
+		} else if (transaction instanceof MailFee) {
+			MailFee mail = (MailFee) transaction;
+			string("player", mail.getPlayer());
+			skip(1);
+			string("subject", mail.getSubject());
+		} else {
+			skip(3);
+		}
+
+		if (transaction instanceof HorseSummonFee) {
+			HorseSummonFee horse = (HorseSummonFee) transaction;
+			string("world", horse.getWorld());
+			number("x", horse.getX());
+			number("y", horse.getY());
+			number("z", horse.getZ());
+		} else if (transaction instanceof LockTransaction) {
+			LockTransaction lock = (LockTransaction) transaction;
+			string("world", lock.getWorld());
+			number("x", lock.getX());
+			number("y", lock.getY());
+			number("z", lock.getZ());
+		} else {
+			skip(4);
+		}
+
+		if (transaction instanceof EggifyFee) {
+			string("mob", ((EggifyFee) transaction).getMob());
+		} else {
+			skip(1);
+		}
+
+		if (transaction instanceof VoteBonus) {
+			VoteBonus vote = (VoteBonus) transaction;
+			string("site", vote.getSite());
+			number("day", vote.getDay());
+		} else {
+			skip(2);
+		}
+
+		if (format == Format.JSON_LINES) {
+			out.append('}');
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * Writes all of the remaining transactions from a reader.
+	 * @param reader the reader
+	 * @return the number of transactions that were written
+	 * @throws IOException if there's a problem reading or writing the
+	 * transactions
+	 */
+	public int write(RupeeTransactionReader reader) throws IOException {
+		int count = 0;
+		List<RupeeTransaction> transactions;
+		while ((transactions = reader.nextPage()) != null) {
+			for (RupeeTransaction transaction : transactions) {
+				write(transaction);
+			}
+			count += transactions.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Flushes any buffered output.
+	 * @throws IOException if there's a problem writing to the output
+	 */
+	public void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	/**
+	 * Opens a new file if the transaction belongs in a different file than the
+	 * previous transaction.
+	 * @param transaction the transaction
+	 * @throws IOException if there's a problem opening the file
+	 */
+	private void rotate(RupeeTransaction transaction) throws IOException {
+		YearMonth month = rotateByMonth ? YearMonth.from(transaction.getTs()) : null;
+		boolean monthChanged = rotateByMonth && !month.equals(this.month);
+		boolean full = maxSize > 0 && out != null && out.getCharsWritten() >= maxSize;
+		if (out != null && !monthChanged && !full) {
+			return;
+		}
+
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+		openFile(month, monthChanged ? 1 : part + 1);
+	}
+
+	private void openFile(YearMonth month, int part) throws IOException {
+		this.month = month;
+		this.part = part;
+		Path path = fileName(month, (maxSize > 0) ? part : 0);
+
+		/*
+		 * If the transactions are not in chronological order, a month's file
+		 * may be visited more than once. GZIP files can be concatenated, so
+		 * appending to them is safe.
+		 */
+		boolean append = files.contains(path);
+		FileChannel channel;
+		if (append) {
+			channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} else {
+			files.add(path);
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		}
+		open(channel);
+
+		if (!append) {
+			writeHeader();
+		}
+	}
+
+	/**
+	 * Determines the name of an output file.
+	 * @param month the month or null if not rotating by month
+	 * @param part the part number or 0 if not rotating by size
+	 * @return the file name
+	 */
+	Path fileName(YearMonth month, int part) {
+		String name = file.getFileName().toString();
+		int dot = name.indexOf('.');
+		String base = (dot < 0) ? name : name.substring(0, dot);
+		String extension = (dot < 0) ? "" : name.substring(dot);
+
+		StringBuilder sb = new StringBuilder(base);
+		if (month != null) {
+			sb.append('-').append(month);
+		}
+		if (part > 1) {
+			sb.append('-').append(part);
+		}
+		sb.append(extension);
+
+		return file.resolveSibling(sb.toString());
+	}
+
+	private void open(WritableByteChannel channel) throws IOException {
+		if (gzip) {
+			OutputStream gzipOut = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+			channel = Channels.newChannel(gzipOut);
+		}
+		out = new ChannelTextWriter(channel, charset, BUFFER_SIZE);
+	}
+
+	private void writeHeader() throws IOException {
+		if (format != Format.CSV) {
+			return;
+		}
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append(COLUMNS[i]);
+		}
+		out.append('\n');
+	}
+
+	private void field(String name) throws IOException {
+		if (!firstField) {
+			out.append(',');
+		}
+		firstField = false;
+
+		if (format == Format.JSON_LINES) {
+			out.append('"').append(name).append("\":");
+		}
+	}
+
+	private void skip(int columns) throws IOException {
+		if (format == Format.JSON_LINES) {
+			return;
+		}
+
+		for (int i = 0; i < columns; i++) {
+			field(null);
+		}
+	}
+
+	private void number(String name, long value) throws IOException {
+		field(name);
+		out.append(value);
+	}
+
+	private void number(String name, double value) throws IOException {
+		if (format == Format.JSON_LINES && (Double.isNaN(value) || Double.isInfinite(value))) {
+			return;
+		}
+
+		field(name);
+		out.append(value);
+	}
+
+	private void string(String name, String value) throws IOException {
+		if (value == null) {
+			if (format == Format.CSV) {
+				field(name);
+			}
+			return;
+		}
+
+		field(name);
+		if (format == Format.JSON_LINES) {
+			jsonString(value);
+		} else {
+			csvString(value);
+		}
+	}
+
+	private void csvString(String value) throws IOException {
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = (c == ',' || c == '"' || c == '\n' || c == '\r');
+		}
+
+		if (!quote) {
+			out.append(value);
+			return;
+		}
+
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				out.append('"');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+
+	private void jsonString(String value) throws IOException {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * Gets the name that is used to identify a transaction's type in the
+	 * output.
+	 * @param transaction the transaction
+	 * @return the type name
+	 */
+	static String typeName(RupeeTransaction transaction) {
+		if (transaction instanceof ShopTransaction) return "shop";
+		if (transaction instanceof PaymentTransaction) return "payment";
+		if (transaction instanceof DailySigninBonus) return "daily_signin_bonus";
+		if (transaction instanceof HorseSummonFee) return "horse_summon_fee";
+		if (transaction instanceof MailFee) return "mail_fee";
+		if (transaction instanceof EggifyFee) return "eggify_fee";
+		if (transaction instanceof LockTransaction) return "lock";
+		if (transaction instanceof VoteBonus) return "vote_bonus";
+		if (transaction instanceof VaultFee) return "vault_fee";
+		return "other";
+	}
+
+	/**
+	 * Creates new instances of {@link RupeeTransactionExporter}.
+	 * @author Michael Angstadt
+	 */
+	public static class Builder {
+		private final Path file;
+		private final WritableByteChannel channel;
+		private Format format = Format.CSV;
+		private boolean gzip = false;
+		private Charset charset = StandardCharsets.UTF_8;
+		private long maxSize = 0;
+		private boolean rotateByMonth = false;
+		private boolean header = true;
+
+		/**
+		 * Creates an exporter that writes to a file (or multiple files, if
+		 * rotation is enabled).
+		 * @param file the file (overwritten if it exists)
+		 */
+		public Builder(Path file) {
+			this.file = file;
+			channel = null;
+		}
+
+		/**
+		 * Creates an exporter that writes to a channel. Rotation is not
+		 * supported when writing to a channel.
+		 * @param channel the channel (closed when the exporter is closed)
+		 */
+		public Builder(WritableByteChannel channel) {
+			this.channel = channel;
+			file = null;
+		}
+
+		/**
+		 * Sets the output format (defaults to CSV).
+		 * @param format the format
+		 * @return this
+		 */
+		public Builder format(Format format) {
+			this.format = format;
+			return this;
+		}
+
+		/**
+		 * Sets whether to GZIP the output (defaults to false). Note that the
+		 * ".gz" extension is not added to the file name automatically.
+		 * @param gzip true to GZIP the output, false not to
+		 * @return this
+		 */
+		public Builder gzip(boolean gzip) {
+			this.gzip = gzip;
+			return this;
+		}
+
+		/**
+		 * Sets the character encoding (defaults to UTF-8).
+		 * @param charset the character encoding
+		 * @return this
+		 */
+		public Builder charset(Charset charset) {
+			this.charset = charset;
+			return this;
+		}
+
+		/**
+		 * Starts a new file once the current file reaches a certain size.
+		 * @param maxChars the maximum number of characters to write to each
+		 * file (before encoding and compression). A file may be slightly
+		 * larger than this, since transactions are never split across files.
+		 * @return this
+		 */
+		public Builder rotateBySize(long maxChars) {
+			if (maxChars <= 0) {
+				throw new IllegalArgumentException("Max size must be positive: " + maxChars);
+			}
+			maxSize = maxChars;
+			return this;
+		}
+
+		/**
+		 * Writes the transactions of each month to a separate file.
+		 * @return this
+		 */
+		public Builder rotateByMonth() {
+			rotateByMonth = true;
+			return this;
+		}
+
+		/**
+		 * Sets whether to write the CSV header row when writing to a channel
+		 * (defaults to true). Used when appending to existing output.
+		 * @param header true to write the header row, false not to
+		 * @return this
+		 */
+		Builder header(boolean header) {
+			this.header = header;
+			return this;
+		}
+
+		/**
+		 * Creates the exporter.
+		 * @return the exporter
+		 * @throws IOException if there's a problem opening the output
+		 * @throws IllegalStateException if rotation is enabled when writing to
+		 * a channel
+		 */
+		public RupeeTransactionExporter build() throws IOException {
+			if (channel != null && (maxSize > 0 || rotateByMonth)) {
+				throw new IllegalStateException("Rotation is only supported when writing to a file.");
+			}
+			return new RupeeTransactionExporter(this);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static com.github.mangstadt.emc.rupees.io.ColumnarFormat.readVarInt;
+import static com.github.mangstadt.emc.rupees.io.ColumnarFormat.readZigZag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+import com.github.mangstadt.emc.rupees.io.FileFooter.Block;
+
+/**
+ * <p>
+ * Reads transactions from a file that was created by
+ * {@link RupeeTransactionFileWriter}. The file is memory-mapped one block at a
+ * time. When searching by date, blocks whose timestamps fall entirely outside
+ * of the date range are skipped without being read.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * try (RupeeTransactionFileReader reader = new RupeeTransactionFileReader(file)) {
+ *   List&lt;RupeeTransaction&gt; transactions = reader.read(from, to);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionFileReader implements Closeable {
+	private final FileChannel channel;
+	private final List<Block> blocks;
+	private final long size;
+
+	/**
+	 * @param file the file to read
+	 * @throws IOException if there's a problem opening the file or if the file
+	 * is not in the correct format
+	 */
+	public RupeeTransactionFileReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			FileFooter footer = FileFooter.read(channel);
+			blocks = footer.blocks;
+			size = footer.size;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the number of transactions in the file.
+	 * @return the number of transactions
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Reads all of the transactions in the file.
+	 * @return the transactions, in the order they were written
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public List<RupeeTransaction> readAll() throws IOException {
+		return read(null, null);
+	}
+
+	/**
+	 * Reads the transactions that fall within a date range.
+	 * @param from the start of the range (inclusive) or null for no lower
+	 * bound
+	 * @param to the end of the range (inclusive) or null for no upper bound
+	 * @return the transactions, in the order they were written
+	 * @throws IOException if there's a problem reading the file
+	 */
+	public List<RupeeTransaction> read(LocalDateTime from, LocalDateTime to) throws IOException {
+		long fromSeconds = (from == null) ? Long.MIN_VALUE : ColumnarFormat.toSeconds(from);
+		long toSeconds = (to == null) ? Long.MAX_VALUE : ColumnarFormat.toSeconds(to);
+
+		List<RupeeTransaction> transactions = new ArrayList<>();
+		for (Block block : blocks) {
+			if (block.maxSeconds < fromSeconds || block.minSeconds > toSeconds) {
+				continue;
+			}
+
+			for (RupeeTransaction transaction : decode(map(block))) {
+				LocalDateTime ts = transaction.getTs();
+				if ((from == null || !ts.isBefore(from)) && (to == null || !ts.isAfter(to))) {
+					transactions.add(transaction);
+				}
+			}
+		}
+		return transactions;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private MappedByteBuffer map(Block block) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, block.offset, block.length);
+	}
+
+	/**
+	 * Decodes a block of transactions.
+	 * @param in the block
+	 * @return the transactions
+	 * @throws IOException if the block is corrupt
+	 */
+	static List<RupeeTransaction> decode(ByteBuffer in) throws IOException {
+		try {
+			int count = readVarInt(in);
+
+			String[] dictionary = new String[readVarInt(in) + 1];
+			for (int i = 1; i < dictionary.length; i++) {
+				byte[] bytes = new byte[readVarInt(in)];
+				in.get(bytes);
+				dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			ByteBuffer[] columns = new ByteBuffer[ColumnarFormat.COLUMN_COUNT];
+			for (int i = 0; i < columns.length; i++) {
+				int length = readVarInt(in);
+				ByteBuffer column = in.slice();
+				column.limit(length);
+				columns[i] = column;
+				in.position(in.position() + length);
+			}
+
+			List<RupeeTransaction> transactions = new ArrayList<>(count);
+			long seconds = 0;
+			long balance = 0;
+			for (int i = 0; i < count; i++) {
+				byte type = columns[ColumnarFormat.COLUMN_TYPE].get();
+				seconds += readZigZag(columns[ColumnarFormat.COLUMN_SECONDS]);
+				int nanos = readVarInt(columns[ColumnarFormat.COLUMN_NANOS]);
+				int amount = (int) readZigZag(columns[ColumnarFormat.COLUMN_AMOUNT]);
+				balance += readZigZag(columns[ColumnarFormat.COLUMN_BALANCE]);
+				String description = dictionary[readVarInt(columns[ColumnarFormat.COLUMN_DESCRIPTION])];
+
+				RupeeTransaction.Builder<?> builder = builder(type, columns, dictionary);
+
+				//@formatter:off
+				transactions.add(builder
+					.ts(ColumnarFormat.toTs(seconds, nanos))
+					.description(description)
+					.amount(amount)
+					.balance((int) balance)
+				.build());
+				//@formatter:on
+			}
+			return transactions;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Block is corrupt.", e);
+		}
+	}
+
+	/**
+	 * Creates a builder for a transaction, populated with the fields that are
+	 * specific to the transaction's type.
+	 * @param type the transaction type
+	 * @param columns the columns
+	 * @param dictionary the string dictionary
+	 * @return the builder
+	 */
+	private static RupeeTransaction.Builder<?> builder(byte type, ByteBuffer[] columns, String[] dictionary) {
+		ByteBuffer column;
+		switch (type) {
+		case ColumnarFormat.TYPE_SHOP: {
+			column = columns[ColumnarFormat.COLUMN_SHOP];
+			String shopCustomer = dictionary[readVarInt(column)];
+			String shopOwner = dictionary[readVarInt(column)];
+			ShopTransaction.Builder builder = new ShopTransaction.Builder();
+
+			/*
+			 * Setting one of these properties nulls out the other.
+			 */
+			if (shopCustomer != null) {
+				builder.shopCustomer(shopCustomer);
+			}
+			if (shopOwner != null) {
+				builder.shopOwner(shopOwner);
+			}
+
+			return builder.item(dictionary[readVarInt(column)]).quantity((int) readZigZag(column));
+		}
+
+		case ColumnarFormat.TYPE_PAYMENT:
+			column = columns[ColumnarFormat.COLUMN_PAYMENT];
+			return new PaymentTransaction.Builder().player(dictionary[readVarInt(column)]).reason(dictionary[readVarInt(column)]);
+
+		case ColumnarFormat.TYPE_DAILY_SIGNIN_BONUS:
+			return new DailySigninBonus.Builder();
+
+		case ColumnarFormat.TYPE_HORSE_SUMMON_FEE:
+			column = columns[ColumnarFormat.COLUMN_HORSE_SUMMON_FEE];
+			return new HorseSummonFee.Builder().world(dictionary[readVarInt(column)]).coords(column.getDouble(), column.getDouble(), column.getDouble());
+
+		case ColumnarFormat.TYPE_MAIL_FEE:
+			column = columns[ColumnarFormat.COLUMN_MAIL_FEE];
+			return new MailFee.Builder().player(dictionary[readVarInt(column)]).subject(dictionary[readVarInt(column)]);
+
+		case ColumnarFormat.TYPE_EGGIFY_FEE:
+			return new EggifyFee.Builder().mob(dictionary[readVarInt(columns[ColumnarFormat.COLUMN_EGGIFY_FEE])]);
+
+		case ColumnarFormat.TYPE_LOCK:
+			column = columns[ColumnarFormat.COLUMN_LOCK];
+			return new LockTransaction.Builder().world(dictionary[readVarInt(column)]).coords((int) readZigZag(column), (int) readZigZag(column), (int) readZigZag(column));
+
+		case ColumnarFormat.TYPE_VOTE_BONUS:
+			column = columns[ColumnarFormat.COLUMN_VOTE_BONUS];
+			return new VoteBonus.Builder().site(dictionary[readVarInt(column)]).day((int) readZigZag(column));
+
+		case ColumnarFormat.TYPE_VAULT_FEE:
+			return new VaultFee.Builder();
+
+		default:
+			return new RupeeTransaction.Builder<>();
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static com.github.mangstadt.emc.rupees.io.ColumnarFormat.writeDouble;
+import static com.github.mangstadt.emc.rupees.io.ColumnarFormat.writeVarLong;
+import static com.github.mangstadt.emc.rupees.io.ColumnarFormat.writeZigZag;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * <p>
+ * Writes transactions to a compact, columnar binary file, which can be read
+ * with {@link RupeeTransactionFileReader}. Transactions are buffered in memory
+ * and written out in blocks. See {@link ColumnarFormat} for a description of
+ * the format.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * try (RupeeTransactionReader reader = builder.build(); RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(file)) {
+ *   writer.write(reader);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionFileWriter implements Closeable {
+	/**
+	 * The default number of transactions in each block.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	private final DataOutputStream out;
+	private final int blockSize;
+	private final List<RupeeTransaction> block;
+	private final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+	private final DataOutputStream footerOut = new DataOutputStream(footer);
+	private long position;
+	private int blockCount = 0;
+	private boolean closed = false;
+
+	/*
+	 * The columns of the fixed-width section are spooled to temporary files
+	 * (seconds, nanos, amount, balance, type), and then appended to the main
+	 * file when it is closed.
+	 */
+	private final Path[] fixedFiles = new Path[5];
+	private final DataOutputStream[] fixedOut = new DataOutputStream[5];
+	private int rowCount = 0;
+	private LocalDateTime prevTs;
+	private boolean ascending = true, descending = true;
+
+	/**
+	 * @param file the file to write to (overwritten if it exists)
+	 * @throws IOException if there's a problem opening the file
+	 */
+	public RupeeTransactionFileWriter(Path file) throws IOException {
+		this(file, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param file the file to write to (overwritten if it exists)
+	 * @param blockSize the number of transactions in each block. Smaller blocks
+	 * allow readers to skip more data when searching by date, at the cost of
+	 * a larger file.
+	 * @throws IOException if there's a problem opening the file
+	 */
+	public RupeeTransactionFileWriter(Path file, int blockSize) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+
+		this.blockSize = blockSize;
+		block = new ArrayList<>(blockSize);
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+
+		try {
+			for (int i = 0; i < fixedFiles.length; i++) {
+				fixedFiles[i] = Files.createTempFile("emc-rupees", ".tmp");
+				fixedOut[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fixedFiles[i])));
+			}
+		} catch (IOException e) {
+			deleteFixedFiles();
+			out.close();
+			throw e;
+		}
+
+		out.write(ColumnarFormat.MAGIC);
+		out.write(ColumnarFormat.VERSION);
+		position = ColumnarFormat.HEADER_SIZE;
+	}
+
+	/**
+	 * Writes a transaction.
+	 * @param transaction the transaction
+	 * @throws IOException if there's a problem writing to the file
+	 */
+	public void write(RupeeTransaction transaction) throws IOException {
+		LocalDateTime ts = transaction.getTs();
+		fixedOut[0].writeLong(ColumnarFormat.toSeconds(ts));
+		fixedOut[1].writeInt(ts.getNano());
+		fixedOut[2].writeInt(transaction.getAmount());
+		fixedOut[3].writeInt(transaction.getBalance());
+		fixedOut[4].writeByte(ColumnarFormat.typeOf(transaction));
+		rowCount++;
+
+		if (prevTs != null) {
+			int c = ts.compareTo(prevTs);
+			if (c < 0) {
+				ascending = false;
+			} else if (c > 0) {
+				descending = false;
+			}
+		}
+		prevTs = ts;
+
+		block.add(transaction);
+		if (block.size() >= blockSize) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes all of the remaining transactions from a reader.
+	 * @param reader the reader
+	 * @return the number of transactions that were written
+	 * @throws IOException if there's a problem reading the transactions or
+	 * writing to the file
+	 */
+	public int write(RupeeTransactionReader reader) throws IOException {
+		int count = 0;
+		List<RupeeTransaction> transactions;
+		while ((transactions = reader.nextPage()) != null) {
+			for (RupeeTransaction transaction : transactions) {
+				write(transaction);
+			}
+			count += transactions.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Writes any buffered transactions and the file footer, and closes the
+	 * file.
+	 * @throws IOException if there's a problem writing to the file
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		try {
+			if (!block.isEmpty()) {
+				writeBlock();
+			}
+
+			long fixedOffset = position;
+			for (int i = 0; i < fixedFiles.length; i++) {
+				fixedOut[i].close();
+				position += Files.copy(fixedFiles[i], out);
+			}
+
+			byte order;
+			if (descending) {
+				order = ColumnarFormat.ORDER_DESCENDING;
+			} else if (ascending) {
+				order = ColumnarFormat.ORDER_ASCENDING;
+			} else {
+				order = ColumnarFormat.ORDER_NONE;
+			}
+
+			long footerOffset = position;
+			out.writeInt(blockCount);
+			footer.writeTo(out);
+			out.writeLong(fixedOffset);
+			out.writeInt(rowCount);
+			out.writeByte(order);
+			out.writeLong(footerOffset);
+			out.write(ColumnarFormat.MAGIC);
+		} finally {
+			out.close();
+			deleteFixedFiles();
+		}
+	}
+
+	private void deleteFixedFiles() {
+		for (int i = 0; i < fixedFiles.length; i++) {
+			try {
+				if (fixedOut[i] != null) {
+					fixedOut[i].close();
+				}
+				if (fixedFiles[i] != null) {
+					Files.deleteIfExists(fixedFiles[i]);
+				}
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		byte[] data = encode(block);
+
+		long minSeconds = Long.MAX_VALUE, maxSeconds = Long.MIN_VALUE;
+		for (RupeeTransaction transaction : block) {
+			long seconds = ColumnarFormat.toSeconds(transaction.getTs());
+			minSeconds = Math.min(minSeconds, seconds);
+			maxSeconds = Math.max(maxSeconds, seconds);
+		}
+
+		footerOut.writeLong(position);
+		footerOut.writeInt(data.length);
+		footerOut.writeInt(block.size());
+		footerOut.writeLong(minSeconds);
+		footerOut.writeLong(maxSeconds);
+
+		out.write(data);
+		position += data.length;
+		blockCount++;
+		block.clear();
+	}
+
+	/**
+	 * Encodes a block of transactions.
+	 * @param transactions the transactions
+	 * @return the encoded block
+	 */
+	static byte[] encode(List<RupeeTransaction> transactions) {
+		Map<String, Integer> dictionary = new LinkedHashMap<>();
+		ByteArrayOutputStream[] columns = new ByteArrayOutputStream[ColumnarFormat.COLUMN_COUNT];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = new ByteArrayOutputStream();
+		}
+
+		long prevSeconds = 0;
+		long prevBalance = 0;
+		for (RupeeTransaction transaction : transactions) {
+			byte type = ColumnarFormat.typeOf(transaction);
+			columns[ColumnarFormat.COLUMN_TYPE].write(type);
+
+			long seconds = ColumnarFormat.toSeconds(transaction.getTs());
+			writeZigZag(columns[ColumnarFormat.COLUMN_SECONDS], seconds - prevSeconds);
+			prevSeconds = seconds;
+			writeVarLong(columns[ColumnarFormat.COLUMN_NANOS], transaction.getTs().getNano());
+
+			writeZigZag(columns[ColumnarFormat.COLUMN_AMOUNT], transaction.getAmount());
+			writeZigZag(columns[ColumnarFormat.COLUMN_BALANCE], transaction.getBalance() - prevBalance);
+			prevBalance = transaction.getBalance();
+
+			ref(columns[ColumnarFormat.COLUMN_DESCRIPTION], dictionary, transaction.getDescription());
+
+			ByteArrayOutputStream column;
+			switch (type) {
+			case ColumnarFormat.TYPE_SHOP:
+				ShopTransaction shop = (ShopTransaction) transaction;
+				column = columns[ColumnarFormat.COLUMN_SHOP];
+				ref(column, dictionary, shop.getShopCustomer());
+				ref(column, dictionary, shop.getShopOwner());
+				ref(column, dictionary, shop.getItem());
+				writeZigZag(column, shop.getQuantity());
+				break;
+
+			case ColumnarFormat.TYPE_PAYMENT:
+				PaymentTransaction payment = (PaymentTransaction) transaction;
+				column = columns[ColumnarFormat.COLUMN_PAYMENT];
+				ref(column, dictionary, payment.getPlayer());
+				ref(column, dictionary, payment.getReason());
+				break;
+
+			case ColumnarFormat.TYPE_HORSE_SUMMON_FEE:
+				HorseSummonFee horse = (HorseSummonFee) transaction;
+				column = columns[ColumnarFormat.COLUMN_HORSE_SUMMON_FEE];
+				ref(column, dictionary, horse.getWorld());
+				writeDouble(column, horse.getX());
+				writeDouble(column, horse.getY());
+				writeDouble(column, horse.getZ());
+				break;
+
+			case ColumnarFormat.TYPE_MAIL_FEE:
+				MailFee mail = (MailFee) transaction;
+				column = columns[ColumnarFormat.COLUMN_MAIL_FEE];
+				ref(column, dictionary, mail.getPlayer());
+				ref(column, dictionary, mail.getSubject());
+				break;
+
+			case ColumnarFormat.TYPE_EGGIFY_FEE:
+				ref(columns[ColumnarFormat.COLUMN_EGGIFY_FEE], dictionary, ((EggifyFee) transaction).getMob());
+				break;
+
+			case ColumnarFormat.TYPE_LOCK:
+				LockTransaction lock = (LockTransaction) transaction;
+				column = columns[ColumnarFormat.COLUMN_LOCK];
+				ref(column, dictionary, lock.getWorld());
+				writeZigZag(column, lock.getX());
+				writeZigZag(column, lock.getY());
+				writeZigZag(column, lock.getZ());
+				break;
+
+			case ColumnarFormat.TYPE_VOTE_BONUS:
+				VoteBonus vote = (VoteBonus) transaction;
+				column = columns[ColumnarFormat.COLUMN_VOTE_BONUS];
+				ref(column, dictionary, vote.getSite());
+				writeZigZag(column, vote.getDay());
+				break;
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeVarLong(out, transactions.size());
+
+		writeVarLong(out, dictionary.size());
+		for (String value : dictionary.keySet()) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(out, bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+
+		for (ByteArrayOutputStream column : columns) {
+			writeVarLong(out, column.size());
+			byte[] bytes = column.toByteArray();
+			out.write(bytes, 0, bytes.length);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes a dictionary reference.
+	 * @param column the column to write to
+	 * @param dictionary the dictionary
+	 * @param value the string (can be null)
+	 */
+	private static void ref(ByteArrayOutputStream column, Map<String, Integer> dictionary, String value) {
+		int ref = (value == null) ? 0 : dictionary.computeIfAbsent(value, k -> dictionary.size() + 1);
+		writeVarLong(column, ref);
+	}
+}
@@ -0,0 +1,542 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.io.RupeeTransactionExporter.Format;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * <p>
+ * Exports transactions into multiple files, one per time bucket (by default,
+ * one per month). Each file (or "shard") is written by its own thread, which
+ * is fed from the reader's page stream through a bounded queue (see
+ * {@link Builder#queueSize}). Since transactions are read newest first, a
+ * shard is closed (and its thread stopped once its queue is drained) as soon
+ * as the reader moves past its bucket. This means that only the shards that
+ * the current page spans receive new transactions, so the export does not
+ * scale with the number of shards. What the threads do provide is overlap:
+ * the reader can keep downloading while a shard's backlog is formatted,
+ * compressed, and written to disk. If a transaction for a closed shard turns
+ * up later, the shard is appended to.
+ * </p>
+ * <p>
+ * A manifest file is written to the output directory, which lists each shard
+ * along with its transaction count and time range. Shards are listed in the
+ * order in which their first transaction was read, and each shard contains
+ * its transactions in the order in which they were read. Note that a shard
+ * that was appended to contains transactions that were read after those of
+ * the shards that follow it in the manifest, so concatenating the shards does
+ * not necessarily reproduce the original transaction order (sort by
+ * timestamp if the order matters). Also, each CSV shard starts with its own
+ * header row. A subset of the shards can be re-exported (see
+ * {@link Builder#only}) without touching the others; the manifest is updated
+ * accordingly.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * //@formatter:off
+ * ShardedRupeeTransactionExporter exporter = new ShardedRupeeTransactionExporter.Builder(dir)
+ *   .format(Format.JSON_LINES)
+ *   .gzip(true)
+ * .build();
+ * //@formatter:on
+ *
+ * try (RupeeTransactionReader reader = builder.build()) {
+ *   List&lt;Shard&gt; shards = exporter.export(reader);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class ShardedRupeeTransactionExporter {
+	/**
+	 * The name of the manifest file.
+	 */
+	public static final String MANIFEST_FILE_NAME = "manifest.json";
+
+	/**
+	 * Buckets transactions by year (for example, "2015").
+	 */
+	public static final Function<LocalDateTime, String> BY_YEAR = ts -> Integer.toString(ts.getYear());
+
+	/**
+	 * Buckets transactions by month (for example, "2015-06").
+	 */
+	public static final Function<LocalDateTime, String> BY_MONTH = ts -> YearMonth.from(ts).toString();
+
+	/**
+	 * Buckets transactions by day (for example, "2015-06-27").
+	 */
+	public static final Function<LocalDateTime, String> BY_DAY = ts -> ts.toLocalDate().toString();
+
+	private static final List<RupeeTransaction> END = Collections.emptyList();
+
+	private final Path dir;
+	private final String prefix;
+	private final Format format;
+	private final boolean gzip;
+	private final Function<LocalDateTime, String> bucket;
+	private final Predicate<String> filter;
+	private final int queueSize;
+
+	private ShardedRupeeTransactionExporter(Builder builder) {
+		dir = builder.dir;
+		prefix = builder.prefix;
+		format = builder.format;
+		gzip = builder.gzip;
+		bucket = builder.bucket;
+		filter = builder.filter;
+		queueSize = builder.queueSize;
+	}
+
+	/**
+	 * Exports all of the remaining transactions from a reader.
+	 * @param reader the reader
+	 * @return the shards that were written by this export
+	 * @throws IOException if there's a problem reading the transactions or
+	 * writing the files
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * for the shard writers
+	 */
+	public List<Shard> export(RupeeTransactionReader reader) throws IOException, InterruptedException {
+		Files.createDirectories(dir);
+
+		/*
+		 * "writers" contains the latest writer of every shard, in the order in
+		 * which the shards were first seen. "open" contains the writers that
+		 * have not been sent the END signal yet.
+		 */
+		Map<String, ShardWriter> writers = new LinkedHashMap<>();
+		Map<String, ShardWriter> open = new LinkedHashMap<>();
+		try {
+			List<RupeeTransaction> transactions;
+			while ((transactions = reader.nextPage()) != null) {
+				if (transactions.isEmpty()) {
+					continue;
+				}
+
+				Map<String, List<RupeeTransaction>> partitions = new LinkedHashMap<>();
+				for (RupeeTransaction transaction : transactions) {
+					String key = bucket.apply(transaction.getTs());
+					if (filter.test(key)) {
+						partitions.computeIfAbsent(key, k -> new ArrayList<>()).add(transaction);
+					}
+				}
+
+				/*
+				 * Transactions are read newest first, so if a page doesn't
+				 * contain any transactions for an open shard, the reader has
+				 * moved past that shard.
+				 */
+				for (Iterator<ShardWriter> it = open.values().iterator(); it.hasNext();) {
+					ShardWriter writer = it.next();
+					if (!partitions.containsKey(writer.key)) {
+						writer.queue.put(END);
+						it.remove();
+					}
+				}
+
+				for (Map.Entry<String, List<RupeeTransaction>> entry : partitions.entrySet()) {
+					String key = entry.getKey();
+					ShardWriter writer = open.get(key);
+					if (writer == null) {
+						ShardWriter previous = writers.get(key);
+						if (previous != null) {
+							//the shard was closed too early, so append to it
+							previous.join();
+						}
+
+						writer = new ShardWriter(key, previous);
+						writers.put(key, writer);
+						open.put(key, writer);
+						writer.start();
+					}
+					writer.queue.put(entry.getValue());
+				}
+			}
+		} finally {
+			for (ShardWriter writer : open.values()) {
+				writer.queue.put(END);
+			}
+			for (ShardWriter writer : writers.values()) {
+				writer.join();
+			}
+		}
+
+		IOException error = null;
+		List<Shard> shards = new ArrayList<>(writers.size());
+		for (ShardWriter writer : writers.values()) {
+			if (writer.error != null) {
+				if (error == null) {
+					error = writer.error;
+				} else {
+					error.addSuppressed(writer.error);
+				}
+				continue;
+			}
+
+			shards.add(new Shard(writer.key, writer.file.getFileName().toString(), writer.count, writer.first, writer.last));
+		}
+		if (error != null) {
+			throw error;
+		}
+
+		writeManifest(shards);
+		return shards;
+	}
+
+	/**
+	 * Reads the manifest of an export directory.
+	 * @param dir the directory
+	 * @return the shards listed in the manifest or an empty list if the
+	 * directory does not have a manifest
+	 * @throws IOException if there's a problem reading the manifest
+	 */
+	public static List<Shard> readManifest(Path dir) throws IOException {
+		Path file = dir.resolve(MANIFEST_FILE_NAME);
+		if (!Files.exists(file)) {
+			return new ArrayList<>();
+		}
+
+		JsonObject root;
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			root = new JsonParser().parse(reader).getAsJsonObject();
+		} catch (RuntimeException e) {
+			throw new IOException("Manifest is corrupt: " + file, e);
+		}
+
+		List<Shard> shards = new ArrayList<>();
+		for (JsonElement element : root.getAsJsonArray("shards")) {
+			JsonObject shard = element.getAsJsonObject();
+			//@formatter:off
+			shards.add(new Shard(
+				shard.get("key").getAsString(),
+				shard.get("file").getAsString(),
+				shard.get("count").getAsInt(),
+				LocalDateTime.parse(shard.get("first").getAsString()),
+				LocalDateTime.parse(shard.get("last").getAsString())
+			));
+			//@formatter:on
+		}
+		return shards;
+	}
+
+	/**
+	 * Merges the shards from this export into the existing manifest and saves
+	 * it.
+	 * @param shards the shards from this export
+	 * @throws IOException if there's a problem reading or writing the manifest
+	 */
+	private void writeManifest(List<Shard> shards) throws IOException {
+		Map<String, Shard> merged = new LinkedHashMap<>();
+		for (Shard shard : readManifest(dir)) {
+			merged.put(shard.getKey(), shard);
+		}
+		for (Shard shard : shards) {
+			merged.put(shard.getKey(), shard);
+		}
+
+		JsonArray array = new JsonArray();
+		for (Shard shard : merged.values()) {
+			JsonObject object = new JsonObject();
+			object.addProperty("key", shard.getKey());
+			object.addProperty("file", shard.getFile());
+			object.addProperty("count", shard.getCount());
+			object.addProperty("first", shard.getFirst().toString());
+			object.addProperty("last", shard.getLast().toString());
+			array.add(object);
+		}
+
+		JsonObject root = new JsonObject();
+		root.addProperty("format", format.name());
+		root.addProperty("gzip", gzip);
+		root.add("shards", array);
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		Path temp = Files.createTempFile(dir, MANIFEST_FILE_NAME, ".tmp");
+		try {
+			try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				gson.toJson(root, writer);
+			}
+			Files.move(temp, dir.resolve(MANIFEST_FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Writes the transactions of a single shard.
+	 */
+	private class ShardWriter extends Thread {
+		private final String key;
+		private final Path file;
+		private final boolean append;
+		private final BlockingQueue<List<RupeeTransaction>> queue = new ArrayBlockingQueue<>(queueSize);
+		private int count;
+		private LocalDateTime first, last;
+		private IOException error;
+
+		/**
+		 * @param key the shard key
+		 * @param previous the writer that previously wrote to the shard
+		 * during this export (its output is appended to), or null if this
+		 * is the first
+		 */
+		public ShardWriter(String key, ShardWriter previous) {
+			super("shard-writer-" + key);
+			this.key = key;
+
+			String extension = (format == Format.CSV) ? ".csv" : ".jsonl";
+			if (gzip) {
+				extension += ".gz";
+			}
+			file = dir.resolve(prefix + "-" + key + extension);
+
+			append = (previous != null);
+			if (previous != null) {
+				count = previous.count;
+				first = previous.first;
+				last = previous.last;
+				error = previous.error;
+			}
+		}
+
+		@Override
+		public void run() {
+			if (error == null) {
+				write();
+			}
+
+			/*
+			 * If an error occurred, keep draining the queue so the thread that
+			 * is feeding it does not block.
+			 */
+			if (error != null) {
+				try {
+					while (queue.take() != END) {
+						//discard
+					}
+				} catch (InterruptedException e) {
+					//ignore
+				}
+			}
+		}
+
+		private void write() {
+			try (RupeeTransactionExporter exporter = openExporter()) {
+				List<RupeeTransaction> transactions;
+				while ((transactions = queue.take()) != END) {
+					for (RupeeTransaction transaction : transactions) {
+						exporter.write(transaction);
+
+						if (first == null) {
+							first = transaction.getTs();
+						}
+						last = transaction.getTs();
+					}
+					count += transactions.size();
+				}
+			} catch (IOException e) {
+				error = e;
+			} catch (InterruptedException e) {
+				error = new IOException("Shard writer was interrupted.", e);
+			}
+		}
+
+		private RupeeTransactionExporter openExporter() throws IOException {
+			if (!append) {
+				return new RupeeTransactionExporter.Builder(file).format(format).gzip(gzip).build();
+			}
+
+			/*
+			 * GZIP files can be concatenated, so appending to them is safe.
+			 */
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			return new RupeeTransactionExporter.Builder(channel).format(format).gzip(gzip).header(false).build();
+		}
+	}
+
+	/**
+	 * An entry in the manifest.
+	 * @author Michael Angstadt
+	 */
+	public static class Shard {
+		private final String key;
+		private final String file;
+		private final int count;
+		private final LocalDateTime first, last;
+
+		public Shard(String key, String file, int count, LocalDateTime first, LocalDateTime last) {
+			this.key = key;
+			this.file = file;
+			this.count = count;
+			this.first = first;
+			this.last = last;
+		}
+
+		/**
+		 * Gets the bucket key (for example, "2015-06").
+		 * @return the key
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Gets the name of the shard's file, relative to the export directory.
+		 * @return the file name
+		 */
+		public String getFile() {
+			return file;
+		}
+
+		/**
+		 * Gets the number of transactions in the shard.
+		 * @return the transaction count
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Gets the timestamp of the first transaction in the shard.
+		 * @return the timestamp
+		 */
+		public LocalDateTime getFirst() {
+			return first;
+		}
+
+		/**
+		 * Gets the timestamp of the last transaction in the shard.
+		 * @return the timestamp
+		 */
+		public LocalDateTime getLast() {
+			return last;
+		}
+	}
+
+	/**
+	 * Creates new instances of {@link ShardedRupeeTransactionExporter}.
+	 * @author Michael Angstadt
+	 */
+	public static class Builder {
+		private final Path dir;
+		private String prefix = "transactions";
+		private Format format = Format.CSV;
+		private boolean gzip = false;
+		private Function<LocalDateTime, String> bucket = BY_MONTH;
+		private Predicate<String> filter = key -> true;
+		private int queueSize = 16;
+
+		/**
+		 * @param dir the directory to write the shards and manifest to
+		 */
+		public Builder(Path dir) {
+			this.dir = dir;
+		}
+
+		/**
+		 * Sets the prefix of each shard's file name (defaults to
+		 * "transactions").
+		 * @param prefix the prefix
+		 * @return this
+		 */
+		public Builder prefix(String prefix) {
+			this.prefix = prefix;
+			return this;
+		}
+
+		/**
+		 * Sets the output format (defaults to CSV).
+		 * @param format the format
+		 * @return this
+		 */
+		public Builder format(Format format) {
+			this.format = format;
+			return this;
+		}
+
+		/**
+		 * Sets whether to GZIP each shard (defaults to false).
+		 * @param gzip true to GZIP the shards, false not to
+		 * @return this
+		 */
+		public Builder gzip(boolean gzip) {
+			this.gzip = gzip;
+			return this;
+		}
+
+		/**
+		 * Sets how transactions are assigned to shards (defaults to
+		 * {@link ShardedRupeeTransactionExporter#BY_MONTH}).
+		 * @param bucket returns the shard key of a transaction timestamp. The
+		 * key is used in the shard's file name.
+		 * @return this
+		 */
+		public Builder bucket(Function<LocalDateTime, String> bucket) {
+			this.bucket = bucket;
+			return this;
+		}
+
+		/**
+		 * Only exports the transactions that belong to certain shards. Other
+		 * shards that were previously exported to the same directory are left
+		 * untouched.
+		 * @param filter determines whether to export a shard, given its key
+		 * @return this
+		 */
+		public Builder only(Predicate<String> filter) {
+			this.filter = filter;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of pages that can be waiting to be written
+		 * to each shard (defaults to 16). When a shard's queue is full, reading
+		 * pauses until the shard's writer catches up.
+		 * @param queueSize the queue size
+		 * @return this
+		 */
+		public Builder queueSize(int queueSize) {
+			if (queueSize <= 0) {
+				throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+			}
+			this.queueSize = queueSize;
+			return this;
+		}
+
+		/**
+		 * Creates the exporter.
+		 * @return the exporter
+		 */
+		public ShardedRupeeTransactionExporter build() {
+			return new ShardedRupeeTransactionExporter(this);
+		}
+	}
+}
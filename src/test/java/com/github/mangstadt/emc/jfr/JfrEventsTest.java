@@ -0,0 +1,75 @@
+package com.github.mangstadt.emc.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnectionImpl;
+import com.github.mangstadt.emc.net.LocalEmcWebsite;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * @author Michael Angstadt
+ */
+public class JfrEventsTest {
+	@Test
+	public void page_fetch_and_scrape() throws Exception {
+		assumeTrue(JfrEvents.isSupported());
+
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(40, 1);
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+		Path file = Files.createTempFile("emc", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("com.github.mangstadt.emc.PageFetch");
+			recording.enable("com.github.mangstadt.emc.Scrape");
+			recording.start();
+
+			try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).build(); EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+				scraper.scrape(connection.getRupeeTransactionPage(2));
+			}
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+			List<RecordedEvent> fetches = events.stream().filter(e -> e.getEventType().getName().equals("com.github.mangstadt.emc.PageFetch")).collect(Collectors.toList());
+			RecordedEvent fetch = fetches.get(fetches.size() - 1);
+			assertEquals(2, fetch.getInt("page"));
+			assertEquals(200, fetch.getInt("status"));
+			assertTrue(fetch.getLong("bytes") > 0);
+			assertTrue(fetch.getString("url").endsWith("?page=2"));
+
+			List<RecordedEvent> scrapes = events.stream().filter(e -> e.getEventType().getName().equals("com.github.mangstadt.emc.Scrape")).collect(Collectors.toList());
+			assertEquals(1, scrapes.size());
+			RecordedEvent scrape = scrapes.get(0);
+			assertEquals(2, scrape.getInt("page"));
+			assertEquals(10, scrape.getInt("transactions"));
+			assertEquals(0, scrape.getInt("unmatched"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void not_recording() {
+		assertEquals(null, JfrEvents.beginPageFetch());
+		assertEquals(null, JfrEvents.beginReconnect());
+
+		//null handles are ignored
+		JfrEvents.endPageFetch(null, "url", 1, 200, 0, null);
+		JfrEvents.endReorderWait(null, 1);
+	}
+}
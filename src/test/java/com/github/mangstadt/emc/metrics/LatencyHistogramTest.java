@@ -0,0 +1,89 @@
+package com.github.mangstadt.emc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class LatencyHistogramTest {
+	@Test
+	public void bucket_bounds() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(value + " not in bucket " + bucket, LatencyHistogram.lowerBound(bucket) <= value && value <= LatencyHistogram.upperBound(bucket));
+		}
+
+		for (long value = 0; value < 1000; value++) {
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(LatencyHistogram.lowerBound(bucket) <= value && value <= LatencyHistogram.upperBound(bucket));
+		}
+
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void empty() {
+		HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getMin());
+		assertEquals(0, snapshot.getMax());
+		assertEquals(0, snapshot.getMean(), 0);
+		assertEquals(0, snapshot.getPercentile(99));
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 10000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(10000, snapshot.getCount());
+		assertEquals(1000, snapshot.getMin());
+		assertEquals(10_000_000, snapshot.getMax());
+		assertEquals(5_000_500, snapshot.getMean(), 0.001);
+		assertClose(5_000_000, snapshot.getMedian());
+		assertClose(9_000_000, snapshot.getPercentile(90));
+		assertClose(9_990_000, snapshot.getPercentile(99.9));
+		assertEquals(1000, snapshot.getPercentile(0));
+		assertEquals(10_000_000, snapshot.getPercentile(100));
+	}
+
+	@Test
+	public void negative() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		assertEquals(0, histogram.snapshot().getMax());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalid_percentile() {
+		new LatencyHistogram().snapshot().getPercentile(101);
+	}
+
+	@Test
+	public void disabled() {
+		Metrics metrics = Metrics.DISABLED;
+		assertEquals(0, metrics.start());
+		metrics.record(Metrics.Stage.HTTP, 100);
+		metrics.request(100, false);
+		metrics.retry();
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(0, snapshot.getHistogram(Metrics.Stage.HTTP).getCount());
+		assertEquals(0, snapshot.getRequests());
+		assertEquals(0, snapshot.getRetries());
+	}
+
+	private static void assertClose(long expected, long actual) {
+		assertTrue("Expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.03);
+	}
+}
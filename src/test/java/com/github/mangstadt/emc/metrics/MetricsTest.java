@@ -0,0 +1,34 @@
+package com.github.mangstadt.emc.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
+
+/**
+ * @author Michael Angstadt
+ */
+public class MetricsTest {
+	@Test
+	public void disabled() {
+		Metrics metrics = Metrics.DISABLED;
+		assertFalse(metrics.isEnabled());
+		assertEquals(0, metrics.start());
+
+		metrics.record(Stage.HTTP, 1000);
+		metrics.stop(Stage.PARSE, 0);
+		metrics.request(100, false);
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(Stage.values().length, snapshot.getHistograms().size());
+		for (Stage stage : Stage.values()) {
+			HistogramSnapshot histogram = snapshot.getHistogram(stage);
+			assertEquals(0, histogram.getCount());
+			assertEquals(0, histogram.getPercentile(99));
+		}
+		assertEquals(0, snapshot.getRequests());
+		assertEquals(0, snapshot.getBytes());
+	}
+}
@@ -2,6 +2,7 @@ package com.github.mangstadt.emc.net;
 
 import static com.github.mangstadt.emc.net.PostParametersCondition.postParams;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -18,6 +19,9 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.junit.Test;
 
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
+import com.github.mangstadt.emc.metrics.MetricsSnapshot;
 import com.github.paweladamski.httpclientmock.HttpClientMock;
 
 /**
@@ -367,6 +371,35 @@ public class EmcWebsiteConnectionImplTest {
 		//@formatter:on
 	}
 
+	@Test
+	public void metrics() throws Exception {
+		HttpClientMock client = new HttpClientMock("https://empireminecraft.com");
+		client.onPost("/login/login").doReturnStatus(303);
+		for (int i = 1; i <= 4; i++) {
+			client.onGet("/rupees/transactions/").withParameter("page", Integer.toString(i)).doReturn("<html>page " + i + "</html>");
+		}
+
+		EmcWebsiteConnectionImpl connection = new EmcWebsiteConnectionImpl("user", "pass") {
+			@Override
+			CloseableHttpClient createClient() {
+				return client;
+			}
+		};
+
+		Metrics metrics = new Metrics();
+		connection.setMetrics(metrics);
+		for (int i = 1; i <= 4; i++) {
+			connection.getRupeeTransactionPage(i);
+		}
+
+		MetricsSnapshot snapshot = metrics.snapshot();
+		assertEquals(4, snapshot.getRequests());
+		assertEquals(0, snapshot.getErrors());
+		assertTrue(snapshot.getBytes() > 0);
+		assertEquals(4, snapshot.getHistogram(Stage.HTTP).getCount());
+		assertEquals(4, snapshot.getHistogram(Stage.PARSE).getCount());
+	}
+
 	private String readFileContents(String classpath) throws IOException, URISyntaxException {
 		URI uri = getClass().getResource(classpath).toURI();
 		Path path = Paths.get(uri);
@@ -0,0 +1,548 @@
+package com.github.mangstadt.emc.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.impl.client.BasicCookieStore;
+
+import com.github.mangstadt.emc.rupees.SyntheticHistoryGenerator;
+import com.github.mangstadt.emc.rupees.TransactionPageRenderer;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>
+ * A local stand-in for the EMC website, for integration and load testing
+ * {@link EmcWebsiteConnectionImpl} without contacting the real website.
+ * </p>
+ * <p>
+ * The server mimics the parts of the website that this library uses: the
+ * login form (including two-factor authentication), the rupee history pages
+ * (which, like the real website, serve the first page when a non-existent
+ * page is requested), the player profile pages, and the online player lists.
+ * Latency and faults can be injected into every response.
+ * </p>
+ *
+ * <pre class="brush:java">
+ * try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(LocalEmcWebsite.syntheticHistory(1000, 42)).build()) {
+ *   EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret");
+ *   Document page = connection.getRupeeTransactionPage(1);
+ * }
+ * </pre>
+ * @author Michael Angstadt
+ */
+public class LocalEmcWebsite implements Closeable {
+	/**
+	 * The name of the session cookie.
+	 */
+	static final String SESSION_COOKIE = "xf_session";
+
+	private static final Pattern onlinePlayersPathRegex = Pattern.compile("^/api/server-online-(\\d+)\\.json$");
+
+	/**
+	 * The kinds of faults that can be injected into responses.
+	 */
+	public enum Fault {
+		/**
+		 * Responds with an HTTP 500 error and an empty body.
+		 */
+		SERVER_ERROR,
+
+		/**
+		 * Closes the connection without sending a response.
+		 */
+		DROP_CONNECTION
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Account> accounts;
+	private final Map<Integer, List<String>> onlinePlayers;
+	private final int rowsPerPage;
+	private final LongSupplier latencyMillis;
+	private final double faultRate;
+	private final Fault fault;
+	private final LocalDateTime now;
+
+	private final Set<String> sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final List<RupeeTransaction> history;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private LocalEmcWebsite(Builder builder) throws IOException {
+		accounts = new HashMap<>(builder.accounts);
+		onlinePlayers = new HashMap<>(builder.onlinePlayers);
+		history = new ArrayList<>(builder.history);
+		rowsPerPage = builder.rowsPerPage;
+		latencyMillis = builder.latencyMillis;
+		faultRate = builder.faultRate;
+		fault = builder.fault;
+		now = builder.now;
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/login/login", exchange -> handle(exchange, this::login));
+		server.createContext("/rupees/transactions/", exchange -> handle(exchange, this::transactions));
+		server.createContext("/u/", exchange -> handle(exchange, this::profile));
+		server.createContext("/api/", exchange -> handle(exchange, this::onlinePlayers));
+
+		executor = Executors.newFixedThreadPool(builder.threads);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Gets the base URL of the website (the equivalent of
+	 * "https://empireminecraft.com").
+	 * @return the base URL
+	 */
+	public String getBaseUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Gets the base URL of the player profile pages (the equivalent of
+	 * "https://u.emc.gs").
+	 * @return the base URL
+	 */
+	public String getProfileBaseUrl() {
+		return getBaseUrl() + "/u";
+	}
+
+	/**
+	 * Creates an unauthenticated connection to this website.
+	 * @return the connection
+	 */
+	public EmcWebsiteConnectionImpl connect() {
+		return new EmcWebsiteConnectionImpl(getBaseUrl(), getProfileBaseUrl(), new BasicCookieStore());
+	}
+
+	/**
+	 * Logs into this website.
+	 * @param username the username
+	 * @param password the password
+	 * @return the connection
+	 * @throws IOException if the login fails
+	 */
+	public EmcWebsiteConnectionImpl connect(String username, String password) throws IOException {
+		return connect(username, password, null);
+	}
+
+	/**
+	 * Logs into this website.
+	 * @param username the username
+	 * @param password the password
+	 * @param twoFactorAuthCode the two-factor authentication code or null
+	 * @return the connection
+	 * @throws IOException if the login fails
+	 */
+	public EmcWebsiteConnectionImpl connect(String username, String password, String twoFactorAuthCode) throws IOException {
+		return new EmcWebsiteConnectionImpl(getBaseUrl(), getProfileBaseUrl(), username, password, twoFactorAuthCode);
+	}
+
+	/**
+	 * Logs a new transaction, which bumps all other transactions down one.
+	 * @param transaction the transaction
+	 */
+	public void addTransaction(RupeeTransaction transaction) {
+		synchronized (history) {
+			history.add(0, transaction);
+		}
+	}
+
+	/**
+	 * Invalidates all sessions. Subsequent requests for the rupee history
+	 * pages will receive the "not logged in" page until the client logs in
+	 * again.
+	 */
+	public void expireSessions() {
+		sessions.clear();
+	}
+
+	/**
+	 * Gets the number of requests that have been received.
+	 * @return the number of requests
+	 */
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange, Handler handler) throws IOException {
+		requests.incrementAndGet();
+		try {
+			long latency = latencyMillis.getAsLong();
+			if (latency > 0) {
+				TimeUnit.MILLISECONDS.sleep(latency);
+			}
+
+			if (faultRate > 0 && ThreadLocalRandom.current().nextDouble() < faultRate) {
+				switch (fault) {
+				case SERVER_ERROR:
+					exchange.sendResponseHeaders(500, -1);
+					break;
+				case DROP_CONNECTION:
+					//closing the exchange before sending the headers drops the connection
+					break;
+				}
+				return;
+			}
+
+			handler.handle(exchange);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void login(HttpExchange exchange) throws IOException {
+		Map<String, String> params = parseForm(exchange.getRequestBody());
+
+		boolean twoFactorForm = params.containsKey("fh2fa-login");
+		String username = params.get(twoFactorForm ? "fh2fa-login" : "login");
+		String password = params.get(twoFactorForm ? "fh2fa-password" : "password");
+		String code = params.get("key[GoogleAuthenticator]");
+
+		Account account = accounts.get(username);
+		if (account == null || !account.password.equals(password)) {
+			send(exchange, 200, "text/html", resource("bad-credentials.html"));
+			return;
+		}
+
+		if (account.twoFactorAuthCode != null) {
+			if (!twoFactorForm) {
+				send(exchange, 200, "text/html", resource("2fa-code-required.html"));
+				return;
+			}
+			if (!account.twoFactorAuthCode.equals(code)) {
+				send(exchange, 200, "text/html", resource("bad-2fa-code.html"));
+				return;
+			}
+		}
+
+		String session = UUID.randomUUID().toString();
+		sessions.add(session);
+
+		//client is redirected to the homepage on successful login
+		exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/; HttpOnly");
+		exchange.getResponseHeaders().add("Location", "/");
+		exchange.sendResponseHeaders(303, -1);
+	}
+
+	private void transactions(HttpExchange exchange) throws IOException {
+		if (!hasSession(exchange)) {
+			send(exchange, 200, "text/html", resource("/com/github/mangstadt/emc/rupees/transaction-page-not-logged-in.html"));
+			return;
+		}
+
+		String query = exchange.getRequestURI().getRawQuery();
+		String pageParam = (query == null) ? null : parseForm(query).get("page");
+		int page;
+		try {
+			page = (pageParam == null) ? 1 : Integer.parseInt(pageParam);
+		} catch (NumberFormatException e) {
+			page = 1;
+		}
+
+		List<RupeeTransaction> snapshot;
+		synchronized (history) {
+			snapshot = new ArrayList<>(history);
+		}
+
+		int totalPages = Math.max(1, (snapshot.size() + rowsPerPage - 1) / rowsPerPage);
+
+		//the website returns the first page when a non-existent page is requested
+		if (page < 1 || page > totalPages) {
+			page = 1;
+		}
+
+		int from = (page - 1) * rowsPerPage;
+		int to = Math.min(from + rowsPerPage, snapshot.size());
+		int balance = snapshot.isEmpty() ? 0 : snapshot.get(0).getBalance();
+
+		String html = new TransactionPageRenderer(now).render(balance, page, totalPages, snapshot.subList(from, to));
+		send(exchange, 200, "text/html", html.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void profile(HttpExchange exchange) throws IOException {
+		String playerName = exchange.getRequestURI().getPath().substring("/u/".length());
+		if (playerName.isEmpty()) {
+			send(exchange, 404, "text/html", new byte[0]);
+			return;
+		}
+
+		String html = "<!DOCTYPE html><html><head><title>" + playerName + " | Empire Minecraft</title></head><body><h1 class=\"username\">" + playerName + "</h1></body></html>";
+		send(exchange, 200, "text/html", html.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void onlinePlayers(HttpExchange exchange) throws IOException {
+		Matcher m = onlinePlayersPathRegex.matcher(exchange.getRequestURI().getPath());
+		if (!m.find()) {
+			send(exchange, 404, "text/html", new byte[0]);
+			return;
+		}
+
+		int serverNumber = Integer.parseInt(m.group(1));
+		JsonArray array = new JsonArray();
+		for (String name : onlinePlayers.getOrDefault(serverNumber, Collections.emptyList())) {
+			JsonObject player = new JsonObject();
+			player.addProperty("name", name);
+			array.add(player);
+		}
+		send(exchange, 200, "application/json", array.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private boolean hasSession(HttpExchange exchange) {
+		List<String> cookieHeaders = exchange.getRequestHeaders().get("Cookie");
+		if (cookieHeaders == null) {
+			return false;
+		}
+
+		for (String header : cookieHeaders) {
+			for (String cookie : header.split(";")) {
+				String[] split = cookie.trim().split("=", 2);
+				if (split.length == 2 && split[0].equals(SESSION_COOKIE) && sessions.contains(split[1])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", contentType + "; charset=UTF-8");
+		exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	private static Map<String, String> parseForm(InputStream in) throws IOException {
+		return parseForm(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, String> parseForm(String form) throws IOException {
+		Map<String, String> params = new HashMap<>();
+		for (String pair : form.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+
+			String[] split = pair.split("=", 2);
+			String name = URLDecoder.decode(split[0], "UTF-8");
+			String value = (split.length == 2) ? URLDecoder.decode(split[1], "UTF-8") : "";
+			params.put(name, value);
+		}
+		return params;
+	}
+
+	private static byte[] resource(String name) throws IOException {
+		try (InputStream in = LocalEmcWebsite.class.getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException("Resource not found: " + name);
+			}
+			return ByteStreams.toByteArray(in);
+		}
+	}
+
+	/**
+	 * Generates a transaction history using a {@link SyntheticHistoryGenerator}.
+	 * Transactions are ordered newest first, about a minute apart, ending one
+	 * minute before the current time.
+	 * @param count the number of transactions
+	 * @param seed the random seed
+	 * @return the transactions
+	 */
+	public static List<RupeeTransaction> syntheticHistory(int count, long seed) {
+		//@formatter:off
+		return new SyntheticHistoryGenerator.Builder()
+			.seed(seed)
+			.now(LocalDateTime.now().minusMinutes(1))
+			.meanInterval(60)
+		.build().next(count);
+		//@formatter:on
+	}
+
+	private interface Handler {
+		void handle(HttpExchange exchange) throws IOException;
+	}
+
+	private static class Account {
+		private final String password, twoFactorAuthCode;
+
+		public Account(String password, String twoFactorAuthCode) {
+			this.password = password;
+			this.twoFactorAuthCode = twoFactorAuthCode;
+		}
+	}
+
+	/**
+	 * Creates new instances of {@link LocalEmcWebsite}.
+	 * @author Michael Angstadt
+	 */
+	public static class Builder {
+		private final Map<String, Account> accounts = new HashMap<>();
+		private final Map<Integer, List<String>> onlinePlayers = new HashMap<>();
+		private final List<RupeeTransaction> history = new ArrayList<>();
+		private int rowsPerPage = 30;
+		private int threads = 16;
+		private LongSupplier latencyMillis = () -> 0;
+		private double faultRate = 0;
+		private Fault fault = Fault.DROP_CONNECTION;
+		private LocalDateTime now = LocalDateTime.now();
+
+		/**
+		 * Adds a user account.
+		 * @param username the username
+		 * @param password the password
+		 * @return this
+		 */
+		public Builder account(String username, String password) {
+			return account(username, password, null);
+		}
+
+		/**
+		 * Adds a user account that has two-factor authentication enabled.
+		 * @param username the username
+		 * @param password the password
+		 * @param twoFactorAuthCode the two-factor authentication code, or null
+		 * to disable two-factor authentication
+		 * @return this
+		 */
+		public Builder account(String username, String password, String twoFactorAuthCode) {
+			accounts.put(username, new Account(password, twoFactorAuthCode));
+			return this;
+		}
+
+		/**
+		 * Sets the rupee history that is served to all accounts.
+		 * @param transactions the transactions, ordered newest first
+		 * @return this
+		 */
+		public Builder history(List<? extends RupeeTransaction> transactions) {
+			history.clear();
+			history.addAll(transactions);
+			return this;
+		}
+
+		/**
+		 * Sets the number of transactions on each rupee history page
+		 * (defaults to 30, like the real website).
+		 * @param rowsPerPage the number of transactions per page
+		 * @return this
+		 */
+		public Builder rowsPerPage(int rowsPerPage) {
+			if (rowsPerPage < 1) {
+				throw new IllegalArgumentException("Rows per page must be at least 1.");
+			}
+			this.rowsPerPage = rowsPerPage;
+			return this;
+		}
+
+		/**
+		 * Sets the players that are logged into a server.
+		 * @param server the server
+		 * @param players the player names
+		 * @return this
+		 */
+		public Builder onlinePlayers(EmcServer server, String... players) {
+			onlinePlayers.put(EmcWebsiteConnectionImpl.serverNumbers.get(server), Arrays.asList(players));
+			return this;
+		}
+
+		/**
+		 * Sets the number of threads that handle requests (defaults to 16).
+		 * @param threads the number of threads
+		 * @return this
+		 */
+		public Builder threads(int threads) {
+			if (threads < 1) {
+				throw new IllegalArgumentException("Thread count must be at least 1.");
+			}
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * Sets the amount of time to wait before responding to each request
+		 * (defaults to no latency).
+		 * @param latencyMillis supplies the latency of each request, in
+		 * milliseconds
+		 * @return this
+		 */
+		public Builder latency(LongSupplier latencyMillis) {
+			this.latencyMillis = latencyMillis;
+			return this;
+		}
+
+		/**
+		 * Injects faults into a fraction of the responses (defaults to no
+		 * faults).
+		 * @param faultRate the fraction of requests that fail (0.0 to 1.0)
+		 * @param fault the kind of fault
+		 * @return this
+		 */
+		public Builder faults(double faultRate, Fault fault) {
+			if (faultRate < 0 || faultRate > 1) {
+				throw new IllegalArgumentException("Fault rate must be between 0 and 1.");
+			}
+			this.faultRate = faultRate;
+			this.fault = fault;
+			return this;
+		}
+
+		/**
+		 * Sets the current time, which determines how the timestamps on the
+		 * rupee history pages are rendered (defaults to the system time).
+		 * @param now the current time
+		 * @return this
+		 */
+		public Builder now(LocalDateTime now) {
+			this.now = now;
+			return this;
+		}
+
+		/**
+		 * Starts the server.
+		 * @return the server
+		 * @throws IOException if the server can't be started
+		 */
+		public LocalEmcWebsite build() throws IOException {
+			return new LocalEmcWebsite(this);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package com.github.mangstadt.emc.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.LocalEmcWebsite.Fault;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * @author Michael Angstadt
+ */
+public class LocalEmcWebsiteTest {
+	private final RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+
+	@Test
+	public void transaction_pages() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(75, 1);
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).build(); EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+			for (int i = 1; i <= 3; i++) {
+				RupeeTransactionPage page = scraper.scrape(connection.getRupeeTransactionPage(i));
+				assertEquals(Integer.valueOf(i), page.getPage());
+				assertEquals(Integer.valueOf(3), page.getTotalPages());
+				assertEquals(history.get(0).getBalance(), (int) page.getRupeeBalance());
+				assertTransactions(history.subList((i - 1) * 30, Math.min(i * 30, history.size())), page.getTransactions());
+			}
+
+			//non-existent pages return the first page
+			RupeeTransactionPage page = scraper.scrape(connection.getRupeeTransactionPage(4));
+			assertEquals(Integer.valueOf(1), page.getPage());
+		}
+	}
+
+	@Test
+	public void addTransaction() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(30, 1);
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).build(); EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+			RupeeTransaction latest = history.get(0);
+			//@formatter:off
+			RupeeTransaction added = new PaymentTransaction.Builder()
+				.player("Jeb")
+				.ts(latest.getTs().plusMinutes(1))
+				.description("Payment from Jeb")
+				.amount(10)
+				.balance(latest.getBalance() + 10)
+			.build();
+			//@formatter:on
+			website.addTransaction(added);
+
+			RupeeTransactionPage page1 = scraper.scrape(connection.getRupeeTransactionPage(1));
+			assertTransactions(Arrays.asList(added), page1.getTransactions().subList(0, 1));
+			assertEquals(Integer.valueOf(2), page1.getTotalPages());
+
+			RupeeTransactionPage page2 = scraper.scrape(connection.getRupeeTransactionPage(2));
+			assertTransactions(history.subList(29, 30), page2.getTransactions());
+		}
+	}
+
+	@Test
+	public void expireSessions() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(LocalEmcWebsite.syntheticHistory(10, 1)).build(); EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+			website.expireSessions();
+			assertNull(scraper.scrape(connection.getRupeeTransactionPage(1)));
+		}
+	}
+
+	@Test
+	public void login_2fa() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret", "123456").build()) {
+			website.connect("Notch", "secret", "123456").close();
+
+			try {
+				website.connect("Notch", "secret");
+				fail();
+			} catch (TwoFactorAuthException e) {
+				//expected
+			}
+
+			try {
+				website.connect("Notch", "secret", "000000");
+				fail();
+			} catch (TwoFactorAuthException e) {
+				//expected
+			}
+
+			try {
+				website.connect("Notch", "wrong", "123456");
+				fail();
+			} catch (InvalidCredentialsException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void login_bad_credentials() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").build()) {
+			try {
+				website.connect("Jeb", "secret");
+				fail();
+			} catch (InvalidCredentialsException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void getOnlinePlayers() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().onlinePlayers(EmcServer.SMP3, "Notch", "Jeb").build(); EmcWebsiteConnectionImpl connection = website.connect()) {
+			assertEquals(Arrays.asList("Notch", "Jeb"), connection.getOnlinePlayers(EmcServer.SMP3));
+			assertEquals(Collections.emptyList(), connection.getOnlinePlayers(EmcServer.SMP1));
+		}
+	}
+
+	@Test
+	public void getProfilePage() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().build(); EmcWebsiteConnectionImpl connection = website.connect()) {
+			Document document = connection.getProfilePage("Notch");
+			assertEquals("Notch", document.select("h1.username").text());
+		}
+	}
+
+	@Test
+	public void faults() throws Exception {
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().faults(1, Fault.DROP_CONNECTION).build(); EmcWebsiteConnectionImpl connection = website.connect()) {
+			try {
+				connection.getOnlinePlayers(EmcServer.SMP1);
+				fail();
+			} catch (IOException e) {
+				//expected
+			}
+			assertTrue(website.getRequestCount() > 0);
+		}
+	}
+
+	@Test
+	public void old_transactions() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(5, 1);
+		LocalDateTime now = history.get(0).getTs().plusDays(30);
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).now(now).build(); EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+			RupeeTransactionPage page = scraper.scrape(connection.getRupeeTransactionPage(1));
+
+			//old timestamps are only rendered with minute precision
+			assertTransactions(history, page.getTransactions(), ChronoUnit.MINUTES);
+		}
+	}
+
+	private static void assertTransactions(List<RupeeTransaction> expected, List<RupeeTransaction> actual) {
+		assertTransactions(expected, actual, ChronoUnit.SECONDS);
+	}
+
+	private static void assertTransactions(List<RupeeTransaction> expected, List<RupeeTransaction> actual, ChronoUnit precision) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RupeeTransaction e = expected.get(i), a = actual.get(i);
+			assertEquals(e.getTs().truncatedTo(precision), a.getTs());
+			assertEquals(e.getDescription(), a.getDescription());
+			assertEquals(e.getAmount(), a.getAmount());
+			assertEquals(e.getBalance(), a.getBalance());
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package com.github.mangstadt.emc.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.LogManager;
+
+import org.jsoup.nodes.Document;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.LocalEmcWebsite.Fault;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * @author Michael Angstadt
+ */
+public class SessionRecorderTest {
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void record_and_replay() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(50, 1);
+		StringWriter sw = new StringWriter();
+		List<String> expectedPages = new ArrayList<>();
+
+		//@formatter:off
+		LocalEmcWebsite.Builder builder = new LocalEmcWebsite.Builder()
+			.account("Notch", "secret")
+			.history(history)
+			.onlinePlayers(EmcServer.SMP1, "Notch", "Jeb")
+			.latency(() -> 20);
+		//@formatter:on
+
+		try (LocalEmcWebsite website = builder.build(); SessionRecorder recorder = new SessionRecorder(sw); EmcWebsiteConnection connection = recorder.wrap(website.connect("Notch", "secret"))) {
+			for (int i = 1; i <= 3; i++) {
+				expectedPages.add(connection.getRupeeTransactionPage(i).text());
+			}
+			connection.getOnlinePlayers(EmcServer.SMP1);
+			connection.getProfilePage("Notch");
+		}
+
+		String[] lines = sw.toString().split("\n");
+		assertEquals(5, lines.length);
+		JsonObject first = new JsonParser().parse(lines[0]).getAsJsonObject();
+		assertEquals("page", first.get("type").getAsString());
+		assertEquals("1", first.get("request").getAsString());
+		assertTrue(first.get("ttfbMillis").getAsLong() >= 20);
+		assertTrue(first.get("durationMillis").getAsLong() >= first.get("ttfbMillis").getAsLong());
+
+		SessionRecording recording = SessionRecording.load(new StringReader(sw.toString()));
+		try (EmcWebsiteConnection connection = recording.connect(0)) {
+			for (int i = 1; i <= 3; i++) {
+				assertEquals(expectedPages.get(i - 1), connection.getRupeeTransactionPage(i).text());
+			}
+
+			//non-existent pages return the first page
+			assertEquals(expectedPages.get(0), connection.getRupeeTransactionPage(4).text());
+
+			assertEquals(Arrays.asList("Notch", "Jeb"), connection.getOnlinePlayers(EmcServer.SMP1));
+
+			Document profile = connection.getProfilePage("Notch");
+			assertEquals("Notch", profile.select("h1.username").text());
+		}
+
+		//replay with the recorded latency
+		try (EmcWebsiteConnection connection = recording.connect(1)) {
+			long start = System.nanoTime();
+			connection.getRupeeTransactionPage(2);
+			long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+			assertTrue(elapsedMillis >= 20);
+		}
+	}
+
+	@Test
+	public void record_error() throws Exception {
+		StringWriter sw = new StringWriter();
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().faults(1, Fault.DROP_CONNECTION).build(); SessionRecorder recorder = new SessionRecorder(sw); EmcWebsiteConnection connection = recorder.wrap(website.connect())) {
+			connection.getOnlinePlayers(EmcServer.SMP1);
+			fail();
+		} catch (IOException e) {
+			//expected
+		}
+
+		JsonObject json = new JsonParser().parse(sw.toString().trim()).getAsJsonObject();
+		assertEquals("onlinePlayers", json.get("type").getAsString());
+		assertEquals("SMP1", json.get("request").getAsString());
+		assertTrue(json.has("error"));
+		assertTrue(!json.has("body"));
+	}
+
+	@Test
+	public void replay_error() throws Exception {
+		//@formatter:off
+		String recorded =
+		"{\"type\":\"page\",\"request\":\"1\",\"startMillis\":0,\"durationMillis\":5,\"error\":\"java.net.SocketTimeoutException\",\"message\":\"Read timed out\"}\n" +
+		"{\"type\":\"page\",\"request\":\"1\",\"startMillis\":10,\"durationMillis\":5,\"body\":\"<html></html>\"}\n";
+		//@formatter:on
+
+		SessionRecording recording = SessionRecording.load(new StringReader(recorded));
+		try (EmcWebsiteConnection connection = recording.connect(0)) {
+			try {
+				connection.getRupeeTransactionPage(1);
+				fail();
+			} catch (SocketTimeoutException e) {
+				assertEquals("Read timed out", e.getMessage());
+			}
+
+			//the retry gets the next recorded response
+			connection.getRupeeTransactionPage(1);
+
+			//the last response is repeated
+			connection.getRupeeTransactionPage(1);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void load_invalid() throws Exception {
+		SessionRecording.load(new StringReader("{\"type\":\"page\"}\n"));
+	}
+
+	@Test
+	public void reader() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(100, 1);
+		StringWriter sw = new StringWriter();
+
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).build(); SessionRecorder recorder = new SessionRecorder(sw); EmcWebsiteConnection connection = recorder.wrap(website.connect("Notch", "secret"))) {
+			for (int i = 1; i <= 4; i++) {
+				connection.getRupeeTransactionPage(i);
+			}
+		}
+
+		SessionRecording recording = SessionRecording.load(new StringReader(sw.toString()));
+		List<RupeeTransaction> actual = new ArrayList<>();
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(recording, 0).threads(2).build()) {
+			RupeeTransaction transaction;
+			while ((transaction = reader.next()) != null) {
+				actual.add(transaction);
+			}
+		}
+
+		assertEquals(history.size(), actual.size());
+		for (int i = 0; i < history.size(); i++) {
+			assertEquals(history.get(i).getTs(), actual.get(i).getTs());
+			assertEquals(history.get(i).getDescription(), actual.get(i).getDescription());
+			assertEquals(history.get(i).getBalance(), actual.get(i).getBalance());
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.github.mangstadt.emc.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.LogManager;
+
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * @author Michael Angstadt
+ */
+public class SessionStoreTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void save_and_load() throws Exception {
+		Path file = temp.getRoot().toPath().resolve("session.bin");
+		SessionStore store = new SessionStore(file, "secret".toCharArray());
+		assertNull(store.load());
+
+		BasicCookieStore cookies = new BasicCookieStore();
+		BasicClientCookie session = new BasicClientCookie("xf_session", "abc123");
+		session.setDomain("empireminecraft.com");
+		session.setPath("/");
+		session.setSecure(true);
+		cookies.addCookie(session);
+
+		BasicClientCookie user = new BasicClientCookie("xf_user", "42");
+		user.setDomain("empireminecraft.com");
+		user.setPath("/");
+		user.setExpiryDate(new Date(System.currentTimeMillis() + 60000));
+		cookies.addCookie(user);
+
+		BasicClientCookie expired = new BasicClientCookie("old", "1");
+		expired.setDomain("empireminecraft.com");
+		expired.setExpiryDate(new Date(System.currentTimeMillis() - 60000));
+		cookies.addCookie(expired);
+
+		store.save(cookies);
+
+		//the file is encrypted
+		String contents = new String(Files.readAllBytes(file), "ISO-8859-1");
+		assertFalse(contents.contains("abc123"));
+
+		//use a new object so the key has to be derived again
+		CookieStore loaded = new SessionStore(file, "secret".toCharArray()).load();
+		List<Cookie> actual = loaded.getCookies();
+		assertEquals(2, actual.size());
+
+		Cookie cookie = actual.stream().filter(c -> c.getName().equals("xf_session")).findFirst().get();
+		assertEquals("abc123", cookie.getValue());
+		assertEquals("empireminecraft.com", cookie.getDomain());
+		assertEquals("/", cookie.getPath());
+		assertTrue(cookie.isSecure());
+		assertNull(cookie.getExpiryDate());
+
+		cookie = actual.stream().filter(c -> c.getName().equals("xf_user")).findFirst().get();
+		assertEquals(user.getExpiryDate(), cookie.getExpiryDate());
+
+		store.clear();
+		assertFalse(Files.exists(file));
+		assertNull(store.load());
+	}
+
+	@Test
+	public void wrong_passphrase() throws Exception {
+		Path file = temp.getRoot().toPath().resolve("session.bin");
+		new SessionStore(file, "secret".toCharArray()).save(cookies());
+		assertNull(new SessionStore(file, "wrong".toCharArray()).load());
+	}
+
+	@Test
+	public void tampered() throws Exception {
+		Path file = temp.getRoot().toPath().resolve("session.bin");
+		SessionStore store = new SessionStore(file, "secret".toCharArray());
+		store.save(cookies());
+
+		byte[] data = Files.readAllBytes(file);
+		data[data.length - 1] ^= 1;
+		Files.write(file, data);
+		assertNull(store.load());
+
+		Files.write(file, new byte[] { 1, 2, 3 });
+		assertNull(store.load());
+	}
+
+	@Test
+	public void reuse_session() throws Exception {
+		List<RupeeTransaction> history = LocalEmcWebsite.syntheticHistory(10, 1);
+		Path file = temp.getRoot().toPath().resolve("session.bin");
+		SessionStore store = new SessionStore(file, "secret".toCharArray());
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+
+		try (LocalEmcWebsite website = new LocalEmcWebsite.Builder().account("Notch", "secret").history(history).build()) {
+			try (EmcWebsiteConnectionImpl connection = website.connect("Notch", "secret")) {
+				store.save(connection.getCookieStore());
+			}
+
+			CookieStore cookies = store.load();
+			assertNotNull(cookies);
+			try (EmcWebsiteConnectionImpl connection = new EmcWebsiteConnectionImpl(website.getBaseUrl(), website.getProfileBaseUrl(), cookies)) {
+				assertNotNull(scraper.scrape(connection.getRupeeTransactionPage(1)));
+
+				//an expired session is detected when the page is downloaded
+				website.expireSessions();
+				assertNull(scraper.scrape(connection.getRupeeTransactionPage(1)));
+			}
+		}
+	}
+
+	private static CookieStore cookies() {
+		BasicCookieStore cookies = new BasicCookieStore();
+		BasicClientCookie cookie = new BasicClientCookie("xf_session", "abc123");
+		cookie.setDomain("empireminecraft.com");
+		cookies.addCookie(cookie);
+		return cookies;
+	}
+}
@@ -0,0 +1,40 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class LatencyWindowTest {
+	@Test
+	public void percentile() {
+		LatencyWindow window = new LatencyWindow(20);
+		for (int i = 1; i < LatencyWindow.MIN_SAMPLES; i++) {
+			window.add(i);
+		}
+
+		//not enough samples yet
+		assertEquals(-1, window.percentile(90));
+
+		window.add(10);
+		assertEquals(9, window.percentile(90));
+		assertEquals(9, window.percentile(90));
+		assertEquals(5, window.percentile(50));
+	}
+
+	@Test
+	public void percentile_recomputed_after_add() {
+		LatencyWindow window = new LatencyWindow(LatencyWindow.MIN_SAMPLES);
+		for (int i = 1; i <= LatencyWindow.MIN_SAMPLES; i++) {
+			window.add(i);
+		}
+		assertEquals(10, window.percentile(100));
+
+		//oldest sample is replaced
+		window.add(100);
+		assertEquals(100, window.percentile(100));
+		assertEquals(2, window.percentile(1));
+	}
+}
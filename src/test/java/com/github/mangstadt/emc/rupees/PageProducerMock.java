@@ -0,0 +1,118 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader.PageSource;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * Injects pre-built transaction pages into a {@link RupeeTransactionReader}.
+ * @author Michael Angstadt
+ */
+class PageProducerMock implements PageSource {
+	private final List<RupeeTransactionPage> pages;
+	private final List<List<Exception>> exceptions;
+	private final List<Integer> sleep;
+	private final List<List<Integer>> sleepOnce;
+	private final List<List<Boolean>> expires;
+	final List<EmcWebsiteConnection> connections = Collections.synchronizedList(new ArrayList<>());
+
+	public PageProducerMock(List<RupeeTransactionPage> pages) {
+		this.pages = pages;
+
+		int pageCount = pages.size();
+		exceptions = new ArrayList<>(pageCount);
+		sleep = new ArrayList<>(pageCount);
+		sleepOnce = new ArrayList<>(pageCount);
+		expires = new ArrayList<>(pageCount);
+		for (int i = 0; i < pageCount; i++) {
+			exceptions.add(new ArrayList<>());
+			sleep.add(null);
+			sleepOnce.add(new ArrayList<>());
+			expires.add(new ArrayList<>());
+		}
+	}
+
+	@Override
+	public RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException {
+		if (pageNumber > pages.size()) {
+			pageNumber = 1;
+		}
+
+		int index = pageNumber - 1;
+		List<Exception> list = exceptions.get(index);
+		if (!list.isEmpty()) {
+			//simulate a network error
+			Exception e = list.remove(0);
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			fail("Unit test can only throw IOExceptions or RuntimeExceptions.");
+		}
+
+		Integer sleep;
+		List<Integer> sleepOnce = this.sleepOnce.get(index);
+		synchronized (sleepOnce) {
+			sleep = sleepOnce.isEmpty() ? this.sleep.get(index) : sleepOnce.remove(0);
+		}
+		if (sleep != null) {
+			//simulate network lag
+			try {
+				Thread.sleep(sleep);
+			} catch (InterruptedException e) {
+				//empty
+			}
+		}
+
+		List<Boolean> expires = this.expires.get(index);
+		if (!expires.isEmpty()) {
+			//simulate expired session
+			expires.remove(0);
+			return null;
+		}
+
+		return pages.get(index);
+	}
+
+	public void sleepOnPage(int pageNumber, int sleep) {
+		this.sleep.set(pageNumber - 1, sleep);
+	}
+
+	public void sleepOnceOnPage(int pageNumber, int sleep) {
+		this.sleepOnce.get(pageNumber - 1).add(sleep);
+	}
+
+	public void throwOnPage(int pageNumber, Exception e) {
+		this.exceptions.get(pageNumber - 1).add(e);
+	}
+
+	public void expireOnPage(int pageNumber) {
+		this.expires.get(pageNumber - 1).add(true);
+	}
+
+	@Override
+	public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
+		return createConnection();
+	}
+
+	@Override
+	public EmcWebsiteConnection createSession() throws IOException {
+		return createConnection();
+	}
+
+	private EmcWebsiteConnection createConnection() {
+		EmcWebsiteConnection connection = mock(EmcWebsiteConnection.class);
+		connections.add(connection);
+		return connection;
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.LogManager;
+import java.util.zip.GZIPOutputStream;
+
+import org.jsoup.Jsoup;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.archive.DirectoryPageArchive;
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.google.common.io.ByteStreams;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionArchiveScraperTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void archive() throws Exception {
+		String html = load("transaction-page-sample.html");
+		List<RupeeTransaction> expected = new RupeeTransactionPageScraper().scrape(Jsoup.parse(html)).getTransactions();
+
+		/*
+		 * Store the same page many times so the work is split up. The
+		 * duplicate transactions should be removed.
+		 */
+		PageArchive archive = new DirectoryPageArchive(temp.newFolder().toPath());
+		for (int i = 1; i <= 50; i++) {
+			archive.put(i, html);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			RupeeTransactionArchiveScraper scraper = new RupeeTransactionArchiveScraper(new RupeeTransactionPageScraper(), pool);
+			assertEquals(expected, scraper.scrape(archive));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void directory() throws Exception {
+		String html = load("transaction-page-sample.html");
+		List<RupeeTransaction> expected = new RupeeTransactionPageScraper().scrape(Jsoup.parse(html)).getTransactions();
+
+		Path dir = temp.newFolder().toPath();
+		Files.write(dir.resolve("a.html"), html.getBytes(StandardCharsets.UTF_8));
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("b.html.gz")))) {
+			out.write(html.getBytes(StandardCharsets.UTF_8));
+		}
+		Files.write(dir.resolve("c.html"), load("transaction-page-not-logged-in.html").getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("d.txt"), "ignored".getBytes(StandardCharsets.UTF_8));
+
+		RupeeTransactionArchiveScraper scraper = new RupeeTransactionArchiveScraper(new RupeeTransactionPageScraper());
+		assertEquals(expected, scraper.scrape(dir));
+	}
+
+	private String load(String file) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream(file)) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionBroadcaster.Listener;
+import com.github.mangstadt.emc.rupees.RupeeTransactionBroadcaster.OverflowPolicy;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+import com.github.mangstadt.emc.rupees.scribe.VoteBonusScribe;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionBroadcasterTest {
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void broadcast() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 5;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		List<RupeeTransaction> expected = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			RupeeTransactionPage page = new RupeeTransactionPage(1000, i, pageCount, gen.next(3));
+			pages.add(page);
+			expected.addAll(page.getTransactions());
+		}
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2);
+		//@formatter:on
+
+		/*
+		 * The slow listeners don't start processing transactions until the
+		 * fast listener has received all of them.
+		 */
+		CountDownLatch fastDone = new CountDownLatch(1);
+		ListenerMock fast = new ListenerMock(null) {
+			@Override
+			public void onComplete() {
+				super.onComplete();
+				fastDone.countDown();
+			}
+		};
+		ListenerMock spill = new ListenerMock(fastDone);
+		ListenerMock detach = new ListenerMock(fastDone);
+
+		RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+		broadcaster.subscribe(fast, 1, OverflowPolicy.BLOCK);
+		broadcaster.subscribe(spill, 1, OverflowPolicy.SPILL_TO_DISK);
+		broadcaster.subscribe(detach, 1, OverflowPolicy.DETACH);
+		broadcaster.broadcast();
+
+		assertEquals(expected, fast.transactions);
+		assertTrue(fast.completed);
+
+		assertEquals(expected, spill.transactions);
+		assertTrue(spill.completed);
+
+		assertTrue(detach.transactions.size() < expected.size());
+		assertEquals(expected.subList(0, detach.transactions.size()), detach.transactions);
+		assertTrue(detach.detached);
+		assertFalse(detach.completed);
+
+		/*
+		 * Each page is downloaded once, not once per listener (plus the first
+		 * page to initialize the reader and the empty page after the last
+		 * page).
+		 */
+		verify(pageProducer, atMost(pageCount + 2)).getPage(any(Integer.class), any(EmcWebsiteConnection.class));
+	}
+
+	@Test
+	public void listener_throws_exception() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 3;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(3)));
+		}
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2);
+		//@formatter:on
+
+		IllegalStateException exception = new IllegalStateException();
+		ListenerMock throwing = new ListenerMock(null) {
+			@Override
+			public void onTransaction(RupeeTransaction transaction) {
+				throw exception;
+			}
+		};
+		ListenerMock other = new ListenerMock(null);
+
+		RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+		broadcaster.subscribe(throwing, 1, OverflowPolicy.BLOCK);
+		broadcaster.subscribe(other, 1, OverflowPolicy.BLOCK);
+		broadcaster.broadcast();
+
+		assertEquals(exception, throwing.error);
+		assertFalse(throwing.completed);
+
+		assertEquals(pageCount * 3, other.transactions.size());
+		assertTrue(other.completed);
+	}
+
+	@Test
+	public void spill_preserves_types() throws Exception {
+		int pageCount = 4;
+		LocalDateTime ts = LocalDateTime.of(2015, 6, 27, 14, 0);
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			List<RupeeTransaction> transactions = new ArrayList<>();
+			for (int j = 0; j < 3; j++) {
+				//@formatter:off
+				transactions.add(new VoteBonus.Builder()
+					.site("site" + i)
+					.day(j + 1)
+					.ts(ts)
+					.amount(400)
+					.balance(1000)
+					.description("Voted for Empire Minecraft on site" + i + "!")
+				.build());
+				//@formatter:on
+				ts = ts.minusHours(1);
+			}
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, transactions));
+		}
+
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new PageProducerMock(pages)).threads(2);
+
+		CountDownLatch fastDone = new CountDownLatch(1);
+		ListenerMock fast = new ListenerMock(null) {
+			@Override
+			public void onComplete() {
+				super.onComplete();
+				fastDone.countDown();
+			}
+		};
+		ListenerMock spill = new ListenerMock(fastDone);
+
+		RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+		broadcaster.subscribe(fast, 1, OverflowPolicy.BLOCK);
+		broadcaster.subscribe(spill, 1, OverflowPolicy.SPILL_TO_DISK);
+		broadcaster.broadcast();
+
+		assertTrue(spill.completed);
+		assertEquals(fast.transactions.size(), spill.transactions.size());
+		for (int i = 0; i < fast.transactions.size(); i++) {
+			VoteBonus expected = (VoteBonus) fast.transactions.get(i);
+			VoteBonus actual = (VoteBonus) spill.transactions.get(i);
+			assertEquals(expected, actual);
+			assertEquals(expected.getSite(), actual.getSite());
+			assertEquals(expected.getDay(), actual.getDay());
+		}
+	}
+
+	@Test
+	public void spill_with_custom_scribes() {
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new PageProducerMock(new ArrayList<>())).scribes(new VoteBonusScribe());
+		RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+
+		broadcaster.subscribe(new ListenerMock(null), 1, OverflowPolicy.BLOCK);
+		try {
+			broadcaster.subscribe(new ListenerMock(null), 1, OverflowPolicy.SPILL_TO_DISK);
+			fail();
+		} catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void scribes_added_after_spill_subscriber() throws Exception {
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new PageProducerMock(new ArrayList<>()));
+		RupeeTransactionBroadcaster broadcaster = new RupeeTransactionBroadcaster(builder);
+		broadcaster.subscribe(new ListenerMock(null), 1, OverflowPolicy.SPILL_TO_DISK);
+
+		builder.scribes(new VoteBonusScribe());
+		broadcaster.broadcast();
+	}
+
+	private static class ListenerMock implements Listener {
+		private final CountDownLatch start;
+		private final List<RupeeTransaction> transactions = new ArrayList<>();
+		private volatile boolean completed, detached;
+		private volatile Throwable error;
+
+		/**
+		 * @param start the listener will wait for this latch before
+		 * processing its first transaction (can be null)
+		 */
+		public ListenerMock(CountDownLatch start) {
+			this.start = start;
+		}
+
+		@Override
+		public void onTransaction(RupeeTransaction transaction) throws Exception {
+			if (start != null) {
+				assertTrue(start.await(5, TimeUnit.SECONDS));
+			}
+			transactions.add(transaction);
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			this.error = error;
+		}
+
+		@Override
+		public void onDetached() {
+			detached = true;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader.PageSource;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionFollowerTest {
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void poll() throws Exception {
+		HistoryPageSource pageSource = new HistoryPageSource(3);
+		pageSource.add(5);
+
+		RupeeTransactionFollower follower = new RupeeTransactionReader.Builder(pageSource).buildFollower();
+
+		//no new transactions
+		assertEquals(Collections.emptyList(), follower.poll());
+
+		//a few new transactions
+		List<RupeeTransaction> added = pageSource.add(2);
+		assertEquals(reverse(added), follower.poll());
+		assertEquals(Collections.emptyList(), follower.poll());
+
+		//enough new transactions to push some onto the third page
+		pageSource.pagesRequested.clear();
+		added = pageSource.add(7);
+		assertEquals(reverse(added), follower.poll());
+		assertEquals(Arrays.asList(1, 2, 3), pageSource.pagesRequested);
+
+		follower.close();
+	}
+
+	@Test
+	public void follow() throws Exception {
+		HistoryPageSource pageSource = new HistoryPageSource(3);
+		pageSource.add(5);
+
+		//@formatter:off
+		RupeeTransactionFollower follower = new RupeeTransactionReader
+			.Builder(pageSource)
+			.followInterval(Duration.ofMillis(10), Duration.ofMillis(50))
+			.buildFollower();
+		//@formatter:on
+
+		BlockingQueue<RupeeTransaction> received = new LinkedBlockingQueue<>();
+		Thread thread = new Thread(() -> {
+			try {
+				follower.follow(received::add);
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		thread.start();
+
+		List<RupeeTransaction> added = pageSource.add(2);
+		for (RupeeTransaction transaction : reverse(added)) {
+			assertEquals(transaction, received.poll(5, TimeUnit.SECONDS));
+		}
+
+		follower.close();
+		thread.join(5000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void session_expires() throws Exception {
+		HistoryPageSource pageSource = new HistoryPageSource(3);
+		pageSource.add(5);
+
+		RupeeTransactionFollower follower = new RupeeTransactionReader.Builder(pageSource).buildFollower();
+		EmcWebsiteConnection expired = pageSource.sessions.get(0);
+		pageSource.expiredSession = expired;
+
+		List<RupeeTransaction> added = pageSource.add(2);
+		assertEquals(reverse(added), follower.poll());
+
+		//the expired connection is closed when it is replaced
+		assertEquals(2, pageSource.sessions.size());
+		EmcWebsiteConnection current = pageSource.sessions.get(1);
+		verify(expired).close();
+		verify(current, never()).close();
+
+		follower.close();
+		verify(current).close();
+	}
+
+	private static List<RupeeTransaction> reverse(List<RupeeTransaction> list) {
+		List<RupeeTransaction> copy = new ArrayList<>(list);
+		Collections.reverse(copy);
+		return copy;
+	}
+
+	/**
+	 * Simulates a rupee history that grows over time.
+	 */
+	private static class HistoryPageSource implements PageSource {
+		private final int pageSize;
+		private final List<RupeeTransaction> history = new ArrayList<>();
+		private final List<Integer> pagesRequested = Collections.synchronizedList(new ArrayList<>());
+		private final List<EmcWebsiteConnection> sessions = Collections.synchronizedList(new ArrayList<>());
+		private volatile EmcWebsiteConnection expiredSession;
+		private LocalDateTime ts = LocalDateTime.now().minusDays(10);
+		private int balance = 0;
+
+		public HistoryPageSource(int pageSize) {
+			this.pageSize = pageSize;
+		}
+
+		/**
+		 * Adds transactions to the history.
+		 * @param count the number of transactions to add
+		 * @return the added transactions, newest first
+		 */
+		public synchronized List<RupeeTransaction> add(int count) {
+			List<RupeeTransaction> added = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				ts = ts.plusMinutes(1);
+				balance++;
+
+				//@formatter:off
+				added.add(0, new RupeeTransaction.Builder<>()
+					.ts(ts)
+					.amount(1)
+					.balance(balance)
+					.description("Description")
+				.build());
+				//@formatter:on
+			}
+			history.addAll(0, added);
+			return added;
+		}
+
+		@Override
+		public synchronized RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) {
+			pagesRequested.add(pageNumber);
+			if (connection == expiredSession) {
+				return null;
+			}
+
+			int totalPages = (history.size() + pageSize - 1) / pageSize;
+			if (pageNumber > totalPages) {
+				pageNumber = 1;
+			}
+
+			int from = (pageNumber - 1) * pageSize;
+			int to = Math.min(from + pageSize, history.size());
+			return new RupeeTransactionPage(balance, pageNumber, totalPages, new ArrayList<>(history.subList(from, to)));
+		}
+
+		@Override
+		public EmcWebsiteConnection createSession() {
+			EmcWebsiteConnection session = mock(EmcWebsiteConnection.class);
+			sessions.add(session);
+			return session;
+		}
+	}
+}
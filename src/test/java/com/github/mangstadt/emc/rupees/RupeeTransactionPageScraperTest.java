@@ -2,6 +2,7 @@ package com.github.mangstadt.emc.rupees;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
@@ -15,9 +16,12 @@ import java.util.regex.Pattern;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
 import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
 import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
@@ -250,6 +254,53 @@ public class RupeeTransactionPageScraperTest {
 		assertNull(page);
 	}
 
+	@Test
+	public void fingerprint() throws Exception {
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+
+		Document document = load("transaction-page-sample.html");
+		Integer fingerprint = scraper.fingerprint(document);
+		assertEquals(fingerprint, scraper.fingerprint(load("transaction-page-sample.html")));
+
+		document.select("li.sectionItem").first().remove();
+		assertNotEquals(fingerprint, scraper.fingerprint(document));
+
+		assertNull(scraper.fingerprint(load("transaction-page-not-logged-in.html")));
+	}
+
+	@Test
+	public void metrics() throws Exception {
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+		Metrics metrics = new Metrics();
+		scraper.setMetrics(metrics);
+
+		scraper.scrape(load("transaction-page-sample.html"));
+		assertEquals(1, metrics.snapshot().getHistogram(Stage.SCRAPE).getCount());
+
+		//pages that aren't transaction pages are not measured
+		scraper.scrape(load("transaction-page-not-logged-in.html"));
+		assertEquals(1, metrics.snapshot().getHistogram(Stage.SCRAPE).getCount());
+	}
+
+	@Test
+	public void fingerprint_ignores_time_since_transaction() throws Exception {
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+
+		/*
+		 * The "data-diff" attribute contains the number of seconds since the
+		 * transaction, so it is different every time the page is downloaded.
+		 */
+		Document first = load("transaction-page-sample.html");
+		Document second = load("transaction-page-sample.html");
+		for (Element element : second.select("abbr[data-diff]")) {
+			int diff = Integer.parseInt(element.attr("data-diff"));
+			element.attr("data-diff", Integer.toString(diff + 60));
+		}
+		assertNotEquals(first.outerHtml(), second.outerHtml());
+
+		assertEquals(scraper.fingerprint(first), scraper.fingerprint(second));
+	}
+
 	@Test
 	public void invalid_rupee_balance() throws Exception {
 		Document document = load("transaction-page-invalid-rupee-balance.html");
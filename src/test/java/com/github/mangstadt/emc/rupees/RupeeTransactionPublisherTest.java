@@ -0,0 +1,200 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.net.EmcWebsiteConnection;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPublisher.Subscriber;
+import com.github.mangstadt.emc.rupees.RupeeTransactionPublisher.Subscription;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionPublisherTest {
+	@BeforeClass
+	public static void beforeClass() {
+		LogManager.getLogManager().reset();
+	}
+
+	@Test
+	public void demand_controls_downloads() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 10;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(30)));
+		}
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(4);
+		//@formatter:on
+
+		SubscriberMock subscriber = new SubscriberMock();
+		new RupeeTransactionPublisher(builder).subscribe(subscriber);
+
+		subscriber.subscription.request(5);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(pages.get(0).getTransactions().get(i), subscriber.items.poll(5, TimeUnit.SECONDS));
+		}
+		Thread.sleep(200);
+		assertNull(subscriber.items.poll());
+
+		//the first page is downloaded twice: once to initialize the reader, and once by a download thread
+		verify(pageProducer, atMost(2)).getPage(anyInt(), any(EmcWebsiteConnection.class));
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		List<RupeeTransaction> expected = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expected.addAll(page.getTransactions());
+		}
+		for (RupeeTransaction transaction : expected.subList(5, expected.size())) {
+			assertEquals(transaction, subscriber.items.poll(5, TimeUnit.SECONDS));
+		}
+
+		assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void cancel() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 10;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(30)));
+		}
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(4);
+		//@formatter:on
+
+		SubscriberMock subscriber = new SubscriberMock();
+		new RupeeTransactionPublisher(builder).subscribe(subscriber);
+
+		subscriber.subscription.request(40);
+		for (int i = 0; i < 40; i++) {
+			subscriber.items.poll(5, TimeUnit.SECONDS);
+		}
+		subscriber.subscription.cancel();
+
+		subscriber.subscription.request(100);
+		Thread.sleep(200);
+		assertNull(subscriber.items.poll());
+		verify(pageProducer, atMost(4)).getPage(anyInt(), any(EmcWebsiteConnection.class));
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void page_of_duplicates() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransaction> page1 = gen.next(30);
+		List<RupeeTransaction> page3 = gen.next(30);
+
+		/*
+		 * Every transaction on page 2 is a duplicate. Page 2 can't be an exact
+		 * copy of page 1 because the reader treats that as having wrapped
+		 * around past the last page.
+		 */
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		pages.add(new RupeeTransactionPage(1000, 1, 3, page1));
+		pages.add(new RupeeTransactionPage(1000, 2, 3, new ArrayList<>(page1.subList(1, 30))));
+		pages.add(new RupeeTransactionPage(1000, 3, 3, page3));
+
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new PageProducerMock(pages)).threads(2);
+		SubscriberMock subscriber = new SubscriberMock();
+		new RupeeTransactionPublisher(builder).subscribe(subscriber);
+
+		subscriber.subscription.request(40);
+		List<RupeeTransaction> expected = new ArrayList<>();
+		expected.addAll(page1);
+		expected.addAll(page3.subList(0, 10));
+		for (RupeeTransaction transaction : expected) {
+			assertEquals(transaction, subscriber.items.poll(5, TimeUnit.SECONDS));
+		}
+
+		subscriber.subscription.request(20);
+		for (RupeeTransaction transaction : page3.subList(10, 30)) {
+			assertEquals(transaction, subscriber.items.poll(5, TimeUnit.SECONDS));
+		}
+
+		subscriber.subscription.request(1);
+		assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+	}
+
+	@Test
+	public void builder_not_modified() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, 3, gen.next(30)));
+		}
+
+		RupeeTransactionReader.Builder builder = new RupeeTransactionReader.Builder(new PageProducerMock(pages)).threads(2);
+		new RupeeTransactionPublisher(builder);
+
+		//a reader built by the caller does not wait for demand
+		try (RupeeTransactionReader reader = builder.build()) {
+			int count = 0;
+			while (reader.next() != null) {
+				count++;
+			}
+			assertEquals(90, count);
+		}
+	}
+
+	private static class SubscriberMock implements Subscriber<RupeeTransaction> {
+		private final BlockingQueue<RupeeTransaction> items = new LinkedBlockingQueue<>();
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private Subscription subscription;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(RupeeTransaction item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			completed.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed.countDown();
+		}
+	}
+}
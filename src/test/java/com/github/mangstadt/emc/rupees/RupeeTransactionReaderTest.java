@@ -1,39 +1,70 @@
 package com.github.mangstadt.emc.rupees;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.LogManager;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jsoup.Jsoup;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.github.mangstadt.emc.metrics.Metrics;
+import com.github.mangstadt.emc.metrics.Metrics.Stage;
+import com.github.mangstadt.emc.metrics.MetricsSnapshot;
 import com.github.mangstadt.emc.net.EmcWebsiteConnection;
 import com.github.mangstadt.emc.net.InvalidSessionException;
-import com.github.mangstadt.emc.rupees.RupeeTransactionReader.PageSource;
+import com.github.mangstadt.emc.rupees.archive.DirectoryPageArchive;
+import com.github.mangstadt.emc.rupees.archive.PageArchive;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
 import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.google.common.io.ByteStreams;
 
 /**
  * @author Michael Angstadt
  */
 public class RupeeTransactionReaderTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
 	@BeforeClass
 	public static void beforeClass() {
 		LogManager.getLogManager().reset();
@@ -110,6 +141,112 @@ public class RupeeTransactionReaderTest {
 		verify(pageProducer, times(1)).recreateConnection(any(EmcWebsiteConnection.class));
 	}
 
+	@Test
+	public void jmx() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+
+		List<RupeeTransaction> transactionsPage1 = gen.next(5);
+		pages.add(new RupeeTransactionPage(1, pageCount++, 3, transactionsPage1));
+
+		List<RupeeTransaction> transactionsPage2 = new ArrayList<>();
+		transactionsPage2.add(transactionsPage1.get(4));
+		transactionsPage2.addAll(gen.next(4));
+		pages.add(new RupeeTransactionPage(1, pageCount++, 3, transactionsPage2));
+		pages.add(new RupeeTransactionPage(1, pageCount++, 3, gen.next(5)));
+
+		PageProducerMock pageProducer = new PageProducerMock(pages);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		ObjectName name;
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(pageProducer).threads(2).jmx(true).build()) {
+			name = reader.getObjectName();
+			assertTrue(server.isRegistered(name));
+
+			RupeeTransactionReaderMXBean bean = JMX.newMXBeanProxy(server, name, RupeeTransactionReaderMXBean.class);
+			assertEquals(2, bean.getThreads());
+			assertEquals(Integer.valueOf(3), bean.getTotalPages());
+
+			while (reader.next() != null) {
+				//empty
+			}
+
+			assertTrue(bean.isFinished());
+			assertEquals(3, bean.getPagesRead());
+			assertTrue(bean.getPagesFetched() >= 3);
+			assertEquals(1, bean.getDuplicatesDropped());
+			assertEquals(0, bean.getPagesBuffered());
+			assertEquals(0, bean.getQueueDepth());
+			assertEquals(0, bean.getErrors());
+			assertEquals(0, bean.getEstimatedSecondsRemaining());
+		}
+
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void jmx_disabled() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = Arrays.asList(new RupeeTransactionPage(1, 1, 1, gen.next(3)));
+
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(new PageProducerMock(pages)).build()) {
+			assertNull(reader.getObjectName());
+		}
+	}
+
+	@Test
+	public void progress() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= 6; i++) {
+			pages.add(new RupeeTransactionPage(1, i, 6, gen.next(5)));
+		}
+
+		PageProducerMock pageProducer = new PageProducerMock(pages);
+		List<ReaderProgress> reports = new CopyOnWriteArrayList<>();
+		List<String> threads = new CopyOnWriteArrayList<>();
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.start(2)
+			.progress(progress -> {
+				reports.add(progress);
+				threads.add(Thread.currentThread().getName());
+			}, Duration.ofMillis(5))
+			.build();
+		//@formatter:on
+
+		int count = 0;
+		try {
+			while (reader.next() != null) {
+				count++;
+				Thread.sleep(2);
+			}
+		} finally {
+			reader.close();
+		}
+
+		assertEquals(25, count);
+		assertFalse(reports.isEmpty());
+		assertEquals(1, threads.stream().distinct().count());
+		assertFalse(threads.get(0).startsWith("RupeeTransactionReader-0"));
+
+		ReaderProgress last = reports.get(reports.size() - 1);
+		assertTrue(last.isFinished());
+		assertEquals(Integer.valueOf(5), last.getTotalPages());
+		assertTrue(last.getPagesDownloaded() >= 5);
+		assertEquals(5, last.getPagesRead());
+		assertEquals(25, last.getTransactionsDelivered());
+		assertEquals(Duration.ZERO, last.getEstimatedTimeRemaining());
+		assertEquals(1, last.getFractionComplete(), 0);
+
+		//only one report says it's finished
+		assertEquals(1, reports.stream().filter(ReaderProgress::isFinished).count());
+	}
+
 	@Test
 	public void startPage() throws Exception {
 		//@formatter:off
@@ -392,6 +529,46 @@ public class RupeeTransactionReaderTest {
 		verify(pageProducer, times(1)).recreateConnection(any(EmcWebsiteConnection.class));
 	}
 
+	@Test
+	public void closed_while_reconnecting() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3))
+		);
+		//@formatter:on
+
+		AtomicReference<RupeeTransactionReader> readerRef = new AtomicReference<>();
+		AtomicReference<EmcWebsiteConnection> newConnection = new AtomicReference<>();
+		PageProducerMock pageProducer = new PageProducerMock(pages) {
+			@Override
+			public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
+				//the reader is closed while the new connection is being created
+				long deadline = System.currentTimeMillis() + 5000;
+				while (readerRef.get() == null && System.currentTimeMillis() < deadline) {
+					Thread.yield();
+				}
+				readerRef.get().close();
+
+				EmcWebsiteConnection c = super.recreateConnection(connection);
+				newConnection.set(c);
+				return c;
+			}
+		};
+		pageProducer.throwOnPage(2, new ConnectException());
+
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(pageProducer).threads(1).build()) {
+			readerRef.set(reader);
+			while (reader.next() != null) {
+				//empty
+			}
+		}
+
+		verify(newConnection.get()).close();
+	}
+
 	@Test
 	public void recoverable_ioexceptions_thrown_once() throws Exception {
 		IOException exceptions[] = { new ConnectException(), new SocketTimeoutException() };
@@ -557,6 +734,50 @@ public class RupeeTransactionReaderTest {
 		verify(pageProducer, times(1)).recreateConnection(any(EmcWebsiteConnection.class));
 	}
 
+	@Test
+	public void session_expired_on_first_page() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3))
+		);
+		//@formatter:on
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+		pageProducer.expireOnPage(1);
+
+		List<RupeeTransaction> expectedTransactions = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expectedTransactions.addAll(page.getTransactions());
+		}
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.build();
+		//@formatter:on
+
+		assertTransactionOrder(expectedTransactions, reader);
+
+		//a new session is created when the first page can't be downloaded
+		verify(pageProducer, times(2)).createSession();
+	}
+
+	@Test(expected = InvalidSessionException.class)
+	public void session_expired_on_first_page_cannot_recreate() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = Arrays.asList(new RupeeTransactionPage(1000, 1, 1, gen.next(3)));
+
+		PageProducerMock pageProducer = new PageProducerMock(pages);
+		pageProducer.expireOnPage(1);
+		pageProducer.expireOnPage(1);
+
+		new RupeeTransactionReader.Builder(pageProducer).build();
+	}
+
 	@Test
 	public void session_expired_cannot_recreate() throws Exception {
 		//@formatter:off
@@ -598,146 +819,394 @@ public class RupeeTransactionReaderTest {
 		verify(pageProducer, times(1)).recreateConnection(any(EmcWebsiteConnection.class));
 	}
 
-	private static void assertTransactionOrder(List<RupeeTransaction> expectedTransactions, RupeeTransactionReader reader) throws IOException {
-		Iterator<RupeeTransaction> expectedOrder = expectedTransactions.iterator();
+	@Test
+	public void hedge_slow_page() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 20;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(3)));
+		}
 
-		try {
-			RupeeTransaction actual;
-			while ((actual = reader.next()) != null) {
-				RupeeTransaction expected = expectedOrder.next();
-				assertSame(expected, actual);
-			}
-		} finally {
-			//this is in a finally block because some tests have the reader throw exceptions
-			assertFalse(expectedOrder.hasNext());
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+		for (int i = 1; i <= pageCount; i++) {
+			pageProducer.sleepOnPage(i, 10);
+		}
+		//only the first request for the page is slow
+		pageProducer.sleepOnceOnPage(15, 5000);
+
+		List<RupeeTransaction> expectedTransactions = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expectedTransactions.addAll(page.getTransactions());
 		}
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.hedge(90, pageCount)
+			.build();
+		//@formatter:on
+
+		long start = System.currentTimeMillis();
+		for (RupeeTransaction expected : expectedTransactions) {
+			assertSame(expected, reader.next());
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		reader.close();
+
+		assertTrue("Slow page was not hedged (took " + elapsed + "ms).", elapsed < 4000);
 	}
 
-	private static class PageProducerMock implements PageSource {
-		private final List<RupeeTransactionPage> pages;
-		private final List<List<Exception>> exceptions;
-		private final List<Integer> sleep;
-		private final List<List<Boolean>> expires;
+	@Test(expected = IllegalArgumentException.class)
+	public void hedge_negative_max() {
+		new RupeeTransactionReader.Builder(new PageProducerMock(Collections.emptyList())).hedge(90, -1);
+	}
 
-		public PageProducerMock(List<RupeeTransactionPage> pages) {
-			this.pages = pages;
+	@Test
+	public void close_aborts_downloads() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 4, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 4, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 4, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 4, gen.next(3))
+		);
+		//@formatter:on
 
-			int pageCount = pages.size();
-			exceptions = new ArrayList<>(pageCount);
-			sleep = new ArrayList<>(pageCount);
-			expires = new ArrayList<>(pageCount);
-			for (int i = 0; i < pageCount; i++) {
-				exceptions.add(new ArrayList<>());
-				sleep.add(null);
-				expires.add(new ArrayList<>());
-			}
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+		pageProducer.sleepOnPage(2, 10000);
+		pageProducer.sleepOnPage(3, 10000);
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.build();
+		//@formatter:on
+
+		for (RupeeTransaction expected : pages.get(0).getTransactions()) {
+			assertSame(expected, reader.next());
 		}
 
-		@Override
-		public RupeeTransactionPage getPage(int pageNumber, EmcWebsiteConnection connection) throws IOException {
-			if (pageNumber > pages.size()) {
-				pageNumber = 1;
-			}
+		long start = System.currentTimeMillis();
+		reader.close();
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue("close() took " + elapsed + "ms.", elapsed < 2000);
 
-			int index = pageNumber - 1;
-			List<Exception> list = exceptions.get(index);
-			if (!list.isEmpty()) {
-				//simulate a network error
-				Exception e = list.remove(0);
-				if (e instanceof IOException) {
-					throw (IOException) e;
-				}
-				if (e instanceof RuntimeException) {
-					throw (RuntimeException) e;
-				}
-				fail("Unit test can only throw IOExceptions or RuntimeExceptions.");
-			}
+		assertNull(reader.next());
+		for (EmcWebsiteConnection connection : pageProducer.connections) {
+			verify(connection).abort();
+			verify(connection, atLeastOnce()).close();
+		}
+	}
 
-			Integer sleep = this.sleep.get(index);
-			if (sleep != null) {
-				//simulate network lag
-				try {
-					Thread.sleep(sleep);
-				} catch (InterruptedException e) {
-					//empty
-				}
-			}
+	@Test
+	public void stream() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 10;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(3)));
+		}
+
+		List<RupeeTransaction> expectedTransactions = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expectedTransactions.addAll(page.getTransactions());
+		}
+
+		for (boolean parallel : new boolean[] { false, true }) {
+			PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+			//@formatter:off
+			RupeeTransactionReader reader = new RupeeTransactionReader
+				.Builder(pageProducer)
+				.threads(2)
+				.build();
+			//@formatter:on
 
-			List<Boolean> expires = this.expires.get(index);
-			if (!expires.isEmpty()) {
-				//simulate expired session
-				expires.remove(0);
-				return null;
+			List<RupeeTransaction> actual;
+			try (Stream<RupeeTransaction> stream = reader.stream()) {
+				actual = (parallel ? stream.parallel() : stream).collect(Collectors.toList());
 			}
+			assertEquals(expectedTransactions, actual);
 
-			return pages.get(index);
+			//closing the stream closes the reader
+			for (EmcWebsiteConnection connection : pageProducer.connections) {
+				verify(connection, atLeastOnce()).close();
+			}
 		}
+	}
 
-		public void sleepOnPage(int pageNumber, int sleep) {
-			this.sleep.set(pageNumber - 1, sleep);
+	@Test
+	public void prefetch() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 10;
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= pageCount; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, pageCount, gen.next(3)));
 		}
 
-		public void throwOnPage(int pageNumber, Exception e) {
-			this.exceptions.get(pageNumber - 1).add(e);
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(4)
+			.prefetch(2)
+			.build();
+		//@formatter:on
+
+		assertSame(pages.get(0).getTransactions().get(0), reader.next());
+		Thread.sleep(200);
+
+		//the first page is downloaded twice: once to initialize the reader, and once by a download thread
+		verify(pageProducer, times(4)).getPage(anyInt(), any(EmcWebsiteConnection.class));
+
+		List<RupeeTransaction> expectedTransactions = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expectedTransactions.addAll(page.getTransactions());
 		}
+		assertTransactionOrder(expectedTransactions.subList(1, expectedTransactions.size()), reader);
+	}
 
-		public void expireOnPage(int pageNumber) {
-			this.expires.get(pageNumber - 1).add(true);
+	@Test
+	public void nextPage() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3))
+		);
+		//@formatter:on
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.build();
+		//@formatter:on
+
+		assertEquals(pages.get(0).getTransactions(), reader.nextPage());
+
+		//the rest of the current page is returned
+		assertSame(pages.get(1).getTransactions().get(0), reader.next());
+		assertEquals(pages.get(1).getTransactions().subList(1, 3), reader.nextPage());
+
+		assertEquals(pages.get(2).getTransactions(), reader.nextPage());
+		assertNull(reader.nextPage());
+		assertTrue(reader.isEndOfStream());
+	}
+
+	@Test
+	public void dispatch() throws Exception {
+		LocalDateTime now = LocalDateTime.now();
+		ShopTransaction shop = new ShopTransaction.Builder().ts(now).shopCustomer("Notch").item("Diamond").quantity(1).build();
+		PaymentTransaction payment = new PaymentTransaction.Builder().ts(now.minusHours(1)).player("Notch").build();
+		RupeeTransaction other = new RupeeTransaction.Builder<>().ts(now.minusHours(2)).description("Description").build();
+
+		//@formatter:off
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, 1, 2, Arrays.asList(shop, payment)),
+			new RupeeTransactionPage(1000, 2, 2, Arrays.asList(other))
+		);
+		//@formatter:on
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		List<ShopTransaction> shopTransactions = new ArrayList<>();
+		List<PaymentTransaction> payments = new ArrayList<>();
+		List<RupeeTransaction> all = new ArrayList<>();
+		List<RupeeTransaction> allOnExecutor = Collections.synchronizedList(new ArrayList<>());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.onShopTransaction(shopTransactions::add)
+			.onPayment(payments::add)
+			.onTransaction(all::add)
+			.on(RupeeTransaction.class, allOnExecutor::add, executor)
+			.build();
+		//@formatter:on
+
+		reader.dispatch();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(Arrays.asList(shop), shopTransactions);
+		assertEquals(Arrays.asList(payment), payments);
+		assertEquals(Arrays.asList(shop, payment, other), all);
+		assertEquals(Arrays.asList(shop, payment, other), allOnExecutor);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void dispatch_no_handlers() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = Arrays.asList(new RupeeTransactionPage(1000, 1, 1, gen.next(3)));
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.build();
+		//@formatter:on
+
+		try {
+			reader.dispatch();
+		} finally {
+			reader.close();
 		}
+	}
 
-		@Override
-		public EmcWebsiteConnection recreateConnection(EmcWebsiteConnection connection) throws IOException {
-			return mock(EmcWebsiteConnection.class);
+	@Test
+	public void archive() throws Exception {
+		String html;
+		try (InputStream in = getClass().getResourceAsStream("transaction-page-sample.html")) {
+			html = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
 		}
+		RupeeTransactionPage expected = new RupeeTransactionPageScraper().scrape(Jsoup.parse(html));
+
+		PageArchive source = new DirectoryPageArchive(temp.newFolder().toPath());
+		source.put(1, html);
+		PageArchive copy = new DirectoryPageArchive(temp.newFolder().toPath());
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(source)
+			.archive(copy)
+			.build();
+		//@formatter:on
 
-		@Override
-		public EmcWebsiteConnection createSession() throws IOException {
-			return mock(EmcWebsiteConnection.class);
+		List<RupeeTransaction> actual = new ArrayList<>();
+		RupeeTransaction transaction;
+		while ((transaction = reader.next()) != null) {
+			actual.add(transaction);
 		}
+		reader.close();
+
+		assertEquals(expected.getTransactions(), actual);
+		assertEquals(Collections.singleton(1), copy.getPageNumbers());
+		assertEquals(expected.getTransactions(), new RupeeTransactionPageScraper().scrape(Jsoup.parse(copy.get(1))).getTransactions());
 	}
 
-	private static class TransactionGenerator implements Iterator<RupeeTransaction> {
-		private LocalDateTime date;
+	@Test
+	public void drainTo() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 3, gen.next(3))
+		);
+		//@formatter:on
 
-		public TransactionGenerator() {
-			this(LocalDateTime.now());
-		}
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
 
-		public TransactionGenerator(LocalDateTime date) {
-			this.date = date;
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(2)
+			.build();
+		//@formatter:on
+
+		List<RupeeTransaction> expectedTransactions = new ArrayList<>();
+		for (RupeeTransactionPage page : pages) {
+			expectedTransactions.addAll(page.getTransactions());
 		}
 
-		@Override
-		public boolean hasNext() {
-			return true;
+		List<RupeeTransaction> actual = new ArrayList<>();
+		assertSame(expectedTransactions.get(0), reader.poll(5, TimeUnit.SECONDS));
+		actual.add(expectedTransactions.get(0));
+
+		int added;
+		while ((added = reader.drainTo(actual, 4)) >= 0) {
+			assertTrue(added <= 4);
+			if (added == 0) {
+				Thread.sleep(10);
+			}
 		}
 
-		@Override
-		public RupeeTransaction next() {
-			LocalDateTime ts = date;
-			date = date.minusHours(1);
+		assertEquals(expectedTransactions, actual);
+		assertNull(reader.poll(10, TimeUnit.MILLISECONDS));
+		assertTrue(reader.isEndOfStream());
+	}
 
-			//@formatter:off
-			return new RupeeTransaction.Builder<>()
-				.ts(ts)
-				.amount(1)
-				.balance(1)
-				.description("Description")
+	@Test
+	public void poll_timeout() throws Exception {
+		//@formatter:off
+		TransactionGenerator gen = new TransactionGenerator();
+		int pageCount = 1;
+		List<RupeeTransactionPage> pages = Arrays.asList(
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3)),
+			new RupeeTransactionPage(1000, pageCount++, 2, gen.next(3))
+		);
+		//@formatter:on
+
+		PageProducerMock pageProducer = spy(new PageProducerMock(pages));
+		pageProducer.sleepOnPage(1, 500);
+
+		//@formatter:off
+		RupeeTransactionReader reader = new RupeeTransactionReader
+			.Builder(pageProducer)
+			.threads(1)
 			.build();
-			//@formatter:on
+		//@formatter:on
+
+		assertNull(reader.poll(10, TimeUnit.MILLISECONDS));
+		assertFalse(reader.isEndOfStream());
+		assertSame(pages.get(0).getTransactions().get(0), reader.poll(5, TimeUnit.SECONDS));
+		reader.close();
+	}
+
+	@Test
+	public void metrics() throws Exception {
+		TransactionGenerator gen = new TransactionGenerator();
+		List<RupeeTransactionPage> pages = new ArrayList<>();
+		for (int i = 1; i <= 4; i++) {
+			pages.add(new RupeeTransactionPage(1000, i, 4, gen.next(3)));
 		}
+		PageProducerMock pageProducer = new PageProducerMock(pages);
 
-		public List<RupeeTransaction> next(int count) {
-			List<RupeeTransaction> list = new ArrayList<>(count);
-			for (int i = 0; i < count; i++) {
-				list.add(next());
+		Metrics metrics = new Metrics();
+		MetricsSnapshot snapshot;
+		try (RupeeTransactionReader reader = new RupeeTransactionReader.Builder(pageProducer).threads(2).metrics(metrics).build()) {
+			while (reader.next() != null) {
+				//empty
 			}
-			return list;
+
+			snapshot = reader.getMetrics();
 		}
 
-		@Override
-		public void remove() {
-			//empty
+		/*
+		 * The reader may download more pages than it returns (for example,
+		 * to detect the end of the history).
+		 */
+		assertTrue(snapshot.getHistogram(Stage.PAGE).getCount() >= 4);
+		assertTrue(snapshot.getHistogram(Stage.QUEUE_WAIT).getCount() >= 4);
+		assertTrue(snapshot.getHistogram(Stage.CONSUMER).getCount() >= 3);
+	}
+
+	private static void assertTransactionOrder(List<RupeeTransaction> expectedTransactions, RupeeTransactionReader reader) throws IOException {
+		Iterator<RupeeTransaction> expectedOrder = expectedTransactions.iterator();
+
+		try {
+			RupeeTransaction actual;
+			while ((actual = reader.next()) != null) {
+				RupeeTransaction expected = expectedOrder.next();
+				assertSame(expected, actual);
+			}
+		} finally {
+			//this is in a finally block because some tests have the reader throw exceptions
+			assertFalse(expectedOrder.hasNext());
 		}
 	}
 }
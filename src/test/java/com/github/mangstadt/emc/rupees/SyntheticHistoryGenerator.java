@@ -0,0 +1,647 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * <p>
+ * Generates realistic rupee transaction histories of any size, for memory and
+ * throughput testing. Transactions are generated in descending order (newest
+ * first, like the rupee history pages) and their running balances are
+ * consistent with their amounts.
+ * </p>
+ * <p>
+ * Every transaction type that the built-in scribes recognize is generated,
+ * with descriptions that the scribes can parse. Player names and items are
+ * drawn from a Zipf distribution, so a few players and items account for most
+ * of the transactions.
+ * </p>
+ * <p>
+ * Timestamps have second precision. Note that the website (and
+ * {@link TransactionPageRenderer}) only renders transactions older than a
+ * week with minute precision.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class SyntheticHistoryGenerator implements Iterator<RupeeTransaction> {
+	/**
+	 * The kinds of transactions that can be generated.
+	 */
+	public enum Kind {
+		/**
+		 * The player's shop sold items to another player.
+		 */
+		SHOP_SOLD,
+
+		/**
+		 * The player's shop bought items from another player.
+		 */
+		SHOP_BOUGHT,
+
+		/**
+		 * The player sold items to another player's shop.
+		 */
+		OTHER_SHOP_SOLD,
+
+		/**
+		 * The player bought items from another player's shop.
+		 */
+		OTHER_SHOP_BOUGHT,
+
+		/**
+		 * Another player paid the player.
+		 */
+		PAYMENT_FROM,
+
+		/**
+		 * The player paid another player.
+		 */
+		PAYMENT_TO,
+
+		/**
+		 * The player locked a chest.
+		 */
+		LOCK,
+
+		/**
+		 * The player unlocked a chest.
+		 */
+		LOCK_REFUND,
+
+		/**
+		 * The player summoned a horse.
+		 */
+		HORSE_SUMMON,
+
+		/**
+		 * The player sent mail.
+		 */
+		MAIL,
+
+		/**
+		 * The player eggified a mob.
+		 */
+		EGGIFY,
+
+		/**
+		 * The player opened their cross-server vault.
+		 */
+		VAULT,
+
+		/**
+		 * The player voted for the server.
+		 */
+		VOTE,
+
+		/**
+		 * The player received their daily sign-in bonus.
+		 */
+		SIGNIN
+	}
+
+	private static final List<String> defaultItems = Arrays.asList("Diamond", "Iron Ingot", "Gold Ingot", "Emerald", "Oak Log", "Cobblestone", "Glass", "Redstone", "Ender Pearl", "Blaze Rod", "Purple Dye", "Huge Mushroom 2", "Nether Wart", "Slime Ball", "Quartz", "Bone", "Gunpowder", "String", "Sand", "Obsidian");
+	private static final List<String> reasons = Arrays.asList("thanks!", "for the diamonds", "rent", "loan repayment", "dp fee", "sorry about that", "happy birthday");
+	private static final List<String> subjects = Arrays.asList("Hello", "Your order", "Re: Shop restock", "Thanks", "Party tonight");
+	private static final List<String> worlds = Arrays.asList("wilderness", "wilderness_nether", "town");
+	private static final List<String> mobs = Arrays.asList("Wolf", "Cow", "Pig", "Sheep", "Horse", "Villager", "Ocelot");
+	private static final List<String> voteSites = Arrays.asList("TopG.org", "PlanetMinecraft.com", "MinecraftServers.org", "Minecraft-MP.com");
+	private static final int[] stackSizes = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 576, 1728 };
+
+	private final Random random;
+	private final Kind[] kinds;
+	private final double[] kindCdf;
+	private final List<String> players, items;
+	private final Zipf playerZipf, itemZipf;
+	private final long meanIntervalSeconds;
+
+	private LocalDateTime ts;
+	private int balance;
+	private int voteDay = 1;
+
+	private SyntheticHistoryGenerator(Builder builder) {
+		random = new Random(builder.seed);
+		ts = builder.now.truncatedTo(ChronoUnit.SECONDS);
+		balance = builder.balance;
+		meanIntervalSeconds = builder.meanIntervalSeconds;
+
+		List<Kind> kindList = new ArrayList<>();
+		List<Double> weightList = new ArrayList<>();
+		for (Map.Entry<Kind, Double> entry : builder.weights.entrySet()) {
+			if (entry.getValue() > 0) {
+				kindList.add(entry.getKey());
+				weightList.add(entry.getValue());
+			}
+		}
+		if (kindList.isEmpty()) {
+			throw new IllegalStateException("At least one transaction kind must have a positive weight.");
+		}
+
+		kinds = kindList.toArray(new Kind[0]);
+		kindCdf = new double[kinds.length];
+		double total = 0;
+		for (int i = 0; i < kinds.length; i++) {
+			total += weightList.get(i);
+			kindCdf[i] = total;
+		}
+		for (int i = 0; i < kinds.length; i++) {
+			kindCdf[i] /= total;
+		}
+
+		players = new ArrayList<>(builder.playerCount);
+		for (int i = 0; i < builder.playerCount; i++) {
+			players.add("Player" + i);
+		}
+		items = builder.items;
+
+		playerZipf = new Zipf(players.size(), builder.zipfExponent);
+		itemZipf = new Zipf(items.size(), builder.zipfExponent);
+	}
+
+	/**
+	 * Always returns true. The generator never runs out of transactions.
+	 */
+	@Override
+	public boolean hasNext() {
+		return true;
+	}
+
+	/**
+	 * Generates the next (older) transaction.
+	 */
+	@Override
+	public RupeeTransaction next() {
+		RupeeTransaction transaction = generate(nextKind()).ts(ts).balance(balance).build();
+
+		/*
+		 * Walking backwards in time, the balance before this transaction was
+		 * applied is the balance of the next transaction. Don't let it go
+		 * negative.
+		 */
+		if (balance - transaction.getAmount() < 0) {
+			transaction = generate(Kind.PAYMENT_TO).ts(ts).balance(balance).build();
+		}
+
+		balance -= transaction.getAmount();
+		ts = ts.minusSeconds(1 + (long) (-Math.log(1 - random.nextDouble()) * meanIntervalSeconds));
+
+		return transaction;
+	}
+
+	/**
+	 * Generates multiple transactions.
+	 * @param count the number of transactions to generate
+	 * @return the transactions
+	 */
+	public List<RupeeTransaction> next(int count) {
+		List<RupeeTransaction> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(next());
+		}
+		return list;
+	}
+
+	/**
+	 * Creates a lazy stream of transactions.
+	 * @param count the number of transactions
+	 * @return the stream
+	 */
+	public Stream<RupeeTransaction> stream(long count) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).limit(count);
+	}
+
+	/**
+	 * Renders the transactions as HTML rupee history pages, one page at a
+	 * time. The pages are generated lazily, so histories of millions of
+	 * transactions can be rendered without holding them in memory.
+	 * @param count the number of transactions
+	 * @param rowsPerPage the number of transactions per page (the website
+	 * uses 30)
+	 * @param renderer the page renderer
+	 * @return the pages, starting with page 1
+	 */
+	public Iterator<String> pages(long count, int rowsPerPage, TransactionPageRenderer renderer) {
+		int rupeeBalance = balance;
+		int totalPages = (int) Math.max(1, (count + rowsPerPage - 1) / rowsPerPage);
+
+		return new Iterator<String>() {
+			private int page = 1;
+			private long remaining = count;
+
+			@Override
+			public boolean hasNext() {
+				return page <= totalPages;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				int rows = (int) Math.min(rowsPerPage, remaining);
+				remaining -= rows;
+				return renderer.render(rupeeBalance, page++, totalPages, SyntheticHistoryGenerator.this.next(rows));
+			}
+		};
+	}
+
+	/**
+	 * Gets the balance of the next transaction that will be generated.
+	 * @return the balance
+	 */
+	public int getBalance() {
+		return balance;
+	}
+
+	private Kind nextKind() {
+		double r = random.nextDouble();
+		int index = Arrays.binarySearch(kindCdf, r);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return kinds[Math.min(index, kinds.length - 1)];
+	}
+
+	private RupeeTransaction.Builder<?> generate(Kind kind) {
+		switch (kind) {
+		case SHOP_SOLD: {
+			String item = item();
+			int quantity = quantity();
+			String player = player();
+			//@formatter:off
+			return new ShopTransaction.Builder()
+				.shopCustomer(player)
+				.item(item)
+				.quantity(-quantity)
+				.amount(quantity * price(item))
+				.description("Player shop sold " + quantity + " " + item + " to " + player);
+			//@formatter:on
+		}
+		case SHOP_BOUGHT: {
+			String item = item();
+			int quantity = quantity();
+			String player = player();
+			//@formatter:off
+			return new ShopTransaction.Builder()
+				.shopCustomer(player)
+				.item(item)
+				.quantity(quantity)
+				.amount(-quantity * price(item) / 2)
+				.description("Your player shop bought " + quantity + " " + item + " from " + player);
+			//@formatter:on
+		}
+		case OTHER_SHOP_SOLD: {
+			String item = item();
+			int quantity = quantity();
+			String player = player();
+			//@formatter:off
+			return new ShopTransaction.Builder()
+				.shopOwner(player)
+				.item(item)
+				.quantity(-quantity)
+				.amount(quantity * price(item) / 2)
+				.description("Sold to player shop " + quantity + " " + item + " to " + player);
+			//@formatter:on
+		}
+		case OTHER_SHOP_BOUGHT: {
+			String item = item();
+			int quantity = quantity();
+			String player = player();
+			//@formatter:off
+			return new ShopTransaction.Builder()
+				.shopOwner(player)
+				.item(item)
+				.quantity(quantity)
+				.amount(-quantity * price(item))
+				.description("Player shop purchased " + quantity + " " + item + " from " + player);
+			//@formatter:on
+		}
+		case PAYMENT_FROM:
+		case PAYMENT_TO: {
+			boolean from = (kind == Kind.PAYMENT_FROM);
+			String player = player();
+			String reason = random.nextBoolean() ? pick(reasons) : null;
+			int amount = paymentAmount();
+			String description = (from ? "Payment from " : "Payment to ") + player + ((reason == null) ? "" : ": " + reason);
+			//@formatter:off
+			return new PaymentTransaction.Builder()
+				.player(player)
+				.reason(reason)
+				.amount(from ? amount : -amount)
+				.description(description);
+			//@formatter:on
+		}
+		case LOCK:
+		case LOCK_REFUND: {
+			boolean lock = (kind == Kind.LOCK);
+			String world = pick(worlds);
+			int x = coord(), y = random.nextInt(256), z = coord();
+			String prefix = lock ? "Locked an item" : (random.nextBoolean() ? "Full" : "Partial") + " refund for unlocking item";
+			//@formatter:off
+			return new LockTransaction.Builder()
+				.world(world)
+				.coords(x, y, z)
+				.amount(lock ? -1000 : 1000)
+				.description(prefix + " " + world + ":" + x + "," + y + "," + z);
+			//@formatter:on
+		}
+		case HORSE_SUMMON: {
+			String world = pick(worlds);
+			double x = coord() / 10.0, y = random.nextInt(2560) / 10.0, z = coord() / 10.0;
+			//@formatter:off
+			return new HorseSummonFee.Builder()
+				.world(world)
+				.coords(x, y, z)
+				.amount(-10)
+				.description("Summoned stabled horse in the wild @ " + world + ":" + x + ":" + y + ":" + z);
+			//@formatter:on
+		}
+		case MAIL: {
+			String player = player();
+			String subject = pick(subjects);
+			//@formatter:off
+			return new MailFee.Builder()
+				.player(player)
+				.subject(subject)
+				.amount(-5)
+				.description("Sent mail to " + player + ": " + subject);
+			//@formatter:on
+		}
+		case EGGIFY: {
+			String mob = pick(mobs);
+			//@formatter:off
+			return new EggifyFee.Builder()
+				.mob(mob)
+				.amount(-200)
+				.description("Eggified a " + mob);
+			//@formatter:on
+		}
+		case VAULT:
+			//@formatter:off
+			return new VaultFee.Builder()
+				.amount(-10)
+				.description("Opened cross-server vault");
+			//@formatter:on
+		case VOTE: {
+			String site = pick(voteSites);
+			int day = voteDay;
+			voteDay = (voteDay % 30) + 1;
+			//@formatter:off
+			return new VoteBonus.Builder()
+				.site(site)
+				.day(day)
+				.amount(100 + day * 10)
+				.description("Voted for Empire Minecraft on " + site + " - day bonus: " + day);
+			//@formatter:on
+		}
+		case SIGNIN:
+			//@formatter:off
+			return new DailySigninBonus.Builder()
+				.amount(100 + random.nextInt(301))
+				.description("Daily sign-in bonus");
+			//@formatter:on
+		default:
+			throw new IllegalArgumentException("Unknown kind: " + kind);
+		}
+	}
+
+	private String player() {
+		return players.get(playerZipf.sample(random));
+	}
+
+	private String item() {
+		return items.get(itemZipf.sample(random));
+	}
+
+	private int quantity() {
+		return stackSizes[random.nextInt(stackSizes.length)];
+	}
+
+	/**
+	 * Each item has a fixed unit price.
+	 */
+	private static int price(String item) {
+		return 1 + Math.abs(item.hashCode() % 50);
+	}
+
+	/**
+	 * Payment amounts are spread over several orders of magnitude.
+	 */
+	private int paymentAmount() {
+		return 1 + (int) Math.pow(10, random.nextDouble() * 5);
+	}
+
+	private int coord() {
+		return random.nextInt(20_001) - 10_000;
+	}
+
+	private <T> T pick(List<T> list) {
+		return list.get(random.nextInt(list.size()));
+	}
+
+	/**
+	 * Samples ranks from a Zipf distribution using a precomputed CDF.
+	 */
+	private static class Zipf {
+		private final double[] cdf;
+
+		public Zipf(int n, double exponent) {
+			cdf = new double[n];
+			double total = 0;
+			for (int i = 0; i < n; i++) {
+				total += 1 / Math.pow(i + 1, exponent);
+				cdf[i] = total;
+			}
+			for (int i = 0; i < n; i++) {
+				cdf[i] /= total;
+			}
+		}
+
+		public int sample(Random random) {
+			int index = Arrays.binarySearch(cdf, random.nextDouble());
+			if (index < 0) {
+				index = -index - 1;
+			}
+			return Math.min(index, cdf.length - 1);
+		}
+	}
+
+	/**
+	 * Creates new instances of {@link SyntheticHistoryGenerator}.
+	 * @author Michael Angstadt
+	 */
+	public static class Builder {
+		private final Map<Kind, Double> weights = new EnumMap<>(Kind.class);
+		private long seed = 0;
+		private LocalDateTime now = LocalDateTime.now();
+		private int balance = 1_000_000;
+		private long meanIntervalSeconds = 3600;
+		private int playerCount = 1000;
+		private List<String> items = defaultItems;
+		private double zipfExponent = 1.0;
+
+		public Builder() {
+			weights.put(Kind.SHOP_SOLD, 30.0);
+			weights.put(Kind.SHOP_BOUGHT, 10.0);
+			weights.put(Kind.OTHER_SHOP_SOLD, 5.0);
+			weights.put(Kind.OTHER_SHOP_BOUGHT, 10.0);
+			weights.put(Kind.PAYMENT_FROM, 8.0);
+			weights.put(Kind.PAYMENT_TO, 8.0);
+			weights.put(Kind.LOCK, 2.0);
+			weights.put(Kind.LOCK_REFUND, 1.0);
+			weights.put(Kind.HORSE_SUMMON, 3.0);
+			weights.put(Kind.MAIL, 2.0);
+			weights.put(Kind.EGGIFY, 1.0);
+			weights.put(Kind.VAULT, 3.0);
+			weights.put(Kind.VOTE, 8.0);
+			weights.put(Kind.SIGNIN, 9.0);
+		}
+
+		/**
+		 * Sets the random seed (defaults to 0). Generators with the same
+		 * settings and seed generate the same history.
+		 * @param seed the seed
+		 * @return this
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Sets the timestamp of the newest transaction (defaults to the current
+		 * time).
+		 * @param now the timestamp
+		 * @return this
+		 */
+		public Builder now(LocalDateTime now) {
+			this.now = now;
+			return this;
+		}
+
+		/**
+		 * Sets the player's current rupee balance, which is the balance of the
+		 * newest transaction (defaults to 1,000,000).
+		 * @param balance the balance
+		 * @return this
+		 */
+		public Builder balance(int balance) {
+			this.balance = balance;
+			return this;
+		}
+
+		/**
+		 * Sets the average amount of time between transactions (defaults to
+		 * one hour). The time between transactions is exponentially
+		 * distributed.
+		 * @param seconds the average interval, in seconds
+		 * @return this
+		 */
+		public Builder meanInterval(long seconds) {
+			this.meanIntervalSeconds = seconds;
+			return this;
+		}
+
+		/**
+		 * Sets the relative weight of a transaction kind. A weight of zero
+		 * disables the kind.
+		 * @param kind the transaction kind
+		 * @param weight the weight
+		 * @return this
+		 */
+		public Builder weight(Kind kind, double weight) {
+			if (weight < 0) {
+				throw new IllegalArgumentException("Weight cannot be negative.");
+			}
+			weights.put(kind, weight);
+			return this;
+		}
+
+		/**
+		 * Only generates the given kinds of transactions, with equal weights.
+		 * @param kinds the transaction kinds
+		 * @return this
+		 */
+		public Builder only(Kind... kinds) {
+			for (Kind kind : Kind.values()) {
+				weights.put(kind, 0.0);
+			}
+			for (Kind kind : kinds) {
+				weights.put(kind, 1.0);
+			}
+			return this;
+		}
+
+		/**
+		 * Sets the number of distinct players that the player trades with
+		 * (defaults to 1000).
+		 * @param playerCount the number of players
+		 * @return this
+		 */
+		public Builder players(int playerCount) {
+			if (playerCount < 1) {
+				throw new IllegalArgumentException("Player count must be at least 1.");
+			}
+			this.playerCount = playerCount;
+			return this;
+		}
+
+		/**
+		 * Sets the items that are bought and sold.
+		 * @param items the item names
+		 * @return this
+		 */
+		public Builder items(String... items) {
+			if (items.length == 0) {
+				throw new IllegalArgumentException("At least one item is required.");
+			}
+			this.items = Arrays.asList(items);
+			return this;
+		}
+
+		/**
+		 * Sets the exponent of the Zipf distribution that players and items
+		 * are drawn from (defaults to 1.0). Higher values concentrate more of
+		 * the transactions on the most popular players and items. Zero makes
+		 * the distribution uniform.
+		 * @param exponent the exponent
+		 * @return this
+		 */
+		public Builder zipfExponent(double exponent) {
+			this.zipfExponent = exponent;
+			return this;
+		}
+
+		/**
+		 * Constructs the generator.
+		 * @return the generator
+		 * @throws IllegalStateException if all of the weights are zero
+		 */
+		public SyntheticHistoryGenerator build() {
+			return new SyntheticHistoryGenerator(this);
+		}
+	}
+}
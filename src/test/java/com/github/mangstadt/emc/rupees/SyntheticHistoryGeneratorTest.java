@@ -0,0 +1,123 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import com.github.mangstadt.emc.rupees.SyntheticHistoryGenerator.Kind;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransactionPage;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+
+/**
+ * @author Michael Angstadt
+ */
+public class SyntheticHistoryGeneratorTest {
+	private final LocalDateTime now = LocalDateTime.of(2015, 6, 27, 14, 21, 30);
+
+	@Test
+	public void balances() {
+		List<RupeeTransaction> transactions = new SyntheticHistoryGenerator.Builder().now(now).balance(500).build().next(10_000);
+
+		assertEquals(500, transactions.get(0).getBalance());
+		assertEquals(now, transactions.get(0).getTs());
+		for (int i = 0; i < transactions.size() - 1; i++) {
+			RupeeTransaction newer = transactions.get(i), older = transactions.get(i + 1);
+			assertEquals(newer.getBalance() - newer.getAmount(), older.getBalance());
+			assertTrue(older.getBalance() >= 0);
+			assertTrue(older.getTs().isBefore(newer.getTs()));
+		}
+	}
+
+	@Test
+	public void seed() {
+		List<RupeeTransaction> a = new SyntheticHistoryGenerator.Builder().now(now).seed(1).build().next(100);
+		List<RupeeTransaction> b = new SyntheticHistoryGenerator.Builder().now(now).seed(1).build().next(100);
+		List<RupeeTransaction> c = new SyntheticHistoryGenerator.Builder().now(now).seed(2).build().next(100);
+		assertEquals(a, b);
+		assertFalse(a.equals(c));
+	}
+
+	@Test
+	public void only() {
+		List<RupeeTransaction> transactions = new SyntheticHistoryGenerator.Builder().now(now).only(Kind.SHOP_SOLD).build().next(100);
+		for (RupeeTransaction transaction : transactions) {
+			ShopTransaction shop = (ShopTransaction) transaction;
+			assertTrue(shop.getAmount() > 0);
+			assertTrue(shop.getQuantity() < 0);
+		}
+	}
+
+	@Test
+	public void zipf() {
+		List<RupeeTransaction> transactions = new SyntheticHistoryGenerator.Builder().now(now).only(Kind.PAYMENT_FROM).players(100).build().next(10_000);
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (RupeeTransaction transaction : transactions) {
+			counts.merge(((PaymentTransaction) transaction).getPlayer(), 1, Integer::sum);
+		}
+
+		int first = counts.getOrDefault("Player0", 0);
+		int tenth = counts.getOrDefault("Player9", 0);
+		int last = counts.getOrDefault("Player99", 0);
+		assertTrue(first > tenth * 5);
+		assertTrue(tenth > last);
+	}
+
+	@Test
+	public void pages() {
+		int count = 1000;
+		List<RupeeTransaction> expected = new SyntheticHistoryGenerator.Builder().now(now).meanInterval(60).build().next(count);
+
+		/*
+		 * Render the pages as if the newest transaction was just logged so
+		 * that every timestamp is rendered with second precision.
+		 */
+		TransactionPageRenderer renderer = new TransactionPageRenderer(now.plusMinutes(1));
+		Iterator<String> it = new SyntheticHistoryGenerator.Builder().now(now).meanInterval(60).build().pages(count, 30, renderer);
+
+		RupeeTransactionPageScraper scraper = new RupeeTransactionPageScraper();
+		List<RupeeTransaction> actual = new ArrayList<>();
+		Set<Class<?>> types = new HashSet<>();
+		int pageNumber = 0;
+		while (it.hasNext()) {
+			RupeeTransactionPage page = scraper.scrape(Jsoup.parse(it.next()));
+			pageNumber++;
+			assertEquals(Integer.valueOf(pageNumber), page.getPage());
+			assertEquals(Integer.valueOf(34), page.getTotalPages());
+			assertEquals(Integer.valueOf(1_000_000), page.getRupeeBalance());
+
+			for (RupeeTransaction transaction : page.getTransactions()) {
+				actual.add(transaction);
+				types.add(transaction.getClass());
+			}
+		}
+
+		assertEquals(34, pageNumber);
+		assertEquals(expected, actual);
+
+		//every kind of transaction is recognized by the scribes
+		assertEquals(9, types.size());
+		assertFalse(types.contains(RupeeTransaction.class));
+
+		ShopTransaction shop = (ShopTransaction) actual.stream().filter(t -> t instanceof ShopTransaction).findFirst().get();
+		ShopTransaction shopExpected = (ShopTransaction) expected.get(actual.indexOf(shop));
+		assertEquals(shopExpected.getItem(), shop.getItem());
+		assertEquals(shopExpected.getQuantity(), shop.getQuantity());
+		assertEquals(Arrays.asList(shopExpected.getShopCustomer(), shopExpected.getShopOwner()), Arrays.asList(shop.getShopCustomer(), shop.getShopOwner()));
+	}
+}
@@ -0,0 +1,34 @@
+package com.github.mangstadt.emc.rupees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ThroughputWindowTest {
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void rate() {
+		ThroughputWindow window = new ThroughputWindow(10, TimeUnit.SECONDS, 0);
+		assertEquals(0, window.rate(0), 0);
+
+		for (int i = 1; i <= 4; i++) {
+			window.add(i * SECOND);
+		}
+
+		//window has not filled up yet
+		assertEquals(1, window.rate(4 * SECOND), 0.001);
+
+		//old events fall out of the window
+		for (int i = 5; i <= 20; i++) {
+			window.add(i * SECOND / 2 + 2 * SECOND);
+		}
+		assertEquals(1.9, window.rate(12 * SECOND), 0.001);
+		assertEquals(0, window.rate(100 * SECOND), 0);
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * Generates rupee transactions in descending order, one hour apart.
+ * @author Michael Angstadt
+ */
+class TransactionGenerator implements Iterator<RupeeTransaction> {
+	private LocalDateTime date;
+
+	public TransactionGenerator() {
+		this(LocalDateTime.now());
+	}
+
+	public TransactionGenerator(LocalDateTime date) {
+		this.date = date;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return true;
+	}
+
+	@Override
+	public RupeeTransaction next() {
+		LocalDateTime ts = date;
+		date = date.minusHours(1);
+
+		//@formatter:off
+		return new RupeeTransaction.Builder<>()
+			.ts(ts)
+			.amount(1)
+			.balance(1)
+			.description("Description")
+		.build();
+		//@formatter:on
+	}
+
+	public List<RupeeTransaction> next(int count) {
+		List<RupeeTransaction> list = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(next());
+		}
+		return list;
+	}
+
+	@Override
+	public void remove() {
+		//empty
+	}
+}
@@ -0,0 +1,123 @@
+package com.github.mangstadt.emc.rupees;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * <p>
+ * Renders transactions as an HTML page that uses the same markup as the
+ * EMC website's rupee history page, so that it can be read by
+ * {@link RupeeTransactionPageScraper}.
+ * </p>
+ * <p>
+ * Like the website, transactions that are more than a week old have their
+ * timestamps rendered as text, which only has minute precision. Recent
+ * transactions have their timestamps rendered as epoch seconds.
+ * </p>
+ * @author Michael Angstadt
+ */
+public class TransactionPageRenderer {
+	private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MMM d, yyyy", Locale.US);
+	private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a", Locale.US);
+	private static final Duration RECENT = Duration.ofDays(7);
+
+	private final LocalDateTime now;
+
+	/**
+	 * @param now the current time, which determines how the timestamps are
+	 * rendered
+	 */
+	public TransactionPageRenderer(LocalDateTime now) {
+		this.now = now;
+	}
+
+	/**
+	 * Renders a transaction page.
+	 * @param rupeeBalance the player's current rupee balance
+	 * @param page the page number
+	 * @param totalPages the total number of pages
+	 * @param transactions the transactions on the page
+	 * @return the HTML page
+	 */
+	public String render(int rupeeBalance, int page, int totalPages, List<? extends RupeeTransaction> transactions) {
+		StringBuilder sb = new StringBuilder(2048 + transactions.size() * 512);
+		sb.append("<!DOCTYPE html>\n");
+		sb.append("<html><head><title>Rupee History | Empire Minecraft</title></head><body>\n");
+		sb.append("<h1><span id=\"rupeesBalance\">Your balance: ").append(number(rupeeBalance)).append("</span>Rupee History</h1>\n");
+		sb.append("<div class=\"section\">\n");
+		sb.append("<ol class=\"sectionItems\">\n");
+		for (RupeeTransaction transaction : transactions) {
+			row(sb, transaction);
+		}
+		sb.append("</ol>\n");
+		sb.append("</div>\n");
+		sb.append("<div class=\"PageNav pn5\" data-page=\"").append(page).append("\" data-range=\"2\" data-last=\"").append(totalPages).append("\" data-baseurl=\"rupees/transactions/?page=%7B%7Bsentinel%7D%7D\">");
+		sb.append("<span class=\"pageNavHeader\">Page ").append(page).append(" of ").append(totalPages).append("</span></div>\n");
+		sb.append("</body></html>\n");
+		return sb.toString();
+	}
+
+	private void row(StringBuilder sb, RupeeTransaction transaction) {
+		LocalDateTime ts = transaction.getTs();
+		String date = dateFormatter.format(ts);
+		String time = timeFormatter.format(ts);
+
+		sb.append("<li class=\"sectionItem\">\n");
+		sb.append("<div class=\"listBlock time\">");
+		if (Duration.between(ts, now).compareTo(RECENT) < 0) {
+			long epochSeconds = ts.atZone(ZoneId.systemDefault()).toEpochSecond();
+			long diff = Duration.between(ts, now).getSeconds();
+			sb.append("<abbr class=\"DateTime\" data-time=\"").append(epochSeconds).append("\" data-diff=\"").append(diff).append("\" data-datestring=\"").append(date).append("\" data-timestring=\"").append(time).append("\">");
+			sb.append(date).append(" at ").append(time).append("</abbr>");
+		} else {
+			sb.append("<span class=\"DateTime\" title=\"").append(date).append(" at ").append(time).append("\">").append(date).append("</span>");
+		}
+		sb.append("</div>\n");
+
+		sb.append("<div class=\"listBlock description\">").append(escape(transaction.getDescription())).append("</div>\n");
+
+		int amount = transaction.getAmount();
+		if (amount < 0) {
+			sb.append("<div class=\"listBlock amount negative\">- ").append(number(-(long) amount)).append("</div>\n");
+		} else {
+			sb.append("<div class=\"listBlock amount\">+ ").append(number(amount)).append("</div>\n");
+		}
+
+		sb.append("<div class=\"listBlock balance\">").append(number(transaction.getBalance())).append("</div>\n");
+		sb.append("</li>\n");
+	}
+
+	private static String number(long value) {
+		return String.format(Locale.US, "%,d", value);
+	}
+
+	private static String escape(String value) {
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.mangstadt.emc.rupees.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionPageScraper;
+import com.google.common.io.ByteStreams;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ChunkedPageArchiveTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void split() throws Exception {
+		String html = load();
+		List<String> chunks = ChunkedPageArchive.split(html);
+
+		//one chunk before the rows, one per row, and one after the rows
+		assertEquals(12 + 2, chunks.size());
+		assertEquals(html, String.join("", chunks));
+
+		assertEquals(1, ChunkedPageArchive.split("no rows").size());
+	}
+
+	@Test
+	public void put_get() throws Exception {
+		String v1 = load();
+
+		/*
+		 * Simulate a new transaction being logged, which bumps the last row
+		 * onto the next page. The "data-diff" attributes also change every
+		 * time the page is downloaded.
+		 */
+		List<String> chunks = ChunkedPageArchive.split(v1.replaceAll("data-diff=\"(\\d+)\"", "data-diff=\"$19\""));
+		String newRow = chunks.get(1).replace("Donation to Notch", "Payment from Notch");
+		chunks.add(1, newRow);
+		chunks.remove(chunks.size() - 2);
+		String v2 = String.join("", chunks);
+
+		Path dir = temp.getRoot().toPath();
+		Path chunksFile = dir.resolve("chunks");
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			archive.put(1, v1);
+			long sizeAfterV1 = Files.size(chunksFile);
+
+			archive.put(1, v2);
+			long growth = Files.size(chunksFile) - sizeAfterV1;
+			assertTrue("The second version took up " + growth + " bytes.", growth < sizeAfterV1 / 4);
+
+			//same content is not stored twice
+			archive.put(1, v2);
+			assertEquals(2, archive.getVersionCount(1));
+
+			assertEquals(v2, archive.get(1));
+			assertEquals(v1, archive.get(1, 0));
+		}
+
+		//reopen
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			assertEquals(2, archive.getVersionCount(1));
+			assertEquals(v2, archive.get(1));
+			assertEquals(v1, archive.get(1, 0));
+			assertEquals(0, archive.getVersionCount(2));
+		}
+	}
+
+	@Test
+	public void corrupt_record_length() throws Exception {
+		String html = load();
+		Path dir = temp.getRoot().toPath();
+		Path chunksFile = dir.resolve("chunks");
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			archive.put(1, html);
+		}
+		long size = Files.size(chunksFile);
+
+		/*
+		 * Simulate a torn write whose length field is garbage. The record
+		 * should be discarded without trying to allocate or read that many
+		 * bytes.
+		 */
+		ByteBuffer record = ByteBuffer.allocate(32 + 8 + 3);
+		record.put(new byte[32]).putInt(Integer.MAX_VALUE).putInt(Integer.MAX_VALUE).put(new byte[3]);
+		Files.write(chunksFile, record.array(), StandardOpenOption.APPEND);
+
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			assertEquals(html, archive.get(1));
+		}
+		assertEquals(size, Files.size(chunksFile));
+	}
+
+	@Test
+	public void corrupt_layouts() throws Exception {
+		String html = load();
+		Path dir = temp.getRoot().toPath();
+		Path layoutsFile = dir.resolve("layouts");
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			archive.put(1, html);
+		}
+		long size = Files.size(layoutsFile);
+
+		String missingChunk = "2 " + String.join("", Collections.nCopies(64, "a")) + "\n";
+		String badHash = "3 " + String.join("", Collections.nCopies(64, "z")) + "\n";
+		String partial = "1 3fa9";
+		Files.write(layoutsFile, (missingChunk + badHash + partial).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		try (ChunkedPageArchive archive = new ChunkedPageArchive(dir)) {
+			assertEquals(1, archive.getVersionCount(1));
+			assertEquals(html, archive.get(1));
+			assertEquals(0, archive.getVersionCount(2));
+			assertEquals(0, archive.getVersionCount(3));
+		}
+
+		//the partially written line is removed
+		assertEquals(size + missingChunk.length() + badHash.length(), Files.size(layoutsFile));
+	}
+
+	private String load() throws Exception {
+		try (InputStream in = RupeeTransactionPageScraper.class.getResourceAsStream("transaction-page-sample.html")) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.mangstadt.emc.rupees.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Michael Angstadt
+ */
+public class DirectoryPageArchiveTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void put_get() throws Exception {
+		Path dir = temp.getRoot().toPath().resolve("archive");
+		DirectoryPageArchive archive = new DirectoryPageArchive(dir);
+		assertNull(archive.get(1));
+
+		archive.put(1, "one");
+		archive.put(2, "two");
+		archive.put(1, "one, version 2");
+		assertEquals("one, version 2", archive.get(1));
+		assertEquals("two", archive.get(2));
+		assertEquals(new TreeSet<>(Arrays.asList(1, 2)), archive.getPageNumbers());
+
+		//same content is not stored twice
+		archive.put(2, "two");
+		assertEquals(3, countPageFiles(dir));
+
+		//reopen
+		archive = new DirectoryPageArchive(dir);
+		assertEquals("one, version 2", archive.get(1));
+		assertEquals("two", archive.get(2));
+		assertEquals(new TreeSet<>(Arrays.asList(1, 2)), archive.getPageNumbers());
+
+		//an old version becomes the latest again
+		archive.put(1, "one");
+		assertEquals("one", new DirectoryPageArchive(dir).get(1));
+		assertEquals(3, countPageFiles(dir));
+	}
+
+	private static long countPageFiles(Path dir) throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".html.gz")).count();
+		}
+	}
+}
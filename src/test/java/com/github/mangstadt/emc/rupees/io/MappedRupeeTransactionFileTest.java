@@ -0,0 +1,140 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static com.github.mangstadt.emc.rupees.io.RupeeTransactionFileReaderTest.assertTransactionsEqual;
+import static com.github.mangstadt.emc.rupees.io.RupeeTransactionFileReaderTest.sample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+
+/**
+ * @author Michael Angstadt
+ */
+public class MappedRupeeTransactionFileTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void columns() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		try (MappedRupeeTransactionFile file = new MappedRupeeTransactionFile(write(transactions))) {
+			assertEquals(transactions.size(), file.size());
+			for (int i = 0; i < transactions.size(); i++) {
+				RupeeTransaction transaction = transactions.get(i);
+				assertEquals(transaction.getTs(), file.getTs(i));
+				assertEquals(transaction.getAmount(), file.getAmount(i));
+				assertEquals(transaction.getBalance(), file.getBalance(i));
+				assertEquals(transaction.getClass(), file.getType(i));
+			}
+			assertTransactionsEqual(transactions, file.between(null, null));
+		}
+	}
+
+	@Test
+	public void between_descending() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		assertBetween(transactions);
+	}
+
+	@Test
+	public void between_ascending() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Collections.reverse(transactions);
+		assertBetween(transactions);
+	}
+
+	@Test
+	public void between_unsorted() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Collections.shuffle(transactions, new Random(1));
+		assertBetween(transactions);
+	}
+
+	@Test
+	public void balanceAt() throws Exception {
+		List<RupeeTransaction> descending = sample();
+		List<RupeeTransaction> ascending = new ArrayList<>(descending);
+		Collections.reverse(ascending);
+		List<RupeeTransaction> unsorted = new ArrayList<>(descending);
+		Collections.shuffle(unsorted, new Random(1));
+
+		for (List<RupeeTransaction> transactions : Arrays.asList(descending, ascending, unsorted)) {
+			try (MappedRupeeTransactionFile file = new MappedRupeeTransactionFile(write(transactions))) {
+				RupeeTransaction newest = descending.get(0);
+				RupeeTransaction third = descending.get(2);
+				RupeeTransaction oldest = descending.get(descending.size() - 1);
+
+				assertEquals(Integer.valueOf(newest.getBalance()), file.balanceAt(newest.getTs()));
+				assertEquals(Integer.valueOf(newest.getBalance()), file.balanceAt(newest.getTs().plusYears(1)));
+				assertEquals(Integer.valueOf(third.getBalance()), file.balanceAt(third.getTs()));
+				assertEquals(Integer.valueOf(third.getBalance()), file.balanceAt(third.getTs().plusSeconds(1)));
+				assertEquals(Integer.valueOf(oldest.getBalance()), file.balanceAt(oldest.getTs()));
+				assertNull(file.balanceAt(oldest.getTs().minusNanos(1)));
+			}
+		}
+	}
+
+	@Test
+	public void empty() throws Exception {
+		Path path = temp.newFile().toPath();
+		new RupeeTransactionFileWriter(path).close();
+
+		try (MappedRupeeTransactionFile file = new MappedRupeeTransactionFile(path)) {
+			assertEquals(0, file.size());
+			assertEquals(0, file.between(null, null).size());
+			assertNull(file.balanceAt(LocalDateTime.now()));
+		}
+	}
+
+	/**
+	 * Asserts that the results of {@link MappedRupeeTransactionFile#between}
+	 * match a brute-force filtering of the transactions.
+	 */
+	private void assertBetween(List<RupeeTransaction> transactions) throws Exception {
+		List<RupeeTransaction> descending = sample();
+		LocalDateTime to = descending.get(2).getTs();
+		LocalDateTime from = descending.get(7).getTs();
+
+		try (MappedRupeeTransactionFile file = new MappedRupeeTransactionFile(write(transactions))) {
+			assertTransactionsEqual(filter(transactions, from, to), file.between(from, to));
+			assertTransactionsEqual(filter(transactions, from, null), file.between(from, null));
+			assertTransactionsEqual(filter(transactions, null, to), file.between(null, to));
+			assertTransactionsEqual(filter(transactions, from.plusNanos(1), to.minusNanos(1)), file.between(from.plusNanos(1), to.minusNanos(1)));
+			assertEquals(0, file.between(to.plusYears(1), null).size());
+			assertEquals(0, file.between(to, from).size());
+		}
+	}
+
+	private static List<RupeeTransaction> filter(List<RupeeTransaction> transactions, LocalDateTime from, LocalDateTime to) {
+		List<RupeeTransaction> filtered = new ArrayList<>();
+		for (RupeeTransaction transaction : transactions) {
+			LocalDateTime ts = transaction.getTs();
+			if ((from == null || !ts.isBefore(from)) && (to == null || !ts.isAfter(to))) {
+				filtered.add(transaction);
+			}
+		}
+		return filtered;
+	}
+
+	private Path write(List<RupeeTransaction> transactions) throws Exception {
+		Path path = temp.newFile().toPath();
+		try (RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(path, 3)) {
+			for (RupeeTransaction transaction : transactions) {
+				writer.write(transaction);
+			}
+		}
+		return path;
+	}
+}
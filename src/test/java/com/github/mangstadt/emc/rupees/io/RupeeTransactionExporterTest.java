@@ -0,0 +1,172 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static com.github.mangstadt.emc.rupees.io.RupeeTransactionFileReaderTest.sample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.io.RupeeTransactionExporter.Format;
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionExporterTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void csv() throws Exception {
+		//@formatter:off
+		List<RupeeTransaction> transactions = Arrays.asList(
+			new ShopTransaction.Builder().shopCustomer("Notch").item("Diamond").quantity(-64).ts(LocalDateTime.of(2015, 6, 27, 14, 21, 0, 123_000_000)).description("Player shop sold 64 Diamond to Notch").amount(6400).balance(100_000).build(),
+			new HorseSummonFee.Builder().world("wilderness").coords(1.5, -64, 10_000.75).ts(LocalDateTime.of(2015, 6, 1, 8, 0)).description("Summoned \"horse\", again").amount(-10).balance(93_400).build()
+		);
+		//@formatter:on
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (RupeeTransactionExporter exporter = new RupeeTransactionExporter.Builder(Channels.newChannel(out)).build()) {
+			for (RupeeTransaction transaction : transactions) {
+				exporter.write(transaction);
+			}
+		}
+
+		//@formatter:off
+		String expected =
+		"type,ts,amount,balance,description,shopCustomer,shopOwner,item,quantity,player,reason,subject,world,x,y,z,mob,site,day\n" +
+		"shop,2015-06-27T14:21:00.123,6400,100000,Player shop sold 64 Diamond to Notch,Notch,,Diamond,-64,,,,,,,,,,\n" +
+		"horse_summon_fee,2015-06-01T08:00:00,-10,93400,\"Summoned \"\"horse\"\", again\",,,,,,,,wilderness,1.5,-64.0,10000.75,,,\n";
+		//@formatter:on
+		assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void json_lines() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (RupeeTransactionExporter exporter = new RupeeTransactionExporter.Builder(Channels.newChannel(out)).format(Format.JSON_LINES).build()) {
+			for (RupeeTransaction transaction : transactions) {
+				exporter.write(transaction);
+			}
+		}
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(transactions.size(), lines.length);
+
+		JsonParser parser = new JsonParser();
+		for (int i = 0; i < lines.length; i++) {
+			RupeeTransaction transaction = transactions.get(i);
+			JsonObject json = parser.parse(lines[i]).getAsJsonObject();
+			assertEquals(RupeeTransactionExporter.typeName(transaction), json.get("type").getAsString());
+			assertEquals(transaction.getTs(), LocalDateTime.parse(json.get("ts").getAsString()));
+			assertEquals(transaction.getAmount(), json.get("amount").getAsInt());
+			assertEquals(transaction.getBalance(), json.get("balance").getAsInt());
+			assertEquals(transaction.getDescription(), json.get("description").getAsString());
+		}
+
+		JsonObject shop = parser.parse(lines[1]).getAsJsonObject();
+		assertEquals("Jeb", shop.get("shopOwner").getAsString());
+		assertFalse(shop.has("shopCustomer"));
+		assertEquals(2, shop.get("quantity").getAsInt());
+
+		JsonObject horse = parser.parse(lines[5]).getAsJsonObject();
+		assertEquals(-64.25, horse.get("y").getAsDouble(), 0);
+
+		JsonObject mail = parser.parse(lines[6]).getAsJsonObject();
+		assertEquals("Hello éè", mail.get("subject").getAsString());
+	}
+
+	@Test
+	public void gzip_rotate_by_month() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path file = temp.getRoot().toPath().resolve("transactions.csv.gz");
+
+		List<Path> files;
+		try (RupeeTransactionExporter exporter = new RupeeTransactionExporter.Builder(file).gzip(true).rotateByMonth().build()) {
+			for (RupeeTransaction transaction : transactions) {
+				exporter.write(transaction);
+			}
+			files = exporter.getFiles();
+		}
+
+		//@formatter:off
+		assertEquals(Arrays.asList(
+			file.resolveSibling("transactions-2015-06.csv.gz"),
+			file.resolveSibling("transactions-2014-05.csv.gz")
+		), files);
+		//@formatter:on
+
+		String june = gunzip(files.get(0));
+		assertTrue(june.startsWith("type,"));
+		assertEquals(1 + transactions.size() - 1, june.split("\n").length);
+
+		String may = gunzip(files.get(1));
+		assertEquals(2, may.split("\n").length);
+		assertTrue(may.contains("Something else"));
+	}
+
+	@Test
+	public void rotate_by_size() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path file = temp.getRoot().toPath().resolve("transactions.jsonl");
+
+		List<Path> files;
+		try (RupeeTransactionExporter exporter = new RupeeTransactionExporter.Builder(file).format(Format.JSON_LINES).rotateBySize(400).build()) {
+			for (RupeeTransaction transaction : transactions) {
+				exporter.write(transaction);
+			}
+			files = exporter.getFiles();
+		}
+
+		assertTrue(files.size() > 1);
+		assertEquals(file, files.get(0));
+		assertEquals(file.resolveSibling("transactions-2.jsonl"), files.get(1));
+
+		int lines = 0;
+		for (Path f : files) {
+			lines += Files.readAllLines(f, StandardCharsets.UTF_8).size();
+		}
+		assertEquals(transactions.size(), lines);
+	}
+
+	@Test
+	public void empty_file() throws Exception {
+		Path file = temp.getRoot().toPath().resolve("transactions.csv");
+		new RupeeTransactionExporter.Builder(file).build().close();
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(1, lines.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rotate_channel() throws Exception {
+		new RupeeTransactionExporter.Builder(Channels.newChannel(new ByteArrayOutputStream())).rotateByMonth().build();
+	}
+
+	private static String gunzip(Path file) throws Exception {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.dto.DailySigninBonus;
+import com.github.mangstadt.emc.rupees.dto.EggifyFee;
+import com.github.mangstadt.emc.rupees.dto.HorseSummonFee;
+import com.github.mangstadt.emc.rupees.dto.LockTransaction;
+import com.github.mangstadt.emc.rupees.dto.MailFee;
+import com.github.mangstadt.emc.rupees.dto.PaymentTransaction;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.dto.ShopTransaction;
+import com.github.mangstadt.emc.rupees.dto.VaultFee;
+import com.github.mangstadt.emc.rupees.dto.VoteBonus;
+
+/**
+ * @author Michael Angstadt
+ */
+public class RupeeTransactionFileReaderTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void round_trip() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path file = temp.newFile().toPath();
+
+		try (RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(file, 4)) {
+			for (RupeeTransaction transaction : transactions) {
+				writer.write(transaction);
+			}
+		}
+
+		try (RupeeTransactionFileReader reader = new RupeeTransactionFileReader(file)) {
+			assertEquals(transactions.size(), reader.size());
+			assertTransactionsEqual(transactions, reader.readAll());
+		}
+	}
+
+	@Test
+	public void read_date_range() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path file = temp.newFile().toPath();
+
+		try (RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(file, 3)) {
+			for (RupeeTransaction transaction : transactions) {
+				writer.write(transaction);
+			}
+		}
+
+		//transactions are in descending order
+		LocalDateTime to = transactions.get(2).getTs();
+		LocalDateTime from = transactions.get(7).getTs();
+		try (RupeeTransactionFileReader reader = new RupeeTransactionFileReader(file)) {
+			assertTransactionsEqual(transactions.subList(2, 8), reader.read(from, to));
+			assertTransactionsEqual(transactions.subList(0, 8), reader.read(from, null));
+			assertTransactionsEqual(transactions.subList(2, transactions.size()), reader.read(null, to));
+			assertEquals(0, reader.read(to.plusYears(1), null).size());
+		}
+	}
+
+	@Test
+	public void empty() throws Exception {
+		Path file = temp.newFile().toPath();
+		new RupeeTransactionFileWriter(file).close();
+
+		try (RupeeTransactionFileReader reader = new RupeeTransactionFileReader(file)) {
+			assertEquals(0, reader.size());
+			assertEquals(0, reader.readAll().size());
+		}
+	}
+
+	@Test
+	public void truncated() throws Exception {
+		Path file = temp.newFile().toPath();
+		try (RupeeTransactionFileWriter writer = new RupeeTransactionFileWriter(file)) {
+			for (RupeeTransaction transaction : sample()) {
+				writer.write(transaction);
+			}
+		}
+
+		byte[] data = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(data, data.length - 5));
+
+		try {
+			new RupeeTransactionFileReader(file).close();
+			fail();
+		} catch (IOException e) {
+			//expected
+		}
+	}
+
+	/**
+	 * Compares transactions, including the fields of each subclass.
+	 */
+	static void assertTransactionsEqual(List<RupeeTransaction> expected, List<RupeeTransaction> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			RupeeTransaction e = expected.get(i);
+			RupeeTransaction a = actual.get(i);
+			assertEquals(e.getClass(), a.getClass());
+			assertEquals(e, a);
+			assertEquals(e.getAmount(), a.getAmount());
+			assertEquals(e.getBalance(), a.getBalance());
+
+			if (e instanceof ShopTransaction) {
+				ShopTransaction es = (ShopTransaction) e, as = (ShopTransaction) a;
+				assertEquals(es.getShopCustomer(), as.getShopCustomer());
+				assertEquals(es.getShopOwner(), as.getShopOwner());
+				assertEquals(es.getItem(), as.getItem());
+				assertEquals(es.getQuantity(), as.getQuantity());
+			} else if (e instanceof PaymentTransaction) {
+				PaymentTransaction ep = (PaymentTransaction) e, ap = (PaymentTransaction) a;
+				assertEquals(ep.getPlayer(), ap.getPlayer());
+				assertEquals(ep.getReason(), ap.getReason());
+			} else if (e instanceof HorseSummonFee) {
+				HorseSummonFee eh = (HorseSummonFee) e, ah = (HorseSummonFee) a;
+				assertEquals(eh.getWorld(), ah.getWorld());
+				assertEquals(eh.getX(), ah.getX(), 0);
+				assertEquals(eh.getY(), ah.getY(), 0);
+				assertEquals(eh.getZ(), ah.getZ(), 0);
+			} else if (e instanceof MailFee) {
+				MailFee em = (MailFee) e, am = (MailFee) a;
+				assertEquals(em.getPlayer(), am.getPlayer());
+				assertEquals(em.getSubject(), am.getSubject());
+			} else if (e instanceof EggifyFee) {
+				assertEquals(((EggifyFee) e).getMob(), ((EggifyFee) a).getMob());
+			} else if (e instanceof LockTransaction) {
+				LockTransaction el = (LockTransaction) e, al = (LockTransaction) a;
+				assertEquals(el.getWorld(), al.getWorld());
+				assertEquals(el.getX(), al.getX());
+				assertEquals(el.getY(), al.getY());
+				assertEquals(el.getZ(), al.getZ());
+			} else if (e instanceof VoteBonus) {
+				VoteBonus ev = (VoteBonus) e, av = (VoteBonus) a;
+				assertEquals(ev.getSite(), av.getSite());
+				assertEquals(ev.getDay(), av.getDay());
+			}
+		}
+	}
+
+	/**
+	 * Creates one transaction of each type, in descending order.
+	 */
+	static List<RupeeTransaction> sample() {
+		LocalDateTime ts = LocalDateTime.of(2015, 6, 27, 14, 21, 0, 123_000_000);
+		List<RupeeTransaction> list = new ArrayList<>();
+
+		//@formatter:off
+		list.add(new ShopTransaction.Builder().shopCustomer("Notch").item("Diamond").quantity(-64).ts(ts).description("Player shop sold 64 Diamond to Notch").amount(6400).balance(100_000).build());
+		list.add(new ShopTransaction.Builder().shopOwner("Jeb").item("Diamond").quantity(2).ts(ts.minusMinutes(1)).description("Your player shop bought 2 Diamond from Jeb").amount(-200).balance(93_600).build());
+		list.add(new PaymentTransaction.Builder().player("Notch").reason("thanks").ts(ts.minusHours(1)).description("Payment from Notch: thanks").amount(32).balance(93_800).build());
+		list.add(new PaymentTransaction.Builder().player("Notch").ts(ts.minusHours(2)).description("Payment to Notch").amount(-32).balance(93_768).build());
+		list.add(new DailySigninBonus.Builder().ts(ts.minusHours(3)).description("Daily sign-in bonus").amount(400).balance(93_800).build());
+		list.add(new HorseSummonFee.Builder().world("wilderness").coords(1.5, -64.25, 10_000.75).ts(ts.minusHours(4)).description("Summoned stable horse in wilderness").amount(-10).balance(93_400).build());
+		list.add(new MailFee.Builder().player("Jeb").subject("Hello éè").ts(ts.minusHours(5)).description("Sent mail to Jeb: Hello").amount(-1).balance(93_410).build());
+		list.add(new EggifyFee.Builder().mob("Horse").ts(ts.minusDays(1)).description("Eggified a Horse").amount(-100).balance(93_411).build());
+		list.add(new LockTransaction.Builder().world("town").coords(-100, 64, 2000).ts(ts.minusDays(2)).description("Locked an item").amount(-5).balance(93_511).build());
+		list.add(new VoteBonus.Builder().site("PMC").day(15).ts(ts.minusDays(3)).description("Voted for Empire Minecraft on PMC - day 15 bonus").amount(400).balance(93_516).build());
+		list.add(new VaultFee.Builder().ts(ts.minusDays(4)).description("Vault fee").amount(-50).balance(93_116).build());
+		list.add(new RupeeTransaction.Builder<>().ts(ts.minusDays(400)).description("Something else").amount(Integer.MIN_VALUE).balance(Integer.MAX_VALUE).build());
+		//@formatter:on
+
+		return list;
+	}
+}
@@ -0,0 +1,167 @@
+package com.github.mangstadt.emc.rupees.io;
+
+import static com.github.mangstadt.emc.rupees.io.RupeeTransactionFileReaderTest.sample;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.mangstadt.emc.rupees.RupeeTransactionReader;
+import com.github.mangstadt.emc.rupees.dto.RupeeTransaction;
+import com.github.mangstadt.emc.rupees.io.ShardedRupeeTransactionExporter.Shard;
+
+/**
+ * @author Michael Angstadt
+ */
+public class ShardedRupeeTransactionExporterTest {
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void export() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path dir = temp.getRoot().toPath();
+
+		ShardedRupeeTransactionExporter exporter = new ShardedRupeeTransactionExporter.Builder(dir).queueSize(1).build();
+		List<Shard> shards = exporter.export(reader(transactions));
+
+		assertEquals(2, shards.size());
+		Shard june = shards.get(0);
+		assertEquals("2015-06", june.getKey());
+		assertEquals("transactions-2015-06.csv", june.getFile());
+		assertEquals(transactions.size() - 1, june.getCount());
+		assertEquals(transactions.get(0).getTs(), june.getFirst());
+		assertEquals(transactions.get(transactions.size() - 2).getTs(), june.getLast());
+
+		Shard may = shards.get(1);
+		assertEquals("2014-05", may.getKey());
+		assertEquals(1, may.getCount());
+
+		assertManifest(shards, ShardedRupeeTransactionExporter.readManifest(dir));
+
+		//concatenating the shards reproduces the original order
+		List<String> lines = new ArrayList<>();
+		for (Shard shard : shards) {
+			List<String> shardLines = Files.readAllLines(dir.resolve(shard.getFile()), StandardCharsets.UTF_8);
+			lines.addAll(shardLines.subList(1, shardLines.size()));
+		}
+		assertEquals(transactions.size(), lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			assertTrue(lines.get(i).contains(transactions.get(i).getTs().toString()));
+		}
+	}
+
+	@Test
+	public void export_only() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		Path dir = temp.getRoot().toPath();
+
+		List<Shard> all = new ShardedRupeeTransactionExporter.Builder(dir).bucket(ShardedRupeeTransactionExporter.BY_YEAR).build().export(reader(transactions));
+		assertEquals(2, all.size());
+
+		Path file2014 = dir.resolve(all.get(1).getFile());
+		FileTime modified = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(file2014, modified);
+
+		//@formatter:off
+		List<Shard> only = new ShardedRupeeTransactionExporter.Builder(dir)
+			.bucket(ShardedRupeeTransactionExporter.BY_YEAR)
+			.only(key -> key.equals("2015"))
+		.build().export(reader(transactions));
+		//@formatter:on
+
+		assertEquals(1, only.size());
+		assertEquals("2015", only.get(0).getKey());
+		assertEquals(modified, Files.getLastModifiedTime(file2014));
+		assertManifest(all, ShardedRupeeTransactionExporter.readManifest(dir));
+	}
+
+	@Test
+	public void export_shard_revisited() throws Exception {
+		List<RupeeTransaction> transactions = sample();
+		RupeeTransaction may = transactions.get(transactions.size() - 1);
+		Path dir = temp.getRoot().toPath();
+
+		/*
+		 * The June shard is closed once a page without any June transactions
+		 * is read, and then appended to when another June transaction turns
+		 * up.
+		 */
+		List<List<RupeeTransaction>> pages = new ArrayList<>();
+		pages.add(transactions.subList(0, 2));
+		pages.add(Arrays.asList(may));
+		pages.add(transactions.subList(2, 3));
+
+		List<Shard> shards = new ShardedRupeeTransactionExporter.Builder(dir).gzip(true).build().export(pagedReader(pages));
+
+		assertEquals(2, shards.size());
+		Shard june = shards.get(0);
+		assertEquals("2015-06", june.getKey());
+		assertEquals(3, june.getCount());
+		assertEquals(transactions.get(0).getTs(), june.getFirst());
+		assertEquals(transactions.get(2).getTs(), june.getLast());
+		assertEquals(1, shards.get(1).getCount());
+
+		List<String> lines;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(dir.resolve(june.getFile()))), StandardCharsets.UTF_8))) {
+			lines = reader.lines().collect(Collectors.toList());
+		}
+
+		//only one header row
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).startsWith("type,"));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(lines.get(i + 1).contains(transactions.get(i).getTs().toString()));
+		}
+	}
+
+	private static void assertManifest(List<Shard> expected, List<Shard> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Shard e = expected.get(i), a = actual.get(i);
+			assertEquals(e.getKey(), a.getKey());
+			assertEquals(e.getFile(), a.getFile());
+			assertEquals(e.getCount(), a.getCount());
+			assertEquals(e.getFirst(), a.getFirst());
+			assertEquals(e.getLast(), a.getLast());
+		}
+	}
+
+	/**
+	 * Creates a reader that returns the given transactions, three per page.
+	 */
+	private static RupeeTransactionReader reader(List<RupeeTransaction> transactions) throws Exception {
+		List<List<RupeeTransaction>> pages = new ArrayList<>();
+		for (int i = 0; i < transactions.size(); i += 3) {
+			pages.add(transactions.subList(i, Math.min(i + 3, transactions.size())));
+		}
+		return pagedReader(pages);
+	}
+
+	/**
+	 * Creates a reader that returns the given pages.
+	 */
+	private static RupeeTransactionReader pagedReader(List<List<RupeeTransaction>> pages) throws Exception {
+		RupeeTransactionReader reader = mock(RupeeTransactionReader.class);
+		Iterator<List<RupeeTransaction>> it = pages.iterator();
+		when(reader.nextPage()).thenAnswer(invocation -> it.hasNext() ? it.next() : null);
+		return reader;
+	}
+}